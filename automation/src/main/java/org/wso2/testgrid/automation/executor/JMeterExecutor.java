@@ -75,7 +75,7 @@ public class JMeterExecutor extends TestExecutor {
             for (Host host : deploymentCreationResult.getHosts()) {
                 environment.put(host.getLabel(), host.getIp());
             }
-            String testInputsLoc = DataBucketsHelper.getInputLocation(scenarioConfig.getTestPlan())
+            String testInputsLoc = DataBucketsHelper.getInputLocation(scenarioConfig)
                     .toAbsolutePath().toString();
             String testOutputsLoc = DataBucketsHelper.getTestOutputsLocation(scenarioConfig.getTestPlan())
                     .toAbsolutePath().toString();
@@ -27,24 +27,31 @@ import org.wso2.testgrid.common.TestCase;
 import org.wso2.testgrid.common.TestScenario;
 import org.wso2.testgrid.common.util.StringUtil;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Iterator;
-import javax.xml.stream.XMLEventReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.Attribute;
-import javax.xml.stream.events.Characters;
-import javax.xml.stream.events.EndElement;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.XMLStreamReader;
 
 /**
  * Parser implementation for parsing JMeter Functional Test result file.
+ * <p>
+ * The samples of the JTL files, in either the XML or the CSV format, are aggregated per label as they are read,
+ * and a test case is added for each label instead of each sample, so that a long running test does not produce
+ * millions of test cases. The statistics of the labels are written to {@value #SUMMARY_FILE} next to the JTL files.
  *
  * @since 1.0.0
  */
@@ -54,13 +61,27 @@ public class JMeterTestResultParser extends ResultParser {
             getLogger(JMeterTestResultParser.class.getName());
     private static final long serialVersionUID = -5244808712889913949L;
 
+    private static final String ROOT_ELEMENT = "testResults";
     private static final String HTTP_SAMPLE_ELEMENT = "httpSample";
     private static final String SAMPLE_ELEMENT = "sample";
     private static final String FAILURE_MESSAGE_ELEMENT = "failureMessage";
     private static final String TEST_NAME_ATTRIBUTE = "lb";
     private static final String TEST_SUCCESS_ATTRIBUTE = "s";
+    private static final String ELAPSED_TIME_ATTRIBUTE = "t";
 
-    private static final String[] ARCHIVABLE_FILES = new String[]{"*.{jtl,log}"};
+    private static final String LABEL_COLUMN = "label";
+    private static final String SUCCESS_COLUMN = "success";
+    private static final String ELAPSED_COLUMN = "elapsed";
+    private static final String FAILURE_MESSAGE_COLUMN = "failureMessage";
+    // Columns of a CSV JTL saved without a header, as JMeter writes them by default.
+    private static final List<String> DEFAULT_CSV_COLUMNS = Arrays.asList("timeStamp", ELAPSED_COLUMN, LABEL_COLUMN,
+            "responseCode", "responseMessage", "threadName", "dataType", SUCCESS_COLUMN, FAILURE_MESSAGE_COLUMN);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    static final String SUMMARY_FILE = "jtl-summary.csv";
+    private static final String[] ARCHIVABLE_FILES = new String[]{"*.{jtl,log}", SUMMARY_FILE};
+
+    private JtlStatistics statistics;
 
     /**
      * This constructor creates a {@link JMeterTestResultParser} object with the
@@ -73,24 +94,22 @@ public class JMeterTestResultParser extends ResultParser {
     }
 
     /**
-     * Here, you pass the results, find out all the test cases that has
-     * executed. Then, these test cases are inserted into the db as child
-     * items of {@link TestScenario} via {@link #archiveResults()}.
+     * Here, you pass the results, aggregate the samples of each label, and
+     * add a test case per label. Then, these test cases are inserted into the db
+     * as child items of {@link TestScenario} via {@link #archiveResults()}.
      *
      * Workflow:
      * <ul><li>
-     *  1. build a test case for each httpSample or sample element found in JTL.
+     *  1. add each httpSample or sample element, or CSV record, found in the JTL files to the statistics of its label.
      * </li><li>
-     *  2. set the failure state to true/false along with message
+     *  2. build a test case for each label, which fails with the first few failure messages if any sample failed.
      * </li><li>
-     *  3. Add the test case into the test scenario.
+     *  3. Add the test cases into the test scenario, and write the statistics to the summary file.
      * </li></ul>
      * @throws JTLResultParserException result parser error
      */
     @Override
     public void parseResults() throws JTLResultParserException {
-        boolean failureMsgElement = false;
-        XMLInputFactory factory = XMLInputFactory.newInstance();
         String[] scenarioResultFiles = ResultParserUtil.getJTLFiles(this.testResultsLocation);
         String testScenarioName = testScenario.getName();
 
@@ -100,73 +119,53 @@ public class JMeterTestResultParser extends ResultParser {
             return;
         }
 
+        JtlStatistics jtlStatistics = new JtlStatistics();
         for (String jtlFile : scenarioResultFiles) {
-            try (InputStream inputStream = Files.newInputStream(testResultsLocation.resolve(jtlFile))) {
-                if (logger.isDebugEnabled()) {
-                    logger.debug("Parsing scenario-results file of the TestScenario : '"
-                            + testScenarioName + "' using the JMeterTestResultParser");
-                }
-
-                XMLEventReader eventReader = factory.createXMLEventReader(inputStream);
-                TestCase testCase = null;
-                boolean isValidJTL = false;
-                while (eventReader.hasNext()) {
-                    XMLEvent event = eventReader.nextEvent();
-                    switch (event.getEventType()) {
-                        case XMLStreamConstants.START_ELEMENT:
-                            StartElement startElement = event.asStartElement();
-                            String elementName = startElement.getName().getLocalPart();
-                            if (!isValidJTL && "testResults".equals(elementName)) {
-                                isValidJTL = true;
-                            }
-                            if (!isValidJTL) {
-                                throw new IllegalArgumentException("Expected 'testResults' as the JTL root element "
-                                        + "name. Found: '" + elementName + "'.");
-                            }
-                            if (HTTP_SAMPLE_ELEMENT.equalsIgnoreCase(elementName) ||
-                                    SAMPLE_ELEMENT.equalsIgnoreCase(elementName)) {
-                                testCase = this.buildTestCase(startElement);
-                            } else if (FAILURE_MESSAGE_ELEMENT.equalsIgnoreCase(elementName)) {
-                                failureMsgElement = true;
-                            }
-                            break;
-                        case XMLStreamConstants.CHARACTERS:
-                            Characters characters = event.asCharacters();
-                            if (failureMsgElement) {
-                                testCase.setFailureMessage(characters.getData());
-                                failureMsgElement = false;
-                            }
-                            break;
-                        case XMLStreamConstants.END_ELEMENT:
-                            EndElement endElement = event.asEndElement();
-                            String nodeName = endElement.getName().getLocalPart();
-                            if (HTTP_SAMPLE_ELEMENT.equalsIgnoreCase(nodeName) ||
-                                    SAMPLE_ELEMENT.equalsIgnoreCase(nodeName)) {
-                                this.testScenario.addTestCase(testCase);
-                            }
-                            break;
-                        default:
-                            break;
-                    }
-                }
-
-                if (logger.isDebugEnabled()) {
-                    logger.debug("End parsing scenario-results file of the TestScenario : '" + testScenarioName +
-                            "' using the JMeterTestResultParser");
-                }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Parsing scenario-results file of the TestScenario : '"
+                        + testScenarioName + "' using the JMeterTestResultParser");
+            }
+            try {
+                parse(testResultsLocation.resolve(jtlFile), jtlStatistics);
             } catch (XMLStreamException e) {
                 throw new JTLResultParserException("Unable to parse the scenario-results file of TestScenario :" +
                         testScenarioName, e);
             } catch (FileNotFoundException e) {
                 throw new JTLResultParserException("Unable to locate the scenario-results file.", e);
             } catch (IOException e) {
-                throw new JTLResultParserException("Unable to close the input stream of scenario results file of " +
+                throw new JTLResultParserException("Unable to read the scenario results file of " +
                         "the TestScenario : " + testScenarioName, e);
             } catch (IllegalArgumentException e) {
                 throw new JTLResultParserException("ERROR: JTL parsing failed. Is this a valid JTL file: " + jtlFile +
                         "?. Error: " + e.getMessage());
             }
+            if (logger.isDebugEnabled()) {
+                logger.debug("End parsing scenario-results file of the TestScenario : '" + testScenarioName +
+                        "' using the JMeterTestResultParser");
+            }
         }
+
+        for (JtlStatistics.LabelStatistics labelStatistics : jtlStatistics.getLabelStatistics()) {
+            this.testScenario.addTestCase(buildTestCase(labelStatistics));
+        }
+        this.statistics = jtlStatistics;
+        logger.info(StringUtil.concatStrings("Parsed ", jtlStatistics.getSampleCount(), " samples of ",
+                jtlStatistics.getLabelStatistics().size(), " labels of the TestScenario : ", testScenarioName));
+        try {
+            writeSummary(jtlStatistics, testResultsLocation.resolve(SUMMARY_FILE));
+        } catch (IOException e) {
+            logger.warn("Unable to write the summary of the scenario results of the TestScenario : "
+                    + testScenarioName + ". Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the statistics of the samples of the parsed JTL files.
+     *
+     * @return the statistics, or null if the results are not parsed yet
+     */
+    public JtlStatistics getStatistics() {
+        return statistics;
     }
 
     @Override
@@ -174,26 +173,323 @@ public class JMeterTestResultParser extends ResultParser {
         super.archiveResults();
     }
 
-    private TestCase buildTestCase(StartElement sampleElement) {
+    /**
+     * Adds the samples of the given JTL file to the statistics. A file which starts with {@code <} is read as an
+     * XML JTL, and any other file as a CSV JTL.
+     *
+     * @param jtlFile    the JTL file
+     * @param statistics statistics to add the samples to
+     * @throws IOException              if the file cannot be read
+     * @throws XMLStreamException       if the XML of the file is malformed
+     * @throws IllegalArgumentException if the file is not a JTL file
+     */
+    static void parse(Path jtlFile, JtlStatistics statistics) throws IOException, XMLStreamException {
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(jtlFile), BUFFER_SIZE)) {
+            if (startsWithMarkup(inputStream)) {
+                parseXml(inputStream, statistics);
+            } else {
+                parseCsv(new InputStreamReader(inputStream, StandardCharsets.UTF_8), statistics);
+            }
+        }
+    }
+
+    private static boolean startsWithMarkup(InputStream inputStream) throws IOException {
+        inputStream.mark(BUFFER_SIZE);
+        try {
+            int read;
+            for (int i = 0; i < BUFFER_SIZE && (read = inputStream.read()) != -1; i++) {
+                // Skip the byte order mark, and white space.
+                if (read == '<') {
+                    return true;
+                } else if (read != 0xEF && read != 0xBB && read != 0xBF && !Character.isWhitespace(read)) {
+                    return false;
+                }
+            }
+            return false;
+        } finally {
+            inputStream.reset();
+        }
+    }
+
+    /**
+     * Reads the samples of an XML JTL with the cursor API, without creating objects for the elements and the text
+     * which are not needed. The samples nested in a sample are the sub-results of it, and are not counted.
+     */
+    private static void parseXml(InputStream inputStream, JtlStatistics statistics) throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XMLStreamReader reader = factory.createXMLStreamReader(inputStream);
+        try {
+            int depth = 0;
+            String label = null;
+            boolean success = false;
+            long elapsed = -1;
+            String failureMessage = null;
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        depth++;
+                        String elementName = reader.getLocalName();
+                        if (depth == 1) {
+                            if (!ROOT_ELEMENT.equals(elementName)) {
+                                throw new IllegalArgumentException("Expected 'testResults' as the JTL root element "
+                                        + "name. Found: '" + elementName + "'.");
+                            }
+                        } else if (depth == 2 && (HTTP_SAMPLE_ELEMENT.equalsIgnoreCase(elementName) ||
+                                SAMPLE_ELEMENT.equalsIgnoreCase(elementName))) {
+                            label = reader.getAttributeValue(null, TEST_NAME_ATTRIBUTE);
+                            success = Boolean.parseBoolean(reader.getAttributeValue(null, TEST_SUCCESS_ATTRIBUTE));
+                            elapsed = parseElapsed(reader.getAttributeValue(null, ELAPSED_TIME_ATTRIBUTE));
+                            failureMessage = null;
+                        } else if (label != null && !success && failureMessage == null &&
+                                FAILURE_MESSAGE_ELEMENT.equalsIgnoreCase(elementName)) {
+                            // Moves to the end of the element.
+                            failureMessage = reader.getElementText();
+                            depth--;
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (depth == 2 && label != null) {
+                            statistics.record(label, success, elapsed, failureMessage);
+                            label = null;
+                        }
+                        depth--;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads the records of a CSV JTL. The columns are taken from the header, or are the default columns of JMeter
+     * if there is no header.
+     */
+    private static void parseCsv(Reader reader, JtlStatistics statistics) throws IOException {
+        CsvReader csvReader = new CsvReader(reader);
+        List<String> firstRecord = csvReader.readRecord();
+        if (firstRecord == null) {
+            return;
+        }
+        boolean hasHeader = firstRecord.contains(LABEL_COLUMN);
+        List<String> columns = hasHeader ? firstRecord : DEFAULT_CSV_COLUMNS;
+        int labelColumn = columns.indexOf(LABEL_COLUMN);
+        int successColumn = columns.indexOf(SUCCESS_COLUMN);
+        if (labelColumn < 0 || successColumn < 0) {
+            throw new IllegalArgumentException("Expected the '" + LABEL_COLUMN + "' and '" + SUCCESS_COLUMN
+                    + "' columns in the JTL header. Found: " + columns + ".");
+        }
+        int elapsedColumn = columns.indexOf(ELAPSED_COLUMN);
+        int failureMessageColumn = columns.indexOf(FAILURE_MESSAGE_COLUMN);
+        if (!hasHeader) {
+            record(statistics, firstRecord.toArray(new String[0]), labelColumn, successColumn, elapsedColumn,
+                    failureMessageColumn);
+        }
+
+        // Only the values of the columns needed for the statistics are kept.
+        int[] slots = new int[columns.size()];
+        Arrays.fill(slots, -1);
+        slots[labelColumn] = labelColumn;
+        slots[successColumn] = successColumn;
+        if (elapsedColumn >= 0) {
+            slots[elapsedColumn] = elapsedColumn;
+        }
+        if (failureMessageColumn >= 0) {
+            slots[failureMessageColumn] = failureMessageColumn;
+        }
+        String[] values = new String[columns.size()];
+        while (csvReader.readRecord(slots, values)) {
+            record(statistics, values, labelColumn, successColumn, elapsedColumn, failureMessageColumn);
+        }
+    }
+
+    private static void record(JtlStatistics statistics, String[] values, int labelColumn, int successColumn,
+                               int elapsedColumn, int failureMessageColumn) {
+        String label = labelColumn < values.length ? values[labelColumn] : null;
+        if (StringUtil.isStringNullOrEmpty(label)) {
+            return;
+        }
+        boolean success = successColumn < values.length && Boolean.parseBoolean(values[successColumn]);
+        long elapsed = elapsedColumn >= 0 && elapsedColumn < values.length ? parseElapsed(values[elapsedColumn]) : -1;
+        String failureMessage = failureMessageColumn >= 0 && failureMessageColumn < values.length ?
+                values[failureMessageColumn] : null;
+        statistics.record(label, success, elapsed, StringUtil.isStringNullOrEmpty(failureMessage) ?
+                null : failureMessage);
+    }
+
+    private static long parseElapsed(String elapsed) {
+        if (StringUtil.isStringNullOrEmpty(elapsed)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(elapsed.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private TestCase buildTestCase(JtlStatistics.LabelStatistics labelStatistics) {
         TestCase testCase = new TestCase();
         testCase.setTestScenario(this.testScenario);
-        Iterator<Attribute> attributes = sampleElement.getAttributes();
-
-        while (attributes.hasNext()) {
-            Attribute attribute = attributes.next();
-            if (TEST_NAME_ATTRIBUTE.equals(attribute.getName().getLocalPart())) {
-                testCase.setName(attribute.getValue());
-            } else if (TEST_SUCCESS_ATTRIBUTE.equals(attribute.getName().getLocalPart())) {
-                if (Boolean.valueOf(attribute.getValue())) {
-                    testCase.setSuccess(Status.SUCCESS);
-                } else if (!Boolean.valueOf(attribute.getValue())) {
-                    testCase.setSuccess(Status.FAIL);
-                } else {
-                    testCase.setSuccess(Status.SKIP);
-                }
+        testCase.setName(labelStatistics.getLabel());
+        if (labelStatistics.getErrors() == 0) {
+            testCase.setSuccess(Status.SUCCESS);
+        } else {
+            testCase.setSuccess(Status.FAIL);
+            StringBuilder failureMessage = new StringBuilder()
+                    .append(labelStatistics.getErrors()).append(" of ").append(labelStatistics.getCount())
+                    .append(" samples failed.");
+            for (String message : labelStatistics.getFailureMessages()) {
+                failureMessage.append('\n').append(message);
             }
+            testCase.setFailureMessage(failureMessage.toString());
         }
         return testCase;
     }
-}
 
+    /**
+     * Writes the statistics of each label as a CSV file.
+     */
+    private static void writeSummary(JtlStatistics statistics, Path summaryFile) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(summaryFile, StandardCharsets.UTF_8)) {
+            writer.write("label,samples,errors,min,max,mean,p50,p90,p95,p99");
+            writer.newLine();
+            for (JtlStatistics.LabelStatistics labelStatistics : statistics.getLabelStatistics()) {
+                writer.write(String.format(Locale.ENGLISH, "%s,%d,%d,%d,%d,%.2f,%d,%d,%d,%d",
+                        escapeCsv(labelStatistics.getLabel()), labelStatistics.getCount(),
+                        labelStatistics.getErrors(), labelStatistics.getMin(), labelStatistics.getMax(),
+                        labelStatistics.getMean(), labelStatistics.getPercentile(50),
+                        labelStatistics.getPercentile(90), labelStatistics.getPercentile(95),
+                        labelStatistics.getPercentile(99)));
+                writer.newLine();
+            }
+        }
+    }
+
+    private static String escapeCsv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Reads the records of a CSV file, in which fields may be quoted to contain delimiters, quotes and line breaks.
+     */
+    private static final class CsvReader {
+
+        private final Reader reader;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private final StringBuilder field = new StringBuilder();
+        private int position;
+        private int limit;
+
+        CsvReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * Reads the next record.
+         *
+         * @return the fields of the record, or null at the end of the file
+         */
+        List<String> readRecord() throws IOException {
+            List<String> fields = new ArrayList<>();
+            return read(null, null, fields) ? fields : null;
+        }
+
+        /**
+         * Reads the next record, keeping the value of each field of which the slot is not negative at that index of
+         * the values. The values of the fields missing in the record are set to null.
+         *
+         * @return false at the end of the file
+         */
+        boolean readRecord(int[] slots, String[] values) throws IOException {
+            Arrays.fill(values, null);
+            return read(slots, values, null);
+        }
+
+        private boolean read(int[] slots, String[] values, List<String> fields) throws IOException {
+            int column = 0;
+            boolean quoted = false;
+            boolean empty = true;
+            field.setLength(0);
+            while (true) {
+                int c = next();
+                if (c == -1) {
+                    if (empty) {
+                        return false;
+                    }
+                    endField(column, slots, values, fields);
+                    return true;
+                }
+                empty = false;
+                boolean kept = fields != null || (column < slots.length && slots[column] >= 0);
+                if (quoted) {
+                    if (c == '"') {
+                        if (peek() == '"') {
+                            next();
+                            appendIf(kept, '"');
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        appendIf(kept, (char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    endField(column++, slots, values, fields);
+                } else if (c == '\n') {
+                    endField(column, slots, values, fields);
+                    return true;
+                } else if (c != '\r') {
+                    appendIf(kept, (char) c);
+                }
+            }
+        }
+
+        private void appendIf(boolean kept, char c) {
+            if (kept) {
+                field.append(c);
+            }
+        }
+
+        private void endField(int column, int[] slots, String[] values, List<String> fields) {
+            if (fields != null) {
+                fields.add(field.toString());
+            } else if (column < slots.length && slots[column] >= 0) {
+                values[slots[column]] = field.toString();
+            }
+            field.setLength(0);
+        }
+
+        private int next() throws IOException {
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            return buffer[position++];
+        }
+
+        private int peek() throws IOException {
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            return buffer[position];
+        }
+
+        private boolean fill() throws IOException {
+            int read = reader.read(buffer, 0, buffer.length);
+            if (read <= 0) {
+                return false;
+            }
+            position = 0;
+            limit = read;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.automation.parser;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statistics of the samples of a JMeter result file, aggregated per sample label as the samples are read.
+ * <p>
+ * Only the counts, the latency histogram and the first few failure messages of each label are kept, hence the
+ * memory used depends on the number of labels and not on the number of samples.
+ *
+ * @since 1.0.0
+ */
+public class JtlStatistics {
+
+    static final int MAX_FAILURE_MESSAGES = 10;
+    static final int MAX_FAILURE_MESSAGE_LENGTH = 1000;
+
+    private final Map<String, LabelStatistics> labels = new LinkedHashMap<>();
+
+    /**
+     * Adds a sample to the statistics of its label.
+     *
+     * @param label          label of the sample
+     * @param success        whether the sample succeeded
+     * @param elapsed        elapsed time of the sample in milliseconds, or a negative value if it is not known
+     * @param failureMessage failure message of the sample, or null
+     */
+    public void record(String label, boolean success, long elapsed, String failureMessage) {
+        LabelStatistics statistics = labels.get(label);
+        if (statistics == null) {
+            statistics = new LabelStatistics(label);
+            labels.put(label, statistics);
+        }
+        statistics.record(success, elapsed, failureMessage);
+    }
+
+    /**
+     * Returns the statistics of each label, in the order the labels were first seen.
+     *
+     * @return the statistics of the labels
+     */
+    public Collection<LabelStatistics> getLabelStatistics() {
+        return Collections.unmodifiableCollection(labels.values());
+    }
+
+    /**
+     * Returns the statistics of the given label.
+     *
+     * @param label label of the samples
+     * @return the statistics, or null if there are no samples of the label
+     */
+    public LabelStatistics getLabelStatistics(String label) {
+        return labels.get(label);
+    }
+
+    /**
+     * Returns the total number of samples.
+     *
+     * @return the number of samples
+     */
+    public long getSampleCount() {
+        long count = 0;
+        for (LabelStatistics statistics : labels.values()) {
+            count += statistics.getCount();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of latency histogram buckets allocated for all the labels.
+     *
+     * @return the number of buckets
+     */
+    int getBucketCount() {
+        int buckets = 0;
+        for (LabelStatistics statistics : labels.values()) {
+            buckets += statistics.histogram.getBucketCount();
+        }
+        return buckets;
+    }
+
+    /**
+     * Statistics of the samples of one label.
+     */
+    public static class LabelStatistics {
+
+        private final String label;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final List<String> failureMessages = new ArrayList<>();
+        private long count;
+        private long errors;
+        private long min = Long.MAX_VALUE;
+        private long max;
+        private long totalElapsed;
+
+        LabelStatistics(String label) {
+            this.label = label;
+        }
+
+        void record(boolean success, long elapsed, String failureMessage) {
+            count++;
+            if (!success) {
+                errors++;
+                if (failureMessage != null && failureMessages.size() < MAX_FAILURE_MESSAGES) {
+                    failureMessages.add(failureMessage.length() > MAX_FAILURE_MESSAGE_LENGTH ?
+                            failureMessage.substring(0, MAX_FAILURE_MESSAGE_LENGTH) : failureMessage);
+                }
+            }
+            if (elapsed >= 0) {
+                histogram.record(elapsed);
+                totalElapsed += elapsed;
+                min = Math.min(min, elapsed);
+                max = Math.max(max, elapsed);
+            }
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * Returns the least elapsed time, in milliseconds.
+         *
+         * @return the least elapsed time, or 0 if no sample has one
+         */
+        public long getMin() {
+            return histogram.getTotalCount() == 0 ? 0 : min;
+        }
+
+        /**
+         * Returns the greatest elapsed time, in milliseconds.
+         *
+         * @return the greatest elapsed time, or 0 if no sample has one
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Returns the mean elapsed time, in milliseconds.
+         *
+         * @return the mean elapsed time, or 0 if no sample has one
+         */
+        public double getMean() {
+            long timed = histogram.getTotalCount();
+            return timed == 0 ? 0 : (double) totalElapsed / timed;
+        }
+
+        /**
+         * Returns the elapsed time at the given percentile, in milliseconds, within 2% of the exact value.
+         *
+         * @param percentile percentile, between 0 and 100
+         * @return the elapsed time, or 0 if no sample has one
+         */
+        public long getPercentile(double percentile) {
+            return Math.min(max, histogram.getValueAtPercentile(percentile));
+        }
+
+        /**
+         * Returns the first failure messages of the failed samples, up to
+         * {@value JtlStatistics#MAX_FAILURE_MESSAGES} of them.
+         *
+         * @return the failure messages
+         */
+        public List<String> getFailureMessages() {
+            return Collections.unmodifiableList(failureMessages);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.automation.parser;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of latencies with a fixed relative precision, in the manner of an HDR histogram.
+ * <p>
+ * Values below {@value #LINEAR_BUCKETS} are counted exactly. Larger values are counted in buckets of
+ * {@value #SUB_BUCKETS} per power of two, so that a percentile is off by less than 2% of its value, whatever the
+ * number of recorded values. The buckets are allocated up to the largest value recorded.
+ *
+ * @since 1.0.0
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_BUCKETS = SUB_BUCKETS * 2;
+    private static final int INITIAL_BUCKETS = LINEAR_BUCKETS + SUB_BUCKETS * 4;
+
+    private long[] counts = new long[INITIAL_BUCKETS];
+    private long totalCount;
+
+    /**
+     * Records a value.
+     *
+     * @param value value, which should not be negative
+     */
+    void record(long value) {
+        int index = indexOf(Math.max(0, value));
+        if (index >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(index + 1, counts.length * 2));
+        }
+        counts[index]++;
+        totalCount++;
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return the number of values
+     */
+    long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Returns the number of buckets allocated, which depends on the largest value recorded and not on the number of
+     * values.
+     *
+     * @return the number of buckets
+     */
+    int getBucketCount() {
+        return counts.length;
+    }
+
+    /**
+     * Returns the value at the given percentile, as the largest value of its bucket.
+     *
+     * @param percentile percentile, between 0 and 100
+     * @return the value at the percentile, or 0 if no values are recorded
+     */
+    long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * totalCount));
+        long cumulative = 0;
+        for (int index = 0; index < counts.length; index++) {
+            cumulative += counts[index];
+            if (cumulative >= rank) {
+                return highestValueOf(index);
+            }
+        }
+        return highestValueOf(counts.length - 1);
+    }
+
+    private static int indexOf(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long highestValueOf(int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        int shift = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+        long subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -18,17 +18,15 @@
 
 package org.wso2.testgrid.automation.parser;
 
-import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.testgrid.automation.exception.ResultParserException;
 import org.wso2.testgrid.common.TestGridConstants;
 import org.wso2.testgrid.common.TestScenario;
+import org.wso2.testgrid.common.util.ArchiveBuilder;
 import org.wso2.testgrid.common.util.DataBucketsHelper;
-import org.wso2.testgrid.common.util.FileUtil;
 import org.wso2.testgrid.common.util.TestGridUtil;
 
-import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -93,20 +91,20 @@ public abstract class ResultParser {
                 if (!Files.exists(artifactPath)) {
                     Files.createDirectories(artifactPath);
                 }
-                for (Path filePath : archivePaths) {
-                    File file = filePath.toFile();
-                    File destinationFile = new File(
-                            TestGridUtil.deriveScenarioArtifactPath(this.testScenario, file.getName()));
-                    if (file.isDirectory()) {
-                        FileUtils.copyDirectory(file, destinationFile);
-                    } else {
-                        FileUtils.copyFile(file, destinationFile);
-                    }
-                }
                 Path zipFilePath = artifactPath.resolve(testScenario.getName() + TestGridConstants
                         .TESTGRID_COMPRESSED_FILE_EXT);
                 Files.deleteIfExists(zipFilePath);
-                FileUtil.compress(artifactPath.toString(), zipFilePath.toString());
+                // The results are archived from where they are, without copying them to the artifact path first.
+                ArchiveBuilder archiveBuilder = new ArchiveBuilder(ArchiveBuilder.Format.ZIP);
+                for (Path filePath : archivePaths.stream().sorted().collect(Collectors.toList())) {
+                    String fileName = filePath.getFileName().toString();
+                    if (Files.isDirectory(filePath)) {
+                        archiveBuilder.addDirectory(filePath, fileName + "/");
+                    } else {
+                        archiveBuilder.addFile(filePath, fileName);
+                    }
+                }
+                archiveBuilder.build(zipFilePath);
                 logger.info("Created the results archive: " + zipFilePath);
             } else {
                 logger.info("Could not create results archive. No archived files with names: " + Arrays.toString
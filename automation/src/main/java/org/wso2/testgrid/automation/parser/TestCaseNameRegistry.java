@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.automation.parser;
+
+import org.wso2.testgrid.common.util.StringUtil;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Gives unique names to test cases, such as the invocations of a data provider, which share a name.
+ * <p>
+ * The first test case of a name keeps it, and each other one gets the name with the least suffix
+ * {@code #data_provider_<n>} which is not taken yet. The next suffix to try is remembered per name, hence naming
+ * many test cases of a name does not try the same suffixes again and again.
+ *
+ * @since 1.0.0
+ */
+final class TestCaseNameRegistry {
+
+    static final String DATA_PROVIDER_SUFFIX = "#data_provider_";
+
+    private final Set<String> names = new HashSet<>();
+    private final Map<String, Integer> nextSuffixes = new HashMap<>();
+
+    /**
+     * Returns a unique name for a test case of the given name, and takes it.
+     *
+     * @param name name of the test case
+     * @return the name, or the name with a suffix if it is already taken
+     */
+    String register(String name) {
+        if (names.add(name)) {
+            return name;
+        }
+        // All the suffixes before the next one are taken, since the names are never released.
+        int suffix = nextSuffixes.getOrDefault(name, 1);
+        String uniqueName = StringUtil.concatStrings(name, DATA_PROVIDER_SUFFIX, suffix);
+        while (!names.add(uniqueName)) {
+            suffix++;
+            uniqueName = StringUtil.concatStrings(name, DATA_PROVIDER_SUFFIX, suffix);
+        }
+        nextSuffixes.put(name, suffix + 1);
+        return uniqueName;
+    }
+}
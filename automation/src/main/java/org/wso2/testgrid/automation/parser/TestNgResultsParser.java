@@ -27,21 +27,26 @@ import org.wso2.testgrid.common.util.StringUtil;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
@@ -56,6 +61,10 @@ import javax.xml.stream.events.XMLEvent;
  * <p>
  * List of file and dir names that'll be archived are 'surefire-reports',
  * and 'automation.log' currently.
+ * <p>
+ * The result files are found in one walk of the results location, and are parsed by a bounded pool of workers.
+ * The test cases of the files are added to the test scenario in the order of the file paths, so that the outcome
+ * does not depend on which worker finishes first.
  *
  * @since 1.0.0
  */
@@ -63,6 +72,13 @@ public class TestNgResultsParser extends ResultParser {
 
     public static final String RESULTS_INPUT_FILE = "testng-results.xml";
     public static final String RESULTS_TEST_SUITE_FILES_REGEX = "TEST-.*.xml";
+    public static final String RESULTS_TEST_SUITE_FILES_GLOB = "TEST-*.xml";
+    private static final PathMatcher RESULTS_TEST_SUITE_FILES_MATCHER =
+            FileSystems.getDefault().getPathMatcher("glob:" + RESULTS_TEST_SUITE_FILES_GLOB);
+    private static final String EXCLUDED_DIRECTORY = "junitreports";
+    private static final int DEFAULT_PARSE_CONCURRENCY = Runtime.getRuntime().availableProcessors();
+    // Configured once, and only used to create readers afterwards, which may be done by several workers at once.
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
     private static final String[] ARCHIVABLE_FILES = new String[] { "surefire-reports", "automation.log" };
     private static final Logger logger = LoggerFactory.getLogger(TestNgResultsParser.class);
     private static final String TEST_CASE = "testcase";
@@ -112,28 +128,92 @@ public class TestNgResultsParser extends ResultParser {
      */
     @Override
     public void parseResults() {
-        Set<Path> inputFiles = getResultInputFiles(testResultsLocation);
-        final Set<Path> testSuiteXmlPaths = inputFiles.stream().map
-                (testResultsLocation::relativize).collect(Collectors.toSet());
-        if (testSuiteXmlPaths.isEmpty()) {
+        parseResults(DEFAULT_PARSE_CONCURRENCY);
+    }
+
+    /**
+     * Parses the result files with the given number of workers.
+     *
+     * @param concurrency number of result files parsed at once
+     */
+    void parseResults(int concurrency) {
+        List<Path> inputFiles = getResultInputFiles(testResultsLocation);
+        if (inputFiles.isEmpty()) {
             final Path workspace = Paths.get(testScenario.getTestPlan().getWorkspace());
             logger.error("ERROR while processing scenario '" + testScenario.getName()
                     + "'. Did not find any TEST-TestSuite.xml output files at " +
                     workspace.relativize(testResultsLocation) + ".\n"
                     + " Check whether you copied the output files correctly?\n"
                     + " Also check whether the test type is TESTNG as defined in testgrid.yaml.");
-        } else {
-            logger.info("Found TEST-TestSuite.xml result files at: " + testSuiteXmlPaths);
+            return;
+        }
+        logger.info("Found TEST-TestSuite.xml result files at: " + inputFiles.stream().map
+                (testResultsLocation::relativize).collect(Collectors.toList()));
+
+        for (List<TestCase> testCases : parseResultFiles(inputFiles, concurrency)) {
+            testCases.forEach(testScenario::addTestCase);
+        }
+        //start processing duplicate testcase names
+        TestCaseNameRegistry nameRegistry = new TestCaseNameRegistry();
+        for (TestCase testCase : testScenario.getTestCases()) {
+            testCase.setName(nameRegistry.register(testCase.getName()));
         }
-        for (Path resultsFile : inputFiles) {
-            try (final InputStream stream = Files.newInputStream(resultsFile, StandardOpenOption.READ)) {
-                logger.info("Processing results file: " + testResultsLocation.relativize(resultsFile));
-                if (logger.isDebugEnabled()) {
-                    logger.debug(
-                            "File content: " + new String(Files.readAllBytes(resultsFile), StandardCharsets.UTF_8));
+        logger.info(String.format("Found total of %s test cases. %s test cases has failed.", testScenario
+                        .getTestCases().size(),
+                testScenario.getTestCases().stream().filter(tc -> Status.FAIL.equals(tc.getStatus())).count()));
+    }
+
+    /**
+     * Parses the given result files in parallel.
+     *
+     * @param inputFiles  result files
+     * @param concurrency maximum number of files parsed at once
+     * @return the test cases of each file, in the order of the files
+     */
+    private List<List<TestCase>> parseResultFiles(List<Path> inputFiles, int concurrency) {
+        ExecutorService executorService = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(concurrency, inputFiles.size())));
+        try {
+            List<Future<List<TestCase>>> futures = new ArrayList<>(inputFiles.size());
+            for (Path resultsFile : inputFiles) {
+                futures.add(executorService.submit(() -> parseResultFile(resultsFile)));
+            }
+            List<List<TestCase>> testCases = new ArrayList<>(inputFiles.size());
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    testCases.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    logger.error("Error while parsing testng-results.xml at " + inputFiles.get(i) + " for " +
+                            testScenario.getName(), e.getCause());
                 }
+            }
+            return testCases;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while parsing the result files of " + testScenario.getName(), e);
+            return Collections.emptyList();
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
 
-                final XMLEventReader eventReader = XMLInputFactory.newInstance().createXMLEventReader(stream);
+    /**
+     * Parses a result file. If the file cannot be parsed completely, the test cases read up to the error are
+     * returned.
+     *
+     * @param resultsFile the result file
+     * @return the test cases of the file
+     */
+    private List<TestCase> parseResultFile(Path resultsFile) {
+        List<TestCase> fileTestCases = new ArrayList<>();
+        try (final InputStream stream = Files.newInputStream(resultsFile, StandardOpenOption.READ)) {
+            logger.info("Processing results file: " + testResultsLocation.relativize(resultsFile));
+            if (logger.isDebugEnabled()) {
+                logger.debug("File size: " + Files.size(resultsFile) + " bytes");
+            }
+
+            final XMLEventReader eventReader = INPUT_FACTORY.createXMLEventReader(stream);
+            try {
                 while (eventReader.hasNext()) {
                     XMLEvent event = eventReader.nextEvent();
                     if (event.getEventType() == XMLStreamConstants.START_ELEMENT) {
@@ -145,31 +225,18 @@ public class TestNgResultsParser extends ResultParser {
                                 logger.debug(String.format("Found %s test cases in class '%s'", testCases.size(),
                                         classNameStr));
                             }
-                            testCases.stream().forEachOrdered(tc -> testScenario.addTestCase(tc));
+                            fileTestCases.addAll(testCases);
                         }
                     }
                 }
-                //start processing duplicate testcase names
-                List<TestCase> testCases = testScenario.getTestCases();
-                Map<String, TestCase> finalTestCases = new HashMap<>();
-                for (TestCase testCase : testCases) {
-                    int suffix = 1;
-                    String testCaseName = testCase.getName();
-                    while (finalTestCases.containsKey(testCase.getName())) {
-                        testCase.setName(StringUtil
-                                .concatStrings(testCaseName, "#data_provider_", suffix));
-                        suffix++;
-                    }
-                    finalTestCases.put(testCase.getName(), testCase);
-                }
-                logger.info(String.format("Found total of %s test cases. %s test cases has failed.", testScenario
-                                .getTestCases().size(),
-                        testScenario.getTestCases().stream().filter(tc -> Status.FAIL.equals(tc.getStatus())).count()));
-            } catch (IOException | XMLStreamException e) {
-                logger.error("Error while parsing testng-results.xml at " + resultsFile + " for " +
-                        testScenario.getName(), e);
+            } finally {
+                eventReader.close();
             }
+        } catch (IOException | XMLStreamException e) {
+            logger.error("Error while parsing testng-results.xml at " + resultsFile + " for " +
+                    testScenario.getName(), e);
         }
+        return fileTestCases;
     }
 
     /**
@@ -272,33 +339,48 @@ public class TestNgResultsParser extends ResultParser {
     }
 
     /**
-     * Searches the provided path for files named "TEST-.*.xml",
+     * Searches the provided path for files named "TEST-*.xml", except in the junitreports directories,
      * and returns the list of paths.
      *
      * @param dataBucket the data bucket folder where build artifacts are located.
-     * @return list of paths of TEST-TestSuite.xml.
+     * @return sorted list of paths of TEST-TestSuite.xml.
      */
-    private Set<Path> getResultInputFiles(Path dataBucket) {
+    private List<Path> getResultInputFiles(Path dataBucket) {
+        final List<Path> inputFiles = new ArrayList<>();
         try {
-            final Stream<Path> ls = Files.list(dataBucket);
-            final Set<Path> files = ls.collect(Collectors.toSet());
-            final Set<Path> inputFiles = new HashSet<>();
-            for (Path file : files) {
-                final Path fileName = file.getFileName();
-                if (fileName == null) {
-                    continue;
-                } else if (Files.isDirectory(file) && !"junitreports".equalsIgnoreCase(fileName.toString())) {
-                    final Set<Path> anInputFilesList = getResultInputFiles(file);
-                    inputFiles.addAll(anInputFilesList);
-                } else if (fileName.toString().matches(RESULTS_TEST_SUITE_FILES_REGEX)) {
-                    inputFiles.add(file);
-                }
-            }
-            return inputFiles;
+            Files.walkFileTree(dataBucket, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                    new SimpleFileVisitor<Path>() {
+                        @Override
+                        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                            final Path dirName = dir.getFileName();
+                            if (!dir.equals(dataBucket) && dirName != null
+                                    && EXCLUDED_DIRECTORY.equalsIgnoreCase(dirName.toString())) {
+                                return FileVisitResult.SKIP_SUBTREE;
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                            final Path fileName = file.getFileName();
+                            if (fileName != null && RESULTS_TEST_SUITE_FILES_MATCHER.matches(fileName)) {
+                                inputFiles.add(file);
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFileFailed(Path file, IOException e) {
+                            logger.error("Error while reading " + RESULTS_TEST_SUITE_FILES_GLOB + " files in "
+                                    + file, e);
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
         } catch (IOException e) {
-            logger.error("Error while reading " + RESULTS_TEST_SUITE_FILES_REGEX + " files in " + dataBucket, e);
-            return Collections.emptySet();
+            logger.error("Error while reading " + RESULTS_TEST_SUITE_FILES_GLOB + " files in " + dataBucket, e);
         }
+        Collections.sort(inputFiles);
+        return inputFiles;
     }
 
     /**
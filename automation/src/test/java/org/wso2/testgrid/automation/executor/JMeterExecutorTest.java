@@ -133,7 +133,7 @@ public class JMeterExecutorTest {
         Assert.assertTrue(jMeterResultParser.isPresent());
         jMeterResultParser.get().parseResults();
         Assert.assertFalse(testScenario.getTestCases().isEmpty());
-        Assert.assertEquals(testScenario.getTestCases().size(), 34);
+        Assert.assertEquals(testScenario.getTestCases().size(), 25);
     }
 
     @Test(description = "Test for testing the functional test", expectedExceptions = JTLResultParserException.class,
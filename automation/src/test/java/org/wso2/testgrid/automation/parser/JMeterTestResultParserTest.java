@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.automation.parser;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.testgrid.common.Status;
+import org.wso2.testgrid.common.TestCase;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * Parses XML and CSV JTL files with {@link JMeterTestResultParser}, including a generated JTL of
+ * {@value #JTL_MEGABYTES} MB. A soak run parses a larger JTL when its size is given by the {@code jtl.size.mb}
+ * system property, e.g. {@code -Djtl.size.mb=1024}.
+ *
+ * @since 1.0.0
+ */
+public class JMeterTestResultParserTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(JMeterTestResultParserTest.class);
+    private static final int JTL_MEGABYTES = 4;
+    private static final long MAX_ELAPSED = 250;
+    private static final int BENCHMARK_SAMPLES = 200000;
+    private static final String[] LABELS = {"Login", "Get Token", "Create User", "Delete User", "List Apps",
+            "Create App", "Subscribe", "Invoke API", "Logout", "Refresh Token"};
+
+    private Path directory;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("jtl-parser");
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        FileUtils.deleteQuietly(directory.toFile());
+    }
+
+    @Test
+    public void testXmlStatistics() throws Exception {
+        Path jtlFile = directory.resolve("results.jtl");
+        write(jtlFile, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<testResults version=\"1.2\">\n"
+                + "<httpSample t=\"10\" s=\"true\" lb=\"Login\" rc=\"200\">"
+                + "<responseData class=\"java.lang.String\">&lt;ok/&gt;</responseData></httpSample>\n"
+                + "<httpSample t=\"30\" s=\"false\" lb=\"Login\" rc=\"500\"><assertionResult><name>Code</name>"
+                + "<failure>true</failure><failureMessage>Expected 200 &amp; got 500</failureMessage>"
+                + "</assertionResult></httpSample>\n"
+                + "<sample t=\"50\" s=\"true\" lb=\"Transaction\"><httpSample t=\"20\" s=\"false\" lb=\"Nested\"/>"
+                + "</sample>\n"
+                + "<httpSample s=\"true\" lb=\"Untimed\"/>\n"
+                + "</testResults>\n");
+        JtlStatistics statistics = new JtlStatistics();
+        JMeterTestResultParser.parse(jtlFile, statistics);
+
+        Assert.assertEquals(statistics.getSampleCount(), 4);
+        Assert.assertNull(statistics.getLabelStatistics("Nested"), "Sub-results should not be counted.");
+        JtlStatistics.LabelStatistics login = statistics.getLabelStatistics("Login");
+        Assert.assertEquals(login.getCount(), 2);
+        Assert.assertEquals(login.getErrors(), 1);
+        Assert.assertEquals(login.getMin(), 10);
+        Assert.assertEquals(login.getMax(), 30);
+        Assert.assertEquals(login.getMean(), 20.0);
+        Assert.assertEquals(login.getPercentile(50), 10);
+        Assert.assertEquals(login.getPercentile(100), 30);
+        Assert.assertEquals(login.getFailureMessages(), Arrays.asList("Expected 200 & got 500"));
+        Assert.assertEquals(statistics.getLabelStatistics("Transaction").getErrors(), 0);
+        Assert.assertEquals(statistics.getLabelStatistics("Untimed").getCount(), 1);
+        Assert.assertEquals(statistics.getLabelStatistics("Untimed").getMax(), 0);
+    }
+
+    @Test
+    public void testCsvStatistics() throws Exception {
+        Path jtlFile = directory.resolve("results.jtl");
+        write(jtlFile, "timeStamp,elapsed,label,responseCode,responseMessage,threadName,success,failureMessage\n"
+                + "1555589130874,12,Login,200,OK,Users 1-1,true,\n"
+                + "1555589130900,40,\"Login, with SSO\",500,\"Internal \"\"Server\"\" Error\",Users 1-1,false,"
+                + "\"Expected 200,\nbut got 500\"\r\n"
+                + "1555589130950,8,Login,200,OK,Users 1-2,true,\n"
+                + "\n");
+        JtlStatistics statistics = new JtlStatistics();
+        JMeterTestResultParser.parse(jtlFile, statistics);
+
+        Assert.assertEquals(statistics.getSampleCount(), 3);
+        JtlStatistics.LabelStatistics login = statistics.getLabelStatistics("Login");
+        Assert.assertEquals(login.getCount(), 2);
+        Assert.assertEquals(login.getErrors(), 0);
+        Assert.assertEquals(login.getMin(), 8);
+        Assert.assertEquals(login.getMax(), 12);
+        JtlStatistics.LabelStatistics sso = statistics.getLabelStatistics("Login, with SSO");
+        Assert.assertEquals(sso.getErrors(), 1);
+        Assert.assertEquals(sso.getFailureMessages(), Arrays.asList("Expected 200,\nbut got 500"));
+    }
+
+    @Test
+    public void testCsvWithoutHeader() throws Exception {
+        Path jtlFile = directory.resolve("results.jtl");
+        write(jtlFile, "1555589130874,12,Login,200,OK,Users 1-1,text,true,\n"
+                + "1555589130900,40,Login,500,Error,Users 1-1,text,false,Timed out\n");
+        JtlStatistics statistics = new JtlStatistics();
+        JMeterTestResultParser.parse(jtlFile, statistics);
+
+        JtlStatistics.LabelStatistics login = statistics.getLabelStatistics("Login");
+        Assert.assertEquals(login.getCount(), 2);
+        Assert.assertEquals(login.getErrors(), 1);
+        Assert.assertEquals(login.getMax(), 40);
+        Assert.assertEquals(login.getFailureMessages(), Arrays.asList("Timed out"));
+    }
+
+    @Test
+    public void testFailureMessagesAreCapped() throws Exception {
+        Path jtlFile = directory.resolve("results.jtl");
+        StringBuilder content = new StringBuilder("timeStamp,elapsed,label,success,failureMessage\n");
+        for (int i = 0; i < 100; i++) {
+            content.append(i).append(",5,Login,false,Failure ").append(i).append('\n');
+        }
+        write(jtlFile, content.toString());
+        JtlStatistics statistics = new JtlStatistics();
+        JMeterTestResultParser.parse(jtlFile, statistics);
+
+        JtlStatistics.LabelStatistics login = statistics.getLabelStatistics("Login");
+        Assert.assertEquals(login.getErrors(), 100);
+        Assert.assertEquals(login.getFailureMessages().size(), JtlStatistics.MAX_FAILURE_MESSAGES);
+        Assert.assertEquals(login.getFailureMessages().get(0), "Failure 0");
+    }
+
+    @Test
+    public void testPercentilePrecision() {
+        Random random = new Random(42);
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = new long[100000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(random.nextGaussian() * 1.5 + 5);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (double percentile : new double[]{1, 50, 90, 95, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long estimate = histogram.getValueAtPercentile(percentile);
+            Assert.assertTrue(estimate >= exact && estimate <= exact + Math.max(1, exact / 50),
+                    "Percentile " + percentile + ": " + estimate + ", exact: " + exact);
+        }
+    }
+
+    @Test(description = "Parses generated JTLs of a quarter of the configured size and of the full size, and "
+            + "asserts that the statistics do not grow with the number of samples")
+    public void testLargeJtlInBoundedMemory() throws Exception {
+        long size = Long.getLong("jtl.size.mb", JTL_MEGABYTES) * 1024 * 1024;
+        Path partialJtlFile = directory.resolve("partial.jtl");
+        long partialSamples = generateXmlJtl(partialJtlFile, size / 4);
+        JtlStatistics partialStatistics = new JtlStatistics();
+        JMeterTestResultParser.parse(partialJtlFile, partialStatistics);
+        Files.delete(partialJtlFile);
+
+        Path jtlFile = directory.resolve("soak.jtl");
+        long samples = generateXmlJtl(jtlFile, size);
+        long start = System.nanoTime();
+        JtlStatistics statistics = new JtlStatistics();
+        JMeterTestResultParser.parse(jtlFile, statistics);
+        long parseMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        logger.info(String.format("Parsed %d samples of a %d MB JTL in %d ms, into %d histogram buckets", samples,
+                Files.size(jtlFile) / (1024 * 1024), parseMillis, statistics.getBucketCount()));
+        Assert.assertEquals(partialStatistics.getSampleCount(), partialSamples);
+        Assert.assertEquals(statistics.getSampleCount(), samples);
+        Assert.assertTrue(samples > partialSamples * 3, "The full JTL should have more samples.");
+        Assert.assertEquals(statistics.getLabelStatistics().size(), LABELS.length);
+        // The samples of both JTLs span the same latencies, hence the histograms need the same buckets.
+        Assert.assertEquals(statistics.getBucketCount(), partialStatistics.getBucketCount(),
+                "Histogram buckets should not grow with the number of samples.");
+        for (JtlStatistics.LabelStatistics labelStatistics : statistics.getLabelStatistics()) {
+            Assert.assertEquals(labelStatistics.getMax(), MAX_ELAPSED);
+            Assert.assertTrue(labelStatistics.getFailureMessages().size() <= JtlStatistics.MAX_FAILURE_MESSAGES);
+        }
+    }
+
+    @Test(description = "Compares the aggregating cursor parser with building a test case per sample through the "
+            + "event reader")
+    public void testParserBenchmark() throws Exception {
+        Path jtlFile = directory.resolve("benchmark.jtl");
+        generateXmlJtl(jtlFile, Long.MAX_VALUE, BENCHMARK_SAMPLES);
+
+        long start = System.nanoTime();
+        List<TestCase> testCases = parseWithEventReader(jtlFile);
+        long eventReaderMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        start = System.nanoTime();
+        JtlStatistics statistics = new JtlStatistics();
+        JMeterTestResultParser.parse(jtlFile, statistics);
+        long cursorMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        logger.info(String.format("Parsing %d samples: %d ms building a test case per sample with the event "
+                + "reader, %d ms aggregating with the cursor reader", BENCHMARK_SAMPLES, eventReaderMillis,
+                cursorMillis));
+        Assert.assertEquals(testCases.size(), BENCHMARK_SAMPLES);
+        Assert.assertEquals(statistics.getSampleCount(), BENCHMARK_SAMPLES);
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long generateXmlJtl(Path jtlFile, long size) throws IOException {
+        return generateXmlJtl(jtlFile, size, Long.MAX_VALUE);
+    }
+
+    /**
+     * Writes an XML JTL of samples with response data, until either the size or the number of samples is reached.
+     * The elapsed times are at most {@value #MAX_ELAPSED} milliseconds.
+     *
+     * @return the number of samples written
+     */
+    private static long generateXmlJtl(Path jtlFile, long size, long maxSamples) throws IOException {
+        Random random = new Random(7);
+        long written = 0;
+        long samples = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(jtlFile, StandardCharsets.UTF_8)) {
+            String header = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<testResults version=\"1.2\">\n";
+            writer.write(header);
+            written += header.length();
+            StringBuilder sample = new StringBuilder(512);
+            while (written < size && samples < maxSamples) {
+                boolean success = random.nextInt(100) != 0;
+                String label = LABELS[random.nextInt(LABELS.length)];
+                sample.setLength(0);
+                sample.append("<httpSample t=\"")
+                        .append(Math.min(MAX_ELAPSED, (long) Math.exp(random.nextGaussian() + 4)))
+                        .append("\" lt=\"12\" ts=\"").append(1555589130874L + samples).append("\" s=\"")
+                        .append(success).append("\" lb=\"").append(label).append("\" rc=\"")
+                        .append(success ? 200 : 500).append("\" rm=\"OK\" tn=\"Users 1-1\" dt=\"text\" by=\"312\">\n");
+                if (!success) {
+                    sample.append("  <assertionResult><name>Response Assertion</name><failure>true</failure>"
+                            + "<error>false</error><failureMessage>Test failed: code expected to equal 200"
+                            + "</failureMessage></assertionResult>\n");
+                }
+                sample.append("  <responseData class=\"java.lang.String\">{&quot;id&quot;:&quot;")
+                        .append(samples).append("&quot;,&quot;status&quot;:&quot;ACTIVE&quot;,&quot;scopes&quot;:"
+                        + "[&quot;read&quot;,&quot;write&quot;]}</responseData>\n</httpSample>\n");
+                writer.append(sample);
+                written += sample.length();
+                samples++;
+            }
+            writer.write("</testResults>\n");
+        }
+        return samples;
+    }
+
+    /**
+     * Parses a JTL the way the parser did before aggregating the samples: a test case for each sample, through the
+     * event reader.
+     */
+    private static List<TestCase> parseWithEventReader(Path jtlFile) throws IOException, XMLStreamException {
+        List<TestCase> testCases = new ArrayList<>();
+        try (InputStream inputStream = Files.newInputStream(jtlFile)) {
+            XMLEventReader eventReader = XMLInputFactory.newInstance().createXMLEventReader(inputStream);
+            while (eventReader.hasNext()) {
+                XMLEvent event = eventReader.nextEvent();
+                if (event.isStartElement() &&
+                        "httpSample".equals(event.asStartElement().getName().getLocalPart())) {
+                    StartElement startElement = event.asStartElement();
+                    TestCase testCase = new TestCase();
+                    Iterator<Attribute> attributes = startElement.getAttributes();
+                    while (attributes.hasNext()) {
+                        Attribute attribute = attributes.next();
+                        if ("lb".equals(attribute.getName().getLocalPart())) {
+                            testCase.setName(attribute.getValue());
+                        } else if ("s".equals(attribute.getName().getLocalPart())) {
+                            testCase.setSuccess(Boolean.valueOf(attribute.getValue()) ? Status.SUCCESS : Status.FAIL);
+                        }
+                    }
+                    testCases.add(testCase);
+                }
+            }
+        }
+        return testCases;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.automation.parser;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the names given by {@link TestCaseNameRegistry} with those of the former suffix search, which tried each
+ * suffix from the first for every test case.
+ *
+ * @since 1.0.0
+ */
+public class TestCaseNameRegistryTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(TestCaseNameRegistryTest.class);
+    private static final int PROPERTY_RUNS = 500;
+    private static final int BENCHMARK_NAMES = 50000;
+    // The former search tries every taken suffix again for each test case, so it is timed on fewer names.
+    private static final int REFERENCE_BENCHMARK_NAMES = 5000;
+
+    @Test
+    public void testDuplicateNames() {
+        Assert.assertEquals(registerAll(Arrays.asList("a", "b", "a", "a", "b", "c")),
+                Arrays.asList("a", "b", "a#data_provider_1", "a#data_provider_2", "b#data_provider_1", "c"));
+    }
+
+    @Test
+    public void testNamesWhichLookSuffixed() {
+        Assert.assertEquals(registerAll(Arrays.asList("a#data_provider_2", "a", "a", "a", "a#data_provider_1",
+                "a#data_provider_1")), Arrays.asList("a#data_provider_2", "a", "a#data_provider_1",
+                "a#data_provider_3", "a#data_provider_1#data_provider_1", "a#data_provider_1#data_provider_2"));
+    }
+
+    @Test(description = "Generates random lists of colliding names, including names with suffixes, and asserts that "
+            + "the registry names them as the former suffix search did")
+    public void testEquivalenceWithSuffixSearch() {
+        Random random = new Random(2018);
+        for (int run = 0; run < PROPERTY_RUNS; run++) {
+            int baseNames = 1 + random.nextInt(5);
+            int size = random.nextInt(200);
+            List<String> names = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                String name = "Test" + random.nextInt(baseNames) + "#method";
+                int suffixes = random.nextInt(10) == 0 ? 1 + random.nextInt(2) : 0;
+                for (int s = 0; s < suffixes; s++) {
+                    name = name + TestCaseNameRegistry.DATA_PROVIDER_SUFFIX + (1 + random.nextInt(4));
+                }
+                names.add(name);
+            }
+            List<String> expected = nameWithSuffixSearch(names);
+            List<String> actual = registerAll(names);
+            Assert.assertEquals(actual, expected, "Different names for " + names);
+            Assert.assertEquals(new HashSet<>(actual).size(), actual.size(), "Duplicate names for " + names);
+        }
+    }
+
+    @Test(description = "Names many test cases of a name")
+    public void testManyDuplicatesBenchmark() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < BENCHMARK_NAMES; i++) {
+            names.add("DataDrivenTest#testInvocation");
+        }
+        long start = System.nanoTime();
+        List<String> registered = registerAll(names);
+        long registryMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        List<String> referenceNames = names.subList(0, REFERENCE_BENCHMARK_NAMES);
+        start = System.nanoTime();
+        List<String> searched = nameWithSuffixSearch(referenceNames);
+        long searchMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        logger.info(String.format("Naming %d duplicates: %d ms with the registry. Naming %d duplicates: %d ms with "
+                + "the suffix search", BENCHMARK_NAMES, registryMillis, REFERENCE_BENCHMARK_NAMES, searchMillis));
+        Assert.assertEquals(registered.subList(0, REFERENCE_BENCHMARK_NAMES), searched);
+        Assert.assertEquals(registered.get(BENCHMARK_NAMES - 1),
+                "DataDrivenTest#testInvocation#data_provider_" + (BENCHMARK_NAMES - 1));
+        Assert.assertEquals(new HashSet<>(registered).size(), BENCHMARK_NAMES);
+    }
+
+    private static List<String> registerAll(List<String> names) {
+        TestCaseNameRegistry registry = new TestCaseNameRegistry();
+        List<String> registered = new ArrayList<>(names.size());
+        for (String name : names) {
+            registered.add(registry.register(name));
+        }
+        return registered;
+    }
+
+    /**
+     * Names the test cases as TestNgResultsParser did before the registry.
+     */
+    private static List<String> nameWithSuffixSearch(List<String> names) {
+        Set<String> finalNames = new HashSet<>();
+        List<String> result = new ArrayList<>(names.size());
+        for (String testCaseName : names) {
+            String name = testCaseName;
+            int suffix = 1;
+            while (finalNames.contains(name)) {
+                name = testCaseName + TestCaseNameRegistry.DATA_PROVIDER_SUFFIX + suffix;
+                suffix++;
+            }
+            finalNames.add(name);
+            result.add(name);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.automation.parser;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.testgrid.common.Status;
+import org.wso2.testgrid.common.TestCase;
+import org.wso2.testgrid.common.TestScenario;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Parses a generated tree of {@value #RESULT_FILES} surefire result files with {@link TestNgResultsParser}, one
+ * file at a time and in parallel.
+ *
+ * @since 1.0.0
+ */
+public class TestNgResultsParserPipelineTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(TestNgResultsParserPipelineTest.class);
+    private static final int RESULT_FILES = 500;
+    private static final int MODULES = 25;
+    private static final int TEST_CASES_PER_FILE = 40;
+    private static final int WORKERS = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    private Path resultsLocation;
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        resultsLocation = Files.createTempDirectory("testng-results");
+        for (int file = 0; file < RESULT_FILES; file++) {
+            Path reportsDir = Files.createDirectories(resultsLocation.resolve("module-" + (file % MODULES))
+                    .resolve("target").resolve("surefire-reports"));
+            writeResultFile(reportsDir.resolve("TEST-Suite" + file + ".xml"), file);
+            if (file % MODULES == 0) {
+                // Neither the copies of junitreports, nor the other reports are results.
+                Path junitReports = Files.createDirectories(reportsDir.resolve("junitreports"));
+                writeResultFile(junitReports.resolve("TEST-Suite" + file + ".xml"), file);
+                Files.write(reportsDir.resolve("testng-results.xml"), "<testng-results/>".getBytes(
+                        StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @AfterClass
+    public void tearDown() {
+        FileUtils.deleteQuietly(resultsLocation.toFile());
+    }
+
+    @Test(description = "Parses the result files with one worker and with several workers, and compares the "
+            + "test cases and the time taken")
+    public void testParallelParsing() {
+        // Warm up the parser, so that the first measurement does not include the class loading.
+        parse(1);
+
+        long start = System.nanoTime();
+        TestScenario sequential = parse(1);
+        long sequentialMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        start = System.nanoTime();
+        TestScenario parallel = parse(WORKERS);
+        long parallelMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        logger.info(String.format("Parsing %d result files of %d test cases: %d ms with one worker, %d ms with %d "
+                        + "workers", RESULT_FILES, TEST_CASES_PER_FILE, sequentialMillis, parallelMillis, WORKERS));
+        List<TestCase> testCases = parallel.getTestCases();
+        Assert.assertEquals(testCases.size(), RESULT_FILES * TEST_CASES_PER_FILE);
+        Assert.assertEquals(describe(testCases), describe(sequential.getTestCases()),
+                "The test cases should be in the same order, whatever the number of workers.");
+        Assert.assertEquals(testCases.stream().map(TestCase::getName).distinct().count(), testCases.size(),
+                "Each test case should have a unique name.");
+        Assert.assertEquals(testCases.stream().filter(tc -> Status.FAIL.equals(tc.getStatus())).count(),
+                RESULT_FILES * (TEST_CASES_PER_FILE / 10));
+        Assert.assertEquals(testCases.stream().filter(tc -> Status.SKIP.equals(tc.getStatus())).count(),
+                RESULT_FILES * (TEST_CASES_PER_FILE / 20));
+        // The files are merged in the order of their paths.
+        Assert.assertEquals(testCases.get(0).getName(), "Suite0Test#test0");
+        Assert.assertEquals(testCases.get(TEST_CASES_PER_FILE).getName(), "Suite100Test#test0");
+    }
+
+    private TestScenario parse(int concurrency) {
+        TestScenario testScenario = new TestScenario();
+        testScenario.setName("pipeline-scenario");
+        new TestNgResultsParser(testScenario, resultsLocation).parseResults(concurrency);
+        return testScenario;
+    }
+
+    private static List<String> describe(List<TestCase> testCases) {
+        return testCases.stream().map(tc -> tc.getName() + " " + tc.getStatus() + " " + tc.getFailureMessage())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Writes a surefire result file, of which every tenth test case fails and every twentieth is skipped. A few
+     * test cases share their names, as those of a data provider do.
+     */
+    private static void writeResultFile(Path file, int index) throws IOException {
+        StringBuilder content = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<testsuite name=\"Suite").append(index).append("\" tests=\"").append(TEST_CASES_PER_FILE)
+                .append("\">\n");
+        for (int test = 0; test < TEST_CASES_PER_FILE; test++) {
+            String name = test % 8 == 7 ? "dataProviderTest" : "test" + test;
+            content.append("  <testcase name=\"").append(name).append("\" classname=\"org.wso2.tests.Suite")
+                    .append(index).append("Test\" time=\"0.").append(test).append("\">\n");
+            if (test % 10 == 9) {
+                content.append("    <failure message=\"Assertion failed in ").append(name)
+                        .append("\" type=\"java.lang.AssertionError\">java.lang.AssertionError: Assertion failed\n")
+                        .append("\tat org.wso2.tests.Suite").append(index).append("Test.").append(name)
+                        .append("(Suite").append(index).append("Test.java:42)\n    </failure>\n");
+            } else if (test % 20 == 4) {
+                content.append("    <skipped/>\n");
+            }
+            content.append("    <system-out><![CDATA[INFO - Running ").append(name).append("]]></system-out>\n")
+                    .append("  </testcase>\n");
+        }
+        content.append("</testsuite>\n");
+        Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,459 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Runs a process, and passes the lines of its standard output and error to consumers.
+ * <p>
+ * The output of all the processes is read by a small shared pool of pump threads instead of two threads per process.
+ * A pump reads only what is available without blocking, and polls again after a delay which grows while the process
+ * is silent. The lines can be masked with precompiled patterns before they are consumed, and written to a capture
+ * file of a limited size. The consumers are called with the logging context ({@link MDC}) of the thread which started
+ * the process, so that the lines are logged as if that thread logged them; see
+ * {@link #setLoggingContextSupplier(Supplier)}.
+ * <p>
+ * A runner may be started many times; each start returns an {@link Execution} of the new process, which can be
+ * waited for within the timeout of the runner, or cancelled.
+ *
+ * @since 1.0.0
+ */
+public class ProcessRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessRunner.class);
+    private static final int PUMP_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final ScheduledExecutorService PUMP_EXECUTOR = Executors.newScheduledThreadPool(PUMP_THREADS,
+            new ThreadFactory() {
+                private final AtomicInteger threadCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "process-output-pump-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+    private static final int BUFFER_SIZE = 8 * 1024;
+    // Bytes a pump reads before letting the pumps of other processes have a turn.
+    private static final int MAX_READ_PER_TURN = 256 * 1024;
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final long MIN_POLL_INTERVAL_MILLIS = 1;
+    private static final long MAX_POLL_INTERVAL_MILLIS = 50;
+    private static final long DESTROY_GRACE_SECONDS = 5;
+    private static final byte[] TRUNCATED_MESSAGE = "[output truncated]\n".getBytes(StandardCharsets.UTF_8);
+    private static volatile Supplier<Map<String, String>> loggingContextSupplier = MDC::getCopyOfContextMap;
+
+    private final ProcessBuilder processBuilder;
+    private Consumer<String> outputConsumer = line -> { };
+    private Consumer<String> errorConsumer = line -> { };
+    private final List<Mask> masks = new ArrayList<>();
+    private Path captureFile;
+    private long captureLimit;
+    private long timeoutMillis;
+
+    /**
+     * Constructs a runner of the processes of the given process builder.
+     *
+     * @param processBuilder process builder
+     */
+    public ProcessRunner(ProcessBuilder processBuilder) {
+        this.processBuilder = processBuilder;
+    }
+
+    /**
+     * Sets the supplier of the logging context the consumers of the processes are called with. It is called on the
+     * thread starting a process, and supplies a copy of the {@link MDC} of that thread by default.
+     * <p>
+     * The pump threads replace their whole logging context with the supplied one, hence it should carry whatever
+     * the logging configuration reads from the starting thread, including what that thread only inherited.
+     *
+     * @param supplier supplier of the logging context, which may return {@code null} for an empty context
+     */
+    public static void setLoggingContextSupplier(Supplier<Map<String, String>> supplier) {
+        loggingContextSupplier = supplier;
+    }
+
+    /**
+     * Sets the consumer of the lines of the standard output.
+     *
+     * @param outputConsumer consumer of the output lines
+     * @return this runner
+     */
+    public ProcessRunner onOutput(Consumer<String> outputConsumer) {
+        this.outputConsumer = outputConsumer;
+        return this;
+    }
+
+    /**
+     * Sets the consumer of the lines of the standard error.
+     *
+     * @param errorConsumer consumer of the error lines
+     * @return this runner
+     */
+    public ProcessRunner onError(Consumer<String> errorConsumer) {
+        this.errorConsumer = errorConsumer;
+        return this;
+    }
+
+    /**
+     * Replaces the matches of the given pattern in each output and error line, before the line is consumed.
+     * The masks are applied in the order they are added.
+     *
+     * @param pattern     pattern to replace
+     * @param replacement replacement of the matches, as in {@link java.util.regex.Matcher#replaceAll(String)}
+     * @return this runner
+     */
+    public ProcessRunner mask(Pattern pattern, String replacement) {
+        masks.add(new Mask(pattern, replacement));
+        return this;
+    }
+
+    /**
+     * Writes the output and error lines to the given file, up to the given number of bytes.
+     *
+     * @param captureFile  file to write the lines to, replacing its content
+     * @param captureLimit maximum number of bytes to write
+     * @return this runner
+     */
+    public ProcessRunner captureTo(Path captureFile, long captureLimit) {
+        this.captureFile = captureFile;
+        this.captureLimit = captureLimit;
+        return this;
+    }
+
+    /**
+     * Sets the time to wait for a process to complete before destroying it.
+     *
+     * @param timeout timeout, 0 to wait without a limit
+     * @param unit    unit of the timeout
+     * @return this runner
+     */
+    public ProcessRunner timeout(long timeout, TimeUnit unit) {
+        this.timeoutMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    /**
+     * Starts a process and pumping its output.
+     *
+     * @return the execution of the process
+     * @throws IOException if the process cannot be started, or the capture file cannot be created
+     */
+    public Execution start() throws IOException {
+        OutputStream capture = captureFile == null ? null :
+                new BufferedOutputStream(Files.newOutputStream(captureFile), BUFFER_SIZE);
+        Process process;
+        try {
+            process = processBuilder.start();
+        } catch (IOException e) {
+            if (capture != null) {
+                capture.close();
+            }
+            throw e;
+        }
+        return new Execution(process, capture);
+    }
+
+    /**
+     * Starts a process and waits for it to complete. The process is destroyed if the timeout passes, or the thread
+     * is interrupted while waiting.
+     *
+     * @return the exit value of the process
+     * @throws IOException          if the process cannot be started
+     * @throws InterruptedException if the thread is interrupted while waiting
+     * @throws TimeoutException     if the process does not complete within the timeout
+     */
+    public int run() throws IOException, InterruptedException, TimeoutException {
+        Execution execution = start();
+        try {
+            return execution.waitFor();
+        } catch (InterruptedException e) {
+            execution.cancel();
+            throw e;
+        }
+    }
+
+    /**
+     * A running process, and the pumps of its output.
+     */
+    public final class Execution {
+
+        private final Process process;
+        private final OutputStream capture;
+        private final long deadlineNanos;
+        private final CountDownLatch pumpsDone = new CountDownLatch(2);
+        private final AtomicInteger runningPumps = new AtomicInteger(2);
+        private final Map<String, String> loggingContext;
+        private long captured;
+        private volatile boolean cancelled;
+
+        private Execution(Process process, OutputStream capture) {
+            this.process = process;
+            this.capture = capture;
+            this.deadlineNanos = timeoutMillis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis)
+                    : 0;
+            // The pump threads are shared by the processes of all the threads, hence they log with the context of
+            // the thread starting this process rather than with what they inherited from the thread creating them.
+            this.loggingContext = loggingContextSupplier.get();
+            PUMP_EXECUTOR.execute(new StreamPump(process.getInputStream(), outputConsumer));
+            PUMP_EXECUTOR.execute(new StreamPump(process.getErrorStream(), errorConsumer));
+        }
+
+        /**
+         * Waits for the process to complete, and for its output to be consumed.
+         *
+         * @return the exit value of the process
+         * @throws InterruptedException  if the thread is interrupted while waiting
+         * @throws TimeoutException      if the process does not complete within the timeout, in which case it is
+         *                               destroyed
+         * @throws CancellationException if the process was cancelled
+         */
+        public int waitFor() throws InterruptedException, TimeoutException {
+            if (deadlineNanos == 0) {
+                process.waitFor();
+            } else if (!process.waitFor(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                destroy();
+                pumpsDone.await();
+                throw new TimeoutException("The process did not complete within " + timeoutMillis + " ms.");
+            }
+            pumpsDone.await();
+            if (cancelled) {
+                throw new CancellationException("The process was cancelled.");
+            }
+            return process.exitValue();
+        }
+
+        /**
+         * Destroys the process, forcibly if it does not terminate within a few seconds.
+         */
+        public void cancel() {
+            cancelled = true;
+            destroy();
+        }
+
+        /**
+         * Returns whether the process is still running.
+         *
+         * @return true if the process has not completed
+         */
+        public boolean isAlive() {
+            return process.isAlive();
+        }
+
+        private void destroy() {
+            process.destroy();
+            try {
+                if (!process.waitFor(DESTROY_GRACE_SECONDS, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private synchronized void capture(String line) {
+            if (capture == null || captured > captureLimit) {
+                return;
+            }
+            byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+            try {
+                if (captured + bytes.length > captureLimit) {
+                    capture.write(TRUNCATED_MESSAGE);
+                    captured = captureLimit + 1;
+                    return;
+                }
+                capture.write(bytes);
+                captured += bytes.length;
+            } catch (IOException e) {
+                logger.warn("Error while capturing the process output to " + captureFile + ": " + e.getMessage());
+                captured = captureLimit + 1;
+            }
+        }
+
+        private void pumpFinished() {
+            if (runningPumps.decrementAndGet() == 0 && capture != null) {
+                synchronized (this) {
+                    try {
+                        capture.close();
+                    } catch (IOException e) {
+                        logger.warn("Error while closing the capture file " + captureFile + ": " + e.getMessage());
+                    }
+                }
+            }
+            pumpsDone.countDown();
+        }
+
+        /**
+         * Reads the available bytes of a stream of the process, splits them into lines, and schedules itself to
+         * read again until the process has exited and the stream is drained.
+         */
+        private final class StreamPump implements Runnable {
+
+            private final InputStream inputStream;
+            private final Consumer<String> consumer;
+            private final byte[] buffer = new byte[BUFFER_SIZE];
+            private byte[] line = new byte[256];
+            private int lineLength;
+            private long pollIntervalMillis = MIN_POLL_INTERVAL_MILLIS;
+
+            StreamPump(InputStream inputStream, Consumer<String> consumer) {
+                this.inputStream = inputStream;
+                this.consumer = consumer;
+            }
+
+            @Override
+            public void run() {
+                MDC.setContextMap(loggingContext != null ? loggingContext : Collections.emptyMap());
+                try {
+                    pump();
+                } finally {
+                    MDC.clear();
+                }
+            }
+
+            private void pump() {
+                try {
+                    // Whatever an exited process wrote is available now, hence the stream ends once it is read.
+                    boolean exited = !process.isAlive();
+                    int total = 0;
+                    int available;
+                    while ((available = inputStream.available()) > 0) {
+                        int read = inputStream.read(buffer, 0, Math.min(available, buffer.length));
+                        if (read < 0) {
+                            finish();
+                            return;
+                        }
+                        append(read);
+                        total += read;
+                        if (total >= MAX_READ_PER_TURN) {
+                            PUMP_EXECUTOR.execute(this);
+                            return;
+                        }
+                    }
+                    if (exited) {
+                        finish();
+                        return;
+                    }
+                    pollIntervalMillis = total > 0 ? MIN_POLL_INTERVAL_MILLIS :
+                            Math.min(pollIntervalMillis * 2, MAX_POLL_INTERVAL_MILLIS);
+                    PUMP_EXECUTOR.schedule(this, pollIntervalMillis, TimeUnit.MILLISECONDS);
+                } catch (IOException e) {
+                    // The stream is closed when the process is destroyed.
+                    finish();
+                }
+            }
+
+            private void append(int length) {
+                int start = 0;
+                for (int i = 0; i < length; i++) {
+                    if (buffer[i] == '\n') {
+                        addToLine(start, i - start);
+                        emitLine();
+                        start = i + 1;
+                    }
+                }
+                addToLine(start, length - start);
+                if (lineLength >= MAX_LINE_LENGTH) {
+                    emitLine();
+                }
+            }
+
+            private void addToLine(int start, int length) {
+                if (lineLength + length > line.length) {
+                    line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+                }
+                System.arraycopy(buffer, start, line, lineLength, length);
+                lineLength += length;
+            }
+
+            private void emitLine() {
+                int end = lineLength > 0 && line[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+                String text = new String(line, 0, end, StandardCharsets.UTF_8);
+                lineLength = 0;
+                for (Mask mask : masks) {
+                    text = mask.apply(text);
+                }
+                try {
+                    consumer.accept(text);
+                } catch (RuntimeException e) {
+                    logger.warn("Error while consuming the process output: " + e.getMessage(), e);
+                }
+                capture(text);
+            }
+
+            private void finish() {
+                if (lineLength > 0) {
+                    emitLine();
+                }
+                try {
+                    inputStream.close();
+                } catch (IOException e) {
+                    logger.debug("Error while closing the process output stream: " + e.getMessage());
+                }
+                pumpFinished();
+            }
+        }
+    }
+
+    /**
+     * A precompiled pattern and its replacement.
+     */
+    private static final class Mask {
+
+        private final Pattern pattern;
+        private final String replacement;
+
+        Mask(Pattern pattern, String replacement) {
+            this.pattern = pattern;
+            this.replacement = replacement;
+        }
+
+        String apply(String text) {
+            return pattern.matcher(text).replaceAll(replacement);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.common;
+
+import org.wso2.testgrid.common.util.StringUtil;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.FetchType;
+import javax.persistence.JoinColumn;
+import javax.persistence.OneToOne;
+import javax.persistence.Table;
+
+/**
+ * This represents the precomputed build status of a {@link Product}.
+ * <p>
+ * The summary is derived from the latest test plans of each infrastructure combination of the product and is
+ * refreshed whenever the status of one of those test plans changes, so that the dashboard does not need to
+ * evaluate the test plan history of every product on each request.
+ *
+ * @since 1.0.0
+ */
+@Entity
+@Table(name = ProductSummary.PRODUCT_SUMMARY_TABLE)
+public class ProductSummary extends AbstractUUIDEntity implements Serializable {
+
+    /**
+     * Product summary table name.
+     */
+    public static final String PRODUCT_SUMMARY_TABLE = "product_summary";
+
+    /**
+     * Column names of the table.
+     */
+    public static final String PRODUCT_COLUMN = "product";
+
+    private static final long serialVersionUID = -1486203826417352307L;
+
+    @OneToOne(optional = false, fetch = FetchType.LAZY)
+    @JoinColumn(name = "PRODUCT_id", referencedColumnName = ID_COLUMN, unique = true, nullable = false)
+    private Product product;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "current_status", nullable = false, length = 50)
+    private TestPlanStatus currentStatus;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "last_stable_status", length = 50)
+    private TestPlanStatus lastStableStatus;
+
+    @Column(name = "last_build_timestamp")
+    private Timestamp lastBuildTimestamp;
+
+    @Column(name = "last_failure_timestamp")
+    private Timestamp lastFailureTimestamp;
+
+    /**
+     * Returns the product this summary belongs to.
+     *
+     * @return product of the summary
+     */
+    public Product getProduct() {
+        return product;
+    }
+
+    /**
+     * Sets the product this summary belongs to.
+     *
+     * @param product product of the summary
+     */
+    public void setProduct(Product product) {
+        this.product = product;
+    }
+
+    /**
+     * Returns the status of the product considering the latest test plan of each infrastructure combination.
+     *
+     * @return current status of the product
+     */
+    public TestPlanStatus getCurrentStatus() {
+        return currentStatus;
+    }
+
+    /**
+     * Sets the status of the product considering the latest test plan of each infrastructure combination.
+     *
+     * @param currentStatus current status of the product
+     */
+    public void setCurrentStatus(TestPlanStatus currentStatus) {
+        this.currentStatus = currentStatus;
+    }
+
+    /**
+     * Returns the status of the product considering the latest completed test plan of each infrastructure
+     * combination.
+     *
+     * @return last stable status of the product
+     */
+    public TestPlanStatus getLastStableStatus() {
+        return lastStableStatus;
+    }
+
+    /**
+     * Sets the status of the product considering the latest completed test plan of each infrastructure
+     * combination.
+     *
+     * @param lastStableStatus last stable status of the product
+     */
+    public void setLastStableStatus(TestPlanStatus lastStableStatus) {
+        this.lastStableStatus = lastStableStatus;
+    }
+
+    /**
+     * Returns the modified timestamp of the last test plan of the product.
+     *
+     * @return timestamp of the last build
+     */
+    public Timestamp getLastBuildTimestamp() {
+        return lastBuildTimestamp == null ? null : new Timestamp(lastBuildTimestamp.getTime());
+    }
+
+    /**
+     * Sets the modified timestamp of the last test plan of the product.
+     *
+     * @param lastBuildTimestamp timestamp of the last build
+     */
+    public void setLastBuildTimestamp(Timestamp lastBuildTimestamp) {
+        this.lastBuildTimestamp = lastBuildTimestamp == null ? null : new Timestamp(lastBuildTimestamp.getTime());
+    }
+
+    /**
+     * Returns the modified timestamp of the last failed test plan of the product.
+     *
+     * @return timestamp of the last failure
+     */
+    public Timestamp getLastFailureTimestamp() {
+        return lastFailureTimestamp == null ? null : new Timestamp(lastFailureTimestamp.getTime());
+    }
+
+    /**
+     * Sets the modified timestamp of the last failed test plan of the product.
+     *
+     * @param lastFailureTimestamp timestamp of the last failure
+     */
+    public void setLastFailureTimestamp(Timestamp lastFailureTimestamp) {
+        this.lastFailureTimestamp =
+                lastFailureTimestamp == null ? null : new Timestamp(lastFailureTimestamp.getTime());
+    }
+
+    /**
+     * Returns whether a test plan of the product is currently running.
+     *
+     * @return {@code true} if a test plan is running, {@code false} otherwise
+     */
+    public boolean isRunning() {
+        return TestPlanStatus.RUNNING.equals(currentStatus);
+    }
+
+    @Override
+    public String toString() {
+        String id = this.getId() != null ? this.getId() : "";
+        return StringUtil.concatStrings("ProductSummary{",
+                "id='", id, "\'",
+                ", currentStatus='", currentStatus, "\'",
+                ", lastStableStatus='", lastStableStatus, "\'",
+                ", lastBuildTimestamp='", lastBuildTimestamp, "\'",
+                ", lastFailureTimestamp='", lastFailureTimestamp, "\'",
+                '}');
+    }
+}
@@ -23,18 +23,14 @@ import org.slf4j.LoggerFactory;
 import org.wso2.testgrid.common.exception.CommandExecutionException;
 import org.wso2.testgrid.common.util.TestGridUtil;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.function.Consumer;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
 
 /**
  * Responsible in executing given shell scripts
@@ -44,6 +40,11 @@ import java.util.function.Consumer;
 public class ShellExecutor {
 
     private static Logger logger = LoggerFactory.getLogger("Shell");
+    private static final Pattern SERVER_LOG_READER_PATTERN = Pattern.compile(
+            "INFO\\s*.org.wso2.carbon.automation.extensions.servers.utils.ServerLogReader. - ");
+    private static final String SERVER_LOG_READER_REPLACEMENT = "[Server] - ";
+    // Lines of 'set -o xtrace', which bash writes to the standard error.
+    private static final Pattern XTRACE_PATTERN = Pattern.compile("^\\++ ");
     private Path workingDirectory;
     private String logPrefix;
 
@@ -64,30 +65,6 @@ public class ShellExecutor {
         this.logPrefix = logPrefix;
     }
 
-    /**
-     * StreamGobbler to handle process builder output.
-     *
-     * @since 1.0
-     */
-    private static class StreamGobbler implements Runnable {
-
-        private InputStream inputStream;
-        private Consumer<String> consumer;
-
-        public StreamGobbler(InputStream inputStream, Consumer<String> consumer) {
-
-            this.inputStream = inputStream;
-            this.consumer = consumer;
-        }
-
-        @Override
-        public void run() {
-
-            new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)).lines()
-                    .forEach(consumer);
-        }
-    }
-
     /**
      * Returns current working directory.
      *
@@ -109,59 +86,17 @@ public class ShellExecutor {
 
         logger.info("Running shell command : " + command + ", from working directory : " + workingDirectory);
 
-        ProcessBuilder processBuilder = new ProcessBuilder("/bin/bash", "-c", command);
-        ExecutorService executor = Executors.newFixedThreadPool(2);
-
-        try {
-            if (workingDirectory != null) {
-                File workDirectory = workingDirectory.toFile();
-                if (workDirectory.exists()) {
-                    processBuilder.directory(workDirectory);
-                }
-            }
-            Process process = processBuilder.start();
-
-            StreamGobbler outputStreamGobbler = new StreamGobbler(process.getInputStream(), msg -> {
-                msg = reduceLogVerbosity(msg);
-                if (hasLogPrefix()) {
-                    logger.info(logPrefix + ": " + msg);
-                } else {
-                    logger.info(msg);
-                }
-            });
-            StreamGobbler errorStreamGobbler = new StreamGobbler(process.getErrorStream(), msg -> {
-                Consumer<String> c = !msg.matches("^\\++ .*") ? logger::error : logger::info; // handle 'set -o xtrace'
-                msg = reduceLogVerbosity(msg);
-                c.accept(msg);
-                if (hasLogPrefix()) {
-                    c.accept(logPrefix + ": " + msg);
-                } else {
-                    c.accept(msg);
-                }
-            });
-
-            executor.execute(outputStreamGobbler);
-            executor.execute(errorStreamGobbler);
-
-            return process.waitFor();
-
-        } catch (IOException e) {
-            throw new CommandExecutionException(
-                    "Error occurred while executing the command '" + command + "', " + "from directory '"
-                            + workingDirectory.toString(), e);
-        } catch (InterruptedException e) {
-            throw new CommandExecutionException(
-                    "InterruptedException occurred while executing the command '" + command + "', " + "from directory '"
-                            + workingDirectory.toString(), e);
-        } finally {
-            executor.shutdownNow();
-        }
-    }
-
-    private String reduceLogVerbosity(String msg) {
-
-        return msg.replaceAll("INFO\\s*.org.wso2.carbon.automation.extensions.servers.utils.ServerLogReader. - ",
-                "[Server] - ");
+        ProcessRunner processRunner = new ProcessRunner(newProcessBuilder(command, Collections.emptyMap()))
+                .mask(SERVER_LOG_READER_PATTERN, SERVER_LOG_READER_REPLACEMENT)
+                .onOutput(this::logInfo)
+                .onError(msg -> {
+                    if (XTRACE_PATTERN.matcher(msg).lookingAt()) {
+                        logInfo(msg);
+                    } else {
+                        logError(msg);
+                    }
+                });
+        return run(processRunner, command);
     }
 
     /**
@@ -177,54 +112,56 @@ public class ShellExecutor {
         if (logger.isDebugEnabled()) {
             logger.debug("Running shell command : " + command + ", from directory : " + workingDirectory.toString());
         }
-        ProcessBuilder processBuilder = new ProcessBuilder("/bin/bash", "-c", command);
-        ExecutorService executor = Executors.newFixedThreadPool(2);
+        ProcessRunner processRunner = new ProcessRunner(newProcessBuilder(command, environment))
+                .onOutput(this::logInfo)
+                .onError(this::logError);
+        return run(processRunner, command);
+    }
 
-        try {
-            if (workingDirectory != null) {
-                File workDirectory = workingDirectory.toFile();
-                if (workDirectory.exists()) {
-                    processBuilder.directory(workDirectory);
-                }
-            }
-            if (environment.size() > 0) {
-                processBuilder.environment().putAll(environment);
-            }
-            Process process = processBuilder.start();
+    private ProcessBuilder newProcessBuilder(String command, Map<String, String> environment) {
 
-            Consumer<String> infoLogConsumer = null, errorLogConsumer = null;
-            if (!hasLogPrefix()) {
-                infoLogConsumer = logger::info;
-                errorLogConsumer = logger::error;
-            } else {
-                infoLogConsumer = msg -> {
-                    logger.info(logPrefix + ": " + msg);
-                };
-                errorLogConsumer = msg -> {
-                    logger.error(logPrefix + ": " + msg);
-                };
+        ProcessBuilder processBuilder = new ProcessBuilder("/bin/bash", "-c", command);
+        if (workingDirectory != null) {
+            File workDirectory = workingDirectory.toFile();
+            if (workDirectory.exists()) {
+                processBuilder.directory(workDirectory);
             }
-            StreamGobbler outputStreamGobbler = new StreamGobbler(process.getInputStream(), infoLogConsumer);
-            StreamGobbler errorStreamGobbler = new StreamGobbler(process.getErrorStream(), errorLogConsumer);
-
-            executor.execute(outputStreamGobbler);
-            executor.execute(errorStreamGobbler);
+        }
+        if (environment.size() > 0) {
+            processBuilder.environment().putAll(environment);
+        }
+        return processBuilder;
+    }
 
-            return process.waitFor();
+    /**
+     * Runs the process of a command, and waits for it to complete and for its output to be logged.
+     * The process is destroyed if the thread is interrupted while waiting.
+     */
+    private int run(ProcessRunner processRunner, String command) throws CommandExecutionException {
 
-        } catch (IOException e) {
+        try {
+            return processRunner.run();
+        } catch (IOException | TimeoutException e) {
             throw new CommandExecutionException(
                     "Error occurred while executing the command '" + command + "', " + "from directory '"
-                            + workingDirectory.toString(), e);
+                            + workingDirectory, e);
         } catch (InterruptedException e) {
             throw new CommandExecutionException(
                     "InterruptedException occurred while executing the command '" + command + "', " + "from directory '"
-                            + workingDirectory.toString(), e);
-        } finally {
-            executor.shutdownNow();
+                            + workingDirectory, e);
         }
     }
 
+    private void logInfo(String msg) {
+
+        logger.info(hasLogPrefix() ? logPrefix + ": " + msg : msg);
+    }
+
+    private void logError(String msg) {
+
+        logger.error(hasLogPrefix() ? logPrefix + ": " + msg : msg);
+    }
+
     /**
      * Create a {@link ShellExecutor} instance with log prefix.
      *
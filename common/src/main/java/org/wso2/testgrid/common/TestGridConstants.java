@@ -30,6 +30,7 @@ public class TestGridConstants {
     public static final String TESTGRID_YAML = "testgrid.yaml";
     public static final String AWS_LIMITS_YAML = "awsLimits.yaml";
     public static final String DEBUG_MODE = "DEBUG_MODE";
+    public static final String SCENARIO_CONCURRENCY = "SCENARIO_CONCURRENCY";
     public static final String TEST_PLAN_YAML_PREFIX = "test-plan";
 
     public static final String RUN_SCENARIO_SCRIPT = "run-scenario.sh";
@@ -121,6 +122,9 @@ public class TestGridConstants {
     public static final String EXACT_ALGO = "exact";
     public static final String AT_LEAST_ONE_ALGO = "at_least_one";
     public static final String ALL_ALGO = "all";
+    public static final String T_WISE_ALGO = "t_wise";
+    public static final int DEFAULT_T_WISE_STRENGTH = 2;
+    public static final long DEFAULT_T_WISE_SEED = 0L;
 
     public static final String DEFAULT_SCHEDULE = "manual";
 
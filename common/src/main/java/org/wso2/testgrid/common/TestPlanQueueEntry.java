@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.common;
+
+import org.wso2.testgrid.common.util.StringUtil;
+
+import java.io.Serializable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Table;
+
+/**
+ * This represents a test plan waiting in, or taken from, the queue of a test plan runner.
+ * <p>
+ * The queue is kept in the database so that the test plans which were not completed by a runner, for example
+ * because the runner crashed, can be run again when the runner is restarted.
+ *
+ * @since 1.0.0
+ */
+@Entity
+@Table(name = TestPlanQueueEntry.TEST_PLAN_QUEUE_TABLE)
+public class TestPlanQueueEntry extends AbstractUUIDEntity implements Serializable {
+
+    /**
+     * Test plan queue table name.
+     */
+    public static final String TEST_PLAN_QUEUE_TABLE = "test_plan_queue";
+
+    private static final long serialVersionUID = 4925318017746311952L;
+
+    @Column(name = "queue_name", nullable = false)
+    private String queueName;
+
+    @Column(name = "test_plan_id", nullable = false, unique = true)
+    private String testPlanId;
+
+    @Column(name = "product_name", nullable = false)
+    private String productName;
+
+    @Column(name = "test_plan_file", nullable = false, length = 1024)
+    private String testPlanFile;
+
+    @Column(name = "workspace", nullable = false, length = 1024)
+    private String workspace;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "state", nullable = false, length = 50)
+    private State state = State.QUEUED;
+
+    @Column(name = "runner_id")
+    private String runnerId;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    /**
+     * Returns the name of the queue the entry belongs to.
+     *
+     * @return queue name
+     */
+    public String getQueueName() {
+        return queueName;
+    }
+
+    /**
+     * Sets the name of the queue the entry belongs to.
+     *
+     * @param queueName queue name
+     */
+    public void setQueueName(String queueName) {
+        this.queueName = queueName;
+    }
+
+    /**
+     * Returns the id of the queued test plan.
+     *
+     * @return test plan id
+     */
+    public String getTestPlanId() {
+        return testPlanId;
+    }
+
+    /**
+     * Sets the id of the queued test plan.
+     *
+     * @param testPlanId test plan id
+     */
+    public void setTestPlanId(String testPlanId) {
+        this.testPlanId = testPlanId;
+    }
+
+    /**
+     * Returns the name of the product the test plan belongs to.
+     *
+     * @return product name
+     */
+    public String getProductName() {
+        return productName;
+    }
+
+    /**
+     * Sets the name of the product the test plan belongs to.
+     *
+     * @param productName product name
+     */
+    public void setProductName(String productName) {
+        this.productName = productName;
+    }
+
+    /**
+     * Returns the location of the generated test plan YAML file.
+     *
+     * @return test plan file location
+     */
+    public String getTestPlanFile() {
+        return testPlanFile;
+    }
+
+    /**
+     * Sets the location of the generated test plan YAML file.
+     *
+     * @param testPlanFile test plan file location
+     */
+    public void setTestPlanFile(String testPlanFile) {
+        this.testPlanFile = testPlanFile;
+    }
+
+    /**
+     * Returns the workspace the test plan is run in.
+     *
+     * @return workspace location
+     */
+    public String getWorkspace() {
+        return workspace;
+    }
+
+    /**
+     * Sets the workspace the test plan is run in.
+     *
+     * @param workspace workspace location
+     */
+    public void setWorkspace(String workspace) {
+        this.workspace = workspace;
+    }
+
+    /**
+     * Returns the state of the entry.
+     *
+     * @return entry state
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Sets the state of the entry.
+     *
+     * @param state entry state
+     */
+    public void setState(State state) {
+        this.state = state;
+    }
+
+    /**
+     * Returns the id of the runner which took the entry from the queue.
+     *
+     * @return runner id, or {@code null} if the entry is queued
+     */
+    public String getRunnerId() {
+        return runnerId;
+    }
+
+    /**
+     * Sets the id of the runner which took the entry from the queue.
+     *
+     * @param runnerId runner id
+     */
+    public void setRunnerId(String runnerId) {
+        this.runnerId = runnerId;
+    }
+
+    /**
+     * Returns the number of times the entry has been taken from the queue.
+     *
+     * @return number of attempts
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Sets the number of times the entry has been taken from the queue.
+     *
+     * @param attempts number of attempts
+     */
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    @Override
+    public String toString() {
+        String id = this.getId() != null ? this.getId() : "";
+        return StringUtil.concatStrings("TestPlanQueueEntry{",
+                "id='", id, "\'",
+                ", queueName='", queueName, "\'",
+                ", testPlanId='", testPlanId, "\'",
+                ", productName='", productName, "\'",
+                ", state='", state, "\'",
+                ", runnerId='", runnerId, "\'",
+                ", attempts='", attempts, "\'",
+                '}');
+    }
+
+    /**
+     * Defines the states of a queue entry.
+     *
+     * @since 1.0.0
+     */
+    public enum State {
+
+        /**
+         * Waiting to be run.
+         */
+        QUEUED,
+
+        /**
+         * Taken from the queue by a runner.
+         */
+        RUNNING,
+
+        /**
+         * Test plan was run and succeeded.
+         */
+        SUCCEEDED,
+
+        /**
+         * Test plan was run and did not succeed, or could not be run.
+         */
+        FAILED
+    }
+}
@@ -89,6 +89,56 @@ public class ConfigurationContext {
          */
         DB_USER_PASS("DB_USER_PASS"),
 
+        /**
+         * Minimum number of pooled database connections
+         */
+        DB_POOL_MIN_CONNECTIONS("DB_POOL_MIN_CONNECTIONS"),
+
+        /**
+         * Maximum number of pooled database connections
+         */
+        DB_POOL_MAX_CONNECTIONS("DB_POOL_MAX_CONNECTIONS"),
+
+        /**
+         * Default number of test plans in a page of the test plan history API
+         */
+        HISTORY_PAGE_SIZE("HISTORY_PAGE_SIZE"),
+
+        /**
+         * Default number of scenario configs of a test plan that may run at once
+         */
+        SCENARIO_CONCURRENCY("SCENARIO_CONCURRENCY"),
+
+        /**
+         * Default number of test plans whose infrastructure run-testplans provisions ahead of testing
+         */
+        PIPELINE_LOOK_AHEAD("PIPELINE_LOOK_AHEAD"),
+
+        /**
+         * Default number of resource units the infrastructure provisioned ahead by run-testplans may hold at once
+         */
+        PIPELINE_MAX_RESOURCE_UNITS("PIPELINE_MAX_RESOURCE_UNITS"),
+
+        /**
+         * Milliseconds within which test plan status changes are coalesced into one write (0 to write each change)
+         */
+        STATUS_UPDATE_INTERVAL("STATUS_UPDATE_INTERVAL"),
+
+        /**
+         * Number of log files downloaded from the agents at once
+         */
+        LOG_DOWNLOAD_CONCURRENCY("LOG_DOWNLOAD_CONCURRENCY"),
+
+        /**
+         * Number of log files downloaded from one agent at once
+         */
+        LOG_DOWNLOAD_HOST_CONCURRENCY("LOG_DOWNLOAD_HOST_CONCURRENCY"),
+
+        /**
+         * Property to gzip the downloaded log files
+         */
+        LOG_DOWNLOAD_COMPRESS("LOG_DOWNLOAD_COMPRESS"),
+
         /**
          * Jenkins host propertyName
          */
@@ -124,6 +174,16 @@ public class ConfigurationContext {
          */
         AWS_S3_ARTIFACTS_DIR("AWS_S3_ARTIFACTS_DIR"),
 
+        /**
+         * Endpoint of an S3 compatible storage used instead of AWS S3, such as http://localhost:9000
+         */
+        AWS_S3_ENDPOINT("AWS_S3_ENDPOINT"),
+
+        /**
+         * Maximum number of open connections of each shared S3 client
+         */
+        AWS_S3_MAX_CONNECTIONS("AWS_S3_MAX_CONNECTIONS"),
+
         /**
          * WUM Username of TestGrid deployment
          */
@@ -32,6 +32,7 @@ import java.util.TreeMap;
 import static org.wso2.testgrid.common.TestGridConstants.ALL_ALGO;
 import static org.wso2.testgrid.common.TestGridConstants.AT_LEAST_ONE_ALGO;
 import static org.wso2.testgrid.common.TestGridConstants.EXACT_ALGO;
+import static org.wso2.testgrid.common.TestGridConstants.T_WISE_ALGO;
 
 /**
  * This describes a job configurations.
@@ -95,6 +96,10 @@ public class JobConfig implements Serializable {
         private List<TreeMap<String, String>> combinations;
         private List<TreeMap<String, List<String>>> infraResources;
 
+        // 't_wise' algorithm covers every combination of values of this many infrastructure types.
+        private Integer strength;
+        private Long seed;
+
         public String getSchedule() {
 
             return schedule;
@@ -135,6 +140,26 @@ public class JobConfig implements Serializable {
             this.infraResources = infraResources;
         }
 
+        public Integer getStrength() {
+
+            return strength;
+        }
+
+        public void setStrength(Integer strength) {
+
+            this.strength = strength;
+        }
+
+        public Long getSeed() {
+
+            return seed;
+        }
+
+        public void setSeed(Long seed) {
+
+            this.seed = seed;
+        }
+
     }
 
     /**
@@ -159,7 +184,7 @@ public class JobConfig implements Serializable {
             return (validateInfrastructureIncludesExcludes(infrastructureConfig));
 
         }
-        return validateTestgridYamlBuilds(jobConfig.getBuilds());
+        return validateTestgridYamlBuilds(jobConfig.getBuilds(), testgridYaml.getInfrastructureConfig());
     }
 
     /**
@@ -184,9 +209,11 @@ public class JobConfig implements Serializable {
      * Validate the testgridYaml. It must contain valid builds in job configuration.
      *
      * @param builds Build object array
+     * @param infrastructureConfig Infrastructure configuration
      * @return True or False, based on the validity of the builds
      */
-    private static boolean validateTestgridYamlBuilds(List<Build> builds) {
+    private static boolean validateTestgridYamlBuilds(List<Build> builds,
+                                                      InfrastructureConfig infrastructureConfig) {
         for (JobConfig.Build build : builds) {
             if (build.getCombinationAlgorithm() == null) {
                 logger.warn("testgrid.yaml doesn't define combination algorithm for build. " +
@@ -222,6 +249,24 @@ public class JobConfig implements Serializable {
                             " combinations field has been ignored.");
                 }
             }
+            if (build.getCombinationAlgorithm().equals(T_WISE_ALGO)) {
+                if (build.getStrength() != null && build.getStrength() < 1) {
+                    logger.warn("testgrid.yaml contains a strength less than 1 for t_wise algorithm build. " +
+                            "Invalid testgrid.yaml");
+                    return false;
+                }
+                if (build.getInfraResources().isEmpty()
+                        && !validateInfrastructureIncludesExcludes(infrastructureConfig)) {
+                    return false;
+                }
+                if (!validateTestgridYamlInfraResources(build)) {
+                    return false;
+                }
+                if (!build.getCombinations().isEmpty()) {
+                    logger.warn("testgrid.yaml contains combinations field without exact algorithm build and" +
+                            " combinations field has been ignored.");
+                }
+            }
         }
         return true;
     }
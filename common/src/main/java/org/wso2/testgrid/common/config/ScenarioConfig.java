@@ -53,6 +53,7 @@ public class ScenarioConfig implements Serializable {
     private Status status;
     private TestPlan testPlan;
     private String outputDir;
+    private String inputDir;
 
     /**
      * This method returns the list of scenarios.
@@ -205,5 +206,24 @@ public class ScenarioConfig implements Serializable {
         this.outputDir = outputDir;
     }
 
+    /**
+     * Returns the dir the test script reads its inputs from, if the scenario config does not share the inputs of
+     * the test plan.
+     *
+     * @return input dir, or null if the inputs of the test plan are used
+     */
+    public String getInputDir() {
+        return inputDir;
+    }
+
+    /**
+     * Sets the dir the test script reads its inputs from.
+     *
+     * @param inputDir input dir, or null to use the inputs of the test plan
+     */
+    public void setInputDir(String inputDir) {
+        this.inputDir = inputDir;
+    }
+
 }
 
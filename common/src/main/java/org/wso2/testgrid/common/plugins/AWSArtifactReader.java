@@ -19,19 +19,16 @@ package org.wso2.testgrid.common.plugins;
 
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.SdkClientException;
-import com.amazonaws.auth.PropertiesFileCredentialsProvider;
 import com.amazonaws.services.applicationdiscovery.model.ResourceNotFoundException;
 import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.amazonaws.services.s3.model.S3Object;
 import org.wso2.testgrid.common.TruncatedInputStreamData;
 import org.wso2.testgrid.common.exception.TestGridRuntimeException;
+import org.wso2.testgrid.common.util.S3ClientRegistry;
 import org.wso2.testgrid.common.util.StringUtil;
-import org.wso2.testgrid.common.util.TestGridUtil;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Path;
 
 /**
  * This class is responsible for downloading artifacts from AWS.
@@ -47,7 +44,7 @@ public class AWSArtifactReader implements ArtifactReadable {
      * Creates an instance of {@link AWSArtifactReader} for the given region and bucket name.
      * <p>
      * Please do note that accessKey and secretKey values should be set in a properties file
-     * in order to authenticate to the AWS.
+     * in order to authenticate to the AWS. The S3 client is shared, see {@link S3ClientRegistry}.
      *
      * @param region region where the S3 bucket is located
      * @param bucket name of the bucket
@@ -60,11 +57,7 @@ public class AWSArtifactReader implements ArtifactReadable {
         if (StringUtil.isStringNullOrEmpty(bucket)) {
             throw new ArtifactReaderException("AWS S3 bucket name is null or empty");
         }
-        Path configFilePath = TestGridUtil.getConfigFilePath();
-        amazonS3 = AmazonS3ClientBuilder.standard()
-                .withCredentials(new PropertiesFileCredentialsProvider(configFilePath.toString()))
-                .withRegion(region)
-                .build();
+        amazonS3 = S3ClientRegistry.getClient(region);
         bucketName = bucket;
     }
 
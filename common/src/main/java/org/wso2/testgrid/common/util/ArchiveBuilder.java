@@ -0,0 +1,870 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.common.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Builds a zip or a tar.gz archive of files and directories, straight from where they are.
+ * <p>
+ * The entries are compressed by a pool of workers, each into memory or, when the file is large, into a temporary
+ * file, and are written to the archive one after another in the order they were added. Only a few entries more than
+ * the workers are compressed ahead of the writing. Files which are compressed already, such as archives and images,
+ * are stored as they are. With a single worker, each entry is compressed straight into the archive instead, since
+ * staging it would only add to the time it takes.
+ * <p>
+ * A zip archive is written with the sizes and the CRC of each entry in its local header, and with the zip64
+ * extensions when an entry, the archive or the number of entries needs them. A tar.gz archive is a sequence of gzip
+ * members, one for each entry, which gzip readers read as a single stream.
+ *
+ * @since 1.0.0
+ */
+public class ArchiveBuilder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveBuilder.class);
+    private static final int DEFAULT_CONCURRENCY = Runtime.getRuntime().availableProcessors();
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Entries larger than this are compressed to a temporary file instead of memory.
+    private static final long MAX_IN_MEMORY_ENTRY_SIZE = 16 * 1024 * 1024;
+    private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<>(Arrays.asList("zip", "gz", "tgz", "bz2",
+            "xz", "zst", "7z", "rar", "jar", "war", "ear", "apk", "png", "jpg", "jpeg", "gif", "webp", "mp4", "webm"));
+
+    private final Format format;
+    private final int concurrency;
+    private final List<Source> sources = new ArrayList<>();
+
+    /**
+     * Constructs an archive builder with as many workers as processors.
+     *
+     * @param format format of the archive
+     */
+    public ArchiveBuilder(Format format) {
+        this(format, DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * Constructs an archive builder.
+     *
+     * @param format      format of the archive
+     * @param concurrency number of entries compressed at once; with less than two, the entries are compressed
+     *                    straight into the archive one after another
+     */
+    public ArchiveBuilder(Format format, int concurrency) {
+        this.format = format;
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * Adds a file to the archive.
+     *
+     * @param file      the file
+     * @param entryName name of the file in the archive, with '/' as the separator
+     * @return this builder
+     */
+    public ArchiveBuilder addFile(Path file, String entryName) {
+        sources.add(new Source(file, entryName));
+        return this;
+    }
+
+    /**
+     * Adds the files of a directory and its sub directories to the archive, in the order of their paths.
+     *
+     * @param directory the directory
+     * @param prefix    prefix of the names of the files in the archive, such as {@code "logs/"}, or an empty string
+     * @return this builder
+     * @throws IOException if the directory cannot be read
+     */
+    public ArchiveBuilder addDirectory(Path directory, String prefix) throws IOException {
+        List<Path> files = new ArrayList<>();
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    files.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                logger.warn("Unable to read " + file + " to archive it: " + e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        files.sort(null);
+        for (Path file : files) {
+            StringBuilder entryName = new StringBuilder(prefix);
+            for (Path name : directory.relativize(file)) {
+                if (entryName.length() > prefix.length()) {
+                    entryName.append('/');
+                }
+                entryName.append(name);
+            }
+            sources.add(new Source(file, entryName.toString()));
+        }
+        return this;
+    }
+
+    /**
+     * Writes the archive. The files which cannot be read are left out, as well as the archive itself and the files
+     * of a name which is added already. When the entries are compressed straight into the archive, a file which
+     * fails to be read after its entry is started fails the archive instead.
+     *
+     * @param destination path of the archive, which is replaced if it exists
+     * @throws IOException if the archive cannot be written
+     */
+    public void build(Path destination) throws IOException {
+        Path archive = destination.toAbsolutePath().normalize();
+        Set<String> entryNames = new HashSet<>();
+        List<Source> entrySources = new ArrayList<>();
+        for (Source source : sources) {
+            if (archive.equals(source.file.toAbsolutePath().normalize())) {
+                continue;
+            }
+            if (!entryNames.add(source.entryName)) {
+                logger.warn("Leaving " + source.file + " out of the archive " + destination + ", since it "
+                        + "already has an entry named " + source.entryName);
+                continue;
+            }
+            entrySources.add(source);
+        }
+        try (FileChannel channel = FileChannel.open(destination, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             OutputStream outputStream = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE)) {
+            EntryWriter writer = format == Format.ZIP ? new ZipWriter(outputStream, channel) :
+                    new TarGzWriter(outputStream);
+            if (concurrency < 2) {
+                writeSequentially(entrySources, writer);
+            } else {
+                writeConcurrently(entrySources, writer);
+            }
+            writer.finish();
+        }
+    }
+
+    private static void writeSequentially(List<Source> entrySources, EntryWriter writer) throws IOException {
+        for (Source source : entrySources) {
+            CompressedEntry entry;
+            InputStream inputStream;
+            try {
+                entry = newEntry(source);
+                inputStream = Files.newInputStream(source.file);
+            } catch (IOException e) {
+                logger.warn("Leaving a file out of the archive, since it cannot be read: " + e.getMessage());
+                continue;
+            }
+            try (InputStream entryStream = inputStream) {
+                writer.write(entry, entryStream);
+            }
+        }
+    }
+
+    private void writeConcurrently(List<Source> entrySources, EntryWriter writer) throws IOException {
+        ExecutorService executorService = Executors.newFixedThreadPool(concurrency);
+        Deque<Future<CompressedEntry>> pending = new ArrayDeque<>();
+        try {
+            for (Source source : entrySources) {
+                pending.add(executorService.submit(() -> compress(source)));
+                if (pending.size() > concurrency * 2) {
+                    writeNext(pending, writer);
+                }
+            }
+            while (!pending.isEmpty()) {
+                writeNext(pending, writer);
+            }
+        } finally {
+            executorService.shutdownNow();
+            for (Future<CompressedEntry> future : pending) {
+                discard(future);
+            }
+        }
+    }
+
+    private void writeNext(Deque<Future<CompressedEntry>> pending, EntryWriter writer) throws IOException {
+        CompressedEntry entry;
+        try {
+            entry = pending.peek().get();
+        } catch (ExecutionException e) {
+            pending.poll();
+            if (e.getCause() instanceof IOException) {
+                logger.warn("Leaving a file out of the archive, since it cannot be read: " + e.getCause().getMessage());
+                return;
+            }
+            throw new IOException("Error occurred while compressing an archive entry", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing the archive entries", e);
+        }
+        try {
+            writer.write(entry);
+        } finally {
+            pending.poll();
+            entry.delete();
+        }
+    }
+
+    private static void discard(Future<CompressedEntry> future) {
+        if (!future.cancel(true) && !future.isCancelled()) {
+            try {
+                future.get().delete();
+            } catch (ExecutionException | InterruptedException | IOException e) {
+                logger.debug("Error while discarding an archive entry: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Compresses a file, for the zip format as raw deflate data, and for the tar.gz format as a gzip member of the
+     * tar headers and the content of the file.
+     */
+    private CompressedEntry compress(Source source) throws IOException {
+        CompressedEntry entry = newEntry(source);
+        long size = entry.size;
+        ByteArrayOutputStream memory = null;
+        OutputStream sink;
+        if (size <= MAX_IN_MEMORY_ENTRY_SIZE) {
+            memory = new ByteArrayOutputStream((int) Math.max(512, format == Format.ZIP && entry.stored ? size :
+                    size / 4));
+            sink = memory;
+        } else {
+            entry.spillFile = Files.createTempFile("archive-entry", ".tmp");
+            sink = new BufferedOutputStream(Files.newOutputStream(entry.spillFile), BUFFER_SIZE);
+        }
+        CountingOutputStream counter = new CountingOutputStream(sink);
+        try {
+            try (InputStream inputStream = Files.newInputStream(source.file)) {
+                if (format == Format.ZIP) {
+                    compressZipEntry(inputStream, entry, counter);
+                } else {
+                    compressTarEntry(inputStream, entry, counter);
+                }
+            }
+            counter.close();
+        } catch (IOException | RuntimeException e) {
+            sink.close();
+            entry.delete();
+            throw e;
+        }
+        entry.compressedSize = counter.count;
+        entry.memory = memory;
+        return entry;
+    }
+
+    /**
+     * Returns an entry of a file, with the size and the modification time of the file, to compress.
+     */
+    private static CompressedEntry newEntry(Source source) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(source.file, BasicFileAttributes.class);
+        return new CompressedEntry(source.entryName, attributes.size(), attributes.lastModifiedTime().toMillis(),
+                isCompressed(source.file), Files.isExecutable(source.file));
+    }
+
+    private static void compressZipEntry(InputStream inputStream, CompressedEntry entry, OutputStream outputStream)
+            throws IOException {
+        CRC32 crc = new CRC32();
+        Deflater deflater = entry.stored ? null : new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            OutputStream target = deflater == null ? outputStream :
+                    new DeflaterOutputStream(outputStream, deflater, BUFFER_SIZE);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long read = 0;
+            int length;
+            while ((length = inputStream.read(buffer)) != -1) {
+                crc.update(buffer, 0, length);
+                target.write(buffer, 0, length);
+                read += length;
+            }
+            if (deflater != null) {
+                ((DeflaterOutputStream) target).finish();
+            }
+            // The file may have grown or shrunk since its size was read.
+            entry.size = read;
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+        entry.crc = crc.getValue();
+    }
+
+    private static void compressTarEntry(InputStream inputStream, CompressedEntry entry, OutputStream outputStream)
+            throws IOException {
+        int level = entry.stored ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION;
+        GZIPOutputStream gzipStream = new GZIPOutputStream(new NonClosingOutputStream(outputStream), BUFFER_SIZE) {
+            {
+                def.setLevel(level);
+            }
+        };
+        try {
+            TarHeaders.write(gzipStream, entry.name, entry.size, entry.lastModified, entry.executable);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long remaining = entry.size;
+            int length;
+            // The size in the header is kept to, whether the file has grown or shrunk since its size was read.
+            while (remaining > 0 && (length = inputStream.read(buffer, 0, (int) Math.min(buffer.length, remaining)))
+                    != -1) {
+                gzipStream.write(buffer, 0, length);
+                remaining -= length;
+            }
+            while (remaining > 0) {
+                int padding = (int) Math.min(buffer.length, remaining);
+                Arrays.fill(buffer, 0, padding, (byte) 0);
+                gzipStream.write(buffer, 0, padding);
+                remaining -= padding;
+            }
+            gzipStream.write(new byte[TarHeaders.padding(entry.size)]);
+            gzipStream.finish();
+        } finally {
+            gzipStream.close();
+        }
+    }
+
+    private static boolean isCompressed(Path file) {
+        Path fileName = file.getFileName();
+        if (fileName == null) {
+            return false;
+        }
+        String name = fileName.toString();
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && COMPRESSED_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * Format of an archive.
+     */
+    public enum Format {
+
+        ZIP(".zip"),
+        TAR_GZ(".tar.gz");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        /**
+         * Returns the file name extension of the format.
+         *
+         * @return the extension, with the leading dot
+         */
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /**
+     * A file to archive, and its name in the archive.
+     */
+    private static final class Source {
+
+        private final Path file;
+        private final String entryName;
+
+        Source(Path file, String entryName) {
+            this.file = file;
+            this.entryName = entryName;
+        }
+    }
+
+    /**
+     * The compressed content of an entry, in memory or in a temporary file, or what is known of an entry which is
+     * compressed straight into the archive.
+     */
+    private static final class CompressedEntry {
+
+        private final String name;
+        private final long lastModified;
+        private final boolean stored;
+        private final boolean executable;
+        private long size;
+        private long compressedSize;
+        private long crc;
+        private ByteArrayOutputStream memory;
+        private Path spillFile;
+
+        CompressedEntry(String name, long size, long lastModified, boolean stored, boolean executable) {
+            this.name = name;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.stored = stored;
+            this.executable = executable;
+        }
+
+        void writeTo(OutputStream outputStream) throws IOException {
+            if (memory != null) {
+                memory.writeTo(outputStream);
+            } else {
+                Files.copy(spillFile, outputStream);
+            }
+        }
+
+        void delete() throws IOException {
+            if (spillFile != null) {
+                Files.deleteIfExists(spillFile);
+            }
+        }
+    }
+
+    /**
+     * Writes the compressed entries to an archive.
+     */
+    private interface EntryWriter {
+
+        void write(CompressedEntry entry) throws IOException;
+
+        /**
+         * Compresses the content of an entry straight into the archive.
+         */
+        void write(CompressedEntry entry, InputStream inputStream) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    /**
+     * Writes the local header and the data of each entry, and the central directory at the end.
+     * <p>
+     * The local header of an entry compressed straight into the archive is written before its CRC and sizes are
+     * known. They are filled in through the channel of the archive before the central directory is written.
+     */
+    private static final class ZipWriter implements EntryWriter {
+
+        private static final long ZIP64_LIMIT = 0xFFFFFFFFL;
+        private static final int ZIP64_ENTRY_LIMIT = 0xFFFF;
+        private static final int VERSION = 20;
+        private static final int ZIP64_VERSION = 45;
+        private static final int UTF8_FLAG = 1 << 11;
+        private static final int STORED = 0;
+        private static final int DEFLATED = 8;
+        // Files of this size or larger are given the zip64 extensions when compressed straight into the archive,
+        // leaving room for the file to grow and for deflate to enlarge data which does not compress.
+        private static final long STREAMED_ZIP64_SIZE = ZIP64_LIMIT / 2;
+        private static final int LOCAL_HEADER_CRC_OFFSET = 14;
+        private static final int LOCAL_HEADER_LENGTH = 30;
+
+        private final CountingOutputStream outputStream;
+        private final FileChannel channel;
+        private final List<CentralEntry> centralEntries = new ArrayList<>();
+
+        ZipWriter(OutputStream outputStream, FileChannel channel) {
+            this.outputStream = new CountingOutputStream(outputStream);
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(CompressedEntry entry) throws IOException {
+            CentralEntry centralEntry = new CentralEntry(entry, outputStream.count);
+            writeLocalHeader(centralEntry, centralEntry.hasLargeSize());
+            entry.writeTo(outputStream);
+            centralEntries.add(centralEntry);
+        }
+
+        @Override
+        public void write(CompressedEntry entry, InputStream inputStream) throws IOException {
+            long offset = outputStream.count;
+            boolean zip64 = entry.size >= STREAMED_ZIP64_SIZE;
+            writeLocalHeader(new CentralEntry(entry, offset), zip64);
+            long dataOffset = outputStream.count;
+            compressZipEntry(inputStream, entry, outputStream);
+            entry.compressedSize = outputStream.count - dataOffset;
+            CentralEntry centralEntry = new CentralEntry(entry, offset);
+            if (!zip64 && centralEntry.hasLargeSize()) {
+                throw new IOException("The file of the archive entry " + entry.name + " has grown too large to be "
+                        + "archived without the zip64 extensions");
+            }
+            centralEntry.streamed = true;
+            centralEntry.localZip64 = zip64;
+            centralEntries.add(centralEntry);
+        }
+
+        /**
+         * Writes the CRC and the sizes of an entry compressed straight into the archive to its local header.
+         */
+        private void fillLocalHeader(CentralEntry entry) throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt((int) entry.crc);
+            header.putInt((int) (entry.localZip64 ? ZIP64_LIMIT : entry.compressedSize));
+            header.putInt((int) (entry.localZip64 ? ZIP64_LIMIT : entry.size));
+            writeAt(header, entry.offset + LOCAL_HEADER_CRC_OFFSET);
+            if (entry.localZip64) {
+                ByteBuffer sizes = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+                sizes.putLong(entry.size);
+                sizes.putLong(entry.compressedSize);
+                // The sizes follow the name, and the id and the length of the zip64 extra field.
+                writeAt(sizes, entry.offset + LOCAL_HEADER_LENGTH + entry.name.length + 4);
+            }
+        }
+
+        private void writeAt(ByteBuffer buffer, long position) throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+
+        private void writeLocalHeader(CentralEntry centralEntry, boolean zip64) throws IOException {
+            writeInt(0x04034b50);
+            writeShort(zip64 ? ZIP64_VERSION : VERSION);
+            writeShort(UTF8_FLAG);
+            writeShort(centralEntry.method);
+            writeInt(centralEntry.dosTime);
+            writeInt(centralEntry.crc);
+            writeInt(zip64 ? ZIP64_LIMIT : centralEntry.compressedSize);
+            writeInt(zip64 ? ZIP64_LIMIT : centralEntry.size);
+            writeShort(centralEntry.name.length);
+            writeShort(zip64 ? 20 : 0);
+            outputStream.write(centralEntry.name);
+            if (zip64) {
+                writeShort(0x0001);
+                writeShort(16);
+                writeLong(centralEntry.size);
+                writeLong(centralEntry.compressedSize);
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            outputStream.flush();
+            for (CentralEntry entry : centralEntries) {
+                if (entry.streamed) {
+                    fillLocalHeader(entry);
+                }
+            }
+            long directoryOffset = outputStream.count;
+            for (CentralEntry entry : centralEntries) {
+                boolean largeSize = entry.hasLargeSize();
+                boolean largeOffset = entry.offset >= ZIP64_LIMIT;
+                int extraLength = (largeSize ? 16 : 0) + (largeOffset ? 8 : 0);
+                writeInt(0x02014b50);
+                writeShort(ZIP64_VERSION);
+                writeShort(extraLength > 0 ? ZIP64_VERSION : VERSION);
+                writeShort(UTF8_FLAG);
+                writeShort(entry.method);
+                writeInt(entry.dosTime);
+                writeInt(entry.crc);
+                writeInt(largeSize ? ZIP64_LIMIT : entry.compressedSize);
+                writeInt(largeSize ? ZIP64_LIMIT : entry.size);
+                writeShort(entry.name.length);
+                writeShort(extraLength > 0 ? extraLength + 4 : 0);
+                // Comment length, disk number, and internal and external attributes.
+                writeShort(0);
+                writeShort(0);
+                writeShort(0);
+                writeInt(0);
+                writeInt(largeOffset ? ZIP64_LIMIT : entry.offset);
+                outputStream.write(entry.name);
+                if (extraLength > 0) {
+                    writeShort(0x0001);
+                    writeShort(extraLength);
+                    if (largeSize) {
+                        writeLong(entry.size);
+                        writeLong(entry.compressedSize);
+                    }
+                    if (largeOffset) {
+                        writeLong(entry.offset);
+                    }
+                }
+            }
+            long directoryEnd = outputStream.count;
+            long directorySize = directoryEnd - directoryOffset;
+            int entries = centralEntries.size();
+            boolean zip64 = entries >= ZIP64_ENTRY_LIMIT || directoryOffset >= ZIP64_LIMIT
+                    || directorySize >= ZIP64_LIMIT;
+            if (zip64) {
+                writeInt(0x06064b50);
+                writeLong(44);
+                writeShort(ZIP64_VERSION);
+                writeShort(ZIP64_VERSION);
+                writeInt(0);
+                writeInt(0);
+                writeLong(entries);
+                writeLong(entries);
+                writeLong(directorySize);
+                writeLong(directoryOffset);
+                writeInt(0x07064b50);
+                writeInt(0);
+                writeLong(directoryEnd);
+                writeInt(1);
+            }
+            writeInt(0x06054b50);
+            writeShort(0);
+            writeShort(0);
+            writeShort(zip64 ? ZIP64_ENTRY_LIMIT : entries);
+            writeShort(zip64 ? ZIP64_ENTRY_LIMIT : entries);
+            writeInt(zip64 ? ZIP64_LIMIT : directorySize);
+            writeInt(zip64 ? ZIP64_LIMIT : directoryOffset);
+            writeShort(0);
+            outputStream.flush();
+        }
+
+        private void writeShort(int value) throws IOException {
+            outputStream.write(value & 0xFF);
+            outputStream.write((value >>> 8) & 0xFF);
+        }
+
+        private void writeInt(long value) throws IOException {
+            writeShort((int) (value & 0xFFFF));
+            writeShort((int) ((value >>> 16) & 0xFFFF));
+        }
+
+        private void writeLong(long value) throws IOException {
+            writeInt(value & ZIP64_LIMIT);
+            writeInt(value >>> 32);
+        }
+
+        /**
+         * What the central directory needs of an entry, once its data is written.
+         */
+        private static final class CentralEntry {
+
+            private final byte[] name;
+            private final int method;
+            private final long dosTime;
+            private final long crc;
+            private final long size;
+            private final long compressedSize;
+            private final long offset;
+            // Whether the entry was compressed straight into the archive, with its local header to be filled in.
+            private boolean streamed;
+            private boolean localZip64;
+
+            CentralEntry(CompressedEntry entry, long offset) {
+                this.name = entry.name.getBytes(StandardCharsets.UTF_8);
+                this.method = entry.stored ? STORED : DEFLATED;
+                this.dosTime = toDosTime(entry.lastModified);
+                this.crc = entry.crc;
+                this.size = entry.size;
+                this.compressedSize = entry.compressedSize;
+                this.offset = offset;
+            }
+
+            boolean hasLargeSize() {
+                return size >= ZIP64_LIMIT || compressedSize >= ZIP64_LIMIT;
+            }
+
+            private static long toDosTime(long millis) {
+                LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+                if (time.getYear() < 1980) {
+                    return (1 << 21) | (1 << 16);
+                }
+                return ((long) (time.getYear() - 1980) << 25) | (time.getMonthValue() << 21)
+                        | (time.getDayOfMonth() << 16) | (time.getHour() << 11) | (time.getMinute() << 5)
+                        | (time.getSecond() >> 1);
+            }
+        }
+    }
+
+    /**
+     * Writes the gzip members of the entries, and a last member of the end of the tar archive.
+     */
+    private static final class TarGzWriter implements EntryWriter {
+
+        private final OutputStream outputStream;
+
+        TarGzWriter(OutputStream outputStream) {
+            this.outputStream = outputStream;
+        }
+
+        @Override
+        public void write(CompressedEntry entry) throws IOException {
+            entry.writeTo(outputStream);
+        }
+
+        @Override
+        public void write(CompressedEntry entry, InputStream inputStream) throws IOException {
+            compressTarEntry(inputStream, entry, outputStream);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            try (GZIPOutputStream gzipStream = new GZIPOutputStream(new NonClosingOutputStream(outputStream))) {
+                gzipStream.write(new byte[TarHeaders.BLOCK_SIZE * 2]);
+            }
+            outputStream.flush();
+        }
+    }
+
+    /**
+     * Writes the ustar headers of an entry, preceded by a pax header when the name or the size does not fit.
+     */
+    private static final class TarHeaders {
+
+        private static final int BLOCK_SIZE = 512;
+        private static final int NAME_LENGTH = 100;
+        private static final long MAX_OCTAL_SIZE = 077777777777L;
+
+        static void write(OutputStream outputStream, String name, long size, long lastModified, boolean executable)
+                throws IOException {
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            if (nameBytes.length > NAME_LENGTH || size > MAX_OCTAL_SIZE) {
+                StringBuilder records = new StringBuilder();
+                if (nameBytes.length > NAME_LENGTH) {
+                    records.append(paxRecord("path", name));
+                }
+                if (size > MAX_OCTAL_SIZE) {
+                    records.append(paxRecord("size", Long.toString(size)));
+                }
+                byte[] content = records.toString().getBytes(StandardCharsets.UTF_8);
+                outputStream.write(header(truncate("PaxHeaders/" + name), content.length, lastModified, 0644,
+                        (byte) 'x'));
+                outputStream.write(content);
+                outputStream.write(new byte[padding(content.length)]);
+            }
+            outputStream.write(header(truncate(name), Math.min(size, MAX_OCTAL_SIZE), lastModified,
+                    executable ? 0755 : 0644, (byte) '0'));
+        }
+
+        static int padding(long length) {
+            return (int) ((BLOCK_SIZE - length % BLOCK_SIZE) % BLOCK_SIZE);
+        }
+
+        /**
+         * Returns a pax record, which starts with its own length in bytes.
+         */
+        private static String paxRecord(String key, String value) {
+            int length = key.getBytes(StandardCharsets.UTF_8).length + value.getBytes(StandardCharsets.UTF_8).length
+                    + 3;
+            int total = length + Integer.toString(length).length();
+            if (Integer.toString(total).length() != Integer.toString(length).length()) {
+                total++;
+            }
+            return total + " " + key + "=" + value + "\n";
+        }
+
+        private static byte[] truncate(String name) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            return bytes.length > NAME_LENGTH ? Arrays.copyOf(bytes, NAME_LENGTH) : bytes;
+        }
+
+        private static byte[] header(byte[] name, long size, long lastModified, int mode, byte type) {
+            byte[] header = new byte[BLOCK_SIZE];
+            System.arraycopy(name, 0, header, 0, name.length);
+            octal(header, 100, 8, mode);
+            octal(header, 108, 8, 0);
+            octal(header, 116, 8, 0);
+            octal(header, 124, 12, size);
+            octal(header, 136, 12, Math.max(0, lastModified / 1000));
+            Arrays.fill(header, 148, 156, (byte) ' ');
+            header[156] = type;
+            byte[] magic = "ustar\u000000".getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(magic, 0, header, 257, magic.length);
+            long checksum = 0;
+            for (byte b : header) {
+                checksum += b & 0xFF;
+            }
+            octal(header, 148, 7, checksum);
+            return header;
+        }
+
+        /**
+         * Writes a value as zero padded octal digits followed by a NUL, in the given number of bytes.
+         */
+        private static void octal(byte[] header, int offset, int length, long value) {
+            String digits = Long.toOctalString(value);
+            int start = offset + length - 1 - digits.length();
+            Arrays.fill(header, offset, start, (byte) '0');
+            for (int i = 0; i < digits.length(); i++) {
+                header[start + i] = (byte) digits.charAt(i);
+            }
+            header[offset + length - 1] = 0;
+        }
+    }
+
+    /**
+     * Counts the bytes written through it.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /**
+     * Leaves the underlying stream open when closed, so that a gzip member can be finished on a shared stream.
+     */
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+
+        NonClosingOutputStream(OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
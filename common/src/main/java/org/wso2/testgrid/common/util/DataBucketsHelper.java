@@ -22,6 +22,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.testgrid.common.TestGridConstants;
 import org.wso2.testgrid.common.TestPlan;
+import org.wso2.testgrid.common.config.ScenarioConfig;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -60,6 +61,7 @@ public class DataBucketsHelper {
     public static final String TESTPLAN_PROPERTIES_FILE = "testplan-props.properties";
     public static final String TESTPLAN_PROPERTIES_JSONFILE = "testplan-props.json";
     public static final String PARAMS_JSONFILE = "params.json";
+    public static final String SCENARIO_INPUTS_DIR_NAME = "scenario-inputs";
     private static final Logger logger = LoggerFactory.getLogger(DataBucketsHelper.class);
     private static boolean init = false;
 
@@ -112,6 +114,37 @@ public class DataBucketsHelper {
         return dataBucketPath;
     }
 
+    /**
+     * Returns the inputs location of the given scenario config. That is the location set for the scenario config,
+     * if any, otherwise the inputs location of its test plan.
+     *
+     * @param scenarioConfig scenario config
+     * @return The dir location where the inputs of the scenario config's test script are stored
+     */
+    public static Path getInputLocation(ScenarioConfig scenarioConfig) {
+        if (scenarioConfig.getInputDir() != null) {
+            return Paths.get(scenarioConfig.getInputDir());
+        }
+        return getInputLocation(scenarioConfig.getTestPlan());
+    }
+
+    /**
+     * Returns a private inputs location for the given scenario config, so that the inputs of scenario configs
+     * running at the same time do not overwrite each other.
+     * <p>
+     * TESTGRID_HOME/jobs/#name#/builds/#depl_name#_#infra-uuid#_#test-run-num#/data-bucket/scenario-inputs/#output-dir#
+     *
+     * @param testPlan       testplan
+     * @param scenarioConfig scenario config
+     * @return The dir location where the inputs of the scenario config's test script should be stored
+     */
+    public static Path getScenarioInputLocation(TestPlan testPlan, ScenarioConfig scenarioConfig) {
+        final Path inputsDirPath = getBuildOutputsDir(testPlan).resolve(
+                Paths.get(DATA_BUCKET_OUTPUT_DIR_NAME, SCENARIO_INPUTS_DIR_NAME, scenarioConfig.getOutputDir()));
+        init(inputsDirPath);
+        return inputsDirPath;
+    }
+
     /**
      * Get the build outputs dir
      *
@@ -51,8 +51,6 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 import static org.wso2.testgrid.common.TestGridConstants.PRODUCT_TEST_PLANS_DIR;
 
@@ -212,31 +210,16 @@ public class FileUtil {
 
     /**
      * Compress the files at sourceDir into the destination zip file.
+     * The files are compressed in parallel, see {@link ArchiveBuilder}.
      *
      * @param sourceDir   the source dir that has contents to archive
      * @param destination the zip file location
      */
     public static void compress(String sourceDir, String destination) throws IOException {
         Path destPath = Files.createFile(Paths.get(destination));
-        try (ZipOutputStream zs = new ZipOutputStream(Files.newOutputStream(destPath))) {
-            Path sourcePath = Paths.get(sourceDir);
-            Files.walk(sourcePath)
-                    .filter(path -> !Files.isDirectory(path))
-                    .forEach(path -> {
-                        try {
-                            if (Files.isSameFile(path, destPath)) {
-                                return;
-                            }
-                            ZipEntry zipEntry = new ZipEntry(sourcePath.relativize(path).toString());
-                            zs.putNextEntry(zipEntry);
-                            Files.copy(path, zs);
-                            zs.closeEntry();
-                        } catch (IOException e) {
-                            logger.debug(e.getMessage(), e);
-                            //ignore the exception and continue
-                        }
-                    });
-        }
+        new ArchiveBuilder(ArchiveBuilder.Format.ZIP)
+                .addDirectory(Paths.get(sourceDir), "")
+                .build(destPath);
     }
 
     /**
@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.common.util;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.auth.PropertiesFileCredentialsProvider;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.testgrid.common.config.ConfigurationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the S3 clients and transfer managers shared by TestGrid, one per region, endpoint and credentials.
+ * <p>
+ * An S3 client owns a connection pool, a credential chain and threads, hence it is built once and reused by every
+ * caller, instead of once per call. The clients connect to {@code AWS_S3_ENDPOINT} instead of AWS S3 when it is
+ * configured, and each keeps at most {@code AWS_S3_MAX_CONNECTIONS} connections. They are shut down when the JVM
+ * exits, or by {@link #shutdown()}, which also removes the shutdown hook; applications which are undeployed without
+ * the JVM exiting, such as the web application, have to call it.
+ *
+ * @since 1.0.0
+ */
+public final class S3ClientRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3ClientRegistry.class);
+    private static final int DEFAULT_MAX_CONNECTIONS = ClientConfiguration.DEFAULT_MAX_CONNECTIONS;
+    private static final Map<ClientKey, SharedClient> clients = new ConcurrentHashMap<>();
+
+    private static final Thread SHUTDOWN_HOOK = new Thread(S3ClientRegistry::shutdown, "s3-client-registry-shutdown");
+    private static boolean shutdownHookRegistered;
+
+    private S3ClientRegistry() {
+    }
+
+    /**
+     * Returns the shared S3 client of a region, which authenticates with the keys of the TestGrid config file.
+     *
+     * @param region AWS region of the bucket
+     * @return the S3 client
+     */
+    public static AmazonS3 getClient(String region) {
+        return getSharedClient(region, getConfiguredEndpoint(), null, null).client;
+    }
+
+    /**
+     * Returns the shared S3 client of a region, which authenticates with the given keys.
+     *
+     * @param region    AWS region of the bucket
+     * @param accessKey AWS access key id
+     * @param secretKey AWS secret access key
+     * @return the S3 client
+     */
+    public static AmazonS3 getClient(String region, String accessKey, String secretKey) {
+        return getSharedClient(region, getConfiguredEndpoint(), accessKey, secretKey).client;
+    }
+
+    /**
+     * Returns the shared transfer manager of the S3 client of {@link #getClient(String, String, String)}.
+     *
+     * @param region    AWS region of the bucket
+     * @param accessKey AWS access key id
+     * @param secretKey AWS secret access key
+     * @return the transfer manager
+     */
+    public static TransferManager getTransferManager(String region, String accessKey, String secretKey) {
+        return getSharedClient(region, getConfiguredEndpoint(), accessKey, secretKey).getTransferManager();
+    }
+
+    /**
+     * Returns the shared S3 client of a region and an endpoint. The keys of the TestGrid config file are used when
+     * the given keys are null.
+     *
+     * @param region    AWS region of the bucket
+     * @param endpoint  endpoint of an S3 compatible storage, or null for AWS S3
+     * @param accessKey AWS access key id, or null
+     * @param secretKey AWS secret access key, or null
+     * @return the S3 client
+     */
+    static AmazonS3 getClient(String region, String endpoint, String accessKey, String secretKey) {
+        return getSharedClient(region, endpoint, accessKey, secretKey).client;
+    }
+
+    /**
+     * Builds an S3 client as {@link #getClient(String, String, String, String)} does, but which is not shared.
+     * The caller has to shut it down.
+     */
+    static AmazonS3 buildClient(String region, String endpoint, String accessKey, String secretKey) {
+        return newClient(new ClientKey(region, endpoint, accessKey), getCredentialsProvider(accessKey, secretKey));
+    }
+
+    /**
+     * Shuts down the shared transfer managers and S3 clients. The clients asked for afterwards are built anew.
+     */
+    public static void shutdown() {
+        unregisterShutdownHook();
+        List<SharedClient> sharedClients = new ArrayList<>(clients.values());
+        clients.clear();
+        for (SharedClient sharedClient : sharedClients) {
+            try {
+                sharedClient.shutdown();
+            } catch (RuntimeException e) {
+                logger.warn("Error occurred while shutting down an S3 client: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private static SharedClient getSharedClient(String region, String endpoint, String accessKey,
+                                                String secretKey) {
+        ClientKey key = new ClientKey(region, endpoint, accessKey);
+        return clients.computeIfAbsent(key, k -> {
+            registerShutdownHook();
+            return new SharedClient(newClient(k, getCredentialsProvider(accessKey, secretKey)));
+        });
+    }
+
+    private static synchronized void registerShutdownHook() {
+        if (shutdownHookRegistered) {
+            return;
+        }
+        try {
+            Runtime.getRuntime().addShutdownHook(SHUTDOWN_HOOK);
+            shutdownHookRegistered = true;
+        } catch (IllegalStateException e) {
+            logger.debug("The JVM is shutting down. Not registering the S3 client shutdown hook.");
+        }
+    }
+
+    private static synchronized void unregisterShutdownHook() {
+        if (!shutdownHookRegistered) {
+            return;
+        }
+        shutdownHookRegistered = false;
+        try {
+            // The hook keeps the class loader of this class, e.g. of an undeployed web application, from being freed.
+            Runtime.getRuntime().removeShutdownHook(SHUTDOWN_HOOK);
+        } catch (IllegalStateException e) {
+            // The JVM is shutting down; this is the hook running.
+        }
+    }
+
+    private static AmazonS3 newClient(ClientKey key, AWSCredentialsProvider credentialsProvider) {
+        logger.debug(StringUtil.concatStrings("Building an S3 client of region ", key.region,
+                key.endpoint == null ? "" : " and endpoint " + key.endpoint));
+        ClientConfiguration clientConfiguration = new ClientConfiguration()
+                .withMaxConnections(getMaxConnections());
+        AmazonS3ClientBuilder builder = AmazonS3ClientBuilder.standard()
+                .withCredentials(credentialsProvider)
+                .withClientConfiguration(clientConfiguration);
+        if (key.endpoint == null) {
+            builder = builder.withRegion(key.region);
+        } else {
+            // S3 compatible storages rarely resolve the bucket as a sub domain.
+            builder = builder.withEndpointConfiguration(
+                    new AwsClientBuilder.EndpointConfiguration(key.endpoint, key.region))
+                    .withPathStyleAccessEnabled(true);
+        }
+        return builder.build();
+    }
+
+    private static AWSCredentialsProvider getCredentialsProvider(String accessKey, String secretKey) {
+        if (accessKey == null) {
+            return new PropertiesFileCredentialsProvider(TestGridUtil.getConfigFilePath().toString());
+        }
+        return new AWSStaticCredentialsProvider(new BasicAWSCredentials(accessKey, secretKey));
+    }
+
+    private static String getConfiguredEndpoint() {
+        String endpoint = ConfigurationContext.getProperty(ConfigurationContext.ConfigurationProperties
+                .AWS_S3_ENDPOINT);
+        return StringUtil.isStringNullOrEmpty(endpoint) ? null : endpoint.trim();
+    }
+
+    private static int getMaxConnections() {
+        String value = ConfigurationContext.getProperty(ConfigurationContext.ConfigurationProperties
+                .AWS_S3_MAX_CONNECTIONS);
+        if (StringUtil.isStringNullOrEmpty(value)) {
+            return DEFAULT_MAX_CONNECTIONS;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            logger.warn(StringUtil.concatStrings("Invalid ", ConfigurationContext.ConfigurationProperties
+                    .AWS_S3_MAX_CONNECTIONS, " value '", value, "'. Using ", DEFAULT_MAX_CONNECTIONS, "."));
+            return DEFAULT_MAX_CONNECTIONS;
+        }
+    }
+
+    /**
+     * Identifies a shared client. The secret key is left out, since an access key has one secret.
+     */
+    private static final class ClientKey {
+
+        private final String region;
+        private final String endpoint;
+        private final String accessKey;
+
+        ClientKey(String region, String endpoint, String accessKey) {
+            this.region = region;
+            this.endpoint = endpoint;
+            this.accessKey = accessKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ClientKey)) {
+                return false;
+            }
+            ClientKey clientKey = (ClientKey) o;
+            return Objects.equals(region, clientKey.region) && Objects.equals(endpoint, clientKey.endpoint)
+                    && Objects.equals(accessKey, clientKey.accessKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(region, endpoint, accessKey);
+        }
+    }
+
+    /**
+     * An S3 client, and the transfer manager built on it when first asked for.
+     */
+    private static final class SharedClient {
+
+        private final AmazonS3 client;
+        private volatile TransferManager transferManager;
+
+        SharedClient(AmazonS3 client) {
+            this.client = client;
+        }
+
+        TransferManager getTransferManager() {
+            TransferManager manager = transferManager;
+            if (manager == null) {
+                synchronized (this) {
+                    manager = transferManager;
+                    if (manager == null) {
+                        manager = TransferManagerBuilder.standard()
+                                .withS3Client(client)
+                                .build();
+                        transferManager = manager;
+                    }
+                }
+            }
+            return manager;
+        }
+
+        synchronized void shutdown() {
+            if (transferManager != null) {
+                // Shuts down the client as well.
+                transferManager.shutdownNow(true);
+            } else {
+                client.shutdown();
+            }
+        }
+    }
+}
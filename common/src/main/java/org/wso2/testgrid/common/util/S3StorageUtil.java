@@ -2,17 +2,12 @@ package org.wso2.testgrid.common.util;
 
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.SdkClientException;
-import com.amazonaws.auth.AWSStaticCredentialsProvider;
-import com.amazonaws.auth.BasicAWSCredentials;
-import com.amazonaws.auth.PropertiesFileCredentialsProvider;
 import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.amazonaws.services.s3.model.DeleteObjectRequest;
 import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.amazonaws.services.s3.transfer.MultipleFileDownload;
 import com.amazonaws.services.s3.transfer.TransferManager;
-import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
 import com.amazonaws.services.s3.transfer.Upload;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -85,8 +80,6 @@ public final class S3StorageUtil {
      */
     public static boolean deleteTestPlan(TestPlan testPlan) {
 
-        Path configFilePath = Paths.get(TestGridUtil.getTestGridHomePath(),
-                TestGridConstants.TESTGRID_CONFIG_FILE);
         String testPlanId = testPlan.getId();
         String s3KeyName = "";
 
@@ -102,10 +95,7 @@ public final class S3StorageUtil {
             String bucketName = ConfigurationContext.getProperty
                     (ConfigurationContext.ConfigurationProperties.AWS_S3_BUCKET_NAME);
 
-            AmazonS3 s3Client = AmazonS3ClientBuilder.standard()
-                    .withCredentials(new PropertiesFileCredentialsProvider(configFilePath.toString()))
-                    .withRegion(clientRegion)
-                    .build();
+            AmazonS3 s3Client = S3ClientRegistry.getClient(clientRegion);
 
             ObjectListing objectListing = s3Client.listObjects(bucketName, s3KeyName);
             List<S3ObjectSummary> objectSummaries = objectListing.getObjectSummaries();
@@ -240,19 +230,14 @@ public final class S3StorageUtil {
         String s3bucket = ConfigurationContext
                 .getProperty(ConfigurationContext.ConfigurationProperties.AWS_S3_BUCKET_NAME);
 
-        BasicAWSCredentials awsCreds = new BasicAWSCredentials(s3accessKey, s3secretKey);
-
-        AmazonS3 s3client = AmazonS3ClientBuilder.standard()
-                .withCredentials(new AWSStaticCredentialsProvider(awsCreds))
-                .withRegion(s3region).build();
         logger.info(s3bucket + " " + s3artifactDir);
         /*if (!s3client.doesObjectExist(s3bucket, s3artifactDir)) {
             logger.error("Could not find logs", s3artifactDir + " " + s3bucket);
             return;
         }
         logger.info("Found logs");*/
-        TransferManager transferManager = TransferManagerBuilder.standard()
-                .withS3Client(s3client).build();
+        // The transfer manager is shared, hence it is not shut down here.
+        TransferManager transferManager = S3ClientRegistry.getTransferManager(s3region, s3accessKey, s3secretKey);
 
         Path clientLogsPath = dataBucketLocation.resolve("clientLogs");
 
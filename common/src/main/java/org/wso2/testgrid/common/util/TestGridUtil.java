@@ -211,6 +211,37 @@ public final class TestGridUtil {
      */
     public static TestPlan toTestPlanEntity(DeploymentPattern deploymentPattern, TestPlan testPlan)
             throws CommandExecutionException {
+        TestPlan testPlanEntity = createTestPlanEntity(deploymentPattern, testPlan);
+        deploymentPattern.addTestPlan(testPlanEntity);
+
+        // Set test run number
+        int latestTestRunNumber = getLatestTestRunNumber(deploymentPattern, testPlanEntity.getInfraParameters());
+        testPlanEntity.setTestRunNumber(latestTestRunNumber + 1);
+        return testPlanEntity;
+    }
+
+    /**
+     * This method generates TestPlan object model from the given input parameters. Unlike
+     * {@link #toTestPlanEntity(DeploymentPattern, TestPlan)}, the test run number is taken from the given latest test
+     * run numbers instead of the test plans of the deployment pattern, which are not loaded.
+     *
+     * @param deploymentPattern    deployment pattern
+     * @param testPlan             testPlan object
+     * @param latestTestRunNumbers latest test run numbers of the deployment pattern by infrastructure parameters,
+     *                             which is updated with the test run number of the generated test plan
+     * @return TestPlan object model
+     */
+    public static TestPlan toTestPlanEntity(DeploymentPattern deploymentPattern, TestPlan testPlan,
+                                            Map<String, Integer> latestTestRunNumbers)
+            throws CommandExecutionException {
+        TestPlan testPlanEntity = createTestPlanEntity(deploymentPattern, testPlan);
+        testPlanEntity.setTestRunNumber(latestTestRunNumbers.merge(testPlanEntity.getInfraParameters(), 1,
+                Integer::sum));
+        return testPlanEntity;
+    }
+
+    private static TestPlan createTestPlanEntity(DeploymentPattern deploymentPattern, TestPlan testPlan)
+            throws CommandExecutionException {
         try {
             String jsonInfraParams = new ObjectMapper()
                     .writeValueAsString(testPlan.getInfrastructureConfig().getParameters());
@@ -226,17 +257,6 @@ public final class TestGridUtil {
                 testPlanEntity.setDeployerType(TestPlan.DeployerType.SHELL);
             }
             testPlanEntity.setInfraParameters(jsonInfraParams);
-            deploymentPattern.addTestPlan(testPlanEntity);
-
-            // Set test run number
-            int latestTestRunNumber = getLatestTestRunNumber(deploymentPattern, testPlanEntity.getInfraParameters());
-            testPlanEntity.setTestRunNumber(latestTestRunNumber + 1);
-            // Set test scenarios
-            /*List<TestScenario> testScenarios = testPlan.getScenarioConfig().getScenarios();
-            for (TestScenario testScenario : testScenarios) {
-                testScenario.setStatus(Status.PENDING);
-            }
-            testPlanEntity.setTestScenarios(testScenarios);*/
             return testPlanEntity;
         } catch (JsonProcessingException e) {
             throw new CommandExecutionException(StringUtil
@@ -420,12 +440,7 @@ public final class TestGridUtil {
             String jsonInfraParams = new ObjectMapper()
                     .writeValueAsString(testPlan.getInfrastructureConfig().getParameters());
             int latestTestRunNumber = getLatestTestRunNumber(deploymentPattern, jsonInfraParams);
-            int testRunNumber = latestTestRunNumber + 1;
-            String combinationId = infraCombination.getInfraCombinationId();
-
-            return StringUtil.concatStrings(deploymentPattern.getProduct().getName(), PARAM_SEPARATOR,
-                    deploymentPattern.getName(), PARAM_SEPARATOR, combinationId, PARAM_SEPARATOR,
-                    TESTRUN_NUMBER_PREFIX, testRunNumber);
+            return deriveTestPlanId(infraCombination, deploymentPattern, latestTestRunNumber + 1);
         } catch (JsonProcessingException e) {
             throw new IllegalStateException(StringUtil.
                     concatStrings("Error in generating testplan-id when parsing JSON ",
@@ -433,6 +448,22 @@ public final class TestGridUtil {
         }
     }
 
+    /**
+     * Returns the test-plan id of the given test run of an infrastructure combination.
+     *
+     * @param infraCombination  infrastructure combination of the test-plan
+     * @param deploymentPattern deployment-pattern of the test-plan
+     * @param testRunNumber     test run number of the test-plan
+     * @return test-plan id
+     * @see #deriveTestPlanId(TestPlan, InfrastructureCombination, DeploymentPattern)
+     */
+    public static String deriveTestPlanId(InfrastructureCombination infraCombination,
+                                          DeploymentPattern deploymentPattern, int testRunNumber) {
+        return StringUtil.concatStrings(deploymentPattern.getProduct().getName(), PARAM_SEPARATOR,
+                deploymentPattern.getName(), PARAM_SEPARATOR, infraCombination.getInfraCombinationId(),
+                PARAM_SEPARATOR, TESTRUN_NUMBER_PREFIX, testRunNumber);
+    }
+
     /**
      * Returns the test-plan directory name based on the test-plan content.
      *
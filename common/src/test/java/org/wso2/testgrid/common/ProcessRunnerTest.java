@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Runs processes through {@link ProcessRunner}, and compares running many of them with reading the output of each
+ * through threads of its own.
+ *
+ * @since 1.0.0
+ */
+public class ProcessRunnerTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessRunnerTest.class);
+    private static final int BENCHMARK_PROCESSES = 1000;
+    private static final int BENCHMARK_LINES = 10000;
+    private static final int BENCHMARK_CONCURRENCY = 16;
+
+    @Test
+    public void testOutputAndErrorLines() throws Exception {
+        List<String> output = Collections.synchronizedList(new ArrayList<>());
+        List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        int exitValue = new ProcessRunner(bash("seq 1 5000; printf 'no newline\\r\\n'; echo failed >&2; exit 3"))
+                .onOutput(output::add)
+                .onError(errors::add)
+                .run();
+
+        Assert.assertEquals(exitValue, 3);
+        Assert.assertEquals(output.size(), 5001);
+        Assert.assertEquals(output.get(0), "1");
+        Assert.assertEquals(output.get(4999), "5000");
+        Assert.assertEquals(output.get(5000), "no newline");
+        Assert.assertEquals(errors, Collections.singletonList("failed"));
+    }
+
+    @Test
+    public void testMasksAndCapture() throws Exception {
+        Path captureFile = Files.createTempFile("process-runner", ".log");
+        try {
+            List<String> output = Collections.synchronizedList(new ArrayList<>());
+            new ProcessRunner(bash("for i in $(seq 1 100); do echo \"password=secret$i line $i\"; done"))
+                    .mask(Pattern.compile("password=\\S+"), "password=****")
+                    .mask(Pattern.compile("line"), "row")
+                    .onOutput(output::add)
+                    .captureTo(captureFile, 1000)
+                    .run();
+
+            Assert.assertEquals(output.size(), 100);
+            Assert.assertEquals(output.get(41), "password=**** row 42");
+            List<String> captured = Files.readAllLines(captureFile, StandardCharsets.UTF_8);
+            Assert.assertTrue(Files.size(captureFile) <= 1000 + "[output truncated]\n".length());
+            Assert.assertEquals(captured.get(0), "password=**** row 1");
+            Assert.assertEquals(captured.get(captured.size() - 1), "[output truncated]");
+        } finally {
+            Files.deleteIfExists(captureFile);
+        }
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        List<String> output = Collections.synchronizedList(new ArrayList<>());
+        long start = System.nanoTime();
+        try {
+            new ProcessRunner(bash("echo started; exec sleep 30"))
+                    .onOutput(output::add)
+                    .timeout(300, TimeUnit.MILLISECONDS)
+                    .run();
+            Assert.fail("The process should time out.");
+        } catch (TimeoutException e) {
+            Assert.assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 10);
+            Assert.assertEquals(output, Collections.singletonList("started"));
+        }
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        ProcessRunner.Execution execution = new ProcessRunner(bash("exec sleep 30")).start();
+        Assert.assertTrue(execution.isAlive());
+        execution.cancel();
+        Assert.assertFalse(execution.isAlive());
+        try {
+            execution.waitFor();
+            Assert.fail("The execution should be cancelled.");
+        } catch (CancellationException e) {
+            // expected
+        }
+    }
+
+    @Test(description = "Runs short processes which print many lines, through the shared pumps, and through two "
+            + "threads of each process as ShellExecutor used to")
+    public void testManyProcessesBenchmark() throws Exception {
+        String command = "seq 1 " + BENCHMARK_LINES;
+        AtomicLong pumpedLines = new AtomicLong();
+        long start = System.nanoTime();
+        runAll(() -> new ProcessRunner(bash(command))
+                .onOutput(line -> pumpedLines.incrementAndGet())
+                .run());
+        long pumpedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        AtomicLong gobbledLines = new AtomicLong();
+        start = System.nanoTime();
+        runAll(() -> runWithOwnThreads(command, line -> gobbledLines.incrementAndGet()));
+        long gobbledMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        logger.info(String.format("Running %d processes of %d lines, %d at a time: %d ms with the shared pumps, "
+                        + "%d ms with two threads per process", BENCHMARK_PROCESSES, BENCHMARK_LINES,
+                BENCHMARK_CONCURRENCY, pumpedMillis, gobbledMillis));
+        Assert.assertEquals(pumpedLines.get(), (long) BENCHMARK_PROCESSES * BENCHMARK_LINES);
+        Assert.assertEquals(gobbledLines.get(), (long) BENCHMARK_PROCESSES * BENCHMARK_LINES);
+    }
+
+    private static ProcessBuilder bash(String command) {
+        return new ProcessBuilder("/bin/bash", "-c", command);
+    }
+
+    private static void runAll(ProcessTask task) throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(BENCHMARK_CONCURRENCY);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>(BENCHMARK_PROCESSES);
+            for (int i = 0; i < BENCHMARK_PROCESSES; i++) {
+                futures.add(executorService.submit(task::run));
+            }
+            for (Future<Integer> future : futures) {
+                Assert.assertEquals(future.get().intValue(), 0);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads the output and error of a process through a pool of two threads created for it.
+     */
+    private static int runWithOwnThreads(String command, Consumer<String> consumer) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Process process = bash(command).start();
+            Future<?> output = executor.submit(() -> readLines(process.getInputStream(), consumer));
+            Future<?> error = executor.submit(() -> readLines(process.getErrorStream(), consumer));
+            int exitValue = process.waitFor();
+            output.get();
+            error.get();
+            return exitValue;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void readLines(InputStream inputStream, Consumer<String> consumer) {
+        new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)).lines().forEach(consumer);
+    }
+
+    /**
+     * Runs a process, and returns its exit value.
+     */
+    private interface ProcessTask {
+
+        int run() throws Exception;
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.common.util;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Tests the archives written by {@link ArchiveBuilder}, and compares the time it takes to zip a generated tree of
+ * logs and binaries with that of a single {@link ZipOutputStream}.
+ * <p>
+ * The tree of the benchmark is 64 MB. A larger one, such as the 2 GB of logs a test run may collect, is zipped when
+ * its size is given by the {@code archive.size.mb} system property, e.g. {@code -Darchive.size.mb=2048}.
+ *
+ * @since 1.0.0
+ */
+public class ArchiveBuilderTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveBuilderTest.class);
+    private static final long BENCHMARK_SIZE = Long.getLong("archive.size.mb", 64) * 1024 * 1024;
+    // Files of the benchmark tree are up to 32 MB, and a small tree still has a mix of logs and binaries.
+    private static final int BENCHMARK_FILE_SIZE = (int) Math.min(32 * 1024 * 1024, Math.max(1, BENCHMARK_SIZE / 16));
+    private static final String LONG_NAME = "results/" + String.join("/", "a-rather-long-directory-name",
+            "of-the-scenario-outputs", "which-does-not-fit-the-ustar-header", "test.log");
+
+    private Path directory;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("archive-builder");
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        FileUtils.deleteQuietly(directory.toFile());
+    }
+
+    @DataProvider(name = "concurrencies")
+    public Object[][] concurrencies() {
+        // A single worker compresses the entries straight into the archive.
+        return new Object[][] {{1}, {3}};
+    }
+
+    @Test(dataProvider = "concurrencies")
+    public void testZip(int concurrency) throws IOException {
+        Path source = createTree();
+        Path archive = directory.resolve("results.zip");
+        new ArchiveBuilder(ArchiveBuilder.Format.ZIP, concurrency).addDirectory(source, "").build(archive);
+
+        try (ZipFile zipFile = new ZipFile(archive.toFile())) {
+            Map<String, byte[]> entries = new LinkedHashMap<>();
+            Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+            while (zipEntries.hasMoreElements()) {
+                ZipEntry entry = zipEntries.nextElement();
+                try (InputStream inputStream = zipFile.getInputStream(entry)) {
+                    entries.put(entry.getName(), IOUtils.toByteArray(inputStream));
+                }
+                int method = entry.getName().endsWith(".gz") ? ZipEntry.STORED : ZipEntry.DEFLATED;
+                Assert.assertEquals(entry.getMethod(), method, "Compression method of " + entry.getName());
+            }
+            assertEntries(entries, source, "");
+        }
+    }
+
+    @Test(dataProvider = "concurrencies")
+    public void testTarGz(int concurrency) throws IOException {
+        Path source = createTree();
+        Path archive = directory.resolve("results.tar.gz");
+        new ArchiveBuilder(ArchiveBuilder.Format.TAR_GZ, concurrency).addDirectory(source, "outputs/")
+                .build(archive);
+
+        assertEntries(readTarGz(archive), source, "outputs/");
+    }
+
+    @Test
+    public void testDuplicatesAndDestination() throws IOException {
+        Path source = createTree();
+        Path archive = source.resolve("results.zip");
+        Files.createFile(archive);
+        new ArchiveBuilder(ArchiveBuilder.Format.ZIP)
+                .addFile(source.resolve("empty.txt"), "first.txt")
+                .addFile(source.resolve("data.gz"), "first.txt")
+                .addDirectory(source, "")
+                .build(archive);
+
+        try (ZipFile zipFile = new ZipFile(archive.toFile())) {
+            List<String> names = zipFile.stream().map(ZipEntry::getName).collect(Collectors.toList());
+            Assert.assertEquals(names.get(0), "first.txt");
+            Assert.assertEquals(zipFile.getEntry("first.txt").getSize(), 0);
+            Assert.assertFalse(names.contains("results.zip"), "The archive should not contain itself.");
+            Assert.assertEquals(names.stream().distinct().count(), names.size());
+        }
+    }
+
+    @Test(description = "Writes more entries than the zip format has room for without the zip64 extensions")
+    public void testZip64Entries() throws IOException {
+        Path file = Files.write(directory.resolve("line.txt"), "INFO line\n".getBytes(StandardCharsets.UTF_8));
+        ArchiveBuilder archiveBuilder = new ArchiveBuilder(ArchiveBuilder.Format.ZIP);
+        int entries = 70000;
+        for (int i = 0; i < entries; i++) {
+            archiveBuilder.addFile(file, "lines/" + i + ".txt");
+        }
+        Path archive = directory.resolve("lines.zip");
+        archiveBuilder.build(archive);
+
+        try (ZipFile zipFile = new ZipFile(archive.toFile())) {
+            Assert.assertEquals(zipFile.size(), entries);
+            ZipEntry last = zipFile.getEntry("lines/" + (entries - 1) + ".txt");
+            try (InputStream inputStream = zipFile.getInputStream(last)) {
+                Assert.assertEquals(new String(IOUtils.toByteArray(inputStream), StandardCharsets.UTF_8),
+                        "INFO line\n");
+            }
+        }
+    }
+
+    @Test(description = "Zips a generated tree of logs and binaries with a single ZipOutputStream, as FileUtil did, "
+            + "and with the archive builder of a single and of as many workers as processors")
+    public void testZipBenchmark() throws IOException {
+        Path source = Files.createDirectories(directory.resolve("outputs"));
+        Random random = new Random(2018);
+        long written = 0;
+        for (int file = 0; written < BENCHMARK_SIZE; file++) {
+            long size = Math.min(BENCHMARK_FILE_SIZE, BENCHMARK_SIZE - written);
+            Path instanceDir = Files.createDirectories(source.resolve("instance-" + (file % 8)));
+            switch (file % 4) {
+                case 0:
+                    writeRandom(instanceDir.resolve("heap-" + file + ".png"), size, random);
+                    break;
+                case 1:
+                    writeRandom(instanceDir.resolve("core-" + file + ".bin"), size, random);
+                    break;
+                default:
+                    writeLog(instanceDir.resolve("wso2carbon-" + file + ".log"), size, random);
+            }
+            written += size;
+        }
+
+        Path sequentialArchive = directory.resolve("sequential.zip");
+        long start = System.nanoTime();
+        zipSequentially(source, sequentialArchive);
+        long sequentialMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Path streamedArchive = directory.resolve("streamed.zip");
+        start = System.nanoTime();
+        new ArchiveBuilder(ArchiveBuilder.Format.ZIP, 1).addDirectory(source, "").build(streamedArchive);
+        long streamedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Path archive = directory.resolve("parallel.zip");
+        start = System.nanoTime();
+        new ArchiveBuilder(ArchiveBuilder.Format.ZIP).addDirectory(source, "").build(archive);
+        long parallelMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        logger.info(String.format("Zipping %d MB: %d ms and %d MB with a ZipOutputStream, %d ms with the archive "
+                        + "builder of a single worker, %d ms and %d MB with the archive builder of %d workers",
+                written >> 20, sequentialMillis, Files.size(sequentialArchive) >> 20, streamedMillis, parallelMillis,
+                Files.size(archive) >> 20, Runtime.getRuntime().availableProcessors()));
+        assertSameEntries(sequentialArchive, streamedArchive);
+        assertSameEntries(sequentialArchive, archive);
+    }
+
+    private static void assertSameEntries(Path expectedArchive, Path archive) throws IOException {
+        try (ZipFile expected = new ZipFile(expectedArchive.toFile());
+             ZipFile actual = new ZipFile(archive.toFile())) {
+            Assert.assertEquals(actual.size(), expected.size());
+            expected.stream().forEach(entry -> {
+                ZipEntry actualEntry = actual.getEntry(entry.getName());
+                Assert.assertNotNull(actualEntry, "Missing entry " + entry.getName() + " in " + archive);
+                Assert.assertEquals(actualEntry.getSize(), entry.getSize());
+                Assert.assertEquals(actualEntry.getCrc(), entry.getCrc());
+            });
+        }
+    }
+
+    /**
+     * Creates a tree of a log, an empty file, an already compressed file, and a file of a long name.
+     */
+    private Path createTree() throws IOException {
+        Path source = Files.createDirectories(directory.resolve("source"));
+        Path logFile = source.resolve("logs").resolve("wso2carbon.log");
+        Files.createDirectories(logFile.getParent());
+        writeLog(logFile, 3 * 1024 * 1024, new Random(7));
+        Files.createFile(source.resolve("empty.txt"));
+        byte[] random = new byte[100000];
+        new Random(11).nextBytes(random);
+        Files.write(source.resolve("data.gz"), random);
+        Path longFile = source.resolve(LONG_NAME);
+        Files.createDirectories(longFile.getParent());
+        Files.write(longFile, "INFO long name\n".getBytes(StandardCharsets.UTF_8));
+        return source;
+    }
+
+    private static void assertEntries(Map<String, byte[]> entries, Path source, String prefix) throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(source)) {
+            files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        Assert.assertEquals(entries.keySet().stream().collect(Collectors.toList()), files.stream()
+                .map(file -> prefix + source.relativize(file).toString().replace('\\', '/'))
+                .collect(Collectors.toList()));
+        for (Path file : files) {
+            String name = prefix + source.relativize(file).toString().replace('\\', '/');
+            Assert.assertEquals(entries.get(name), Files.readAllBytes(file), "Content of " + name);
+        }
+        Assert.assertTrue(entries.containsKey(prefix + LONG_NAME));
+    }
+
+    /**
+     * Reads the entries of a tar.gz archive, taking the names of the pax headers.
+     */
+    private static Map<String, byte[]> readTarGz(Path archive) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (DataInputStream inputStream = new DataInputStream(new GZIPInputStream(Files.newInputStream(archive)))) {
+            String paxName = null;
+            byte[] header = new byte[512];
+            while (true) {
+                try {
+                    inputStream.readFully(header);
+                } catch (EOFException e) {
+                    break;
+                }
+                if (header[0] == 0) {
+                    continue;
+                }
+                String name = field(header, 0, 100);
+                long size = Long.parseLong(field(header, 124, 12), 8);
+                byte[] content = new byte[(int) size];
+                inputStream.readFully(content);
+                inputStream.readFully(new byte[(int) ((512 - size % 512) % 512)]);
+                if (header[156] == 'x') {
+                    String record = new String(content, StandardCharsets.UTF_8);
+                    paxName = record.substring(record.indexOf("path=") + 5, record.indexOf('\n'));
+                } else {
+                    entries.put(paxName != null ? paxName : name, content);
+                    paxName = null;
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static String field(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8).trim();
+    }
+
+    /**
+     * Zips the files of a directory one after another, as FileUtil did before the archive builder.
+     */
+    private static void zipSequentially(Path source, Path archive) throws IOException {
+        try (ZipOutputStream zipStream = new ZipOutputStream(Files.newOutputStream(archive));
+             Stream<Path> paths = Files.walk(source)) {
+            for (Path path : paths.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                zipStream.putNextEntry(new ZipEntry(source.relativize(path).toString()));
+                Files.copy(path, zipStream);
+                zipStream.closeEntry();
+            }
+        }
+    }
+
+    private static void writeRandom(Path file, long size, Random random) throws IOException {
+        byte[] buffer = new byte[1024 * 1024];
+        try (OutputStream outputStream = Files.newOutputStream(file)) {
+            for (long remaining = size; remaining > 0; remaining -= buffer.length) {
+                random.nextBytes(buffer);
+                outputStream.write(buffer, 0, (int) Math.min(buffer.length, remaining));
+            }
+        }
+    }
+
+    private static void writeLog(Path file, long size, Random random) throws IOException {
+        String[] levels = {"INFO", "DEBUG", "WARN", "ERROR"};
+        long written = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int line = 0; written < size; line++) {
+                String text = String.format("TID: [-1234] [] [2018-03-%02d 10:%02d:%02d,%03d] %5s {org.wso2.carbon"
+                                + ".core.Component%d} - Request %d handled in %d ms%n", 1 + line % 28,
+                        line % 60, random.nextInt(60), random.nextInt(1000), levels[random.nextInt(4)],
+                        random.nextInt(50), random.nextInt(), random.nextInt(5000));
+                int length = (int) Math.min(text.length(), size - written);
+                writer.write(text, 0, length);
+                written += length;
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.common.util;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the sharing of the S3 clients of {@link S3ClientRegistry}, and compares the time it takes to upload
+ * {@value #UPLOADS} small objects with a client built for each upload and with the shared client.
+ * <p>
+ * The uploads go to an S3 stand-in in this JVM, through the endpoint override.
+ *
+ * @since 1.0.0
+ */
+public class S3ClientRegistryTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3ClientRegistryTest.class);
+    private static final String REGION = "us-east-1";
+    private static final String BUCKET = "testgrid-artifacts";
+    private static final String ACCESS_KEY = "access-key";
+    private static final String SECRET_KEY = "secret-key";
+    private static final int UPLOADS = 1000;
+    private static final String STREAMING_PAYLOAD = "STREAMING-AWS4-HMAC-SHA256-PAYLOAD";
+
+    private HttpServer server;
+    private String endpoint;
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            try (InputStream inputStream = exchange.getRequestBody()) {
+                byte[] content = IOUtils.toByteArray(inputStream);
+                if (STREAMING_PAYLOAD.equals(exchange.getRequestHeaders().getFirst("x-amz-content-sha256"))) {
+                    content = decodeChunks(content);
+                }
+                if ("PUT".equals(exchange.getRequestMethod())) {
+                    objects.put(exchange.getRequestURI().getPath(), content);
+                    exchange.getResponseHeaders().add("ETag", "\"" + md5Hex(content) + "\"");
+                    exchange.sendResponseHeaders(200, -1);
+                } else {
+                    exchange.sendResponseHeaders(501, -1);
+                }
+            } finally {
+                exchange.close();
+            }
+        });
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.start();
+        endpoint = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterClass
+    public void tearDown() {
+        S3ClientRegistry.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    public void testSharedClients() {
+        AmazonS3 client = S3ClientRegistry.getClient(REGION, endpoint, ACCESS_KEY, SECRET_KEY);
+        Assert.assertSame(S3ClientRegistry.getClient(REGION, endpoint, ACCESS_KEY, SECRET_KEY), client);
+        Assert.assertNotSame(S3ClientRegistry.getClient(REGION, endpoint, "other-access-key", SECRET_KEY), client);
+        Assert.assertNotSame(S3ClientRegistry.getClient("eu-west-1", endpoint, ACCESS_KEY, SECRET_KEY), client);
+        Assert.assertNotSame(S3ClientRegistry.getClient(REGION, null, ACCESS_KEY, SECRET_KEY), client);
+
+        S3ClientRegistry.shutdown();
+        Assert.assertNotSame(S3ClientRegistry.getClient(REGION, endpoint, ACCESS_KEY, SECRET_KEY), client,
+                "A client should be built anew after the registry is shut down.");
+    }
+
+    @Test(description = "Uploads small objects to the S3 stand-in, with a new client for each upload as "
+            + "S3StorageUtil did, and with the shared client")
+    public void testUploadBenchmark() {
+        // Warm up both ways, so that the first measurement does not include the class loading.
+        uploadWithNewClients("warm-up/new", 20);
+        uploadWithSharedClient("warm-up/shared", 20);
+
+        long start = System.nanoTime();
+        uploadWithNewClients("new", UPLOADS);
+        long newClientsMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        start = System.nanoTime();
+        uploadWithSharedClient("shared", UPLOADS);
+        long sharedClientMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        logger.info(String.format("Uploading %d objects: %d ms with a new client each, %d ms with the shared client",
+                UPLOADS, newClientsMillis, sharedClientMillis));
+        Assert.assertEquals(new String(objects.get("/" + BUCKET + "/shared/" + (UPLOADS - 1) + ".txt"),
+                StandardCharsets.UTF_8), "INFO uploaded " + (UPLOADS - 1));
+        Assert.assertEquals(objects.keySet().stream().filter(key -> key.startsWith("/" + BUCKET + "/new/")).count(),
+                UPLOADS);
+    }
+
+    private void uploadWithNewClients(String prefix, int uploads) {
+        for (int i = 0; i < uploads; i++) {
+            AmazonS3 client = S3ClientRegistry.buildClient(REGION, endpoint, ACCESS_KEY, SECRET_KEY);
+            try {
+                client.putObject(BUCKET, prefix + "/" + i + ".txt", "INFO uploaded " + i);
+            } finally {
+                client.shutdown();
+            }
+        }
+    }
+
+    private void uploadWithSharedClient(String prefix, int uploads) {
+        for (int i = 0; i < uploads; i++) {
+            S3ClientRegistry.getClient(REGION, endpoint, ACCESS_KEY, SECRET_KEY)
+                    .putObject(BUCKET, prefix + "/" + i + ".txt", "INFO uploaded " + i);
+        }
+    }
+
+    /**
+     * Decodes a signed chunked payload, of which each chunk is {@code <hex size>;chunk-signature=<sig>\r\n<data>\r\n}.
+     */
+    private static byte[] decodeChunks(byte[] payload) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream(payload.length);
+        int position = 0;
+        while (position < payload.length) {
+            int lineEnd = position;
+            while (payload[lineEnd] != '\r') {
+                lineEnd++;
+            }
+            String header = new String(payload, position, lineEnd - position, StandardCharsets.US_ASCII);
+            int size = Integer.parseInt(header.substring(0, header.indexOf(';')), 16);
+            if (size == 0) {
+                break;
+            }
+            content.write(payload, lineEnd + 2, size);
+            position = lineEnd + 2 + size + 2;
+        }
+        return content.toByteArray();
+    }
+
+    private static String md5Hex(byte[] content) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("MD5").digest(content)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+}
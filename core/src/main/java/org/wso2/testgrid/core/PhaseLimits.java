@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.core;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Limits the number of test plans executing each phase at the same time, e.g. at most two infrastructure
+ * creations at once while other test plans are deploying or running tests.
+ *
+ * @since 1.0.0
+ */
+public class PhaseLimits {
+
+    /**
+     * Limits which do not restrict any phase.
+     */
+    public static final PhaseLimits UNLIMITED = new PhaseLimits(0, 0, 0);
+
+    private final Map<Stage, Semaphore> permits = new EnumMap<>(Stage.class);
+
+    /**
+     * Creates phase limits. A limit of zero or less does not restrict the phase.
+     *
+     * @param infraLimit  number of test plans which may provision infrastructure at once
+     * @param deployLimit number of test plans which may create deployments at once
+     * @param testLimit   number of test plans which may run tests at once
+     */
+    public PhaseLimits(int infraLimit, int deployLimit, int testLimit) {
+        addLimit(Stage.INFRA, infraLimit);
+        addLimit(Stage.DEPLOY, deployLimit);
+        addLimit(Stage.TEST, testLimit);
+    }
+
+    private void addLimit(Stage stage, int limit) {
+        if (limit > 0) {
+            permits.put(stage, new Semaphore(limit, true));
+        }
+    }
+
+    /**
+     * Runs the given action of a phase once the limit of the phase allows it.
+     *
+     * @param stage  phase of the action
+     * @param action action to run
+     * @param <T>    type of the action result
+     * @param <E>    type of the exception thrown by the action
+     * @return result of the action
+     * @throws E                    thrown by the action
+     * @throws InterruptedException thrown when interrupted while waiting for the limit
+     */
+    public <T, E extends Exception> T run(Stage stage, StageAction<T, E> action) throws E, InterruptedException {
+        Semaphore semaphore = permits.get(stage);
+        if (semaphore == null) {
+            return action.run();
+        }
+        semaphore.acquire();
+        try {
+            return action.run();
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    /**
+     * Phases of a test plan execution.
+     */
+    public enum Stage {
+        INFRA, DEPLOY, TEST
+    }
+
+    /**
+     * Action of a phase.
+     *
+     * @param <T> type of the action result
+     * @param <E> type of the exception thrown by the action
+     */
+    @FunctionalInterface
+    public interface StageAction<T, E extends Exception> {
+
+        /**
+         * Runs the action.
+         *
+         * @return result of the action
+         * @throws E thrown when the action fails
+         */
+        T run() throws E;
+    }
+}
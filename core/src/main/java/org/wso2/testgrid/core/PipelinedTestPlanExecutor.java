@@ -0,0 +1,418 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.testgrid.common.TestPlan;
+import org.wso2.testgrid.common.TestPlanStatus;
+import org.wso2.testgrid.common.config.InfrastructureConfig;
+import org.wso2.testgrid.common.config.Script;
+import org.wso2.testgrid.common.util.StringUtil;
+import org.wso2.testgrid.core.phase.DeployPhase;
+import org.wso2.testgrid.core.phase.InfraPhase;
+import org.wso2.testgrid.core.phase.TestPhase;
+import org.wso2.testgrid.dao.EntityManagerHelper;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+/**
+ * Executes a list of test plans with the infrastructure of the next test plans provisioned while the earlier test
+ * plans are deployed and tested.
+ * <p>
+ * The test plans are deployed and tested one at a time, in order. Up to {@code lookAhead} test plans after the one
+ * being tested may have their infrastructure provisioned ahead of time, as long as the resource units held by the
+ * provisioned infrastructure stay within the configured limit. A test plan holds its resource units from the start
+ * of the infrastructure provisioning until its infrastructure is released. The infrastructure of a test plan which is
+ * cancelled after it was provisioned is released without deploying or testing it.
+ *
+ * @since 1.0.0
+ */
+public class PipelinedTestPlanExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(PipelinedTestPlanExecutor.class);
+
+    private final int lookAhead;
+    private final int maxResourceUnits;
+    private final ToIntFunction<TestPlan> resourceUnits;
+    private final Stages stages;
+
+    private final Set<String> cancelled = new HashSet<>();
+    private List<Slot> slots = new ArrayList<>();
+    private int head;
+    private int nextToProvision;
+    private int usedResourceUnits;
+    private boolean testing;
+
+    /**
+     * Creates an executor running the phases of the test plans, where each test plan takes the resource units
+     * given by {@link #getResourceUnits(TestPlan)}.
+     *
+     * @param lookAhead        number of test plans whose infrastructure may be provisioned ahead of the test plan
+     *                         being tested
+     * @param maxResourceUnits number of resource units the provisioned infrastructure may hold at once; zero or less
+     *                         for no limit
+     */
+    public PipelinedTestPlanExecutor(int lookAhead, int maxResourceUnits) {
+        this(lookAhead, maxResourceUnits, PipelinedTestPlanExecutor::getResourceUnits, new PhaseStages());
+    }
+
+    /**
+     * Creates an executor running the given stages.
+     *
+     * @param lookAhead        number of test plans whose infrastructure may be provisioned ahead of the test plan
+     *                         being tested
+     * @param maxResourceUnits number of resource units the provisioned infrastructure may hold at once; zero or less
+     *                         for no limit
+     * @param resourceUnits    resource units held by the infrastructure of a test plan
+     * @param stages           stages of a test plan
+     */
+    public PipelinedTestPlanExecutor(int lookAhead, int maxResourceUnits, ToIntFunction<TestPlan> resourceUnits,
+                                     Stages stages) {
+        if (lookAhead < 0) {
+            throw new IllegalArgumentException("Look-ahead should not be negative: " + lookAhead);
+        }
+        this.lookAhead = lookAhead;
+        this.maxResourceUnits = maxResourceUnits;
+        this.resourceUnits = resourceUnits;
+        this.stages = stages;
+    }
+
+    /**
+     * Returns the resource units held by the infrastructure of the given test plan: the number of infrastructure
+     * scripts it runs to provision, each of which creates a stack of its own.
+     *
+     * @param testPlan test plan
+     * @return resource units, at least one
+     */
+    public static int getResourceUnits(TestPlan testPlan) {
+        InfrastructureConfig infrastructureConfig = testPlan.getInfrastructureConfig();
+        InfrastructureConfig.Provisioner provisioner = infrastructureConfig == null ? null :
+                infrastructureConfig.getFirstProvisioner();
+        if (provisioner == null || provisioner.getScripts() == null) {
+            return 1;
+        }
+        long scripts = provisioner.getScripts().stream()
+                .filter(script -> !Script.Phase.DESTROY.equals(script.getPhase()))
+                .count();
+        return (int) Math.max(1, scripts);
+    }
+
+    /**
+     * Executes the given test plans. If the calling thread is interrupted, the test plans which are not being tested
+     * are cancelled and their provisioned infrastructure released before returning, with the interrupt status set.
+     *
+     * @param testPlans test plans in the order they should be tested
+     * @return outcome of each test plan by test plan id, in the order of the test plans
+     */
+    public synchronized Map<String, Outcome> execute(List<TestPlan> testPlans) {
+        slots = new ArrayList<>(testPlans.size());
+        for (TestPlan testPlan : testPlans) {
+            slots.add(new Slot(testPlan, Math.max(0, resourceUnits.applyAsInt(testPlan))));
+        }
+        head = 0;
+        nextToProvision = 0;
+        usedResourceUnits = 0;
+        testing = false;
+
+        boolean interrupted = false;
+        ExecutorService infraExecutor = Executors.newFixedThreadPool(lookAhead + 1,
+                newThreadFactory("pipeline-infra-"));
+        ExecutorService testExecutor = Executors.newSingleThreadExecutor(newThreadFactory("pipeline-test-"));
+        try {
+            while (true) {
+                advance(infraExecutor, testExecutor);
+                if (head == slots.size()) {
+                    break;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    logger.warn("Interrupted while executing the test plans. Cancelling the remaining test plans.");
+                    interrupted = true;
+                    for (int i = head; i < slots.size(); i++) {
+                        cancelled.add(slots.get(i).testPlan.getId());
+                    }
+                }
+            }
+        } finally {
+            infraExecutor.shutdown();
+            testExecutor.shutdown();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        Map<String, Outcome> outcomes = new LinkedHashMap<>();
+        for (Slot slot : slots) {
+            outcomes.put(slot.testPlan.getId(), slot.outcome);
+        }
+        cancelled.clear();
+        return outcomes;
+    }
+
+    /**
+     * Cancels the given test plan unless it is already being tested. Infrastructure provisioned for the test plan
+     * ahead of time is released. A test plan may be cancelled before the execution starts.
+     *
+     * @param testPlanId id of the test plan
+     * @return {@code true} if the test plan will not be tested, {@code false} otherwise
+     */
+    public synchronized boolean cancel(String testPlanId) {
+        for (Slot slot : slots) {
+            if (slot.testPlan.getId().equals(testPlanId)) {
+                if (slot.state == SlotState.TESTING) {
+                    return false;
+                }
+                if (slot.state == SlotState.FINISHED) {
+                    return slot.outcome == Outcome.CANCELLED;
+                }
+            }
+        }
+        cancelled.add(testPlanId);
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Starts the stages the test plans are ready for. Must be called holding the lock of this executor.
+     */
+    private void advance(ExecutorService infraExecutor, ExecutorService testExecutor) {
+        for (int i = head; i < slots.size(); i++) {
+            Slot slot = slots.get(i);
+            if (!cancelled.contains(slot.testPlan.getId())) {
+                continue;
+            }
+            if (slot.state == SlotState.PENDING) {
+                logger.info(StringUtil.concatStrings("Test plan ", slot.testPlan.getId(), " was cancelled."));
+                finish(slot, Outcome.CANCELLED);
+            } else if (slot.state == SlotState.PROVISIONED) {
+                release(slot, Outcome.CANCELLED, infraExecutor);
+            }
+        }
+        while (head < slots.size() && slots.get(head).state == SlotState.FINISHED) {
+            head++;
+        }
+
+        if (!testing && head < slots.size() && slots.get(head).state == SlotState.PROVISIONED) {
+            Slot slot = slots.get(head);
+            if (slot.provisionFailed) {
+                release(slot, Outcome.FAILED, infraExecutor);
+            } else {
+                test(slot, testExecutor);
+            }
+        }
+
+        while (nextToProvision < slots.size() && nextToProvision <= head + lookAhead) {
+            Slot slot = slots.get(nextToProvision);
+            if (slot.state == SlotState.PENDING) {
+                boolean withinLimit = maxResourceUnits <= 0 || usedResourceUnits == 0 ||
+                        usedResourceUnits + slot.resourceUnits <= maxResourceUnits;
+                if (!withinLimit) {
+                    break;
+                }
+                provision(slot, infraExecutor);
+            }
+            nextToProvision++;
+        }
+    }
+
+    private void provision(Slot slot, ExecutorService infraExecutor) {
+        slot.state = SlotState.PROVISIONING;
+        usedResourceUnits += slot.resourceUnits;
+        logger.info(StringUtil.concatStrings("Provisioning infrastructure for test plan ", slot.testPlan.getId(),
+                " (", usedResourceUnits, " resource units in use)."));
+        infraExecutor.execute(() -> {
+            boolean provisioned = true;
+            try {
+                stages.provision(slot.testPlan);
+            } catch (Exception e) {
+                logger.error("Error occurred while provisioning infrastructure for test plan " +
+                        slot.testPlan.getId(), e);
+                provisioned = false;
+            }
+            synchronized (this) {
+                slot.provisionFailed = !provisioned;
+                slot.state = SlotState.PROVISIONED;
+                notifyAll();
+            }
+        });
+    }
+
+    private void test(Slot slot, ExecutorService testExecutor) {
+        slot.state = SlotState.TESTING;
+        testing = true;
+        testExecutor.execute(() -> {
+            boolean success = false;
+            try {
+                success = stages.deployAndTest(slot.testPlan);
+            } catch (Exception e) {
+                logger.error("Error occurred while executing test plan " + slot.testPlan.getId(), e);
+            }
+            synchronized (this) {
+                testing = false;
+                finish(slot, success ? Outcome.SUCCEEDED : Outcome.FAILED);
+                notifyAll();
+            }
+        });
+    }
+
+    private void release(Slot slot, Outcome outcome, ExecutorService infraExecutor) {
+        slot.state = SlotState.RELEASING;
+        logger.info(StringUtil.concatStrings("Releasing infrastructure of test plan ", slot.testPlan.getId(),
+                " without testing it."));
+        infraExecutor.execute(() -> {
+            try {
+                stages.release(slot.testPlan);
+            } catch (Exception e) {
+                logger.error("Error occurred while releasing infrastructure of test plan " + slot.testPlan.getId() +
+                        ". The infrastructure need to be manually released/de-allocated.", e);
+            }
+            synchronized (this) {
+                finish(slot, outcome);
+                notifyAll();
+            }
+        });
+    }
+
+    private void finish(Slot slot, Outcome outcome) {
+        if (slot.state != SlotState.PENDING) {
+            usedResourceUnits -= slot.resourceUnits;
+        }
+        slot.state = SlotState.FINISHED;
+        slot.outcome = outcome;
+    }
+
+    private static ThreadFactory newThreadFactory(String namePrefix) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Outcome of a test plan.
+     */
+    public enum Outcome {
+        SUCCEEDED, FAILED, CANCELLED
+    }
+
+    private enum SlotState {
+        PENDING, PROVISIONING, PROVISIONED, TESTING, RELEASING, FINISHED
+    }
+
+    /**
+     * Execution state of a test plan.
+     */
+    private static class Slot {
+        private final TestPlan testPlan;
+        private final int resourceUnits;
+        private SlotState state = SlotState.PENDING;
+        private boolean provisionFailed;
+        private Outcome outcome;
+
+        Slot(TestPlan testPlan, int resourceUnits) {
+            this.testPlan = testPlan;
+            this.resourceUnits = resourceUnits;
+        }
+    }
+
+    /**
+     * Stages of a test plan run by the executor. The stages of a test plan are run on different threads, one after
+     * another.
+     *
+     * @since 1.0.0
+     */
+    public interface Stages {
+
+        /**
+         * Provisions the infrastructure of the test plan.
+         *
+         * @param testPlan test plan
+         * @throws Exception thrown when the infrastructure could not be provisioned
+         */
+        void provision(TestPlan testPlan) throws Exception;
+
+        /**
+         * Deploys and tests the test plan on its provisioned infrastructure, and releases the infrastructure.
+         *
+         * @param testPlan test plan
+         * @return {@code true} if the test plan succeeded, {@code false} otherwise
+         * @throws Exception thrown when the test plan could not be deployed or tested
+         */
+        boolean deployAndTest(TestPlan testPlan) throws Exception;
+
+        /**
+         * Releases the infrastructure of a test plan which is not going to be deployed and tested.
+         *
+         * @param testPlan test plan
+         * @throws Exception thrown when the infrastructure could not be released
+         */
+        void release(TestPlan testPlan) throws Exception;
+    }
+
+    /**
+     * Runs the infrastructure, deployment and test phases of the test plans.
+     *
+     * @since 1.0.0
+     */
+    public static class PhaseStages implements Stages {
+
+        @Override
+        public void provision(TestPlan testPlan) {
+            try {
+                new InfraPhase().execute(testPlan);
+            } finally {
+                EntityManagerHelper.releaseEntityManager();
+            }
+        }
+
+        @Override
+        public boolean deployAndTest(TestPlan testPlan) {
+            try {
+                new DeployPhase().execute(testPlan);
+                new TestPhase().execute(testPlan);
+                return testPlan.getStatus() == TestPlanStatus.SUCCESS;
+            } finally {
+                EntityManagerHelper.releaseEntityManager();
+            }
+        }
+
+        @Override
+        public void release(TestPlan testPlan) throws Exception {
+            try {
+                new InfraPhase().releaseInfrastructure(testPlan);
+            } finally {
+                EntityManagerHelper.releaseEntityManager();
+            }
+        }
+    }
+}
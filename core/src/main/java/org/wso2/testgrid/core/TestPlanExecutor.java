@@ -71,6 +71,19 @@ public class TestPlanExecutor {
         testPhase.setTestScenarioUOW(testScenarioUOW);
     }
 
+    /**
+     * Creates an executor running the given phases.
+     *
+     * @param infraPhase  infrastructure phase
+     * @param deployPhase deployment phase
+     * @param testPhase   test phase
+     */
+    public TestPlanExecutor(InfraPhase infraPhase, DeployPhase deployPhase, TestPhase testPhase) {
+        this.infraPhase = infraPhase;
+        this.deployPhase = deployPhase;
+        this.testPhase = testPhase;
+    }
+
     /**
      * This method executes a given {@link TestPlan}.
      *
@@ -78,9 +91,29 @@ public class TestPlanExecutor {
      * @throws TestPlanExecutorException thrown when error on executing test plan
      */
     public boolean execute(TestPlan testPlan) throws TestPlanExecutorException, TestGridDAOException {
+        return execute(testPlan, PhaseLimits.UNLIMITED);
+    }
+
+    /**
+     * This method executes a given {@link TestPlan}, waiting before each phase until the given limits allow it.
+     *
+     * @param testPlan    an instance of {@link TestPlan} in which the tests should be executed
+     * @param phaseLimits limits on the test plans executing each phase at the same time
+     * @throws TestPlanExecutorException thrown when error on executing test plan
+     */
+    public boolean execute(TestPlan testPlan, PhaseLimits phaseLimits)
+            throws TestPlanExecutorException, TestGridDAOException {
         long startTime = System.currentTimeMillis();
 
-        testPhase.execute(deployPhase.execute(infraPhase.execute(testPlan)));
+        try {
+            phaseLimits.run(PhaseLimits.Stage.INFRA, () -> infraPhase.execute(testPlan));
+            phaseLimits.run(PhaseLimits.Stage.DEPLOY, () -> deployPhase.execute(testPlan));
+            phaseLimits.run(PhaseLimits.Stage.TEST, () -> testPhase.execute(testPlan));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TestPlanExecutorException("Interrupted while waiting to execute the test plan " +
+                    testPlan.getId(), e);
+        }
 
         // Print summary
         printSummary(testPlan, System.currentTimeMillis() - startTime);
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.testgrid.common.TestPlanQueueEntry;
+import org.wso2.testgrid.common.util.StringUtil;
+import org.wso2.testgrid.dao.TestGridDAOException;
+import org.wso2.testgrid.dao.uow.TestPlanQueueUOW;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the test plans of a persistent queue on a bounded pool of workers.
+ * <p>
+ * The next test plan is always taken from the product with the fewest test plans running, and among those from the
+ * product which started a test plan least recently, so that a product with many test plans does not hold back the
+ * others. Entries are taken from the queue in the database before they are run and marked once completed; the
+ * entries a crashed runner did not complete are returned to the queue when the runner resumes with the same
+ * runner id. All the database access happens on the thread calling {@link #run()}.
+ * <p>
+ * An error while accessing the queue does not abort the test plans which are running: no more entries are taken,
+ * and the running test plans are waited for before the error is thrown. An entry which could not be marked as
+ * completed is left running, to be run again when the runner resumes.
+ *
+ * @since 1.0.0
+ */
+public class TestPlanScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(TestPlanScheduler.class);
+
+    /**
+     * Number of times an entry is taken from the queue before it is given up.
+     */
+    public static final int MAX_ATTEMPTS = 2;
+
+    private final TestPlanQueueUOW testPlanQueueUOW;
+    private final String queueName;
+    private final String runnerId;
+    private final boolean resume;
+    private final int workers;
+    private final TestPlanTask task;
+
+    private final Map<String, Integer> runningByProduct = new HashMap<>();
+    private final Map<String, Long> lastStartByProduct = new HashMap<>();
+    private long startCount;
+
+    /**
+     * Creates a scheduler for the given queue.
+     *
+     * @param testPlanQueueUOW unit of work of the queue
+     * @param queueName        name of the queue
+     * @param runnerId         id of this runner, which must be reused to resume after a crash
+     * @param resume           whether the entries this runner id did not complete are returned to the queue first
+     * @param workers          number of test plans run at once
+     * @param task             runs the test plan of an entry
+     */
+    public TestPlanScheduler(TestPlanQueueUOW testPlanQueueUOW, String queueName, String runnerId, boolean resume,
+                             int workers, TestPlanTask task) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Number of workers should be positive: " + workers);
+        }
+        this.testPlanQueueUOW = testPlanQueueUOW;
+        this.queueName = queueName;
+        this.runnerId = runnerId;
+        this.resume = resume;
+        this.workers = workers;
+        this.task = task;
+    }
+
+    /**
+     * Runs the queued test plans until the queue is empty.
+     *
+     * @return number of test plans run by each final state
+     * @throws TestGridDAOException thrown when error on accessing the queue
+     * @throws InterruptedException thrown when interrupted while test plans are running
+     */
+    public Map<TestPlanQueueEntry.State, Integer> run() throws TestGridDAOException, InterruptedException {
+        if (resume) {
+            int requeued = testPlanQueueUOW.requeueUncompleted(queueName, runnerId, MAX_ATTEMPTS);
+            if (requeued > 0) {
+                logger.info(StringUtil.concatStrings("Resuming ", requeued, " test plans of queue ", queueName,
+                        " which runner ", runnerId, " did not complete."));
+            }
+        }
+
+        Map<TestPlanQueueEntry.State, Integer> results = new EnumMap<>(TestPlanQueueEntry.State.class);
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(workers,
+                runnable -> new Thread(runnable, "testplan-runner-" + threadCount.incrementAndGet()));
+        CompletionService<TestPlanQueueEntry.State> completionService =
+                new ExecutorCompletionService<>(executorService);
+        Map<Future<TestPlanQueueEntry.State>, TestPlanQueueEntry> running = new HashMap<>();
+        TestGridDAOException queueError = null;
+        try {
+            while (true) {
+                while (queueError == null && running.size() < workers) {
+                    Optional<TestPlanQueueEntry> next;
+                    try {
+                        next = claimNext();
+                    } catch (TestGridDAOException e) {
+                        logger.error(StringUtil.concatStrings("Error occurred while taking the next test plan of ",
+                                "queue ", queueName, ". Waiting for the ", running.size(),
+                                " running test plans to complete."), e);
+                        queueError = e;
+                        break;
+                    }
+                    if (!next.isPresent()) {
+                        break;
+                    }
+                    TestPlanQueueEntry entry = next.get();
+                    logger.info(StringUtil.concatStrings("Starting test plan ", entry.getTestPlanId(), " of ",
+                            entry.getProductName(), " (", running.size() + 1, "/", workers, " workers busy)."));
+                    running.put(completionService.submit(() -> runEntry(entry)), entry);
+                }
+                if (running.isEmpty()) {
+                    break;
+                }
+                Future<TestPlanQueueEntry.State> completed = completionService.take();
+                TestPlanQueueEntry entry = running.remove(completed);
+                TestPlanQueueEntry.State state = getState(completed, entry);
+                runningByProduct.merge(entry.getProductName(), -1, Integer::sum);
+                results.merge(state, 1, Integer::sum);
+                logger.info(StringUtil.concatStrings("Test plan ", entry.getTestPlanId(), " of ",
+                        entry.getProductName(), " completed: ", state));
+                try {
+                    testPlanQueueUOW.complete(entry, runnerId, state);
+                } catch (TestGridDAOException | RuntimeException e) {
+                    logger.error(StringUtil.concatStrings("Error occurred while marking test plan ",
+                            entry.getTestPlanId(), " of queue ", queueName, " as completed. It is left running, ",
+                            "and will be run again when runner ", runnerId, " resumes."), e);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Entries left running are returned to the queue when the runner resumes with the same runner id.
+            executorService.shutdownNow();
+            throw e;
+        } finally {
+            executorService.shutdown();
+        }
+        if (queueError != null) {
+            throw queueError;
+        }
+        return results;
+    }
+
+    /**
+     * Takes the queued entry of the product with the fewest running test plans, which started a test plan least
+     * recently, from the queue.
+     */
+    private Optional<TestPlanQueueEntry> claimNext() throws TestGridDAOException {
+        List<TestPlanQueueEntry> queued = new ArrayList<>(testPlanQueueUOW.getQueuedEntries(queueName));
+        while (!queued.isEmpty()) {
+            Optional<TestPlanQueueEntry> next = selectNext(queued, runningByProduct, lastStartByProduct);
+            if (!next.isPresent()) {
+                return next;
+            }
+            TestPlanQueueEntry entry = next.get();
+            queued.remove(entry);
+            if (testPlanQueueUOW.claim(entry, runnerId)) {
+                runningByProduct.merge(entry.getProductName(), 1, Integer::sum);
+                lastStartByProduct.put(entry.getProductName(), ++startCount);
+                return next;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Selects the next entry to run from the given queued entries, which are in queue order.
+     *
+     * @param queued             queued entries
+     * @param runningByProduct   number of running test plans of each product
+     * @param lastStartByProduct sequence number of the last test plan started for each product
+     * @return first queued entry of the selected product
+     */
+    static Optional<TestPlanQueueEntry> selectNext(List<TestPlanQueueEntry> queued,
+                                                   Map<String, Integer> runningByProduct,
+                                                   Map<String, Long> lastStartByProduct) {
+        Comparator<TestPlanQueueEntry> fairness = Comparator
+                .<TestPlanQueueEntry>comparingInt(entry -> runningByProduct.getOrDefault(entry.getProductName(), 0))
+                .thenComparingLong(entry -> lastStartByProduct.getOrDefault(entry.getProductName(), 0L));
+        // min returns the first of equal entries, hence the oldest entry of the selected product.
+        return queued.stream().min(fairness);
+    }
+
+    private TestPlanQueueEntry.State runEntry(TestPlanQueueEntry entry) {
+        try {
+            return task.run(entry) ? TestPlanQueueEntry.State.SUCCEEDED : TestPlanQueueEntry.State.FAILED;
+        } catch (Exception e) {
+            logger.error("Error occurred while running the test plan " + entry.getTestPlanId(), e);
+            return TestPlanQueueEntry.State.FAILED;
+        }
+    }
+
+    private static TestPlanQueueEntry.State getState(Future<TestPlanQueueEntry.State> completed,
+                                                     TestPlanQueueEntry entry) throws InterruptedException {
+        try {
+            return completed.get();
+        } catch (ExecutionException e) {
+            logger.error("Error occurred while running the test plan " + entry.getTestPlanId(), e.getCause());
+            return TestPlanQueueEntry.State.FAILED;
+        }
+    }
+
+    /**
+     * Runs the test plan of a queue entry.
+     *
+     * @since 1.0.0
+     */
+    @FunctionalInterface
+    public interface TestPlanTask {
+
+        /**
+         * Runs the test plan of the given entry.
+         *
+         * @param entry queue entry
+         * @return {@code true} if the test plan succeeded, {@code false} otherwise
+         * @throws Exception thrown when the test plan could not be run
+         */
+        boolean run(TestPlanQueueEntry entry) throws Exception;
+    }
+}
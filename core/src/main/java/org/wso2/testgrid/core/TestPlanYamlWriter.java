@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.core;
+
+import org.wso2.testgrid.common.TestPlan;
+import org.wso2.testgrid.common.util.StringUtil;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.emitter.Emitter;
+import org.yaml.snakeyaml.events.DocumentEndEvent;
+import org.yaml.snakeyaml.events.DocumentStartEvent;
+import org.yaml.snakeyaml.events.ImplicitTuple;
+import org.yaml.snakeyaml.events.MappingEndEvent;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.events.SequenceEndEvent;
+import org.yaml.snakeyaml.events.SequenceStartEvent;
+import org.yaml.snakeyaml.events.StreamEndEvent;
+import org.yaml.snakeyaml.events.StreamStartEvent;
+import org.yaml.snakeyaml.introspector.Property;
+import org.yaml.snakeyaml.nodes.AnchorNode;
+import org.yaml.snakeyaml.nodes.MappingNode;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.NodeTuple;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.SequenceNode;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.representer.Representer;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes test plans as YAML files.
+ * <p>
+ * The YAML events of a test plan are streamed to the file without anchors, aliases or class tags, so that the file
+ * can be read by any YAML parser. Objects referenced more than once are written in full each time, and references
+ * back to an enclosing object are written as null. The class of the test plan is written as a comment on the first
+ * line. Null properties are left out.
+ *
+ * @since 1.0.0
+ */
+public class TestPlanYamlWriter {
+
+    /**
+     * Tags of the scalars which are written as they are; other tags are class tags, which are left out.
+     */
+    private static final Set<Tag> SCALAR_TAGS = new HashSet<>(Arrays.asList(Tag.STR, Tag.INT, Tag.FLOAT, Tag.BOOL,
+            Tag.NULL, Tag.TIMESTAMP, Tag.BINARY));
+
+    private final DumperOptions options;
+    private final Resolver resolver = new Resolver();
+    // Representers keep state while representing an object, hence one is used per thread.
+    private final ThreadLocal<Yaml> yaml;
+
+    /**
+     * Constructs a writer which writes the collections of test plans in the block style.
+     */
+    public TestPlanYamlWriter() {
+        options = new DumperOptions();
+        options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+        options.setPrettyFlow(true);
+        yaml = ThreadLocal.withInitial(() -> new Yaml(new NullRepresenter(), options));
+    }
+
+    /**
+     * Writes the given test plans to the given files, with up to the given number of files written at once.
+     *
+     * @param testPlans   test plans to write
+     * @param files       files to write the test plans to, in the same order
+     * @param parallelism number of files written at once
+     * @throws IOException thrown when a file could not be written
+     */
+    public void writeAll(List<TestPlan> testPlans, List<Path> files, int parallelism) throws IOException {
+        if (testPlans.size() != files.size()) {
+            throw new IllegalArgumentException(StringUtil.concatStrings("Got ", files.size(), " files for ",
+                    testPlans.size(), " test plans."));
+        }
+        int threads = Math.max(1, Math.min(parallelism, testPlans.size()));
+        if (threads == 1) {
+            for (int i = 0; i < testPlans.size(); i++) {
+                write(testPlans.get(i), files.get(i));
+            }
+            return;
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<>(testPlans.size());
+            for (int i = 0; i < testPlans.size(); i++) {
+                TestPlan testPlan = testPlans.get(i);
+                Path file = files.get(i);
+                futures.add(executorService.submit(() -> {
+                    write(testPlan, file);
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error while writing the test plans.", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing the test plans.", e);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes the given test plan to the given file, replacing the file if it exists.
+     *
+     * @param testPlan test plan to write
+     * @param file     file to write the test plan to
+     * @throws IOException thrown when the file could not be written
+     */
+    public void write(TestPlan testPlan, Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            write(testPlan, writer);
+        }
+    }
+
+    /**
+     * Writes the given object as a YAML document to the given writer.
+     *
+     * @param object object to write
+     * @param writer writer to write the document to
+     * @throws IOException thrown when the document could not be written
+     */
+    public void write(Object object, Writer writer) throws IOException {
+        Node node = unwrap(yaml.get().represent(object));
+        if (!SCALAR_TAGS.contains(node.getTag()) && node.getTag().getClassName() != null) {
+            writer.write("#" + node.getTag().getClassName() + options.getLineBreak().getString());
+        }
+        Emitter emitter = new Emitter(writer, options);
+        emitter.emit(new StreamStartEvent(null, null));
+        emitter.emit(new DocumentStartEvent(null, null, options.isExplicitStart(), options.getVersion(),
+                options.getTags()));
+        emit(emitter, node, Collections.newSetFromMap(new IdentityHashMap<>()));
+        emitter.emit(new DocumentEndEvent(null, null, options.isExplicitEnd()));
+        emitter.emit(new StreamEndEvent(null, null));
+        writer.flush();
+    }
+
+    private void emit(Emitter emitter, Node node, Set<Node> enclosingNodes) throws IOException {
+        node = unwrap(node);
+        if (node.getNodeId() == NodeId.scalar) {
+            ScalarNode scalarNode = (ScalarNode) node;
+            Tag tag = SCALAR_TAGS.contains(node.getTag()) ? node.getTag() : Tag.STR;
+            emitScalar(emitter, tag, scalarNode.getValue(), scalarNode.getScalarStyle());
+            return;
+        }
+        if (!enclosingNodes.add(node)) {
+            emitScalar(emitter, Tag.NULL, "null", DumperOptions.ScalarStyle.PLAIN);
+            return;
+        }
+        if (node.getNodeId() == NodeId.sequence) {
+            SequenceNode sequenceNode = (SequenceNode) node;
+            emitter.emit(new SequenceStartEvent(null, null, true, null, null, sequenceNode.getFlowStyle()));
+            for (Node item : sequenceNode.getValue()) {
+                emit(emitter, item, enclosingNodes);
+            }
+            emitter.emit(new SequenceEndEvent(null, null));
+        } else {
+            MappingNode mappingNode = (MappingNode) node;
+            emitter.emit(new MappingStartEvent(null, null, true, null, null, mappingNode.getFlowStyle()));
+            for (NodeTuple tuple : mappingNode.getValue()) {
+                emit(emitter, tuple.getKeyNode(), enclosingNodes);
+                emit(emitter, tuple.getValueNode(), enclosingNodes);
+            }
+            emitter.emit(new MappingEndEvent(null, null));
+        }
+        enclosingNodes.remove(node);
+    }
+
+    private void emitScalar(Emitter emitter, Tag tag, String value, DumperOptions.ScalarStyle style)
+            throws IOException {
+        ImplicitTuple implicit = new ImplicitTuple(tag.equals(resolver.resolve(NodeId.scalar, value, true)),
+                tag.equals(resolver.resolve(NodeId.scalar, value, false)));
+        emitter.emit(new ScalarEvent(null, tag.getValue(), implicit, value, null, null, style));
+    }
+
+    private static Node unwrap(Node node) {
+        return node instanceof AnchorNode ? ((AnchorNode) node).getRealNode() : node;
+    }
+
+    /**
+     * If the value of a given element is null, do not serialize it to disk.
+     */
+    private static class NullRepresenter extends Representer {
+        @Override
+        protected NodeTuple representJavaBeanProperty(Object javaBean, Property property, Object propertyValue,
+                Tag customTag) {
+            // if value of property is null, ignore it.
+            if (propertyValue == null) {
+                return null;
+            } else {
+                return super.representJavaBeanProperty(javaBean, property, propertyValue, customTag);
+            }
+        }
+    }
+}
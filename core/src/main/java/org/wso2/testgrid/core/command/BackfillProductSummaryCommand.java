@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.core.command;
+
+import org.kohsuke.args4j.Option;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.testgrid.common.Product;
+import org.wso2.testgrid.common.exception.CommandExecutionException;
+import org.wso2.testgrid.common.util.StringUtil;
+import org.wso2.testgrid.dao.TestGridDAOException;
+import org.wso2.testgrid.dao.uow.ProductSummaryUOW;
+import org.wso2.testgrid.dao.uow.ProductUOW;
+
+import java.util.Optional;
+
+/**
+ * This command recomputes the precomputed product statuses shown in the dashboard from the test plans in the
+ * database. It needs to be run once after upgrading, and may be run again if the statuses get out of sync.
+ */
+public class BackfillProductSummaryCommand implements Command {
+
+    private static final Logger logger = LoggerFactory.getLogger(BackfillProductSummaryCommand.class);
+
+    @Option(name = "--product",
+            usage = "Product name. The summaries of all the products are recomputed if not given.",
+            aliases = {"-p"})
+    private String productName;
+
+    private final ProductSummaryUOW productSummaryUOW;
+    private final ProductUOW productUOW;
+
+    public BackfillProductSummaryCommand() {
+        this(new ProductSummaryUOW(), new ProductUOW());
+    }
+
+    /**
+     * Creates an instance of {@link BackfillProductSummaryCommand} with the given units of work.
+     *
+     * @param productSummaryUOW unit of work of the product summaries
+     * @param productUOW        unit of work of the products
+     */
+    public BackfillProductSummaryCommand(ProductSummaryUOW productSummaryUOW, ProductUOW productUOW) {
+        this.productSummaryUOW = productSummaryUOW;
+        this.productUOW = productUOW;
+    }
+
+    @Override
+    public void execute() throws CommandExecutionException {
+        try {
+            long start = System.currentTimeMillis();
+            if (StringUtil.isStringNullOrEmpty(productName)) {
+                int count = productSummaryUOW.refreshAllProductSummaries();
+                logger.info(StringUtil.concatStrings("Recomputed the summaries of ", count, " products in ",
+                        System.currentTimeMillis() - start, " ms."));
+            } else {
+                Optional<Product> product = productUOW.getProduct(productName);
+                if (!product.isPresent()) {
+                    throw new CommandExecutionException(
+                            StringUtil.concatStrings("Product ", productName, " does not exist."));
+                }
+                logger.info("Recomputed product summary: " + productSummaryUOW.refreshProductSummary(product.get()));
+            }
+        } catch (TestGridDAOException e) {
+            throw new CommandExecutionException("Error occurred while recomputing the product summaries.", e);
+        }
+    }
+}
@@ -32,6 +32,7 @@ import org.wso2.testgrid.common.exception.CommandExecutionException;
 import org.wso2.testgrid.common.util.S3StorageUtil;
 import org.wso2.testgrid.common.util.StringUtil;
 import org.wso2.testgrid.dao.TestGridDAOException;
+import org.wso2.testgrid.dao.dto.TestPlanCleanupReport;
 import org.wso2.testgrid.dao.uow.TestPlanUOW;
 
 import java.io.IOException;
@@ -45,7 +46,6 @@ import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
@@ -79,6 +79,10 @@ public class CleanUpCommand implements Command {
             required = true)
     private int remainingBuildCount = 100;
 
+    @Option(name = "--dry-run",
+            usage = "Only report the builds that would be deleted")
+    private boolean dryRun = false;
+
 
 
     private TestPlanUOW testPlanUOW;
@@ -123,28 +127,19 @@ public class CleanUpCommand implements Command {
     public void execute() throws CommandExecutionException {
 
         try {
-            List<String> allTestPlans = testPlanUOW.getTestPlansToCleanup(remainingBuildCount);
-            logger.info("number of testplans to delete: " + allTestPlans.size());
-
-
-            logger.info(StringUtil.concatStrings("Clearing S3 files except for the last ",
-                    remainingBuildCount, " builds"));
-            for (String deletingTestPlan : allTestPlans) {
-                deleteS3(deletingTestPlan);
-            }
-
-            logger.info(StringUtil.concatStrings("Deleting test plans from DB except for the last ",
-                    remainingBuildCount, " builds"));
-            testPlanUOW.deleteTestPlans(allTestPlans);
-
-            logger.info(StringUtil.concatStrings("Deleting Grafana Data Sources of test plans except " +
-                    "of the last ", remainingBuildCount, " builds"));
-            for (String deletingTestPlan : allTestPlans) {
-                if (datasource.contains(deletingTestPlan)) {
-                    toDelete.add(deletingTestPlan);
-                    logger.info(deletingTestPlan + " added to delete");
+            logger.info(StringUtil.concatStrings(dryRun ? "Listing" : "Deleting", " test plans, S3 files and Grafana "
+                    + "data sources except for the last ", remainingBuildCount, " builds"));
+            TestPlanCleanupReport report = testPlanUOW.cleanupTestPlans(remainingBuildCount, dryRun, testPlans -> {
+                for (TestPlan testPlan : testPlans) {
+                    deleteS3(testPlan);
+                    if (datasource != null && datasource.contains(testPlan.getId())) {
+                        toDelete.add(testPlan.getId());
+                        logger.info(testPlan.getId() + " added to delete");
+                    }
                 }
-            }
+            });
+            logger.info(report.toString());
+
             if (grafanaUrl != null) {
                 for (String dataSource : toDelete) {
                     logger.info("deleting data source: " + dataSource);
@@ -153,7 +148,7 @@ public class CleanUpCommand implements Command {
             }
 
         } catch (TestGridDAOException e) {
-            throw new CommandExecutionException("error while retrieving the data that needs to be deleted", e);
+            throw new CommandExecutionException("error while deleting the test plans of old builds", e);
         }
     }
 
@@ -256,23 +251,13 @@ public class CleanUpCommand implements Command {
 
     /**
      * This method delete the files in s3 for a given test plan
-     * @param testPlanId tes plan id of which the files need to be deleted
-     * @throws TestGridDAOException
+     * @param testPlan test plan of which the files need to be deleted
      */
-    public void deleteS3(String testPlanId) throws TestGridDAOException {
-
-        Optional<TestPlan> testPlanEntity = testPlanUOW.getTestPlanById(testPlanId);
-        if (testPlanEntity.isPresent()) {
-            TestPlan testPlan = testPlanEntity.get();
-            boolean s3Deleted = S3StorageUtil.deleteTestPlan(testPlan);
-            if (s3Deleted) {
-                logger.info("S3 files deleted for test plan " + testPlanId);
-            }
-        } else {
-            logger.error("Test Plan is deleted from DB. ");
+    private void deleteS3(TestPlan testPlan) {
+        boolean s3Deleted = S3StorageUtil.deleteTestPlan(testPlan);
+        if (s3Deleted) {
+            logger.info("S3 files deleted for test plan " + testPlan.getId());
         }
-
-
     }
 
     /**
@@ -56,6 +56,8 @@ public class CommandHandler extends HelpCommand {
                                      impl = GenerateTestPlanCommand.class),
                          @SubCommand(name = "run-testplan",
                                      impl = RunTestPlanCommand.class),
+                         @SubCommand(name = "run-testplans",
+                                     impl = RunTestPlansCommand.class),
                          @SubCommand(name = "finalize-run-testplan",
                                      impl = FinalizeRunTestplan.class),
                          @SubCommand(name = "generate-report",
@@ -66,6 +68,8 @@ public class CommandHandler extends HelpCommand {
                                      impl = CleanUpCommand.class),
                          @SubCommand(name = "generate-escalation-email",
                                      impl = GenerateEscalationEmailCommand.class),
+                         @SubCommand(name = "backfill-product-summary",
+                                     impl = BackfillProductSummaryCommand.class),
                          @SubCommand(name = "help",
                                      impl = HelpCommand.class)
                  })
@@ -43,7 +43,9 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -176,6 +178,7 @@ public class FinalizeRunTestplan implements Command {
                 testPlan = TestGridUtil.updateFinalTestPlanPhase(testPlan);
                 persistTestPlan(testPlan);
             }
+            refreshProductSummaries(testPlans);
             updateProductStatus();
         } catch (IOException e) {
             logger.error("Error occurred while trying to read " + testPlanYamlFilePath, e);
@@ -199,6 +202,26 @@ public class FinalizeRunTestplan implements Command {
         }
     }
 
+    /**
+     * Refreshes the precomputed statuses of the products of the finalized test plans.
+     *
+     * @param testPlans finalized test plans
+     */
+    private void refreshProductSummaries(List<TestPlan> testPlans) {
+        Map<String, Product> products = new LinkedHashMap<>();
+        for (TestPlan testPlan : testPlans) {
+            Product product = testPlan.getDeploymentPattern().getProduct();
+            products.putIfAbsent(product.getId(), product);
+        }
+        for (Product product : products.values()) {
+            try {
+                testPlanUOW.refreshProductSummary(product);
+            } catch (TestGridDAOException e) {
+                logger.error("Error occurred while refreshing the summary of product " + product.getName(), e);
+            }
+        }
+    }
+
     /**
      * Update the last success timestamp of the product build or last failure timestamp of the product build
      * by considering status of test plans.
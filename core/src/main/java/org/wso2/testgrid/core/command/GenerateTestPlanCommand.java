@@ -41,21 +41,17 @@ import org.wso2.testgrid.common.exception.TestGridRuntimeException;
 import org.wso2.testgrid.common.infrastructure.InfrastructureCombination;
 import org.wso2.testgrid.common.infrastructure.InfrastructureParameter;
 import org.wso2.testgrid.common.util.FileUtil;
-import org.wso2.testgrid.common.util.LambdaExceptionUtils;
 import org.wso2.testgrid.common.util.StringUtil;
 import org.wso2.testgrid.common.util.TestGridUtil;
+import org.wso2.testgrid.core.TestPlanYamlWriter;
 import org.wso2.testgrid.dao.TestGridDAOException;
 import org.wso2.testgrid.dao.uow.DeploymentPatternUOW;
 import org.wso2.testgrid.dao.uow.ProductUOW;
 import org.wso2.testgrid.dao.uow.TestPlanUOW;
 import org.wso2.testgrid.infrastructure.InfrastructureCombinationsProvider;
 import org.wso2.testgrid.logging.plugins.LogFilePathLookup;
-import org.yaml.snakeyaml.DumperOptions;
 import org.yaml.snakeyaml.Yaml;
 import org.yaml.snakeyaml.constructor.Constructor;
-import org.yaml.snakeyaml.introspector.Property;
-import org.yaml.snakeyaml.nodes.NodeTuple;
-import org.yaml.snakeyaml.nodes.Tag;
 import org.yaml.snakeyaml.representer.Representer;
 
 import java.io.File;
@@ -66,13 +62,17 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import static org.wso2.testgrid.common.TestGridConstants.DEFAULT_SCHEDULE;
 import static org.wso2.testgrid.common.TestGridConstants.PRODUCT_TEST_PLANS_DIR;
@@ -205,74 +205,75 @@ public class GenerateTestPlanCommand implements Command {
             combinations = infrastructureCombinationsProvider.getCombinations(
                     testgridYaml, DEFAULT_SCHEDULE);
         }
-        List<TestPlan> testPlans = generateTestPlans(combinations, testgridYaml);
+        Map<TestPlan, InfrastructureCombination> testPlanCombinations = new IdentityHashMap<>();
+        List<TestPlan> testPlans = generateTestPlans(combinations, testgridYaml, testPlanCombinations);
 
         Product product = createOrReturnProduct(productName);
         String infraGenDirectory = createTestPlanGenDirectory(jobConfigFile);
 
-        // Save test plans to file-system
-        Yaml yaml = createYamlInstance();
-        // print paths to test plans if total is less than 5
-        boolean printTestPlanPaths = testPlans.size() <= MAXIMUM_TEST_PLANS_TO_PRINT;
-        StringBuilder testPlanPaths = new StringBuilder();
-        if (printTestPlanPaths) {
-            testPlanPaths.append("Generated test-plans: ").append(System.lineSeparator());
-        } else {
-            logger.info(StringUtil.concatStrings("Generated ", testPlans.size(), " plans. Test plans dir: ",
-                    infraGenDirectory));
+        // Generate test plans from config, resolving the deployment patterns and test run numbers once
+        Map<String, DeploymentPattern> deploymentPatterns = getDeploymentPatterns(product, testPlans);
+        Map<String, Map<String, Integer>> latestTestRunNumbers =
+                testPlanUOW.getLatestTestRunNumbers(deploymentPatterns.values());
+        List<TestPlan> testPlanEntities = new ArrayList<>(testPlans.size());
+        for (TestPlan testPlan : testPlans) {
+            DeploymentPattern deploymentPattern = deploymentPatterns.get(
+                    TestGridUtil.getDeploymentPatternName(testPlan));
+            TestPlan testPlanEntity = TestGridUtil.toTestPlanEntity(deploymentPattern, testPlan,
+                    latestTestRunNumbers.computeIfAbsent(deploymentPattern.getId(), id -> new HashMap<>()));
+            if (!testPlan.getDeploymentConfig().getDeploymentPatterns().isEmpty()) {
+                testPlanEntity.setId(TestGridUtil.deriveTestPlanId(testPlanCombinations.get(testPlan),
+                        deploymentPattern, testPlanEntity.getTestRunNumber()));
+            }
+            testPlanEntities.add(testPlanEntity);
         }
+        // Product, deployment pattern, test plan and test scenarios should be persisted
+        List<TestPlan> persistedTestPlans = testPlanUOW.insertTestPlans(testPlanEntities);
+
+        // Save test plans to file-system
+        List<Path> testPlanFiles = new ArrayList<>(testPlans.size());
+        List<String> testPlanIds = new ArrayList<>(testPlans.size());
         for (int i = 0; i < testPlans.size(); i++) {
             TestPlan testPlan = testPlans.get(i);
-            DeploymentPattern deploymentPattern = getDeploymentPattern(product,
-                    TestGridUtil.getDeploymentPatternName(testPlan));
-
-            // Generate test plan from config
-            TestPlan testPlanEntity = TestGridUtil.toTestPlanEntity(deploymentPattern, testPlan);
-            // Product, deployment pattern, test plan and test scenarios should be persisted
-            TestPlan persistedTestPlan = testPlanUOW.persistTestPlan(testPlanEntity);
+            TestPlan persistedTestPlan = persistedTestPlans.get(i);
             testPlan.setId(persistedTestPlan.getId());
             testPlan.setTestRunNumber(persistedTestPlan.getTestRunNumber());
             //Need to set this as converting to TestPlan entity changes deployerType based on infra provisioner.
             testPlan.setDeployerType(persistedTestPlan.getDeployerType());
-
-            String yamlFileName = String
-                    .format("%s-%02d%s", TestGridConstants.TEST_PLAN_YAML_PREFIX, (i + 1), FileUtil.YAML_EXTENSION);
             testPlan.setKeyFileLocation(jobConfigFile.getKeyFileLocation());
             testPlan.setJobProperties(jobConfigFile.getProperties());
-            String output = yaml.dump(testPlan);
-
-            //Remove reference ids from yaml
-            output = output.replaceAll("[&,*]id[0-9]+", "");
-            output = output.replaceAll("!!", "#");
-            try {
-                FileUtil.saveFile(output, infraGenDirectory, yamlFileName, false);
-            } catch (IOException e) {
-                throw new CommandExecutionException("Error while saving Testgrid yaml file.", e);
-            }
 
-            if (printTestPlanPaths) {
-                testPlanPaths.append(Paths.get(infraGenDirectory, yamlFileName)).append(System.lineSeparator());
-            }
+            String yamlFileName = String
+                    .format("%s-%02d%s", TestGridConstants.TEST_PLAN_YAML_PREFIX, (i + 1), FileUtil.YAML_EXTENSION);
+            testPlanFiles.add(Paths.get(infraGenDirectory, yamlFileName));
+            testPlanIds.add(persistedTestPlan.getId());
+        }
+        try {
+            new TestPlanYamlWriter().writeAll(testPlans, testPlanFiles, Runtime.getRuntime().availableProcessors());
+        } catch (IOException e) {
+            throw new CommandExecutionException("Error while saving Testgrid yaml file.", e);
+        }
 
-            persistedTestPlan.setStatus(TestPlanStatus.RUNNING);
-            //Note: Setting Preparation_Succeeded implies the Generate-Test-Plan step is finished.
-            // Therefore new future additions/modifications should be added prior to this line.
-            persistedTestPlan.setPhase(TestPlanPhase.PREPARATION_SUCCEEDED);
-            /*
-             * Test plans of test scenarios should be persisted. This is persisted after building the
-             * yaml to avoid adding unnecessary lines to the test-plan file.
-             */
-            testPlanUOW.persistTestPlan(persistedTestPlan);
-            if (testPlan.getStatus() != null) {
-
-                logger.info("TestPlan Status: " + testPlan.getStatus().toString());
-            }
-            if (testPlan.getPhase() != null) {
-                logger.info("TestPlan Phase: " + testPlan.getPhase().toString());
+        // print paths to test plans if total is less than 5
+        if (testPlans.size() <= MAXIMUM_TEST_PLANS_TO_PRINT) {
+            StringBuilder testPlanPaths = new StringBuilder("Generated test-plans: ");
+            for (Path testPlanFile : testPlanFiles) {
+                testPlanPaths.append(System.lineSeparator()).append(testPlanFile);
             }
+            logger.info(testPlanPaths.toString());
+        } else {
+            logger.info(StringUtil.concatStrings("Generated ", testPlans.size(), " plans. Test plans dir: ",
+                    infraGenDirectory));
         }
-        if (printTestPlanPaths) {
-            logger.info(testPlanPaths.substring(0, testPlanPaths.length() - 1));
+
+        //Note: Setting Preparation_Succeeded implies the Generate-Test-Plan step is finished.
+        // Therefore new future additions/modifications should be added prior to this line.
+        testPlanUOW.updateTestPlanStatuses(testPlanIds, TestPlanStatus.RUNNING, TestPlanPhase.PREPARATION_SUCCEEDED);
+        try {
+            // The new running test plans change the current status of the product.
+            testPlanUOW.refreshProductSummary(product);
+        } catch (TestGridDAOException e) {
+            logger.error("Error occurred while refreshing the summary of product " + product.getName(), e);
         }
         logger.info("");
         logger.info("----------------------End of PREPARATION PHASE--------------------------");
@@ -280,29 +281,25 @@ public class GenerateTestPlanCommand implements Command {
     }
 
     /**
-     * Returns the existing deployment pattern for the given name and product or creates a new deployment pattern for
-     * the given product and deployment pattern name.
+     * Returns the deployment patterns of the given test plans by name, creating the ones which do not exist for the
+     * given product.
      *
-     * @param product               product to get deployment pattern
-     * @param deploymentPatternName deployment pattern name
-     * @return deployment pattern for the given product and deployment pattern name
-     * @throws CommandExecutionException thrown when error on retrieving deployment pattern
+     * @param product   product to get deployment patterns
+     * @param testPlans test plans generated from the testgrid.yaml
+     * @return deployment patterns of the test plans by name
+     * @throws CommandExecutionException thrown when error on retrieving deployment patterns
      */
-    private DeploymentPattern getDeploymentPattern(Product product, String deploymentPatternName)
+    private Map<String, DeploymentPattern> getDeploymentPatterns(Product product, List<TestPlan> testPlans)
             throws CommandExecutionException {
+        List<String> deploymentPatternNames = testPlans.stream()
+                .map(TestGridUtil::getDeploymentPatternName)
+                .collect(Collectors.toList());
         try {
-            Optional<DeploymentPattern> optionalDeploymentPattern =
-                    deploymentPatternUOW.getDeploymentPattern(product, deploymentPatternName);
-
-            if (optionalDeploymentPattern.isPresent()) {
-                return optionalDeploymentPattern.get();
-            }
-
-            return deploymentPatternUOW.persistDeploymentPattern(product, deploymentPatternName);
+            return deploymentPatternUOW.getOrCreateDeploymentPatterns(product, deploymentPatternNames);
         } catch (TestGridDAOException e) {
             throw new CommandExecutionException(StringUtil
-                    .concatStrings("Error while retrieving deployment pattern for { product: ", product,
-                            ", deploymentPatternName: ", deploymentPatternName, "}"), e);
+                    .concatStrings("Error while retrieving deployment patterns for { product: ", product,
+                            ", deploymentPatternNames: ", deploymentPatternNames, "}"), e);
         }
     }
 
@@ -434,19 +431,6 @@ public class GenerateTestPlanCommand implements Command {
         }
     }
 
-    /**
-     * Creates and returns a {@link Yaml} instance that
-     * does not include null values when dumping a yaml object.
-     *
-     * @return {@link Yaml} instance
-     */
-    private Yaml createYamlInstance() {
-        DumperOptions options = new DumperOptions();
-        options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
-        options.setPrettyFlow(true);
-        return new Yaml(new NullRepresenter(), options);
-    }
-
     /**
      * Generates a set of {@link org.wso2.testgrid.common.TestPlan}s from the {@link TestgridYaml}.
      * Here, we generate a TestPlan:
@@ -454,10 +438,11 @@ public class GenerateTestPlanCommand implements Command {
      *
      * @param infrastructureCombinations Set of infrastructure combination from which test-plans will be generated.
      * @param testgridYaml               The testgrid.yaml configuration file's object model.
+     * @param testPlanCombinations       Map to which the infrastructure combination of each test-plan is added.
      * @return list of test-plans that instructs how a test-run need to be executed.
      */
     private List<TestPlan> generateTestPlans(Set<InfrastructureCombination> infrastructureCombinations,
-            TestgridYaml testgridYaml) {
+            TestgridYaml testgridYaml, Map<TestPlan, InfrastructureCombination> testPlanCombinations) {
         List<TestPlan> testConfigurations = new ArrayList<>();
         List<Provisioner> provisioners = testgridYaml.getInfrastructureConfig()
                 .getProvisioners();
@@ -475,18 +460,10 @@ public class GenerateTestPlanCommand implements Command {
                 Properties configAwareInfraCombination = toConfigAwareInfrastructureCombination(
                         combination.getParameters());
                 testPlan.getInfrastructureConfig().setParameters(configAwareInfraCombination);
-                deploymentPattern.ifPresent(LambdaExceptionUtils.rethrowConsumer(dp -> {
+                deploymentPattern.ifPresent(dp -> {
                     setUniqueNamesFor(dp.getScripts());
                     testPlan.setDeploymentConfig(new DeploymentConfig(Collections.singletonList(dp)));
-                    try {
-                        testPlan.setId(TestGridUtil.deriveTestPlanId(testPlan, combination,
-                                getDeploymentPattern(createOrReturnProduct(productName), dp.getName())));
-                    } catch (CommandExecutionException e) {
-                        throw new CommandExecutionException(StringUtil
-                                .concatStrings("Error in generating test-plan id. Can not create/find " +
-                                        "product by product-name " + productName), e);
-                    }
-                }));
+                });
 
                 Properties infrastructureProperties = new Properties();
                 for (InfrastructureParameter infraParam: combination.getParameters()) {
@@ -508,6 +485,7 @@ public class GenerateTestPlanCommand implements Command {
                 testPlan.setConfigChangeSetRepository(testgridYaml.getConfigChangeSetRepository());
                 testPlan.setConfigChangeSetBranchName(testgridYaml.getConfigChangeSetBranchName());
                 testConfigurations.add(testPlan);
+                testPlanCombinations.put(testPlan, combination);
             }
         }
         return testConfigurations;
@@ -602,22 +580,6 @@ public class GenerateTestPlanCommand implements Command {
         }
     }
 
-    /**
-     * If the value of a given element is null, do not serialize it to disk.
-     */
-    private static class NullRepresenter extends Representer {
-        @Override
-        protected NodeTuple representJavaBeanProperty(Object javaBean, Property property, Object propertyValue,
-                Tag customTag) {
-            // if value of property is null, ignore it.
-            if (propertyValue == null) {
-                return null;
-            } else {
-                return super.representJavaBeanProperty(javaBean, property, propertyValue, customTag);
-            }
-        }
-    }
-
     /**
      * Validate the testgridYaml. It must contain at least one infra provisioner, and one scenario.
      * @param testgridYaml TestgridYaml object
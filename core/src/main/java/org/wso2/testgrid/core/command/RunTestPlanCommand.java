@@ -33,6 +33,7 @@ import org.wso2.testgrid.common.exception.TestGridRuntimeException;
 import org.wso2.testgrid.common.util.FileUtil;
 import org.wso2.testgrid.common.util.StringUtil;
 import org.wso2.testgrid.common.util.TestGridUtil;
+import org.wso2.testgrid.core.PhaseLimits;
 import org.wso2.testgrid.core.TestPlanExecutor;
 import org.wso2.testgrid.core.exception.TestPlanExecutorException;
 import org.wso2.testgrid.dao.TestGridDAOException;
@@ -46,6 +47,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -84,6 +86,7 @@ public class RunTestPlanCommand implements Command {
     private DeploymentPatternUOW deploymentPatternUOW;
     private TestPlanUOW testPlanUOW;
     private TestPlanExecutor testPlanExecutor;
+    private Consumer<String> logFilePathSetter = LogFilePathLookup::setLogFilePath;
 
     public RunTestPlanCommand() {
         productUOW = new ProductUOW();
@@ -98,6 +101,36 @@ public class RunTestPlanCommand implements Command {
         this.workspace = workspace;
     }
 
+    /**
+     * Creates a command running test plans in the given workspace alongside other test plans. The command logs to
+     * the log file of its test plan from the calling thread only, and must be created on the thread it is run.
+     *
+     * @param workspace product workspace
+     * @param buildURL  Jenkins URL, or null
+     */
+    RunTestPlanCommand(String workspace, String buildURL) {
+        this(workspace, buildURL, new TestPlanUOW(), new TestPlanExecutor());
+    }
+
+    /**
+     * Creates a command running test plans in the given workspace alongside other test plans, with the given unit
+     * of work and executor.
+     *
+     * @param workspace        product workspace
+     * @param buildURL         Jenkins URL, or null
+     * @param testPlanUOW      unit of work of the test plans
+     * @param testPlanExecutor executor of the test plans
+     * @see #RunTestPlanCommand(String, String)
+     */
+    RunTestPlanCommand(String workspace, String buildURL, TestPlanUOW testPlanUOW,
+                       TestPlanExecutor testPlanExecutor) {
+        this.workspace = workspace;
+        this.buildURL = buildURL;
+        this.testPlanUOW = testPlanUOW;
+        this.testPlanExecutor = testPlanExecutor;
+        this.logFilePathSetter = LogFilePathLookup::setThreadLogFilePath;
+    }
+
     @Override
     public void execute() throws CommandExecutionException {
         try {
@@ -110,16 +143,51 @@ public class RunTestPlanCommand implements Command {
                         product));
                 return;
             }
+            runTestPlan(testPlanYAMLFilePath.get(), PhaseLimits.UNLIMITED);
+        } catch (IOException e) {
+            throw new CommandExecutionException("Error in reading file generated config file", e);
+        }
+    }
 
+    /**
+     * Runs the test plan of the given generated test plan YAML file in the workspace of this command.
+     *
+     * @param testPlanYAMLFilePath absolute location of the test plan YAML file
+     * @param phaseLimits          limits on the test plans executing each phase at the same time
+     * @return the test plan after the run
+     * @throws CommandExecutionException thrown when the test plan could not be run
+     * @throws IllegalStateException     thrown when the test plan was run but did not succeed
+     */
+    TestPlan runTestPlan(String testPlanYAMLFilePath, PhaseLimits phaseLimits) throws CommandExecutionException {
+        TestPlan testPlan = prepareTestPlan(testPlanYAMLFilePath);
+        if (testPlan.getPhase().equals(TestPlanPhase.PREPARATION_SUCCEEDED)) {
+            final boolean success = executeTestPlan(testPlan, testPlan.getInfrastructureConfig(), phaseLimits);
+            if (!success) {
+                throw new IllegalStateException(
+                        "Test plan execution was not succeeded. Last phase: " + testPlan.getPhase());
+            }
+        }
+        return testPlan;
+    }
+
+    /**
+     * Reads the test plan of the given generated test plan YAML file, merged with the persisted test plan, and
+     * starts logging to its log file. A test plan whose preparation did not succeed is persisted with an error.
+     *
+     * @param testPlanYAMLFilePath absolute location of the test plan YAML file
+     * @return the test plan, in the {@link TestPlanPhase#PREPARATION_SUCCEEDED} phase if it may be executed
+     * @throws CommandExecutionException thrown when the test plan could not be read
+     */
+    TestPlan prepareTestPlan(String testPlanYAMLFilePath) throws CommandExecutionException {
+        try {
             // Generate test plan from config
-            TestPlan testPlan = FileUtil.readYamlFile(testPlanYAMLFilePath.get(), TestPlan.class);
+            TestPlan testPlan = FileUtil.readYamlFile(testPlanYAMLFilePath, TestPlan.class);
             testPlan.setWorkspace(workspace); // In future, the workspace will be kept in 'Context' and referred.
             if (buildURL != null && !buildURL.isEmpty()) {
                 testPlan.setBuildURL(buildURL);
             }
 
             resolvePaths(testPlan);
-            InfrastructureConfig infrastructureConfig = testPlan.getInfrastructureConfig();
 
             //Fetch persisted test plan from DB
             Optional<TestPlan> testPlanEntity = testPlanUOW.getTestPlanById(testPlan.getId());
@@ -128,20 +196,15 @@ public class RunTestPlanCommand implements Command {
                 testPlan = TestGridUtil.mergeTestPlans(testPlan, testPlanEntity.get(), true);
 
                 //Create logging directory
-                LogFilePathLookup.setLogFilePath(TestGridUtil.deriveTestRunLogFilePath(testPlan, false));
-                if (testPlan.getPhase().equals(TestPlanPhase.PREPARATION_SUCCEEDED)) {
-                    final boolean success = executeTestPlan(testPlan, infrastructureConfig);
-                    if (!success) {
-                        throw new IllegalStateException(
-                                "Test plan execution was not succeeded. Last phase: " + testPlan.getPhase());
-                    }
-                } else {
+                logFilePathSetter.accept(TestGridUtil.deriveTestRunLogFilePath(testPlan, false));
+                if (!testPlan.getPhase().equals(TestPlanPhase.PREPARATION_SUCCEEDED)) {
                     logger.error("PREPARATION phase was not succeeded for test-plan: " + testPlan.getId() + ". Hence" +
                             "not starting other phases. Current phase: " + testPlan.getPhase().toString());
                     testPlan.setStatus(TestPlanStatus.ERROR);
                     testPlan.setPhase(TestPlanPhase.PREPARATION_ERROR);
                     persistTestPlan(testPlan);
                 }
+                return testPlan;
             } else {
                 throw new CommandExecutionException(StringUtil.concatStrings("Unable to locate persisted " +
                         "TestPlan instance {TestPlan id: ", testPlan.getId(), "}"));
@@ -262,12 +325,13 @@ public class RunTestPlanCommand implements Command {
     /**
      * This method triggers the execution of a {@link org.wso2.testgrid.common.TestPlan}.
      *
-     * @param testPlan test plan to execute
+     * @param testPlan    test plan to execute
+     * @param phaseLimits limits on the test plans executing each phase at the same time
      * @return test execution status
      * @throws CommandExecutionException thrown when error on executing test plan
      */
-    private boolean executeTestPlan(TestPlan testPlan, InfrastructureConfig infrastructureConfig)
-            throws CommandExecutionException {
+    private boolean executeTestPlan(TestPlan testPlan, InfrastructureConfig infrastructureConfig,
+                                    PhaseLimits phaseLimits) throws CommandExecutionException {
         testPlan.setInfrastructureConfig(infrastructureConfig);
         try {
             String infraCmb = testPlan.getInfrastructureConfig().getParameters().entrySet().stream()
@@ -276,7 +340,7 @@ public class RunTestPlanCommand implements Command {
                     .collect(Collectors.joining("\n\t"));
             infraCmb = "{\n\t" + infraCmb + "\n}";
             logger.info("Executing test-plan for infrastructure combination: \n" + infraCmb);
-            return testPlanExecutor.execute(testPlan);
+            return testPlanExecutor.execute(testPlan, phaseLimits);
         } catch (TestPlanExecutorException | TestGridDAOException e) {
             throw new CommandExecutionException(
                     StringUtil.concatStrings("Unable to execute the TestPlan ", testPlan), e);
@@ -0,0 +1,472 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.core.command;
+
+import org.kohsuke.args4j.Option;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.testgrid.common.TestGridConstants;
+import org.wso2.testgrid.common.TestPlan;
+import org.wso2.testgrid.common.TestPlanPhase;
+import org.wso2.testgrid.common.TestPlanQueueEntry;
+import org.wso2.testgrid.common.TestPlanStatus;
+import org.wso2.testgrid.common.config.ConfigurationContext;
+import org.wso2.testgrid.common.config.ConfigurationContext.ConfigurationProperties;
+import org.wso2.testgrid.common.exception.CommandExecutionException;
+import org.wso2.testgrid.common.util.FileUtil;
+import org.wso2.testgrid.common.util.StringUtil;
+import org.wso2.testgrid.common.util.TestGridUtil;
+import org.wso2.testgrid.core.PhaseLimits;
+import org.wso2.testgrid.core.PipelinedTestPlanExecutor;
+import org.wso2.testgrid.core.TestPlanScheduler;
+import org.wso2.testgrid.dao.EntityManagerHelper;
+import org.wso2.testgrid.dao.TestGridDAOException;
+import org.wso2.testgrid.dao.uow.TestPlanQueueUOW;
+import org.wso2.testgrid.dao.uow.TestPlanUOW;
+import org.wso2.testgrid.logging.plugins.LogFilePathLookup;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * This runs the generated test plans of a directory concurrently.
+ * <p>
+ * The test plans are added to a queue in the database and run by a bounded number of workers, taking test plans of
+ * the different products in turn. A runner which crashed resumes the test plans it did not complete when it is
+ * started again with the same queue and an explicitly given runner id. Without a runner id, each run uses a unique
+ * id, so that runners on the same host never take over the entries of each other.
+ * <p>
+ * With a look-ahead above zero, the test plans are instead deployed and tested one at a time by a
+ * {@link PipelinedTestPlanExecutor}, which provisions the infrastructure of the next test plans while the earlier
+ * ones are tested, within the given resource units.
+ *
+ * @since 1.0.0
+ */
+public class RunTestPlansCommand implements Command {
+
+    private static final Logger logger = LoggerFactory.getLogger(RunTestPlansCommand.class);
+
+    @Option(name = "--dir",
+            usage = "Directory of the generated test plans",
+            aliases = { "-d" },
+            required = true)
+    private String testPlansDirectory = "";
+
+    @Option(name = "--workspace",
+            usage = "Product workspace",
+            aliases = {"-w"},
+            required = true)
+    private String workspace = "";
+
+    @Option(name = "--workers",
+            usage = "Number of test plans run at once",
+            aliases = {"-n"})
+    private int workers = 4;
+
+    @Option(name = "--max-infra",
+            usage = "Number of test plans which may provision infrastructure at once (0 for no limit)")
+    private int maxInfra = 0;
+
+    @Option(name = "--max-deploy",
+            usage = "Number of test plans which may create deployments at once (0 for no limit)")
+    private int maxDeploy = 0;
+
+    @Option(name = "--max-test",
+            usage = "Number of test plans which may run tests at once (0 for no limit)")
+    private int maxTest = 0;
+
+    @Option(name = "--look-ahead",
+            usage = "Number of test plans whose infrastructure is provisioned while an earlier test plan is tested, "
+                    + "with the test plans deployed and tested one at a time instead of by the workers. Defaults to "
+                    + "the PIPELINE_LOOK_AHEAD configuration property, or 0 to use the workers")
+    private Integer lookAhead;
+
+    @Option(name = "--max-resource-units",
+            usage = "Number of resource units the infrastructure provisioned ahead may hold at once, where each "
+                    + "infrastructure script of a test plan takes a unit. Defaults to the "
+                    + "PIPELINE_MAX_RESOURCE_UNITS configuration property, or 0 for no limit")
+    private Integer maxResourceUnits;
+
+    @Option(name = "--queue",
+            usage = "Queue name, defaults to the test plan directory")
+    private String queueName;
+
+    @Option(name = "--runner-id",
+            usage = "Runner id to resume with after a crash; the test plans this runner id did not complete are run "
+                    + "again. Defaults to a unique id, which does not resume")
+    private String runnerId;
+
+    @Option(name = "--url",
+            usage = "Jenkins URL",
+            aliases = {"-u"})
+    private String buildURL;
+
+    private final BiFunction<String, String, RunTestPlanCommand> runTestPlanCommandFactory;
+    private final PipelinedTestPlanExecutor.Stages pipelineStages;
+
+    public RunTestPlansCommand() {
+        this(RunTestPlanCommand::new, new PipelinedTestPlanExecutor.PhaseStages());
+    }
+
+    /**
+     * Creates the command with the given factory of the commands running each test plan.
+     *
+     * @param runTestPlanCommandFactory creates a command from the workspace and the Jenkins URL
+     * @param pipelineStages            stages of the test plans run with a look-ahead
+     */
+    RunTestPlansCommand(BiFunction<String, String, RunTestPlanCommand> runTestPlanCommandFactory,
+                        PipelinedTestPlanExecutor.Stages pipelineStages) {
+        this.runTestPlanCommandFactory = runTestPlanCommandFactory;
+        this.pipelineStages = pipelineStages;
+    }
+
+    @Override
+    public void execute() throws CommandExecutionException {
+        Path directory = Paths.get(testPlansDirectory).toAbsolutePath().normalize();
+        if (!Files.isDirectory(directory)) {
+            throw new CommandExecutionException("Test plan directory does not exist: " + directory);
+        }
+        int pipelineLookAhead = getConfiguredValue(lookAhead, ConfigurationProperties.PIPELINE_LOOK_AHEAD);
+        int pipelineMaxResourceUnits = getConfiguredValue(maxResourceUnits,
+                ConfigurationProperties.PIPELINE_MAX_RESOURCE_UNITS);
+        validateLimits(pipelineLookAhead, pipelineMaxResourceUnits);
+        String queue = queueName != null ? queueName : directory.toString();
+        boolean resume = runnerId != null;
+        String runner = resume ? runnerId : getHostName() + "-" + UUID.randomUUID();
+
+        try {
+            TestPlanQueueUOW testPlanQueueUOW = new TestPlanQueueUOW();
+            List<TestPlanQueueEntry> added = testPlanQueueUOW.enqueue(createEntries(directory, queue));
+            if (pipelineLookAhead > 0) {
+                logger.info(StringUtil.concatStrings("Queued ", added.size(), " test plans of ", directory,
+                        " in queue ", queue, ". Running them one at a time with a look-ahead of ", pipelineLookAhead,
+                        " as runner ", runner, "."));
+                runPipelined(testPlanQueueUOW, queue, runner, resume, pipelineLookAhead, pipelineMaxResourceUnits);
+            } else {
+                logger.info(StringUtil.concatStrings("Queued ", added.size(), " test plans of ", directory,
+                        " in queue ", queue, ". Running them with ", workers, " workers as runner ", runner, "."));
+                createScheduler(testPlanQueueUOW, queue, runner, resume).run();
+            }
+
+            Map<TestPlanQueueEntry.State, Long> counts = testPlanQueueUOW.getEntryCounts(queue);
+            logger.info(StringUtil.concatStrings("Test plans of queue ", queue, ": ", counts));
+            long failed = counts.getOrDefault(TestPlanQueueEntry.State.FAILED, 0L);
+            if (failed > 0) {
+                throw new CommandExecutionException(StringUtil.concatStrings(failed, " test plans of queue ", queue,
+                        " did not succeed."));
+            }
+        } catch (TestGridDAOException e) {
+            throw new CommandExecutionException("Error in accessing the test plan queue " + queue, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CommandExecutionException("Interrupted while running the test plans of queue " + queue, e);
+        }
+    }
+
+    /**
+     * Creates the scheduler running the test plans of the given queue with the workers and phase limits of this
+     * command.
+     *
+     * @param testPlanQueueUOW unit of work of the queue
+     * @param queue            queue name
+     * @param runner           runner id
+     * @param resume           whether the entries the runner id did not complete are run again
+     * @return scheduler
+     */
+    TestPlanScheduler createScheduler(TestPlanQueueUOW testPlanQueueUOW, String queue, String runner,
+                                      boolean resume) {
+        PhaseLimits phaseLimits = new PhaseLimits(maxInfra, maxDeploy, maxTest);
+        return new TestPlanScheduler(testPlanQueueUOW, queue, runner, resume, workers,
+                entry -> runTestPlan(entry, phaseLimits));
+    }
+
+    /**
+     * Runs the queued test plans with a {@link PipelinedTestPlanExecutor}, in queue order. The entries are taken
+     * from the queue before the test plans are run, and marked once all of them completed. The entries of the test
+     * plans which were cancelled by an interrupt are left running, to be run again when the runner resumes.
+     *
+     * @param testPlanQueueUOW unit of work of the queue
+     * @param queue            queue name
+     * @param runner           runner id
+     * @param resume           whether the entries the runner id did not complete are run again
+     * @param lookAhead        number of test plans provisioned ahead of the test plan being tested
+     * @param maxResourceUnits number of resource units the provisioned infrastructure may hold at once
+     * @return number of test plans run by each final state
+     * @throws TestGridDAOException thrown when error on accessing the queue
+     * @throws InterruptedException thrown when interrupted while test plans are running
+     */
+    Map<TestPlanQueueEntry.State, Integer> runPipelined(TestPlanQueueUOW testPlanQueueUOW, String queue,
+                                                        String runner, boolean resume, int lookAhead,
+                                                        int maxResourceUnits)
+            throws TestGridDAOException, InterruptedException {
+        if (resume) {
+            int requeued = testPlanQueueUOW.requeueUncompleted(queue, runner, TestPlanScheduler.MAX_ATTEMPTS);
+            if (requeued > 0) {
+                logger.info(StringUtil.concatStrings("Resuming ", requeued, " test plans of queue ", queue,
+                        " which runner ", runner, " did not complete."));
+            }
+        }
+
+        Map<TestPlanQueueEntry.State, Integer> results = new EnumMap<>(TestPlanQueueEntry.State.class);
+        Map<String, TestPlanQueueEntry> entries = new HashMap<>();
+        List<TestPlan> testPlans = new ArrayList<>();
+        for (TestPlanQueueEntry entry : testPlanQueueUOW.getQueuedEntries(queue)) {
+            if (!testPlanQueueUOW.claim(entry, runner)) {
+                continue;
+            }
+            Optional<TestPlan> testPlan = prepareTestPlan(entry);
+            if (testPlan.isPresent()) {
+                entries.put(testPlan.get().getId(), entry);
+                testPlans.add(testPlan.get());
+            } else {
+                complete(testPlanQueueUOW, entry, runner, TestPlanQueueEntry.State.FAILED, results);
+            }
+        }
+
+        PipelinedTestPlanExecutor executor = new PipelinedTestPlanExecutor(lookAhead, maxResourceUnits,
+                PipelinedTestPlanExecutor::getResourceUnits, new LogFileStages(pipelineStages));
+        Map<String, PipelinedTestPlanExecutor.Outcome> outcomes = executor.execute(testPlans);
+        for (Map.Entry<String, PipelinedTestPlanExecutor.Outcome> outcome : outcomes.entrySet()) {
+            TestPlanQueueEntry entry = entries.get(outcome.getKey());
+            if (outcome.getValue() == PipelinedTestPlanExecutor.Outcome.CANCELLED) {
+                logger.info(StringUtil.concatStrings("Test plan ", entry.getTestPlanId(), " of ",
+                        entry.getProductName(), " was cancelled."));
+                continue;
+            }
+            TestPlanQueueEntry.State state = outcome.getValue() == PipelinedTestPlanExecutor.Outcome.SUCCEEDED ?
+                    TestPlanQueueEntry.State.SUCCEEDED : TestPlanQueueEntry.State.FAILED;
+            complete(testPlanQueueUOW, entry, runner, state, results);
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException("Interrupted while running the test plans of queue " + queue);
+        }
+        return results;
+    }
+
+    /**
+     * Reads the test plan of the given entry on the calling thread.
+     *
+     * @param entry queue entry
+     * @return the test plan, or an empty optional if it cannot be executed
+     */
+    private Optional<TestPlan> prepareTestPlan(TestPlanQueueEntry entry) {
+        try {
+            TestPlan testPlan = runTestPlanCommandFactory.apply(entry.getWorkspace(), buildURL)
+                    .prepareTestPlan(entry.getTestPlanFile());
+            if (testPlan.getPhase() == TestPlanPhase.PREPARATION_SUCCEEDED) {
+                return Optional.of(testPlan);
+            }
+        } catch (CommandExecutionException | RuntimeException e) {
+            logger.error("Error occurred while reading the test plan " + entry.getTestPlanId(), e);
+        } finally {
+            LogFilePathLookup.setThreadLogFilePath(null);
+        }
+        return Optional.empty();
+    }
+
+    private static void complete(TestPlanQueueUOW testPlanQueueUOW, TestPlanQueueEntry entry, String runner,
+                                 TestPlanQueueEntry.State state, Map<TestPlanQueueEntry.State, Integer> results) {
+        results.merge(state, 1, Integer::sum);
+        logger.info(StringUtil.concatStrings("Test plan ", entry.getTestPlanId(), " of ", entry.getProductName(),
+                " completed: ", state));
+        try {
+            testPlanQueueUOW.complete(entry, runner, state);
+        } catch (TestGridDAOException | RuntimeException e) {
+            logger.error(StringUtil.concatStrings("Error occurred while marking test plan ", entry.getTestPlanId(),
+                    " as completed. It is left running, and will be run again when runner ", runner, " resumes."), e);
+        }
+    }
+
+    /**
+     * Returns the given option value, or else the integer value of the given configuration property, or else 0.
+     */
+    private static int getConfiguredValue(Integer optionValue, ConfigurationProperties property)
+            throws CommandExecutionException {
+        if (optionValue != null) {
+            return optionValue;
+        }
+        String configuredValue = ConfigurationContext.getProperty(property);
+        if (StringUtil.isStringNullOrEmpty(configuredValue)) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(configuredValue.trim());
+        } catch (NumberFormatException e) {
+            throw new CommandExecutionException(StringUtil.concatStrings("Invalid ", property, " configuration ",
+                    "property value '", configuredValue, "'."), e);
+        }
+    }
+
+    /**
+     * Validates the number of workers and the phase limits.
+     *
+     * @param pipelineLookAhead        look-ahead of the pipelined execution
+     * @param pipelineMaxResourceUnits resource units of the pipelined execution
+     * @throws CommandExecutionException thrown when a value is out of range
+     */
+    private void validateLimits(int pipelineLookAhead, int pipelineMaxResourceUnits)
+            throws CommandExecutionException {
+        if (workers < 1) {
+            throw new CommandExecutionException("Number of workers should be at least 1: --workers " + workers);
+        }
+        if (maxInfra < 0 || maxDeploy < 0 || maxTest < 0) {
+            throw new CommandExecutionException(StringUtil.concatStrings("Phase limits should not be negative: ",
+                    "--max-infra ", maxInfra, ", --max-deploy ", maxDeploy, ", --max-test ", maxTest));
+        }
+        if (pipelineLookAhead < 0 || pipelineMaxResourceUnits < 0) {
+            throw new CommandExecutionException(StringUtil.concatStrings("Pipeline limits should not be negative: ",
+                    "--look-ahead ", pipelineLookAhead, ", --max-resource-units ", pipelineMaxResourceUnits));
+        }
+    }
+
+    /**
+     * Creates the queue entries of the test plan YAML files of the given directory.
+     *
+     * @param directory directory of the generated test plans
+     * @param queue     queue name
+     * @return queue entries
+     * @throws CommandExecutionException thrown when a test plan could not be read
+     * @throws TestGridDAOException      thrown when error on retrieving the persisted test plans
+     */
+    private List<TestPlanQueueEntry> createEntries(Path directory, String queue)
+            throws CommandExecutionException, TestGridDAOException {
+        List<Path> testPlanFiles;
+        try (Stream<Path> files = Files.list(directory)) {
+            testPlanFiles = files
+                    .filter(path -> path.getFileName().toString().startsWith(TestGridConstants.TEST_PLAN_YAML_PREFIX))
+                    .filter(path -> path.toString().endsWith(".yaml"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new CommandExecutionException("Error in listing the test plans of " + directory, e);
+        }
+
+        TestPlanUOW testPlanUOW = new TestPlanUOW();
+        List<TestPlanQueueEntry> entries = new ArrayList<>(testPlanFiles.size());
+        for (Path testPlanFile : testPlanFiles) {
+            TestPlan testPlan;
+            try {
+                testPlan = FileUtil.readYamlFile(testPlanFile.toString(), TestPlan.class);
+            } catch (IOException e) {
+                throw new CommandExecutionException("Error in reading the test plan " + testPlanFile, e);
+            }
+            Optional<TestPlan> testPlanEntity = testPlanUOW.getTestPlanById(testPlan.getId());
+            if (!testPlanEntity.isPresent()) {
+                logger.warn(StringUtil.concatStrings("Skipping test plan ", testPlanFile,
+                        " since it is not persisted. {TestPlan id: ", testPlan.getId(), "}"));
+                continue;
+            }
+            TestPlanQueueEntry entry = new TestPlanQueueEntry();
+            entry.setQueueName(queue);
+            entry.setTestPlanId(testPlan.getId());
+            entry.setProductName(testPlanEntity.get().getDeploymentPattern().getProduct().getName());
+            entry.setTestPlanFile(testPlanFile.toString());
+            entry.setWorkspace(workspace);
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Runs the test plan of the given entry on a worker thread.
+     *
+     * @param entry       queue entry
+     * @param phaseLimits limits on the test plans executing each phase at the same time
+     * @return {@code true} if the test plan succeeded, {@code false} otherwise
+     * @throws CommandExecutionException thrown when the test plan could not be run
+     */
+    private boolean runTestPlan(TestPlanQueueEntry entry, PhaseLimits phaseLimits) throws CommandExecutionException {
+        try {
+            RunTestPlanCommand runTestPlanCommand = runTestPlanCommandFactory.apply(entry.getWorkspace(), buildURL);
+            TestPlan testPlan = runTestPlanCommand.runTestPlan(entry.getTestPlanFile(), phaseLimits);
+            return testPlan.getStatus() == TestPlanStatus.SUCCESS;
+        } catch (IllegalStateException e) {
+            logger.error(e.getMessage());
+            return false;
+        } finally {
+            LogFilePathLookup.setThreadLogFilePath(null);
+            EntityManagerHelper.releaseEntityManager();
+        }
+    }
+
+    private static String getHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            logger.warn("Unable to determine the host name. Using 'localhost' in the runner id.");
+            return "localhost";
+        }
+    }
+
+    /**
+     * Logs each stage of a test plan to the log file of the test plan, from the thread running the stage.
+     */
+    private static class LogFileStages implements PipelinedTestPlanExecutor.Stages {
+
+        private final PipelinedTestPlanExecutor.Stages stages;
+
+        LogFileStages(PipelinedTestPlanExecutor.Stages stages) {
+            this.stages = stages;
+        }
+
+        @Override
+        public void provision(TestPlan testPlan) throws Exception {
+            LogFilePathLookup.setThreadLogFilePath(TestGridUtil.deriveTestRunLogFilePath(testPlan, false));
+            try {
+                stages.provision(testPlan);
+            } finally {
+                LogFilePathLookup.setThreadLogFilePath(null);
+            }
+        }
+
+        @Override
+        public boolean deployAndTest(TestPlan testPlan) throws Exception {
+            LogFilePathLookup.setThreadLogFilePath(TestGridUtil.deriveTestRunLogFilePath(testPlan, false));
+            try {
+                return stages.deployAndTest(testPlan);
+            } finally {
+                LogFilePathLookup.setThreadLogFilePath(null);
+            }
+        }
+
+        @Override
+        public void release(TestPlan testPlan) throws Exception {
+            LogFilePathLookup.setThreadLogFilePath(TestGridUtil.deriveTestRunLogFilePath(testPlan, false));
+            try {
+                stages.release(testPlan);
+            } finally {
+                LogFilePathLookup.setThreadLogFilePath(null);
+            }
+        }
+    }
+}
@@ -21,32 +21,25 @@ package org.wso2.testgrid.core.phase;
 
 import org.wso2.testgrid.common.Deployer;
 import org.wso2.testgrid.common.DeploymentCreationResult;
-import org.wso2.testgrid.common.InfrastructureProvider;
 import org.wso2.testgrid.common.InfrastructureProvisionResult;
 import org.wso2.testgrid.common.Status;
-import org.wso2.testgrid.common.TestGridConstants;
 import org.wso2.testgrid.common.TestPlanPhase;
 import org.wso2.testgrid.common.TestPlanStatus;
 import org.wso2.testgrid.common.config.ConfigurationContext;
 import org.wso2.testgrid.common.config.ScenarioConfig;
 import org.wso2.testgrid.common.config.Script;
 import org.wso2.testgrid.common.exception.DeployerInitializationException;
-import org.wso2.testgrid.common.exception.InfrastructureProviderInitializationException;
 import org.wso2.testgrid.common.exception.TestGridDeployerException;
-import org.wso2.testgrid.common.exception.TestGridInfrastructureException;
 import org.wso2.testgrid.common.exception.UnsupportedDeployerException;
-import org.wso2.testgrid.common.exception.UnsupportedProviderException;
 import org.wso2.testgrid.common.plugins.AWSArtifactReader;
 import org.wso2.testgrid.common.plugins.ArtifactReadable;
 import org.wso2.testgrid.common.plugins.ArtifactReaderException;
 import org.wso2.testgrid.common.util.DataBucketsHelper;
 import org.wso2.testgrid.common.util.S3StorageUtil;
 import org.wso2.testgrid.common.util.StringUtil;
-import org.wso2.testgrid.common.util.TestGridUtil;
 import org.wso2.testgrid.core.exception.TestPlanExecutorException;
-import org.wso2.testgrid.core.util.JsonPropFileUtil;
+import org.wso2.testgrid.core.util.DataBucketStore;
 import org.wso2.testgrid.deployment.DeployerFactory;
-import org.wso2.testgrid.infrastructure.InfrastructureProviderFactory;
 
 import java.io.File;
 import java.io.IOException;
@@ -166,27 +159,28 @@ public class DeployPhase extends Phase {
             }
         }
         // Params to edit /etc/hosts file in local TestGrid
-        
-        JsonPropFileUtil.persistAdditionalInputs(additionalDepProps, infraOutFilePath, infraOutJSONFilePath);
-        JsonPropFileUtil.updateParamsJson(infraOutJSONFilePath, "dep", outputjsonFilePath);
 
         try {
-
+            DataBucketStore dataBucketStore = DataBucketStore.open(infraOutFilePath, infraOutJSONFilePath,
+                    outputjsonFilePath);
+            dataBucketStore.persistAdditionalInputs(additionalDepProps);
+            dataBucketStore.updateParamsJson("dep");
 
             for (Script script: getTestPlan().getDeploymentConfig().getFirstDeploymentPattern().getScripts()) {
                 printMessage("\t\t Creating deployment: " + script.getName());
 
                 // Append deploymentConfig inputs in testgrid yaml to infra outputs file
                 Map<String, Object> deplInputs = script.getInputParameters();
-                JsonPropFileUtil.persistAdditionalInputs(deplInputs, infraOutFilePath, infraOutJSONFilePath,
-                        script.getName());
-
-                JsonPropFileUtil.updateParamsJson(infraOutJSONFilePath, "dep", outputjsonFilePath);
+                dataBucketStore.persistAdditionalInputs(deplInputs, script.getName());
+                dataBucketStore.updateParamsJson("dep");
+                dataBucketStore.flush();
 
                 Deployer deployerService = DeployerFactory.getDeployerService(script);
                 DeploymentCreationResult aresult =
                         deployerService.deploy(getTestPlan(),
                                 infrastructureProvisionResult, script);
+                // The script may have written to the data bucket.
+                dataBucketStore.reload();
                 //TODO mark issue better renaming
                 addTo(result, aresult);
                 logger.debug("Deployment result: " + result);
@@ -196,6 +190,7 @@ public class DeployPhase extends Phase {
                 }
                 
             }
+            dataBucketStore.flush();
             return result;
         } catch (TestGridDeployerException e) {
             persistTestPlanProgress(TestPlanPhase.DEPLOY_PHASE_ERROR, TestPlanStatus.ERROR);
@@ -252,50 +247,4 @@ public class DeployPhase extends Phase {
             provisionResult.setSuccess(false);
         }
     }
-    /**
-     * Destroys the given InfrastructureConfig
-     *
-     * @throws TestPlanExecutorException thrown when error on destroying
-     *                                   infrastructure
-     */
-    private void releaseInfrastructure()
-            throws TestPlanExecutorException {
-        InfrastructureProvisionResult infrastructureProvisionResult = getTestPlan().getInfrastructureProvisionResult();
-        DeploymentCreationResult deploymentCreationResult = getTestPlan().getDeploymentCreationResult();
-
-        try {
-            printMessage("\t\t Releasing infrastructure: " + getTestPlan()
-                    .getInfrastructureConfig().getFirstProvisioner().getName());
-
-            if (TestGridUtil.isDebugMode(getTestPlan())) {
-                printMessage(TestGridConstants.DEBUG_MODE + " is enabled. NOT RELEASING the infrastructure. The"
-                        + "infrastructure need to be manually released/de-allocated.");
-                return;
-            }
-            if (!infrastructureProvisionResult.isSuccess() || !deploymentCreationResult.isSuccess()) {
-                logger.error("Execution of previous steps failed. Trying to release the possibly provisioned "
-                        + "infrastructure");
-            }
-
-            for (Script script : getTestPlan().getInfrastructureConfig().getFirstProvisioner().getScripts()) {
-                if (!Script.Phase.CREATE.equals(script.getPhase())) {
-                    InfrastructureProvider infrastructureProvider = InfrastructureProviderFactory
-                            .getInfrastructureProvider(script);
-                    infrastructureProvider.release(getTestPlan().getInfrastructureConfig(),
-                            getTestPlan().getInfrastructureRepository(),
-                            getTestPlan(), script);
-                    // Destroy additional infra created for test execution
-                    infrastructureProvider.cleanup(getTestPlan());
-                }
-            }
-        } catch (TestGridInfrastructureException e) {
-            throw new TestPlanExecutorException(StringUtil
-                    .concatStrings("Error on infrastructure removal for deployment pattern '",
-                            getTestPlan().getDeploymentPattern(), "', in TestPlan"), e);
-        } catch (InfrastructureProviderInitializationException | UnsupportedProviderException e) {
-            throw new TestPlanExecutorException(StringUtil
-                    .concatStrings("No Infrastructure Provider implementation for deployment pattern '",
-                            getTestPlan().getDeploymentPattern(), "', in TestPlan"), e);
-        }
-    }
 }
@@ -34,7 +34,7 @@ import org.wso2.testgrid.common.exception.UnsupportedProviderException;
 import org.wso2.testgrid.common.util.DataBucketsHelper;
 import org.wso2.testgrid.common.util.StringUtil;
 import org.wso2.testgrid.core.exception.TestPlanExecutorException;
-import org.wso2.testgrid.core.util.JsonPropFileUtil;
+import org.wso2.testgrid.core.util.DataBucketStore;
 import org.wso2.testgrid.infrastructure.InfrastructureProviderFactory;
 
 import java.io.File;
@@ -127,15 +127,16 @@ public class InfraPhase extends Phase {
                 infraParams.put(TestGridConstants.KEY_FILE_LOCATION, keyFileLocation);
             }
 
-            JsonPropFileUtil.persistAdditionalInputs(infraParams, testPropFilePath, testJsonFilePath);
-
-            JsonPropFileUtil.updateParamsJson(testJsonFilePath, "infra", outputjsonFilePath);
+            DataBucketStore dataBucketStore = DataBucketStore.open(testPropFilePath, testJsonFilePath,
+                    outputjsonFilePath);
+            dataBucketStore.persistAdditionalInputs(infraParams);
+            dataBucketStore.updateParamsJson("infra");
 
             for (Script script : infrastructureConfig.getFirstProvisioner().getScripts()) {
                 if (!Script.Phase.DESTROY.equals(script.getPhase())) {
-                    JsonPropFileUtil.persistAdditionalInputs(script.getInputParameters(), testPropFilePath,
-                            testJsonFilePath, script.getName());
-                    JsonPropFileUtil.updateParamsJson(testJsonFilePath, "infra", outputjsonFilePath);
+                    dataBucketStore.persistAdditionalInputs(script.getInputParameters(), script.getName());
+                    dataBucketStore.updateParamsJson("infra");
+                    dataBucketStore.flush();
                     InfrastructureProvider infrastructureProvider = InfrastructureProviderFactory
                             .getInfrastructureProvider(script);
                     infrastructureProvider.init(getTestPlan());
@@ -143,6 +144,8 @@ public class InfraPhase extends Phase {
                     logger.info("--- executing script: " + script.getName() + ", file: " + script.getFile());
                     InfrastructureProvisionResult aProvisionResult =
                             infrastructureProvider.provision(getTestPlan(), script);
+                    // The script may have written to the data bucket.
+                    dataBucketStore.reload();
                     addTo(provisionResult, aProvisionResult);
                     if (!aProvisionResult.isSuccess()) {
                         logger.warn("Infra script '" + script.getName() + "' failed. Not running remaining scripts.");
@@ -152,6 +155,7 @@ public class InfraPhase extends Phase {
                 }
             }
 
+            dataBucketStore.flush();
             provisionResult.setName(infrastructureConfig.getFirstProvisioner().getName());
             //TODO: remove. deploymentScriptsDir is deprecated now in favor of DeploymentConfig.
             provisionResult.setDeploymentScriptsDir(Paths.get(getTestPlan().getDeploymentRepository()).toString());
@@ -195,6 +199,26 @@ public class InfraPhase extends Phase {
         return infrastructureProvisionResult;
     }
 
+    /**
+     * Releases the infrastructure provisioned for the given test-plan without deploying and testing it, e.g. when
+     * the test-plan was cancelled after its infrastructure was provisioned ahead of time.
+     *
+     * @param testPlan test-plan whose infrastructure should be released
+     * @throws TestPlanExecutorException thrown when error on releasing the infrastructure
+     */
+    public void releaseInfrastructure(TestPlan testPlan) throws TestPlanExecutorException {
+        init(testPlan);
+        boolean released = false;
+        try {
+            releaseInfrastructure();
+            released = true;
+        } finally {
+            // The test-plan did not run, but it erred if its infrastructure may not have been released.
+            persistTestPlanStatus(released ? TestPlanStatus.DID_NOT_RUN : TestPlanStatus.ERROR);
+            flushTestPlanStatus();
+        }
+    }
+
     private void addTo(InfrastructureProvisionResult provisionResult, InfrastructureProvisionResult aProvisionResult) {
         provisionResult.getProperties().putAll(aProvisionResult.getProperties());
         if (!aProvisionResult.isSuccess()) {
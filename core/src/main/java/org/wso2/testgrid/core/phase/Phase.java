@@ -22,12 +22,25 @@ package org.wso2.testgrid.core.phase;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.wso2.testgrid.common.InfrastructureProvider;
+import org.wso2.testgrid.common.TestGridConstants;
 import org.wso2.testgrid.common.TestPlan;
 import org.wso2.testgrid.common.TestPlanPhase;
 import org.wso2.testgrid.common.TestPlanStatus;
+import org.wso2.testgrid.common.config.ConfigurationContext;
+import org.wso2.testgrid.common.config.InfrastructureConfig;
+import org.wso2.testgrid.common.config.Script;
+import org.wso2.testgrid.common.exception.InfrastructureProviderInitializationException;
+import org.wso2.testgrid.common.exception.TestGridInfrastructureException;
+import org.wso2.testgrid.common.exception.UnsupportedProviderException;
+import org.wso2.testgrid.common.util.StringUtil;
+import org.wso2.testgrid.common.util.TestGridUtil;
+import org.wso2.testgrid.core.exception.TestPlanExecutorException;
 import org.wso2.testgrid.dao.TestGridDAOException;
+import org.wso2.testgrid.dao.uow.TestPlanStatusWriter;
 import org.wso2.testgrid.dao.uow.TestPlanUOW;
 import org.wso2.testgrid.dao.uow.TestScenarioUOW;
+import org.wso2.testgrid.infrastructure.InfrastructureProviderFactory;
 
 
 /**
@@ -39,6 +52,7 @@ public abstract class Phase {
 
     private TestPlanUOW testPlanUOW;
     private TestScenarioUOW testScenarioUOW;
+    private TestPlanStatusWriter statusWriter;
 
     private TestPlan testPlan;
 
@@ -49,18 +63,34 @@ public abstract class Phase {
      * @return updated test-plan after the execution of phase
      */
     public TestPlan execute(TestPlan testPlan) {
+        init(testPlan);
+        printMessageWithTestPlanProgress("Start of " + getClass().getSimpleName());
+        try {
+            if (verifyPrecondition()) {
+                executePhase();
+            }
+        } finally {
+            flushTestPlanStatus();
+        }
+        return testPlan;
+    }
+
+    /**
+     * Binds the phase to the given test-plan.
+     *
+     * @param testPlan test-plan the phase works on
+     */
+    void init(TestPlan testPlan) {
         if (testPlanUOW == null) {
             testPlanUOW = new TestPlanUOW();
         }
         if (testScenarioUOW == null) {
             testScenarioUOW = new TestScenarioUOW();
         }
-        this.testPlan = testPlan;
-        printMessageWithTestPlanProgress("Start of " + getClass().getSimpleName());
-        if (verifyPrecondition()) {
-             executePhase();
+        if (statusWriter == null) {
+            statusWriter = new TestPlanStatusWriter(testPlanUOW, getStatusUpdateInterval());
         }
-        return testPlan;
+        this.testPlan = testPlan;
     }
 
     /**
@@ -77,37 +107,50 @@ public abstract class Phase {
      */
     abstract void executePhase();
 
-    void persistTestPlanProgress(TestPlanPhase phase, TestPlanStatus status) {
+    synchronized void persistTestPlanProgress(TestPlanPhase phase, TestPlanStatus status) {
         logger.info("Updating testplan status " + testPlan.getStatus() + " --> " + status + " and " +
                 "and phase " + testPlan.getPhase() + " --> " + phase);
-        try {
-            testPlan.setPhase(phase);
-            testPlan.setStatus(status);
-            testPlanUOW.persistTestPlan(testPlan);
-        } catch (TestGridDAOException e) {
-            logger.error("Error occurred while persisting the test plan. ", e);
-        }
+        boolean statusChanged = testPlan.getStatus() != status;
+        testPlan.setPhase(phase);
+        testPlan.setStatus(status);
+        statusWriter.update(testPlan, statusChanged);
     }
 
-    void persistTestPlanPhase(TestPlanPhase phase) {
+    synchronized void persistTestPlanPhase(TestPlanPhase phase) {
         logger.info("Updating testplan phase " + testPlan.getPhase() + " --> " + phase);
-        try {
-            testPlan.setPhase(phase);
-            testPlanUOW.persistTestPlan(testPlan);
-        } catch (TestGridDAOException e) {
-            logger.error("Error occurred while persisting the test plan. ", e);
-        }
+        testPlan.setPhase(phase);
+        statusWriter.update(testPlan, false);
     }
 
     /**
-     * Persists the test plan with the status.
+     * Persists the test plan with the status. Like the other persist methods, this may be called from the threads
+     * running the scenarios of the test plan.
+     * <p>
+     * Only the status and phase columns are written, and the product summary is updated along with the status once
+     * the test plan reaches a final status.
      *
      * @param status   the status to set
      */
-    void persistTestPlanStatus(TestPlanStatus status) {
+    synchronized void persistTestPlanStatus(TestPlanStatus status) {
         logger.info("Updating testplan status " + testPlan.getStatus() + " --> " + status);
+        boolean statusChanged = testPlan.getStatus() != status;
+        testPlan.setStatus(status);
+        statusWriter.update(testPlan, statusChanged);
+    }
+
+    /**
+     * Writes the status change which is pending when status changes are coalesced.
+     */
+    void flushTestPlanStatus() {
+        statusWriter.flush();
+    }
+
+    /**
+     * Persists the test plan to the database, along with its test scenarios and test cases.
+     */
+    synchronized void persistTestPlan() {
+        flushTestPlanStatus();
         try {
-            testPlan.setStatus(status);
             testPlanUOW.persistTestPlan(testPlan);
         } catch (TestGridDAOException e) {
             logger.error("Error occurred while persisting the test plan. ", e);
@@ -115,13 +158,57 @@ public abstract class Phase {
     }
 
     /**
-     * Persists the test plan to the database.
+     * Releases the infrastructure provisioned for the test-plan by running the scripts of its provisioner other
+     * than the create scripts, unless the test-plan runs in debug mode.
+     *
+     * @throws TestPlanExecutorException thrown when error on releasing the infrastructure
      */
-    void persistTestPlan() {
+    void releaseInfrastructure() throws TestPlanExecutorException {
+        InfrastructureConfig infrastructureConfig = testPlan.getInfrastructureConfig();
         try {
-            testPlanUOW.persistTestPlan(testPlan);
-        } catch (TestGridDAOException e) {
-            logger.error("Error occurred while persisting the test plan. ", e);
+            printMessage("\t\t Releasing infrastructure: " + infrastructureConfig.getFirstProvisioner().getName());
+            if (TestGridUtil.isDebugMode(testPlan)) {
+                printMessage(TestGridConstants.DEBUG_MODE + " is enabled. NOT RELEASING the infrastructure. The"
+                        + "infrastructure need to be manually released/de-allocated.");
+                return;
+            }
+            for (Script script : infrastructureConfig.getFirstProvisioner().getScripts()) {
+                if (!Script.Phase.CREATE.equals(script.getPhase())) {
+                    InfrastructureProvider infrastructureProvider = InfrastructureProviderFactory
+                            .getInfrastructureProvider(script);
+                    infrastructureProvider.release(infrastructureConfig, testPlan.getInfrastructureRepository(),
+                            testPlan, script);
+                    // Destroy additional infra created for test execution
+                    infrastructureProvider.cleanup(testPlan);
+                }
+            }
+        } catch (TestGridInfrastructureException e) {
+            throw new TestPlanExecutorException(StringUtil
+                    .concatStrings("Error on infrastructure removal for deployment pattern '",
+                            testPlan.getDeploymentPattern(), "', in TestPlan"), e);
+        } catch (InfrastructureProviderInitializationException | UnsupportedProviderException e) {
+            throw new TestPlanExecutorException(StringUtil
+                    .concatStrings("No Infrastructure Provider implementation for deployment pattern '",
+                            testPlan.getDeploymentPattern(), "', in TestPlan"), e);
+        }
+    }
+
+    /**
+     * Returns the interval within which status changes of a test plan are coalesced into one write.
+     *
+     * @return interval in milliseconds, 0 to write each change
+     */
+    private long getStatusUpdateInterval() {
+        String interval = ConfigurationContext.getProperty(
+                ConfigurationContext.ConfigurationProperties.STATUS_UPDATE_INTERVAL);
+        if (StringUtil.isStringNullOrEmpty(interval)) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(interval.trim()));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid status update interval '" + interval + "'. Writing each status change.");
+            return 0;
         }
     }
 
@@ -135,6 +222,7 @@ public abstract class Phase {
 
     public void setTestPlanUOW(TestPlanUOW testPlanUOW) {
         this.testPlanUOW = testPlanUOW;
+        this.statusWriter = null;
     }
 
     public void setTestScenarioUOW(TestScenarioUOW testScenarioUOW) {
@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.core.phase;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.testgrid.automation.TestAutomationException;
+import org.wso2.testgrid.automation.TestEngine;
+import org.wso2.testgrid.automation.executor.TestExecutor;
+import org.wso2.testgrid.automation.executor.TestExecutorFactory;
+import org.wso2.testgrid.common.DeploymentCreationResult;
+import org.wso2.testgrid.common.TestGridConstants;
+import org.wso2.testgrid.common.TestPlan;
+import org.wso2.testgrid.common.TestPlanPhase;
+import org.wso2.testgrid.common.TestPlanStatus;
+import org.wso2.testgrid.common.config.ConfigurationContext;
+import org.wso2.testgrid.common.config.ScenarioConfig;
+import org.wso2.testgrid.common.util.DataBucketsHelper;
+import org.wso2.testgrid.common.util.StringUtil;
+import org.wso2.testgrid.core.exception.TestPlanExecutorException;
+import org.wso2.testgrid.core.util.DataBucketStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Runs the test scripts of the scenario configs of a test plan.
+ * <p>
+ * The scenario configs run one after another by default. The inputs of a scenario config are written to the input
+ * files of the data bucket right before its test script runs, hence they cannot share those files when running at
+ * the same time. If the {@value TestGridConstants#SCENARIO_CONCURRENCY} job property, or else the configuration
+ * property of the same name, is above one, up to that many scenario configs run at once, each reading a copy of the
+ * inputs from its own {@link DataBucketsHelper#getScenarioInputLocation(TestPlan, ScenarioConfig)} location. The
+ * outputs are isolated already by the output dir of each scenario config, so scenario configs sharing an output dir
+ * always run one after another.
+ */
+class ScenarioRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScenarioRunner.class);
+
+    private final TestPlan testPlan;
+    private final BiConsumer<TestPlanPhase, TestPlanStatus> progressListener;
+
+    /**
+     * Creates a runner for the scenario configs of the given test plan.
+     *
+     * @param testPlan         test plan
+     * @param progressListener called, possibly from several threads at once, when the test plan progress changes
+     */
+    ScenarioRunner(TestPlan testPlan, BiConsumer<TestPlanPhase, TestPlanStatus> progressListener) {
+        this.testPlan = testPlan;
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Returns the number of scenario configs of the given test plan that may run at once.
+     *
+     * @param testPlan test plan
+     * @return scenario concurrency, one if not configured
+     */
+    static int getConcurrency(TestPlan testPlan) {
+        String concurrency = testPlan.getJobProperties().getProperty(TestGridConstants.SCENARIO_CONCURRENCY);
+        if (StringUtil.isStringNullOrEmpty(concurrency)) {
+            concurrency = ConfigurationContext.getProperty(
+                    ConfigurationContext.ConfigurationProperties.SCENARIO_CONCURRENCY);
+        }
+        if (StringUtil.isStringNullOrEmpty(concurrency)) {
+            return 1;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(concurrency.trim()));
+        } catch (NumberFormatException e) {
+            logger.warn(StringUtil.concatStrings("Invalid ", TestGridConstants.SCENARIO_CONCURRENCY, " value '",
+                    concurrency, "'. Running the scenarios of test plan ", testPlan.getId(), " one after another."));
+            return 1;
+        }
+    }
+
+    /**
+     * Runs the test scripts of the given scenario configs, up to the given number at once.
+     * The first failure stops the scenario configs which have not completed yet.
+     *
+     * @param scenarioConfigs scenario configs to run
+     * @param concurrency     number of scenario configs that may run at once
+     * @throws TestPlanExecutorException thrown when a test script cannot be run
+     */
+    void runScenarios(List<ScenarioConfig> scenarioConfigs, int concurrency) throws TestPlanExecutorException {
+        if (concurrency < 2 || scenarioConfigs.size() < 2) {
+            runSequentially(scenarioConfigs);
+        } else if (hasSharedOutputDirs(scenarioConfigs)) {
+            logger.warn(StringUtil.concatStrings("Scenario configs of test plan ", testPlan.getId(),
+                    " share output dirs. Running them one after another."));
+            runSequentially(scenarioConfigs);
+        } else {
+            runInParallel(scenarioConfigs, Math.min(concurrency, scenarioConfigs.size()));
+        }
+    }
+
+    private void runSequentially(List<ScenarioConfig> scenarioConfigs) throws TestPlanExecutorException {
+        Path inputLocation = DataBucketsHelper.getInputLocation(testPlan);
+        for (ScenarioConfig scenarioConfig : scenarioConfigs) {
+            runScenario(scenarioConfig, inputLocation);
+        }
+    }
+
+    private void runInParallel(List<ScenarioConfig> scenarioConfigs, int concurrency)
+            throws TestPlanExecutorException {
+        logger.info(StringUtil.concatStrings("Running ", scenarioConfigs.size(), " scenario configs of test plan ",
+                testPlan.getId(), ", ", concurrency, " at a time."));
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "scenario-runner-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<?>> futures = new ArrayList<>(scenarioConfigs.size());
+        try {
+            for (ScenarioConfig scenarioConfig : scenarioConfigs) {
+                Path inputLocation = prepareScenarioInputs(scenarioConfig);
+                futures.add(executorService.submit(() -> {
+                    runScenario(scenarioConfig, inputLocation);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    futures.forEach(pending -> pending.cancel(true));
+                    if (e.getCause() instanceof TestPlanExecutorException) {
+                        throw (TestPlanExecutorException) e.getCause();
+                    }
+                    progressListener.accept(TestPlanPhase.TEST_PHASE_INCOMPLETE, TestPlanStatus.ERROR);
+                    throw new TestPlanExecutorException("Error while running the scenarios of test plan " +
+                            testPlan.getId(), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            progressListener.accept(TestPlanPhase.TEST_PHASE_INCOMPLETE, TestPlanStatus.ERROR);
+            throw new TestPlanExecutorException("Interrupted while running the scenarios of test plan " +
+                    testPlan.getId(), e);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Copies the input files of the test plan to the inputs location of the given scenario config, and points the
+     * scenario config to it.
+     */
+    private Path prepareScenarioInputs(ScenarioConfig scenarioConfig) throws TestPlanExecutorException {
+        Path inputLocation = DataBucketsHelper.getInputLocation(testPlan);
+        Path scenarioInputLocation = DataBucketsHelper.getScenarioInputLocation(testPlan, scenarioConfig);
+        try (Stream<Path> inputs = Files.list(inputLocation)) {
+            for (Path input : (Iterable<Path>) inputs.filter(Files::isRegularFile)::iterator) {
+                Files.copy(input, scenarioInputLocation.resolve(input.getFileName()),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            progressListener.accept(TestPlanPhase.TEST_PHASE_INCOMPLETE, TestPlanStatus.ERROR);
+            throw new TestPlanExecutorException("Error while preparing the inputs of scenario " +
+                    scenarioConfig.getName(), e);
+        }
+        scenarioConfig.setInputDir(scenarioInputLocation.toAbsolutePath().toString());
+        return scenarioInputLocation;
+    }
+
+    /**
+     * Writes the inputs of the given scenario config to the given inputs location, and runs its test script.
+     */
+    private void runScenario(ScenarioConfig scenarioConfig, Path inputLocation) throws TestPlanExecutorException {
+        DeploymentCreationResult deploymentCreationResult = testPlan.getDeploymentCreationResult();
+        Path deplPropPath = inputLocation.resolve(DataBucketsHelper.DEPL_OUT_FILE);
+        Path deplJsonPath = inputLocation.resolve(DataBucketsHelper.DEPL_OUT_JSONFILE);
+        Path outputJsonPath = inputLocation.resolve(DataBucketsHelper.PARAMS_JSONFILE);
+        try {
+            DataBucketStore dataBucketStore = DataBucketStore.open(deplPropPath, deplJsonPath, outputJsonPath);
+            dataBucketStore.persistAdditionalInputs(scenarioConfig.getInputParameters(), scenarioConfig.getName());
+            dataBucketStore.updateParamsJson("test");
+            dataBucketStore.flush();
+
+            scenarioConfig.setTestPlan(testPlan);
+            TestExecutor testExecutor = TestExecutorFactory.getTestExecutor(
+                    TestEngine.valueOf(scenarioConfig.getTestType()));
+
+            if (scenarioConfig.getFile() != null) {
+                Path scenarioDir = Paths.get(testPlan.getScenarioTestsRepository(), scenarioConfig.getName(),
+                        scenarioConfig.getFile());
+                Path parent = scenarioDir.getParent();
+                Path file = scenarioDir.getFileName();
+                if (parent == null) {
+                    parent = Paths.get("");
+                }
+                if (file == null) {
+                    file = Paths.get(TestGridConstants.TEST_SCRIPT);
+                }
+                testExecutor.init(parent.toString(), scenarioConfig.getName(), scenarioConfig);
+                testExecutor.execute(file.toString(), deploymentCreationResult);
+            } else {
+                logger.error("Error occurred as test.sh location is not specified");
+                progressListener.accept(TestPlanPhase.TEST_PHASE_INCOMPLETE, TestPlanStatus.ERROR);
+            }
+
+        } catch (TestAutomationException e) {
+            //todo: add reason to test-plan db record
+            progressListener.accept(TestPlanPhase.TEST_PHASE_INCOMPLETE, TestPlanStatus.ERROR);
+            throw new TestPlanExecutorException("Error while getting test executor for " +
+                    scenarioConfig.getTestType());
+        } catch (IOException e) {
+            progressListener.accept(TestPlanPhase.TEST_PHASE_INCOMPLETE, TestPlanStatus.ERROR);
+            throw new TestPlanExecutorException("Error while persisting the inputs of scenario " +
+                    scenarioConfig.getName(), e);
+        }
+    }
+
+    private static boolean hasSharedOutputDirs(List<ScenarioConfig> scenarioConfigs) {
+        Set<String> outputDirs = new HashSet<>();
+        for (ScenarioConfig scenarioConfig : scenarioConfigs) {
+            if (!outputDirs.add(scenarioConfig.getOutputDir())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
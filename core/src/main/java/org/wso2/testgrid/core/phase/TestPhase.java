@@ -21,20 +21,14 @@ package org.wso2.testgrid.core.phase;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.wso2.testgrid.automation.TestAutomationException;
-import org.wso2.testgrid.automation.TestEngine;
 import org.wso2.testgrid.automation.exception.ReportGeneratorException;
 import org.wso2.testgrid.automation.exception.ReportGeneratorInitializingException;
 import org.wso2.testgrid.automation.exception.ReportGeneratorNotFoundException;
-import org.wso2.testgrid.automation.executor.TestExecutor;
-import org.wso2.testgrid.automation.executor.TestExecutorFactory;
 import org.wso2.testgrid.automation.parser.ResultParser;
 import org.wso2.testgrid.automation.parser.ResultParserFactory;
 import org.wso2.testgrid.automation.report.ReportGenerator;
 import org.wso2.testgrid.automation.report.ReportGeneratorFactory;
 import org.wso2.testgrid.common.Agent;
-import org.wso2.testgrid.common.DeploymentCreationResult;
-import org.wso2.testgrid.common.InfrastructureProvider;
 import org.wso2.testgrid.common.Status;
 import org.wso2.testgrid.common.TestCase;
 import org.wso2.testgrid.common.TestGridConstants;
@@ -45,10 +39,6 @@ import org.wso2.testgrid.common.TestScenario;
 import org.wso2.testgrid.common.config.ConfigurationContext;
 import org.wso2.testgrid.common.config.InfrastructureConfig;
 import org.wso2.testgrid.common.config.ScenarioConfig;
-import org.wso2.testgrid.common.config.Script;
-import org.wso2.testgrid.common.exception.InfrastructureProviderInitializationException;
-import org.wso2.testgrid.common.exception.TestGridInfrastructureException;
-import org.wso2.testgrid.common.exception.UnsupportedProviderException;
 import org.wso2.testgrid.common.logging.KibanaDashboardBuilder;
 import org.wso2.testgrid.common.plugins.AWSArtifactReader;
 import org.wso2.testgrid.common.plugins.ArtifactReadable;
@@ -61,10 +51,9 @@ import org.wso2.testgrid.common.util.TestGridUtil;
 import org.wso2.testgrid.common.util.tinkerer.SyncCommandResponse;
 import org.wso2.testgrid.common.util.tinkerer.TinkererSDK;
 import org.wso2.testgrid.core.exception.TestPlanExecutorException;
-import org.wso2.testgrid.core.util.JsonPropFileUtil;
+import org.wso2.testgrid.core.util.DataBucketStore;
 import org.wso2.testgrid.dao.TestGridDAOException;
 import org.wso2.testgrid.dao.uow.TestPlanUOW;
-import org.wso2.testgrid.infrastructure.InfrastructureProviderFactory;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -154,6 +143,11 @@ public class TestPhase extends Phase {
         updateTestPlanStatusBasedOnResults();
         // Cleanup
         try {
+            if (!getTestPlan().getInfrastructureProvisionResult().isSuccess() ||
+                    !getTestPlan().getDeploymentCreationResult().isSuccess()) {
+                logger.error("Execution of previous steps failed. Trying to release the possibly provisioned "
+                        + "infrastructure");
+            }
             releaseInfrastructure();
         } catch (TestPlanExecutorException e) {
             logger.error("Error occurred while executing Test Phase (post actions of scenario-execution) for the " +
@@ -195,13 +189,12 @@ public class TestPhase extends Phase {
     }
 
     /**
-     * Run all the scenarios mentioned in the testgrid.yaml.
+     * Run all the scenarios mentioned in the testgrid.yaml. The scenarios may run in parallel (see
+     * {@link ScenarioRunner}), but their results are collected in the order of the scenario configs.
      */
     private void runScenarioTests()
             throws TestPlanExecutorException {
 
-        DeploymentCreationResult deploymentCreationResult = getTestPlan().getDeploymentCreationResult();
-
         //Append TestPlan id to deployment.properties file
         Map<String, Object> tgProperties = new HashMap<>();
         tgProperties.put("TEST_PLAN_ID", getTestPlan().getId());
@@ -223,68 +216,42 @@ public class TestPhase extends Phase {
             tgProperties.put("password", testgridPassword);
         }
 
-        JsonPropFileUtil.persistAdditionalInputs(tgProperties, deplPropPath, deplJsonPath);
-        JsonPropFileUtil.updateParamsJson(deplJsonPath, "test", outputJsonPath);
-
-        for (ScenarioConfig scenarioConfig : getTestPlan().getScenarioConfigs()) {
-
-            try {
+        try {
+            DataBucketStore dataBucketStore = DataBucketStore.open(deplPropPath, deplJsonPath, outputJsonPath);
+            dataBucketStore.persistAdditionalInputs(tgProperties);
+            dataBucketStore.updateParamsJson("test");
+            dataBucketStore.flush();
+        } catch (IOException e) {
+            persistTestPlanProgress(TestPlanPhase.TEST_PHASE_INCOMPLETE, TestPlanStatus.ERROR);
+            throw new TestPlanExecutorException("Error while persisting the inputs of test plan " +
+                    getTestPlan().getId(), e);
+        }
 
-                JsonPropFileUtil.persistAdditionalInputs(scenarioConfig.getInputParameters(), deplPropPath,
-                        deplJsonPath, scenarioConfig.getName());
-                JsonPropFileUtil.updateParamsJson(deplJsonPath, "test", outputJsonPath);
-
-                scenarioConfig.setTestPlan(getTestPlan());
-                TestExecutor testExecutor = TestExecutorFactory.getTestExecutor(
-                        TestEngine.valueOf(scenarioConfig.getTestType()));
-
-                if (scenarioConfig.getFile() != null) {
-                    Path scenarioDir = Paths.get(getTestPlan().getScenarioTestsRepository(), scenarioConfig.getName(),
-                            scenarioConfig.getFile());
-                    if (scenarioDir != null) {
-                        Path parent = scenarioDir.getParent();
-                        Path file = scenarioDir.getFileName();
-                        if (parent == null) {
-                            parent = Paths.get("");
-                        }
-                        if (file == null) {
-                            file = Paths.get("test.sh");
-                        }
-                        testExecutor.init(parent.toString(), scenarioConfig.getName(), scenarioConfig);
-                        testExecutor.execute(file.toString(), deploymentCreationResult);
-                    }
-                } else {
-                    logger.error("Error occurred as test.sh location is not specified");
-                    persistTestPlanProgress(TestPlanPhase.TEST_PHASE_INCOMPLETE, TestPlanStatus.ERROR);
-                }
+        ScenarioRunner scenarioRunner = new ScenarioRunner(getTestPlan(), this::persistTestPlanProgress);
+        scenarioRunner.runScenarios(getTestPlan().getScenarioConfigs(), ScenarioRunner.getConcurrency(getTestPlan()));
 
-            } catch (TestAutomationException e) {
-                //todo: add reason to test-plan db record
-                persistTestPlanProgress(TestPlanPhase.TEST_PHASE_INCOMPLETE, TestPlanStatus.ERROR);
-                throw new TestPlanExecutorException("Error while getting test executor for " +
-                        scenarioConfig.getTestType());
-            }
-        }
         List<TestScenario> testScenarios = new ArrayList<>();
         getTestPlan().setTestScenarios(testScenarios);
         for (ScenarioConfig scenarioConfig : getTestPlan().getScenarioConfigs()) {
             populateScenariosList(getTestPlan(), scenarioConfig);
         }
 
+        List<TestScenario> executedTestScenarios = new ArrayList<>();
         for (ScenarioConfig scenarioConfig : getTestPlan().getScenarioConfigs()) {
             for (TestScenario testScenario : scenarioConfig.getScenarios()) {
                 populateTestCases(getTestPlan(), testScenario, scenarioConfig);
-                try {
-                    persistTestScenario(testScenario);
-                } catch (TestPlanExecutorException e) {
-                    logger.error(StringUtil.concatStrings(
-                            "Error occurred while persisting test scenario ", testScenario.getName()), e);
-                    //todo: add reason to test-plan db record
-                    persistTestPlanProgress(TestPlanPhase.TEST_PHASE_INCOMPLETE, TestPlanStatus.ERROR);
-                }
+                updateTestScenarioStatus(testScenario);
+                executedTestScenarios.add(testScenario);
             }
             persistScenarioConfig(scenarioConfig);
         }
+        try {
+            persistTestScenarios(executedTestScenarios);
+        } catch (TestPlanExecutorException e) {
+            logger.error("Error occurred while persisting test scenarios of test plan " + getTestPlan().getId(), e);
+            //todo: add reason to test-plan db record
+            persistTestPlanProgress(TestPlanPhase.TEST_PHASE_INCOMPLETE, TestPlanStatus.ERROR);
+        }
 
     }
 
@@ -401,34 +368,40 @@ public class TestPhase extends Phase {
     }
 
     /**
-     * Persists the test scenario.
+     * Derives the status of the test scenario from the status of its test cases.
      *
-     * @param testScenario TestScenario object to persist
+     * @param testScenario TestScenario object to update
      */
-    private void persistTestScenario(TestScenario testScenario) throws TestPlanExecutorException {
-        //Persist test scenario
-        try {
-            if (testScenario.getTestCases().isEmpty()) {
-                testScenario.setStatus(Status.ERROR);
-            } else {
-                for (TestCase testCase : testScenario.getTestCases()) {
-                    if (Status.FAIL.equals(testCase.getStatus())) {
-                        testScenario.setStatus(Status.FAIL);
-                        break;
-                    } else {
-                        testScenario.setStatus(Status.SUCCESS);
-                    }
+    private void updateTestScenarioStatus(TestScenario testScenario) {
+        if (testScenario.getTestCases().isEmpty()) {
+            testScenario.setStatus(Status.ERROR);
+        } else {
+            for (TestCase testCase : testScenario.getTestCases()) {
+                if (Status.FAIL.equals(testCase.getStatus())) {
+                    testScenario.setStatus(Status.FAIL);
+                    break;
+                } else {
+                    testScenario.setStatus(Status.SUCCESS);
                 }
             }
+        }
+    }
 
-            getTestScenarioUOW().persistTestScenario(testScenario);
+    /**
+     * Persists the test scenarios along with their test cases in a single transaction.
+     *
+     * @param testScenarios TestScenario objects to persist
+     */
+    private void persistTestScenarios(List<TestScenario> testScenarios) throws TestPlanExecutorException {
+        try {
+            getTestScenarioUOW().persistTestScenarios(testScenarios);
             if (logger.isDebugEnabled()) {
                 logger.debug(StringUtil.concatStrings(
-                        "Persisted test scenario ", testScenario.getName(), " with test cases"));
+                        "Persisted ", testScenarios.size(), " test scenarios with test cases"));
             }
         } catch (TestGridDAOException e) {
             throw new TestPlanExecutorException(StringUtil.concatStrings(
-                    "Error while persisting test scenario ", testScenario.getName(), e));
+                    "Error while persisting test scenarios of test plan ", getTestPlan().getId()), e);
         }
     }
 
@@ -596,52 +569,6 @@ public class TestPhase extends Phase {
         return null;
     }
 
-    /**
-     * Destroys the given {@link InfrastructureConfig}.
-     *
-     * @throws TestPlanExecutorException thrown when error on destroying
-     *                                   infrastructure
-     */
-    private void releaseInfrastructure()
-            throws TestPlanExecutorException {
-
-        try {
-            InfrastructureConfig infrastructureConfig = getTestPlan().getInfrastructureConfig();
-            printMessage("\t\t Releasing infrastructure: " + infrastructureConfig.getFirstProvisioner().getName());
-
-            if (TestGridUtil.isDebugMode(getTestPlan())) {
-                printMessage(TestGridConstants.DEBUG_MODE + " is enabled. NOT RELEASING the infrastructure. The"
-                        + "infrastructure need to be manually released/de-allocated.");
-                return;
-            }
-            if (!getTestPlan().getInfrastructureProvisionResult().isSuccess() ||
-                    !getTestPlan().getDeploymentCreationResult().isSuccess()) {
-                logger.error("Execution of previous steps failed. Trying to release the possibly provisioned "
-                        + "infrastructure");
-            }
-
-            for (Script script : infrastructureConfig.getFirstProvisioner().getScripts()) {
-                if (!Script.Phase.CREATE.equals(script.getPhase())) {
-                    InfrastructureProvider infrastructureProvider = InfrastructureProviderFactory
-                            .getInfrastructureProvider(script);
-                    infrastructureProvider.release(infrastructureConfig, getTestPlan().getInfrastructureRepository(),
-                            getTestPlan(), script);
-                    // Destroy additional infra created for test execution
-                    infrastructureProvider.cleanup(getTestPlan());
-                }
-            }
-
-        } catch (TestGridInfrastructureException e) {
-            throw new TestPlanExecutorException(StringUtil
-                    .concatStrings("Error on infrastructure removal for deployment pattern '",
-                            getTestPlan().getDeploymentPattern(), "', in TestPlan"), e);
-        } catch (InfrastructureProviderInitializationException | UnsupportedProviderException e) {
-            throw new TestPlanExecutorException(StringUtil
-                    .concatStrings("No Infrastructure Provider implementation for deployment pattern '",
-                            getTestPlan().getDeploymentPattern(), "', in TestPlan"), e);
-        }
-    }
-
     /**
      * Persists the test plan with the status.
      * Decided by: if at least one test-case or test-scenario or scenario-config has an error,
@@ -675,6 +602,7 @@ public class TestPhase extends Phase {
                     //Only the Test-Plan's status will be changed to ERROR.
                     logger.error("Found erroneous scenario " + testScenario.getName());
                     persistTestPlanStatus(TestPlanStatus.ERROR);
+                    persistTestPlan();
                     return;
                 }
             }
@@ -686,6 +614,7 @@ public class TestPhase extends Phase {
                 if (scenarioConfig.getStatus() == Status.ERROR) {
                     logger.error("Found erroneous scenario config: " + scenarioConfig.getName());
                     persistTestPlanStatus(TestPlanStatus.ERROR);
+                    persistTestPlan();
                     return;
                 }
             }
@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.core.util;
+
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * Keeps the script parameters of a phase, which the shell scripts read from a data bucket, in memory and writes
+ * them back in batches. These are the .properties file of the phase, its intermediate json file and the params.json
+ * file. The files have the same content {@link JsonPropFileUtil} gives them, but each file is read once when the
+ * store is opened and written once per {@link #flush()}, instead of on each update.
+ * <p>
+ * A flush writes each changed file to a temporary file in the same directory and renames it over the file. Hence a
+ * file has either its previous or its new content, even if TestGrid dies while writing it. A failed flush leaves the
+ * files it could not write as they were, and keeps their changes for the next flush.
+ * <p>
+ * The scripts also write to the data bucket, and the store does not see those changes. Therefore a store should only
+ * be used between two script runs: flush it before running a script, and {@link #reload()} it afterwards.
+ * This class is not thread-safe.
+ *
+ * @since 1.0.8
+ */
+public class DataBucketStore {
+
+    private static final String GENERAL = "general";
+    private static final String CURRENT_SCRIPT = "currentscript";
+
+    private final Path propFilePath;
+    private final Path jsonFilePath;
+    private final Path paramsJsonPath;
+
+    private StringBuilder propFileContent;
+    // Properties of the .properties file in the order they first appear, with their last value.
+    private Map<String, String> properties;
+    private JSONObject phaseJson;
+    private JSONObject paramsJson;
+    private boolean propFileChanged;
+    private boolean jsonFileChanged;
+    private boolean paramsJsonChanged;
+
+    private DataBucketStore(Path propFilePath, Path jsonFilePath, Path paramsJsonPath) {
+        this.propFilePath = propFilePath;
+        this.jsonFilePath = jsonFilePath;
+        this.paramsJsonPath = paramsJsonPath;
+    }
+
+    /**
+     * Opens the store of the given files, reading the ones which exist.
+     *
+     * @param propFilePath   path of the .properties file of the phase
+     * @param jsonFilePath   path of the intermediate json file of the phase
+     * @param paramsJsonPath path of the params.json file
+     * @return the store
+     * @throws IOException if an existing file cannot be read
+     */
+    public static DataBucketStore open(Path propFilePath, Path jsonFilePath, Path paramsJsonPath)
+            throws IOException {
+        DataBucketStore store = new DataBucketStore(propFilePath, jsonFilePath, paramsJsonPath);
+        store.reload();
+        return store;
+    }
+
+    /**
+     * Reads the files again, discarding the changes which are not flushed.
+     *
+     * @throws IOException if an existing file cannot be read
+     */
+    public void reload() throws IOException {
+        propFileContent = new StringBuilder();
+        properties = new LinkedHashMap<>();
+        if (Files.exists(propFilePath)) {
+            propFileContent.append(new String(Files.readAllBytes(propFilePath), StandardCharsets.UTF_8));
+            loadProperties(propFileContent.toString());
+        }
+        phaseJson = readJson(jsonFilePath);
+        paramsJson = readJson(paramsJsonPath);
+        propFileChanged = false;
+        jsonFileChanged = false;
+        paramsJsonChanged = false;
+    }
+
+    /**
+     * Adds inputs which are not related to a specific script, as general values of the phase.
+     *
+     * @param inputs inputs to be added
+     * @see JsonPropFileUtil#persistAdditionalInputs(Map, Path, Path)
+     */
+    public void persistAdditionalInputs(Map<String, Object> inputs) {
+        if (phaseJson == null) {
+            phaseJson = new JSONObject();
+            phaseJson.put(GENERAL, new JSONObject(inputs));
+        } else if (!inputs.isEmpty()) {
+            if (phaseJson.has(GENERAL)) {
+                JSONObject generalJson = phaseJson.getJSONObject(GENERAL);
+                for (Map.Entry<String, Object> input : inputs.entrySet()) {
+                    generalJson.put(input.getKey(), input.getValue());
+                }
+            } else {
+                phaseJson.put(GENERAL, new JSONObject(inputs));
+            }
+        }
+        jsonFileChanged = true;
+        appendProperties(inputs);
+    }
+
+    /**
+     * Adds the inputs of the given script, and makes them, together with the general values, the inputs of the
+     * current script of the phase.
+     *
+     * @param inputs     inputs to be added
+     * @param scriptName name of the script
+     * @see JsonPropFileUtil#persistAdditionalInputs(Map, Path, Path, String)
+     */
+    public void persistAdditionalInputs(Map<String, Object> inputs, String scriptName) {
+        JSONObject scriptJson = new JSONObject(inputs);
+        if (phaseJson == null) {
+            phaseJson = new JSONObject();
+            phaseJson.put(scriptName, scriptJson);
+            phaseJson.put(CURRENT_SCRIPT, scriptJson);
+        } else {
+            JSONObject currentScriptJson = new JSONObject(inputs);
+            if (phaseJson.has(GENERAL)) {
+                JSONObject generalJson = phaseJson.getJSONObject(GENERAL);
+                Iterator<String> keys = generalJson.keys();
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    currentScriptJson.put(key, generalJson.get(key));
+                }
+            }
+            phaseJson.put(scriptName, scriptJson);
+            phaseJson.put(CURRENT_SCRIPT, currentScriptJson);
+        }
+        jsonFileChanged = true;
+        appendProperties(inputs);
+    }
+
+    /**
+     * Removes the given inputs of a script from the .properties file, which is then written with one line per
+     * property.
+     *
+     * @param inputs inputs of the script
+     * @see JsonPropFileUtil#removeScriptConfigParams(org.wso2.testgrid.common.config.Script, Path)
+     */
+    public void removeScriptConfigParams(Map<String, Object> inputs) {
+        properties.keySet().removeAll(inputs.keySet());
+        propFileContent = new StringBuilder();
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            propFileContent.append(property.getKey()).append('=').append(property.getValue())
+                    .append(System.lineSeparator());
+        }
+        propFileChanged = true;
+    }
+
+    /**
+     * Shows the inputs of the current script of the given phase, or its general values if there is no current
+     * script, under {@code <phase>-in} in params.json.
+     *
+     * @param phase currently executing phase
+     * @see JsonPropFileUtil#updateParamsJson(Path, String, Path)
+     */
+    public void updateParamsJson(String phase) {
+        if (phaseJson == null) {
+            return;
+        }
+        Object phaseInputs = phaseJson.has(CURRENT_SCRIPT) ? phaseJson.get(CURRENT_SCRIPT) : phaseJson.opt(GENERAL);
+        if (phaseInputs == null) {
+            return;
+        }
+        if (paramsJson == null) {
+            paramsJson = new JSONObject();
+        }
+        // Copy the inputs as they are now, since the general values are updated in place.
+        paramsJson.put(phase + "-in", new JSONObject(new JSONTokener(phaseInputs.toString())));
+        paramsJsonChanged = true;
+    }
+
+    /**
+     * Returns the last value of the given property, including the changes which are not flushed.
+     *
+     * @param key property key
+     * @return the value, or null if there is no such property
+     */
+    public String getProperty(String key) {
+        return properties.get(key);
+    }
+
+    /**
+     * Returns the properties, including the changes which are not flushed.
+     *
+     * @return unmodifiable view of the properties, in the order they were first added
+     */
+    public Map<String, String> getProperties() {
+        return Collections.unmodifiableMap(properties);
+    }
+
+    /**
+     * Returns whether there are changes which are not flushed.
+     *
+     * @return true if a file needs to be written
+     */
+    public boolean isDirty() {
+        return propFileChanged || jsonFileChanged || paramsJsonChanged;
+    }
+
+    /**
+     * Writes the changed files, each of them atomically. The files are written in the order of the .properties
+     * file, the json file of the phase and params.json, and the flush stops at the first file it cannot write.
+     *
+     * @throws IOException if a file cannot be written
+     */
+    public void flush() throws IOException {
+        if (propFileChanged) {
+            String content = propFileContent.toString();
+            writeAtomically(propFilePath, writer -> writer.write(content));
+            propFileChanged = false;
+        }
+        if (jsonFileChanged) {
+            writeAtomically(jsonFilePath, writer -> writeJson(phaseJson, writer));
+            jsonFileChanged = false;
+        }
+        if (paramsJsonChanged) {
+            writeAtomically(paramsJsonPath, writer -> writeJson(paramsJson, writer));
+            paramsJsonChanged = false;
+        }
+    }
+
+    private void appendProperties(Map<String, Object> inputs) {
+        for (Map.Entry<String, Object> input : inputs.entrySet()) {
+            String line = input.getKey() + "=" + input.getValue();
+            propFileContent.append(line).append(System.lineSeparator());
+            // Parse the line the way the readers of the file do, so that the view matches what they see.
+            loadProperties(line);
+        }
+        propFileChanged = propFileChanged || !inputs.isEmpty();
+    }
+
+    private void loadProperties(String content) {
+        Properties loader = new Properties() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public synchronized Object put(Object key, Object value) {
+                return DataBucketStore.this.properties.put((String) key, (String) value);
+            }
+        };
+        try {
+            loader.load(new StringReader(content));
+        } catch (IOException e) {
+            // A StringReader does not throw IOExceptions.
+            throw new IllegalStateException("Error while parsing properties", e);
+        }
+    }
+
+    private static JSONObject readJson(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return new JSONObject(new JSONTokener(reader));
+        }
+    }
+
+    private static void writeJson(JSONObject json, Writer writer) throws IOException {
+        json.write(writer);
+        writer.write("\n");
+    }
+
+    /**
+     * Writes the given file to a temporary file next to it, forces it to the disk, and renames it to the file.
+     * The temporary file is deleted if any of these fail.
+     */
+    private static void writeAtomically(Path path, ContentWriter contentWriter) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Path tempPath = directory.resolve("." + path.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        boolean moved = false;
+        try {
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE);
+                 BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                         Channels.newOutputStream(channel), StandardCharsets.UTF_8))) {
+                contentWriter.write(writer);
+                writer.flush();
+                channel.force(true);
+            }
+            try {
+                Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            moved = true;
+        } finally {
+            if (!moved) {
+                Files.deleteIfExists(tempPath);
+            }
+        }
+    }
+
+    /**
+     * Writes the content of a file.
+     */
+    @FunctionalInterface
+    private interface ContentWriter {
+
+        void write(Writer writer) throws IOException;
+    }
+}
@@ -48,7 +48,8 @@ import java.util.Properties;
 
 /**
  * This class is used for managing the properties files and json files used by TestGrid to store
- * script parameters
+ * script parameters. Each call reads and writes the files it updates; see {@link DataBucketStore} to update them
+ * in batches.
  *
  * @since 1.0.8
  */
@@ -68,10 +69,8 @@ public class JsonPropFileUtil {
         // If value is not specified from a script add the value as a general value to the json file
         File phasejsonFile = new File(jsonFilePath.toString());
         if (phasejsonFile.exists()) {
-            try {
-
-                // If the JSON file exists read existing values and append to the file
-                InputStream phasejsonInputStream = new FileInputStream(jsonFilePath.toString());
+            // If the JSON file exists read existing values and append to the file
+            try (InputStream phasejsonInputStream = new FileInputStream(jsonFilePath.toString())) {
                 JSONTokener phasejsonTokener = new JSONTokener(phasejsonInputStream);
                 JSONObject phaseinputJson = new JSONObject(phasejsonTokener);
 
@@ -126,8 +125,7 @@ public class JsonPropFileUtil {
 
         File phasejsonFile = new File(jsonFilePath.toString());
         if (phasejsonFile.exists()) {
-            try {
-                InputStream phasejsonInputStream = new FileInputStream(jsonFilePath.toString());
+            try (InputStream phasejsonInputStream = new FileInputStream(jsonFilePath.toString())) {
                 JSONTokener phasejsonTokener = new JSONTokener(phasejsonInputStream);
                 JSONObject phaseJSON = new JSONObject(phasejsonTokener);
                 JSONObject generalProps = null;
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.wso2.testgrid.infrastructure;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates a t-wise covering array: a small set of rows, each selecting one value of every parameter, such that
+ * every combination of values of any t parameters appears in at least one row.
+ * <p>
+ * The rows are built greedily. Each row starts from a combination which is not covered yet, and the remaining
+ * parameters are assigned, in a random order, the value covering the most new combinations together with the
+ * parameters assigned before. Out of a number of such candidate rows, the one covering the most new combinations is
+ * taken. The random choices are made with the given seed, hence the same input always gives the same rows.
+ *
+ * @since 1.0.0
+ */
+public class CoveringArrayGenerator {
+
+    private static final int CANDIDATES_PER_ROW = 50;
+
+    private final int strength;
+    private final long seed;
+
+    /**
+     * Constructs a generator.
+     *
+     * @param strength number of parameters whose value combinations are covered, 2 for pairwise
+     * @param seed     seed of the random choices
+     */
+    public CoveringArrayGenerator(int strength, long seed) {
+        if (strength < 1) {
+            throw new IllegalArgumentException("The strength of a covering array should be at least 1, but was "
+                    + strength);
+        }
+        this.strength = strength;
+        this.seed = seed;
+    }
+
+    /**
+     * Generates the rows of a covering array for parameters with the given numbers of values. A strength larger
+     * than the number of parameters covers all the combinations.
+     *
+     * @param sizes number of values of each parameter
+     * @return rows of value indexes, one index per parameter
+     */
+    public List<int[]> generate(int[] sizes) {
+        for (int size : sizes) {
+            if (size == 0) {
+                return Collections.emptyList();
+            }
+        }
+        if (sizes.length == 0) {
+            return Collections.singletonList(new int[0]);
+        }
+        return new Coverage(sizes, Math.min(strength, sizes.length)).generate(new Random(seed));
+    }
+
+    /**
+     * Keeps track of the value combinations of each set of t parameters which are not covered yet.
+     */
+    private static class Coverage {
+
+        private final int[] sizes;
+        // Sets of t parameters, in the ascending order of the parameter indexes.
+        private final int[][] parameterSets;
+        // Uncovered value combinations of each parameter set, indexed by mixed-radix value indexes.
+        private final boolean[][] uncovered;
+        // Indexes of the parameter sets which contain each parameter.
+        private final int[][] parameterSetsOf;
+        private long uncoveredCount;
+
+        Coverage(int[] sizes, int strength) {
+            this.sizes = sizes;
+            List<int[]> sets = new ArrayList<>();
+            addParameterSets(sets, new int[strength], 0, 0);
+            this.parameterSets = sets.toArray(new int[0][]);
+            this.uncovered = new boolean[parameterSets.length][];
+            List<List<Integer>> setsOf = new ArrayList<>();
+            for (int i = 0; i < sizes.length; i++) {
+                setsOf.add(new ArrayList<>());
+            }
+            for (int s = 0; s < parameterSets.length; s++) {
+                int combinations = 1;
+                for (int parameter : parameterSets[s]) {
+                    combinations *= sizes[parameter];
+                    setsOf.get(parameter).add(s);
+                }
+                uncovered[s] = new boolean[combinations];
+                Arrays.fill(uncovered[s], true);
+                uncoveredCount += combinations;
+            }
+            this.parameterSetsOf = new int[sizes.length][];
+            for (int i = 0; i < sizes.length; i++) {
+                parameterSetsOf[i] = setsOf.get(i).stream().mapToInt(Integer::intValue).toArray();
+            }
+        }
+
+        private void addParameterSets(List<int[]> sets, int[] current, int depth, int from) {
+            if (depth == current.length) {
+                sets.add(current.clone());
+                return;
+            }
+            for (int parameter = from; parameter <= sizes.length - (current.length - depth); parameter++) {
+                current[depth] = parameter;
+                addParameterSets(sets, current, depth + 1, parameter + 1);
+            }
+        }
+
+        List<int[]> generate(Random random) {
+            List<int[]> rows = new ArrayList<>();
+            while (uncoveredCount > 0) {
+                int[] bestRow = null;
+                int bestCovered = -1;
+                for (int candidate = 0; candidate < CANDIDATES_PER_ROW; candidate++) {
+                    int[] row = createRow(random);
+                    int covered = countUncovered(row);
+                    if (covered > bestCovered) {
+                        bestRow = row;
+                        bestCovered = covered;
+                    }
+                }
+                markCovered(bestRow);
+                rows.add(bestRow);
+            }
+            return rows;
+        }
+
+        private int[] createRow(Random random) {
+            int[] row = new int[sizes.length];
+            Arrays.fill(row, -1);
+            boolean[] assigned = new boolean[sizes.length];
+
+            // Start from an uncovered combination, so that each row covers at least one.
+            int[] parameterSet = startingCombination(random, row);
+            for (int parameter : parameterSet) {
+                assigned[parameter] = true;
+            }
+
+            List<Integer> order = new ArrayList<>(sizes.length);
+            for (int i = 0; i < sizes.length; i++) {
+                if (!assigned[i]) {
+                    order.add(i);
+                }
+            }
+            Collections.shuffle(order, random);
+            for (int parameter : order) {
+                int bestValue = 0;
+                int bestCovered = -1;
+                int ties = 0;
+                for (int value = 0; value < sizes[parameter]; value++) {
+                    row[parameter] = value;
+                    int covered = countUncovered(row, parameter, assigned);
+                    if (covered > bestCovered) {
+                        bestValue = value;
+                        bestCovered = covered;
+                        ties = 1;
+                    } else if (covered == bestCovered && random.nextInt(++ties) == 0) {
+                        bestValue = value;
+                    }
+                }
+                row[parameter] = bestValue;
+                assigned[parameter] = true;
+            }
+            return row;
+        }
+
+        /**
+         * Sets an uncovered combination of a random parameter set in the given row.
+         *
+         * @return the parameter set of the combination
+         */
+        private int[] startingCombination(Random random, int[] row) {
+            int start = random.nextInt(parameterSets.length);
+            for (int offset = 0; offset < parameterSets.length; offset++) {
+                int s = (start + offset) % parameterSets.length;
+                boolean[] combinations = uncovered[s];
+                int first = random.nextInt(combinations.length);
+                for (int i = 0; i < combinations.length; i++) {
+                    int combination = (first + i) % combinations.length;
+                    if (combinations[combination]) {
+                        int[] parameters = parameterSets[s];
+                        for (int p = parameters.length - 1; p >= 0; p--) {
+                            row[parameters[p]] = combination % sizes[parameters[p]];
+                            combination /= sizes[parameters[p]];
+                        }
+                        return parameters;
+                    }
+                }
+            }
+            throw new IllegalStateException("There are no uncovered combinations.");
+        }
+
+        /**
+         * Counts the uncovered combinations of the given row among the parameter sets of the given parameter whose
+         * other parameters are assigned.
+         */
+        private int countUncovered(int[] row, int parameter, boolean[] assigned) {
+            int count = 0;
+            for (int s : parameterSetsOf[parameter]) {
+                boolean complete = true;
+                for (int other : parameterSets[s]) {
+                    if (other != parameter && !assigned[other]) {
+                        complete = false;
+                        break;
+                    }
+                }
+                if (complete && uncovered[s][combinationIndex(s, row)]) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private int countUncovered(int[] row) {
+            int count = 0;
+            for (int s = 0; s < parameterSets.length; s++) {
+                if (uncovered[s][combinationIndex(s, row)]) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private void markCovered(int[] row) {
+            for (int s = 0; s < parameterSets.length; s++) {
+                int combination = combinationIndex(s, row);
+                if (uncovered[s][combination]) {
+                    uncovered[s][combination] = false;
+                    uncoveredCount--;
+                }
+            }
+        }
+
+        private int combinationIndex(int parameterSet, int[] row) {
+            int index = 0;
+            for (int parameter : parameterSets[parameterSet]) {
+                index = index * sizes[parameter] + row[parameter];
+            }
+            return index;
+        }
+    }
+}
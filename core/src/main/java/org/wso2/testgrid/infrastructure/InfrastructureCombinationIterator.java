@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.wso2.testgrid.infrastructure;
+
+import org.wso2.testgrid.common.infrastructure.InfrastructureCombination;
+import org.wso2.testgrid.common.infrastructure.InfrastructureParameter;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates the infrastructure combinations of a list of infrastructure parameter lists without generating them
+ * up front. Each combination has one parameter from each list, and its id is made of the parameter names in the
+ * order of the lists.
+ * <p>
+ * The position is kept as one index per list. For all the combinations, the indexes form a mixed-radix counter whose
+ * last list changes fastest. For at least one of each parameter, all indexes advance together and wrap around at the
+ * end of their lists.
+ *
+ * @since 1.0.0
+ */
+public class InfrastructureCombinationIterator implements Iterator<InfrastructureCombination> {
+
+    private final InfrastructureParameter[][] parameters;
+    private final int[] indexes;
+    private final boolean advanceTogether;
+    private final long count;
+    private long position;
+
+    private InfrastructureCombinationIterator(List<? extends Collection<InfrastructureParameter>> lists,
+                                              boolean advanceTogether, long count) {
+        this.parameters = new InfrastructureParameter[lists.size()][];
+        for (int i = 0; i < lists.size(); i++) {
+            parameters[i] = lists.get(i).toArray(new InfrastructureParameter[0]);
+        }
+        this.indexes = new int[lists.size()];
+        this.advanceTogether = advanceTogether;
+        this.count = count;
+    }
+
+    /**
+     * Returns an iterator of all the combinations of the given lists. There are no combinations when a list is
+     * empty, and one empty combination when there are no lists.
+     *
+     * @param lists infrastructure parameter lists
+     * @return iterator of all the combinations
+     */
+    public static InfrastructureCombinationIterator allOf(List<? extends Collection<InfrastructureParameter>> lists) {
+        long count = 1;
+        for (Collection<InfrastructureParameter> list : lists) {
+            if (count > Long.MAX_VALUE / Math.max(1, list.size())) {
+                count = Long.MAX_VALUE;
+            } else {
+                count *= list.size();
+            }
+        }
+        return new InfrastructureCombinationIterator(lists, false, count);
+    }
+
+    /**
+     * Returns an iterator of the given number of combinations which include each parameter of the given lists at
+     * least once when the count is the size of the largest list. The n-th combination has the n-th parameter of each
+     * list, wrapping around at the end of the shorter lists. There are no combinations when a list is empty.
+     *
+     * @param lists infrastructure parameter lists
+     * @param count number of combinations
+     * @return iterator of the combinations
+     */
+    public static InfrastructureCombinationIterator atLeastOneOf(
+            List<? extends Collection<InfrastructureParameter>> lists, int count) {
+        boolean hasEmptyList = lists.stream().anyMatch(Collection::isEmpty);
+        return new InfrastructureCombinationIterator(lists, true, hasEmptyList ? 0 : count);
+    }
+
+    /**
+     * Returns the number of combinations iterated in total, or {@link Long#MAX_VALUE} if there are more.
+     *
+     * @return the number of combinations
+     */
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return position < count;
+    }
+
+    @Override
+    public InfrastructureCombination next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        InfrastructureCombination combination = new InfrastructureCombination();
+        StringBuilder infraCombinationId = new StringBuilder();
+        for (int i = 0; i < parameters.length; i++) {
+            InfrastructureParameter parameter = parameters[i][indexes[i]];
+            combination.addParameter(parameter);
+            if (i > 0) {
+                infraCombinationId.append('_');
+            }
+            infraCombinationId.append(parameter.getName());
+        }
+        combination.setInfraCombinationId(infraCombinationId.toString());
+        advance();
+        return combination;
+    }
+
+    /**
+     * Returns a sequential stream of the remaining combinations, which are generated as the stream is consumed.
+     *
+     * @return stream of the combinations
+     */
+    public Stream<InfrastructureCombination> stream() {
+        int characteristics = Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+        Spliterator<InfrastructureCombination> spliterator = count == Long.MAX_VALUE ?
+                Spliterators.spliteratorUnknownSize(this, characteristics) :
+                Spliterators.spliterator(this, count - position, characteristics);
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    private void advance() {
+        position++;
+        if (advanceTogether) {
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = (indexes[i] + 1) % parameters[i].length;
+            }
+            return;
+        }
+        for (int i = indexes.length - 1; i >= 0; i--) {
+            if (++indexes[i] < parameters[i].length) {
+                return;
+            }
+            indexes[i] = 0;
+        }
+    }
+}
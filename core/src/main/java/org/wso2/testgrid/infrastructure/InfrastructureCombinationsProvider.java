@@ -32,18 +32,25 @@ import org.wso2.testgrid.dao.uow.InfrastructureParameterUOW;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.wso2.testgrid.common.TestGridConstants.ALL_ALGO;
 import static org.wso2.testgrid.common.TestGridConstants.AT_LEAST_ONE_ALGO;
+import static org.wso2.testgrid.common.TestGridConstants.DEFAULT_T_WISE_SEED;
+import static org.wso2.testgrid.common.TestGridConstants.DEFAULT_T_WISE_STRENGTH;
 import static org.wso2.testgrid.common.TestGridConstants.EXACT_ALGO;
+import static org.wso2.testgrid.common.TestGridConstants.T_WISE_ALGO;
 
 /**
  * This class provides list of infrastructure combinations. Scenario tests
@@ -67,6 +74,25 @@ public class InfrastructureCombinationsProvider {
      */
     public Set<InfrastructureCombination> getCombinations(
             TestgridYaml testgridYaml, String schedule) throws TestGridDAOException {
+        Set<InfrastructureCombination> infrastructureCombinations = streamCombinations(testgridYaml, schedule)
+                .collect(Collectors.toCollection(HashSet::new));
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format(
+                    "Generated set of infrastructure combinations: %s", infrastructureCombinations));
+        }
+        return infrastructureCombinations;
+    }
+
+    /**
+     * Returns the combinations of {@link #getCombinations(TestgridYaml, String)} as a stream. The combinations are
+     * generated as the stream is consumed, hence a consumer which stops early does not generate the rest.
+     *
+     * @param testgridYaml          testgrid yaml file
+     * @param schedule              schedule of the build
+     * @return  stream of infrastructure combinations
+     */
+    public Stream<InfrastructureCombination> streamCombinations(
+            TestgridYaml testgridYaml, String schedule) throws TestGridDAOException {
 
         Set<InfrastructureValueSet> ivSets = new InfrastructureParameterUOW().getValueSet();
 
@@ -86,14 +112,10 @@ public class InfrastructureCombinationsProvider {
             if (listOfInfrastructureList.isEmpty()) {
                 logger.warn("Received zero infrastructure-parameters from includes or excludes section of " +
                         "testgrid.yaml file.");
-                return Collections.emptySet();
+                return Stream.empty();
             }
 
-            Set<InfrastructureCombination> infrastructureCombinations = new HashSet<>();
-            InfrastructureCombination infrastructureCombination = new InfrastructureCombination();
-            generateAllCombinations(listOfInfrastructureList, infrastructureCombinations, 0,
-                    infrastructureCombination, "");
-            return infrastructureCombinations;
+            return InfrastructureCombinationIterator.allOf(listOfInfrastructureList).stream();
         }
 
         List<JobConfig.Build> builds = jobconfig.getBuilds();
@@ -106,30 +128,23 @@ public class InfrastructureCombinationsProvider {
             if (logger.isDebugEnabled()) {
                 logger.debug(String.format("Selected combination algorithm: %s", combinationAlgorithm));
             }
-            Set<InfrastructureCombination> infrastructureCombinations;
             switch (combinationAlgorithm) {
                 case EXACT_ALGO:
-                    infrastructureCombinations = getCombinationsForExact(ivSets, scheduledBuild.get());
-                    break;
+                    return streamCombinationsForExact(ivSets, scheduledBuild.get());
                 case AT_LEAST_ONE_ALGO:
-                    infrastructureCombinations = getCombinationsForLeastOne(ivSets, scheduledBuild.get());
-                    break;
+                    return streamCombinationsForLeastOne(ivSets, scheduledBuild.get());
                 case ALL_ALGO:
-                    infrastructureCombinations = getCombinationsForAll(ivSets, scheduledBuild.get());
-                    break;
+                    return streamCombinationsForAll(ivSets, scheduledBuild.get());
+                case T_WISE_ALGO:
+                    return getCombinationsForTWise(ivSets, scheduledBuild.get(), testgridYaml).stream();
                 default:
                     logger.warn("Selected combination algorithm is not valid for given schedule. " +
                             "Selected combination algorithm: " + combinationAlgorithm);
-                    return Collections.emptySet();
-            }
-            if (logger.isDebugEnabled()) {
-                logger.info(String.format(
-                        "Generated set of infrastructure combinations: %s", infrastructureCombinations));
+                    return Stream.empty();
             }
-            return infrastructureCombinations;
         }
         logger.warn("Can not find any build from configuration yaml for given schedule builder");
-        return Collections.emptySet();
+        return Stream.empty();
     }
 
     /**
@@ -138,57 +153,54 @@ public class InfrastructureCombinationsProvider {
      *
      * @param valueSets          set of infrastructure parameters
      * @param scheduledBuild    scheduled build
-     * @return  infrastructure combination set
+     * @return  infrastructure combination stream
      */
-    private Set<InfrastructureCombination> getCombinationsForExact(
+    private Stream<InfrastructureCombination> streamCombinationsForExact(
             Set<InfrastructureValueSet> valueSets, JobConfig.Build scheduledBuild) {
 
         if (valueSets.size() == 0) {
-            return Collections.emptySet();
+            return Stream.empty();
         }
 
-        Set<InfrastructureCombination> infrastructureCombinations = new HashSet<>();
+        Map<String, Map<String, InfrastructureParameter>> parametersByType = indexByTypeAndName(valueSets);
+        return scheduledBuild.getCombinations().stream()
+                .map(combination -> toExactCombination(parametersByType, combination))
+                .filter(Objects::nonNull);
+    }
 
-        for (TreeMap<String, String> combination : scheduledBuild.getCombinations()) {
-            InfrastructureCombination infraCombination = new InfrastructureCombination();
-            StringBuilder infraCombinationId = new StringBuilder();
-            boolean isValidResource = true;
-            for (Map.Entry<String, String> entry : combination.entrySet()) {
-                Set<InfrastructureParameter> infrastructureParameters;
-
-                Optional<InfrastructureValueSet> infraValueSet = findInfraValueSetByType(valueSets, entry.getKey());
-                if (infraValueSet.isPresent()) {
-                    infrastructureParameters = infraValueSet.get().getValues();
-                    if (findInfraParameterByName(infrastructureParameters, entry.getValue()).isPresent()) {
-                        InfrastructureParameter infraParameter = findInfraParameterByName(
-                                infrastructureParameters, entry.getValue()).get();
-                        infraCombination.addParameter(infraParameter);
-                        infraCombinationId.append("_").append(entry.getValue());
-                    } else {
-                        logger.warn("Since the given " + entry.getKey() + " infrastructure type is a reserved type " +
-                                "and " + entry.getValue() + " not exist in database, can not generate combination. " +
-                                "Please use existing infrastructure resource for reserved type.");
-                        isValidResource = false;
-                        break;
-                    }
-                } else {
-                    InfrastructureParameter infraParameter = new InfrastructureParameter(
-                            entry.getValue(), entry.getKey(),
-                            "", true);
-                    infraCombination.addParameter(infraParameter);
-                    infraCombinationId.append("_").append(entry.getValue());
+    /**
+     * Returns the infrastructure combination of the given infrastructure parameter names by type.
+     *
+     * @param parametersByType infrastructure parameters of the reserved types by type and name
+     * @param combination      infrastructure parameter names by type
+     * @return  infrastructure combination, or null if a parameter of a reserved type does not exist
+     */
+    private InfrastructureCombination toExactCombination(
+            Map<String, Map<String, InfrastructureParameter>> parametersByType, TreeMap<String, String> combination) {
+        InfrastructureCombination infraCombination = new InfrastructureCombination();
+        StringBuilder infraCombinationId = new StringBuilder();
+        for (Map.Entry<String, String> entry : combination.entrySet()) {
+            Map<String, InfrastructureParameter> infrastructureParameters = parametersByType.get(entry.getKey());
+            if (infrastructureParameters != null) {
+                InfrastructureParameter infraParameter = infrastructureParameters.get(entry.getValue());
+                if (infraParameter == null) {
+                    logger.warn("Since the given " + entry.getKey() + " infrastructure type is a reserved type " +
+                            "and " + entry.getValue() + " not exist in database, can not generate combination. " +
+                            "Please use existing infrastructure resource for reserved type.");
+                    return null;
                 }
+                infraCombination.addParameter(infraParameter);
+            } else {
+                infraCombination.addParameter(new InfrastructureParameter(entry.getValue(), entry.getKey(),
+                        "", true));
             }
-
-            if (isValidResource) {
-                String infraCombinationIdStr = infraCombinationId.toString();
-                infraCombinationIdStr = infraCombinationIdStr.startsWith("_") ?
-                        infraCombinationIdStr.substring(1) : infraCombinationIdStr;
-                infraCombination.setInfraCombinationId(infraCombinationIdStr);
-                infrastructureCombinations.add(infraCombination);
+            if (infraCombinationId.length() > 0) {
+                infraCombinationId.append("_");
             }
+            infraCombinationId.append(entry.getValue());
         }
-        return infrastructureCombinations;
+        infraCombination.setInfraCombinationId(infraCombinationId.toString());
+        return infraCombination;
     }
 
     /**
@@ -199,94 +211,164 @@ public class InfrastructureCombinationsProvider {
      *
      * @param valueSets          set of infrastructure parameters
      * @param scheduledBuild    scheduled build
+     * @return  infrastructure combination stream
+     */
+    private Stream<InfrastructureCombination> streamCombinationsForLeastOne(Set<InfrastructureValueSet> valueSets,
+                                                                            JobConfig.Build scheduledBuild) {
+        if (valueSets.size() == 0) {
+            return Stream.empty();
+        }
+
+        int maxSize = scheduledBuild.getInfraResources().stream()
+                .flatMap(infraResources -> infraResources.values().stream())
+                .mapToInt(List::size)
+                .max()
+                .orElse(0);
+        return InfrastructureCombinationIterator.atLeastOneOf(getListOfInfrastructureList(valueSets, scheduledBuild),
+                maxSize).stream();
+    }
+
+    /**
+     * This function is used to generate combination using given infrastructure resources in testgrid.yaml file
+     * according to the all combinations algorithm.
+     *
+     * @param valueSets          set of infrastructure parameters
+     * @param scheduledBuild    scheduled build
      * @return  infrastructure combination set
      */
-    private Set<InfrastructureCombination> getCombinationsForLeastOne(Set<InfrastructureValueSet> valueSets,
-                                                                      JobConfig.Build scheduledBuild) {
+    public Set<InfrastructureCombination> getCombinationsForAll(
+            Set<InfrastructureValueSet> valueSets, JobConfig.Build scheduledBuild) {
+        return streamCombinationsForAll(valueSets, scheduledBuild).collect(Collectors.toCollection(HashSet::new));
+    }
+
+    /**
+     * Returns the combinations of {@link #getCombinationsForAll(Set, JobConfig.Build)} as a stream, generated as the
+     * stream is consumed.
+     *
+     * @param valueSets          set of infrastructure parameters
+     * @param scheduledBuild    scheduled build
+     * @return  infrastructure combination stream
+     */
+    public Stream<InfrastructureCombination> streamCombinationsForAll(
+            Set<InfrastructureValueSet> valueSets, JobConfig.Build scheduledBuild) {
+
         if (valueSets.size() == 0) {
-            return Collections.emptySet();
+            return Stream.empty();
         }
 
-        int maxSize = 0;
-        int infrastructureCount = 0;
-        Set<InfrastructureCombination> infrastructureCombinations = new HashSet<>();
-        List<List<InfrastructureParameter>> listOfInfrastructureList = new ArrayList<>();
-        for (TreeMap<String, List<String>> infraResources : scheduledBuild.getInfraResources()) {
-            for (Map.Entry<String, List<String>> entry : infraResources.entrySet()) {
-                List<InfrastructureParameter> infrastructureList = new ArrayList<>();
-                if (findInfraValueSetByType(valueSets, entry.getKey()).isPresent()) {
-                    Set<InfrastructureParameter> infrastructureParameters = findInfraValueSetByType(
-                            valueSets, entry.getKey()).get().getValues();
-                    for (String name : entry.getValue()) {
-                        if (findInfraParameterByName(infrastructureParameters, name).isPresent()) {
-                            infrastructureList.add(findInfraParameterByName(infrastructureParameters, name).get());
-                        } else {
-                            logger.warn("Since the given " + entry.getKey() + " infrastructure type is a reserved " +
-                                    "type and " + name + " not exist in database, can not generate " +
-                                    "combination. Please use existing infrastructure resource for reserved type.");
-                        }
-                    }
-                } else {
-                    logger.warn("Since the given " + entry.getKey() + " infrastructure is not a reserved type," +
-                            " adding resources without properties.");
-                    for (String name : entry.getValue()) {
-                        InfrastructureParameter infrastructureParameter = new InfrastructureParameter(
-                                name, entry.getKey(), "", true);
-                        infrastructureList.add(infrastructureParameter);
-                    }
-                }
-                if (maxSize < entry.getValue().size()) {
-                    maxSize = entry.getValue().size();
-                }
-                listOfInfrastructureList.add(infrastructureList);
-                infrastructureCount++;
-            }
+        return InfrastructureCombinationIterator.allOf(getListOfInfrastructureList(valueSets, scheduledBuild))
+                .stream();
+    }
+
+    /**
+     * This function is used to generate combination using given infrastructure resources in testgrid.yaml file
+     * according to the t-wise algorithm. The generated combinations cover every combination of values of any t
+     * infrastructure types, t being the strength of the build (2, pairwise, by default), with far fewer
+     * combinations than the all combinations algorithm.
+     * <p>
+     * The infrastructure resources of the build are used, or the infrastructure value sets if the build has none.
+     * Either is filtered by the includes or excludes of the testgrid.yaml. The same input and seed of the build
+     * always give the same combinations.
+     *
+     * @param valueSets          set of infrastructure parameters
+     * @param scheduledBuild    scheduled build
+     * @param testgridYaml      testgrid.yaml config
+     * @return  infrastructure combination list
+     */
+    public List<InfrastructureCombination> getCombinationsForTWise(
+            Set<InfrastructureValueSet> valueSets, JobConfig.Build scheduledBuild, TestgridYaml testgridYaml) {
+
+        if (valueSets.isEmpty() && scheduledBuild.getInfraResources().isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<List<InfrastructureParameter>> listOfInfrastructureList;
+        if (scheduledBuild.getInfraResources().isEmpty()) {
+            // Value sets are unordered, hence they are sorted for the combinations to be reproducible.
+            listOfInfrastructureList = getListOfInfrastructureList(filterInfrastructures(valueSets, testgridYaml));
+            listOfInfrastructureList.forEach(Collections::sort);
+            listOfInfrastructureList.sort(Comparator.comparing(list -> list.get(0).getType()));
+        } else {
+            listOfInfrastructureList = filterInfrastructureLists(
+                    getListOfInfrastructureList(valueSets, scheduledBuild), testgridYaml);
+        }
+        if (listOfInfrastructureList.isEmpty()) {
+            return Collections.emptyList();
         }
 
-        for (int combinationCount = 0; combinationCount < maxSize; combinationCount++) {
+        int strength = scheduledBuild.getStrength() == null ? DEFAULT_T_WISE_STRENGTH : scheduledBuild.getStrength();
+        long seed = scheduledBuild.getSeed() == null ? DEFAULT_T_WISE_SEED : scheduledBuild.getSeed();
+        int[] sizes = listOfInfrastructureList.stream().mapToInt(List::size).toArray();
+        List<InfrastructureCombination> infrastructureCombinations = new ArrayList<>();
+        for (int[] row : new CoveringArrayGenerator(strength, seed).generate(sizes)) {
             InfrastructureCombination infrastructureCombination = new InfrastructureCombination();
             StringBuilder infraCombinationId = new StringBuilder();
-            for (int resourceCount = 0; resourceCount < infrastructureCount; resourceCount++) {
-                InfrastructureParameter infrastructureParameter = listOfInfrastructureList.get(resourceCount).get(
-                        combinationCount % listOfInfrastructureList.get(resourceCount).size());
+            for (int i = 0; i < row.length; i++) {
+                InfrastructureParameter infrastructureParameter = listOfInfrastructureList.get(i).get(row[i]);
                 infrastructureCombination.addParameter(infrastructureParameter);
-                infraCombinationId.append("_").append(infrastructureParameter.getName());
+                if (i > 0) {
+                    infraCombinationId.append("_");
+                }
+                infraCombinationId.append(infrastructureParameter.getName());
             }
-            String infraCombinationIdStr = infraCombinationId.toString();
-            infraCombinationIdStr = infraCombinationIdStr.startsWith("_") ?
-                    infraCombinationIdStr.substring(1) : infraCombinationIdStr;
-            infrastructureCombination.setInfraCombinationId(infraCombinationIdStr);
+            infrastructureCombination.setInfraCombinationId(infraCombinationId.toString());
             infrastructureCombinations.add(infrastructureCombination);
         }
 
+        long allCount = InfrastructureCombinationIterator.allOf(listOfInfrastructureList).getCount();
+        logger.info(String.format("Generated %d %d-wise infrastructure combinations instead of all %d combinations "
+                        + "(%.1fx fewer).", infrastructureCombinations.size(), Math.min(strength, sizes.length),
+                allCount, (double) allCount / Math.max(1, infrastructureCombinations.size())));
         return infrastructureCombinations;
     }
 
     /**
-     * This function is used to generate combination using given infrastructure resources in testgrid.yaml file
-     * according to the all combinations algorithm. This function uses a recursive function to generate combinations.
+     * Filters the given infrastructure parameter lists by the includes or excludes of the testgrid.yaml, the same
+     * way as {@link #filterInfrastructures(Set, TestgridYaml)}. Lists left empty are removed.
      *
-     * @param valueSets          set of infrastructure parameters
-     * @param scheduledBuild    scheduled build
-     * @return  infrastructure combination set
+     * @param lists          list of infrastructure parameter lists
+     * @param testgridYaml  testgrid.yaml config
+     * @return  filtered list of infrastructure parameter lists
      */
-    public Set<InfrastructureCombination> getCombinationsForAll(
-            Set<InfrastructureValueSet> valueSets, JobConfig.Build scheduledBuild) {
-
-        if (valueSets.size() == 0) {
-            return Collections.emptySet();
+    private List<List<InfrastructureParameter>> filterInfrastructureLists(List<List<InfrastructureParameter>> lists,
+                                                                          TestgridYaml testgridYaml) {
+        List<String> excludes = testgridYaml.getInfrastructureConfig().getExcludes();
+        List<String> includes = testgridYaml.getInfrastructureConfig().getIncludes();
+        Predicate<InfrastructureParameter> filter;
+        if (!ListUtils.emptyIfNull(excludes).isEmpty()) {
+            filter = ip -> !excludes.contains(ip.getName());
+        } else if (!ListUtils.emptyIfNull(includes).isEmpty()) {
+            filter = ip -> includes.contains(ip.getName());
+        } else {
+            return lists;
         }
+        return lists.stream()
+                .map(list -> list.stream().filter(filter).collect(Collectors.toList()))
+                .filter(list -> !list.isEmpty())
+                .collect(Collectors.toList());
+    }
 
+    /**
+     * Returns the lists of infrastructure parameters of the infrastructure resources of the given build, one list per
+     * infrastructure type. Parameters of reserved types are taken from the given value sets.
+     *
+     * @param valueSets          set of infrastructure parameters
+     * @param scheduledBuild    scheduled build
+     * @return  list of infrastructure parameter lists
+     */
+    private List<List<InfrastructureParameter>> getListOfInfrastructureList(Set<InfrastructureValueSet> valueSets,
+                                                                            JobConfig.Build scheduledBuild) {
+        Map<String, Map<String, InfrastructureParameter>> parametersByType = indexByTypeAndName(valueSets);
         List<List<InfrastructureParameter>> listOfInfrastructureList = new ArrayList<>();
         for (TreeMap<String, List<String>> infraResources : scheduledBuild.getInfraResources()) {
             for (Map.Entry<String, List<String>> entry : infraResources.entrySet()) {
                 List<InfrastructureParameter> infrastructureList = new ArrayList<>();
-                if (findInfraValueSetByType(valueSets, entry.getKey()).isPresent()) {
-                    Set<InfrastructureParameter> infrastructureParameters = findInfraValueSetByType(
-                            valueSets, entry.getKey()).get().getValues();
+                Map<String, InfrastructureParameter> infrastructureParameters = parametersByType.get(entry.getKey());
+                if (infrastructureParameters != null) {
                     for (String name : entry.getValue()) {
-                        if (findInfraParameterByName(infrastructureParameters, name).isPresent()) {
-                            infrastructureList.add(findInfraParameterByName(infrastructureParameters, name).get());
+                        InfrastructureParameter infrastructureParameter = infrastructureParameters.get(name);
+                        if (infrastructureParameter != null) {
+                            infrastructureList.add(infrastructureParameter);
                         } else {
                             logger.warn("Since the given " + entry.getKey() + " infrastructure type is a reserved " +
                                     "type and " + name + " not exist in database, can not generate " +
@@ -305,12 +387,7 @@ public class InfrastructureCombinationsProvider {
                 listOfInfrastructureList.add(infrastructureList);
             }
         }
-
-        InfrastructureCombination infrastructureCombination = new InfrastructureCombination();
-        Set<InfrastructureCombination> infrastructureCombinations = new HashSet<>();
-        generateAllCombinations(listOfInfrastructureList, infrastructureCombinations, 0,
-                infrastructureCombination, "");
-        return infrastructureCombinations;
+        return listOfInfrastructureList;
     }
 
     /**
@@ -356,63 +433,22 @@ public class InfrastructureCombinationsProvider {
     }
 
     /**
-     * This function is used to filter infrastructure parameters by given infrastructure type.
+     * Indexes the infrastructure parameters of the given value sets by type and name.
      *
      * @param valueSets     set of infrastructure value set
-     * @param type          infrastructure type
-     * @return  build optional object
-     */
-    private Optional<InfrastructureValueSet> findInfraValueSetByType(
-            Set<InfrastructureValueSet> valueSets, String type) {
-
-        return valueSets.stream()
-                .filter(valueSet -> valueSet.getType().equals(type))
-                .findAny();
-    }
-
-    /**
-     * This function is used to filter infrastructure parameters by given infrastructure name.
-     *
-     * @param infrastructureParameters     set of infrastructure parameters
-     * @param name          infrastructure name
-     * @return  build optional object
-     */
-    private Optional<InfrastructureParameter> findInfraParameterByName(
-            Set<InfrastructureParameter> infrastructureParameters, String name) {
-
-        return infrastructureParameters.stream()
-                .filter(infrastructureParameter -> infrastructureParameter.getName().equals(name))
-                .findAny();
-    }
-
-    /**
-     * This recursive function is used to generate all combination for given list of infrastructure parameter lists.
-     * This function iterate through each and every list and select each element to generate the combination set.
-     *
-     * @param lists                 set of infrastructure parameters
-     * @param result                infrastructure name
-     * @param depth                 number of infrastructure parameter lists exists
-     * @param current               current using infrastructure combination
-     * @param infraCombinationId    infrastructure combination name
+     * @return  infrastructure parameters by type and name
      */
-    private void generateAllCombinations(List<List<InfrastructureParameter>> lists,
-                                         Set<InfrastructureCombination> result, int depth,
-                                         InfrastructureCombination current, String infraCombinationId) {
-        if (depth == lists.size()) {
-            infraCombinationId = infraCombinationId.startsWith("_") ?
-                    infraCombinationId.substring(1) : infraCombinationId;
-            current.setInfraCombinationId(infraCombinationId);
-            result.add(current);
-            return;
-        }
-
-        for (int i = 0; i < lists.get(depth).size(); i++) {
-            InfrastructureCombination tmp = new InfrastructureCombination();
-            tmp.addParameters(current.getParameters());
-            tmp.addParameter(lists.get(depth).get(i));
-            generateAllCombinations(lists, result, depth + 1,
-                    tmp, infraCombinationId + "_" + lists.get(depth).get(i).getName());
+    private Map<String, Map<String, InfrastructureParameter>> indexByTypeAndName(
+            Set<InfrastructureValueSet> valueSets) {
+        Map<String, Map<String, InfrastructureParameter>> parametersByType = new HashMap<>();
+        for (InfrastructureValueSet valueSet : valueSets) {
+            Map<String, InfrastructureParameter> parametersByName = parametersByType.computeIfAbsent(
+                    valueSet.getType(), type -> new HashMap<>());
+            for (InfrastructureParameter infrastructureParameter : valueSet.getValues()) {
+                parametersByName.putIfAbsent(infrastructureParameter.getName(), infrastructureParameter);
+            }
         }
+        return parametersByType;
     }
 
     /**
@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.testgrid.tinkerer;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.testgrid.common.config.ConfigurationContext;
+import org.wso2.testgrid.common.util.StringUtil;
+import org.wso2.testgrid.common.util.tinkerer.exception.TinkererOperationException;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Downloads log files from the agents through the stream-file operation of the deployment tinkerer, several files
+ * at a time.
+ * <p>
+ * Each host gets up to the host concurrency of workers which download its files one after another, so that no host
+ * serves more files than that at once, and the workers of all the hosts share a pool of the given concurrency.
+ * <p>
+ * The tinkerer writes a file to its destination itself when it runs on the TestGrid host, and responds without
+ * content. If it responds with the content instead, the content is streamed to the destination. When compression is
+ * enabled, the file is gzipped on the way to the disk, or right after the tinkerer has written it, and saved with a
+ * {@code .gz} extension.
+ *
+ * @since 1.0.0
+ */
+public class LogCollector {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogCollector.class);
+    private static final int DEFAULT_CONCURRENCY = 8;
+    private static final int DEFAULT_HOST_CONCURRENCY = 2;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    static final String GZIP_EXTENSION = ".gz";
+
+    private final String authorization;
+    private final int concurrency;
+    private final int hostConcurrency;
+    private final boolean compress;
+    private final Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+
+    /**
+     * Constructs a log collector.
+     *
+     * @param userName        user name of the tinkerer
+     * @param password        password of the tinkerer
+     * @param concurrency     number of files downloaded at once
+     * @param hostConcurrency number of files downloaded from one host at once
+     * @param compress        whether to gzip the downloaded files
+     */
+    public LogCollector(String userName, String password, int concurrency, int hostConcurrency, boolean compress) {
+        this.authorization = "Basic " + Base64.getEncoder().encodeToString(
+                StringUtil.concatStrings(userName, ":", password).getBytes(Charset.defaultCharset()));
+        this.concurrency = Math.max(1, concurrency);
+        this.hostConcurrency = Math.max(1, hostConcurrency);
+        this.compress = compress;
+    }
+
+    /**
+     * Constructs a log collector with the concurrency and compression of the TestGrid configuration.
+     *
+     * @param userName user name of the tinkerer
+     * @param password password of the tinkerer
+     * @return the log collector
+     */
+    public static LogCollector fromConfiguration(String userName, String password) {
+        return new LogCollector(userName, password,
+                getIntProperty(ConfigurationContext.ConfigurationProperties.LOG_DOWNLOAD_CONCURRENCY,
+                        DEFAULT_CONCURRENCY),
+                getIntProperty(ConfigurationContext.ConfigurationProperties.LOG_DOWNLOAD_HOST_CONCURRENCY,
+                        DEFAULT_HOST_CONCURRENCY),
+                Boolean.parseBoolean(ConfigurationContext.getProperty(
+                        ConfigurationContext.ConfigurationProperties.LOG_DOWNLOAD_COMPRESS)));
+    }
+
+    /**
+     * Returns the number of files downloaded at once.
+     *
+     * @return the concurrency
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Downloads the given log files. The first failure stops the downloads which have not started yet.
+     *
+     * @param logFiles log files to download
+     * @param key      base64 encoded ssh key of the hosts
+     * @return the paths of the downloaded files, in the order of the log files
+     * @throws TinkererOperationException if a log file cannot be downloaded
+     */
+    public List<Path> collect(List<LogFile> logFiles, String key) throws TinkererOperationException {
+        Map<String, Queue<Integer>> filesByHost = new LinkedHashMap<>();
+        for (int i = 0; i < logFiles.size(); i++) {
+            filesByHost.computeIfAbsent(logFiles.get(i).getHost(), host -> new ConcurrentLinkedQueue<>()).add(i);
+        }
+        List<Queue<Integer>> hostFiles = new ArrayList<>(filesByHost.values());
+        int[] hostWorkers = new int[hostFiles.size()];
+        int workers = 0;
+        for (int host = 0; host < hostFiles.size(); host++) {
+            hostWorkers[host] = Math.min(hostFiles.get(host).size(), hostConcurrency);
+            workers += hostWorkers[host];
+        }
+        if (workers == 0) {
+            return new ArrayList<>();
+        }
+        Path[] downloaded = new Path[logFiles.size()];
+        AtomicBoolean failed = new AtomicBoolean();
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(workers, concurrency));
+        List<Future<Void>> futures = new ArrayList<>(workers);
+        try {
+            // Start the first worker of each host before the second of any, so that every host is served early.
+            for (int round = 0; round < hostConcurrency; round++) {
+                for (int host = 0; host < hostFiles.size(); host++) {
+                    Queue<Integer> files = hostFiles.get(host);
+                    if (round < hostWorkers[host]) {
+                        futures.add(executorService.submit(() -> {
+                            Integer index;
+                            while (!failed.get() && (index = files.poll()) != null) {
+                                try {
+                                    downloaded[index] = download(logFiles.get(index), key);
+                                } catch (TinkererOperationException | RuntimeException e) {
+                                    failed.set(true);
+                                    throw e;
+                                }
+                            }
+                            return null;
+                        }));
+                    }
+                }
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TinkererOperationException) {
+                throw (TinkererOperationException) e.getCause();
+            }
+            throw new TinkererOperationException("Error occurred while downloading the log files", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TinkererOperationException("Interrupted while downloading the log files", e);
+        } finally {
+            executorService.shutdownNow();
+        }
+        return Arrays.asList(downloaded);
+    }
+
+    /**
+     * Downloads the given log file.
+     *
+     * @return the path of the downloaded file
+     */
+    private Path download(LogFile logFile, String key) throws TinkererOperationException {
+        logger.info("Downloading log file : " + logFile.getSource());
+        Map<String, Object> subPayload = new HashMap<>();
+        subPayload.put("key", key);
+        subPayload.put("source", logFile.getSource());
+        subPayload.put("destination", logFile.getDestination());
+        if (logFile.getBastianIP() != null) {
+            subPayload.put("bastian-ip", logFile.getBastianIP());
+        }
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("code", "STREAM_FILE");
+        payload.put("data", subPayload);
+
+        Path destination = Paths.get(logFile.getDestination());
+        Path target = compress ? Paths.get(logFile.getDestination() + GZIP_EXTENSION) : destination;
+        try {
+            if (destination.getParent() != null) {
+                Files.createDirectories(destination.getParent());
+            }
+            HttpURLConnection connection = (HttpURLConnection) new URL(logFile.getDownloadUrl()).openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setRequestProperty("Authorization", authorization);
+            try (OutputStream outputStream = connection.getOutputStream()) {
+                outputStream.write(gson.toJson(payload).getBytes(StandardCharsets.UTF_8));
+            }
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                String error = "";
+                try (InputStream errorStream = connection.getErrorStream()) {
+                    if (errorStream != null) {
+                        error = IOUtils.toString(errorStream, StandardCharsets.UTF_8);
+                    }
+                }
+                throw new TinkererOperationException("Error occurred while performing tinkerer REST api call for "
+                        + "log download.\nResponse code : " + connection.getResponseCode()
+                        + "\nError message :" + error);
+            }
+            try (InputStream inputStream = new BufferedInputStream(connection.getInputStream(), BUFFER_SIZE)) {
+                inputStream.mark(1);
+                if (inputStream.read() != -1) {
+                    inputStream.reset();
+                    write(inputStream, target);
+                } else if (!Files.isRegularFile(destination)) {
+                    throw new TinkererOperationException("Failed to download the file :" + destination);
+                } else if (compress) {
+                    try (InputStream fileStream = Files.newInputStream(destination)) {
+                        write(fileStream, target);
+                    }
+                    Files.delete(destination);
+                }
+            }
+        } catch (IOException e) {
+            throw new TinkererOperationException("Error occurred while downloading the log file : "
+                    + logFile.getSource() + "\nfrom host :" + logFile.getHost(), e);
+        }
+        logger.info("Download Location :" + target);
+        return target;
+    }
+
+    private void write(InputStream inputStream, Path target) throws IOException {
+        if (!compress) {
+            Files.copy(inputStream, target, StandardCopyOption.REPLACE_EXISTING);
+            return;
+        }
+        try (OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(target), BUFFER_SIZE)) {
+            IOUtils.copyLarge(inputStream, outputStream);
+        }
+    }
+
+    private static int getIntProperty(ConfigurationContext.ConfigurationProperties property, int defaultValue) {
+        String value = ConfigurationContext.getProperty(property);
+        if (StringUtil.isStringNullOrEmpty(value)) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            logger.warn(StringUtil.concatStrings("Invalid ", property, " value '", value, "'. Using ",
+                    defaultValue, "."));
+            return defaultValue;
+        }
+    }
+
+    /**
+     * A log file of a host, and where to download it.
+     */
+    public static class LogFile {
+
+        private final String host;
+        private final String downloadUrl;
+        private final String source;
+        private final String destination;
+        private final String bastianIP;
+
+        /**
+         * Constructs a log file.
+         *
+         * @param host        name of the instance the file is in
+         * @param downloadUrl stream-file operation URL of the agent of the instance
+         * @param source      path of the file in the instance
+         * @param destination path to download the file to
+         * @param bastianIP   IP of the bastian host to reach the instance through, or null
+         */
+        public LogFile(String host, String downloadUrl, String source, String destination, String bastianIP) {
+            this.host = host;
+            this.downloadUrl = downloadUrl;
+            this.source = source;
+            this.destination = destination;
+            this.bastianIP = bastianIP;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public String getDownloadUrl() {
+            return downloadUrl;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public String getDestination() {
+            return destination;
+        }
+
+        public String getBastianIP() {
+            return bastianIP;
+        }
+    }
+}
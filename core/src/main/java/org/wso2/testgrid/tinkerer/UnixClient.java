@@ -36,7 +36,6 @@ import org.wso2.testgrid.common.Agent;
 import org.wso2.testgrid.common.DeploymentCreationResult;
 import org.wso2.testgrid.common.TestGridConstants;
 import org.wso2.testgrid.common.TestPlan;
-import org.wso2.testgrid.common.exception.TestGridException;
 import org.wso2.testgrid.common.util.StringUtil;
 import org.wso2.testgrid.common.util.TestGridUtil;
 import org.wso2.testgrid.common.util.tinkerer.exception.TinkererOperationException;
@@ -44,14 +43,16 @@ import org.wso2.testgrid.common.util.tinkerer.exception.TinkererOperationExcepti
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -74,205 +75,196 @@ public class UnixClient extends TinkererClient {
 
         String testType = testPlan.getScenarioConfigs().get(0).getTestType();
         logger.info("TestType is : " + testType);
-        Gson gson = new GsonBuilder().disableHtmlEscaping().create();
-
-        for (Agent agent : deploymentCreationResult.getAgents()) {
-            logger.info("Initiating LOG file download for Agent " + agent.getInstanceName()
-                    + "\n agent instance ID " + agent.getInstanceId()
-                    + "\n test plan " + testPlan.getId());
+        List<Agent> agents = deploymentCreationResult.getAgents();
+        if (agents.size() == 0) {
+            logger.warn("No registered agents found!");
+            return;
+        }
+        LogCollector logCollector = LogCollector.fromConfiguration(this.getTinkererUserName(),
+                this.getTinkererPassword());
+        String authorization = "Basic " + Base64.getEncoder().encodeToString(StringUtil.concatStrings(
+                this.getTinkererUserName(), ":", this.getTinkererPassword()).getBytes(Charset.defaultCharset()));
 
-            String productBasePath = "";
-            String logLocation = "";
-            String operationPath = this.getTinkererBase() + "test-plan/" + agent.getTestPlanId()
-                    + "/agent/" + agent.getInstanceName() + "/operation";
-            if (TestGridConstants.TEST_TYPE_FUNCTIONAL.equals(testType)) {
-                //get the carbon.home from the instance where the product is running
-                String content = "";
-                try {
-                    Map<String, Object> payload = new HashMap<>();
-                    payload.put("code", "SHELL");
-                    payload.put("request", "ps -ef | grep 'carbon.home'");
-                    Response execute = Request.Post(operationPath).setHeader
-                            (HttpHeaders.CONTENT_TYPE, "application/json")
-                            .setHeader(HttpHeaders.AUTHORIZATION, "Basic " + Base64.getEncoder()
-                                    .encodeToString(StringUtil.concatStrings(this.getTinkererUserName(),
-                                            ":", this.getTinkererPassword()).getBytes(Charset.defaultCharset())))
-                            .bodyString(gson.toJson(payload), ContentType.APPLICATION_JSON)
-                            .execute();
+        // Find the log files of all the agents at once.
+        List<LogCollector.LogFile> logFiles = new ArrayList<>();
+        ExecutorService executorService = Executors.newFixedThreadPool(
+                Math.min(agents.size(), logCollector.getConcurrency()));
+        try {
+            List<Future<List<LogCollector.LogFile>>> futures = new ArrayList<>(agents.size());
+            for (Agent agent : agents) {
+                futures.add(executorService.submit(() -> listLogFiles(agent, testType, testPlan,
+                        deploymentCreationResult.getBastianIP(), authorization)));
+            }
+            for (Future<List<LogCollector.LogFile>> future : futures) {
+                logFiles.addAll(future.get());
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TinkererOperationException) {
+                throw (TinkererOperationException) e.getCause();
+            }
+            throw new TinkererOperationException("Error occurred while listing the log files of test plan "
+                    + testPlan.getId(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TinkererOperationException("Interrupted while listing the log files of test plan "
+                    + testPlan.getId(), e);
+        } finally {
+            executorService.shutdownNow();
+        }
+        if (logFiles.isEmpty()) {
+            return;
+        }
 
-                    HttpResponse httpResponse = execute.returnResponse();
-                    if (httpResponse.getCode() != HttpStatus.SC_OK) {
-                        throw new TinkererOperationException("Error occurred while performing tinkerer " +
-                                "REST api call for retrieving carbon.home. \nError message :" +
-                                EntityUtils.toString(((CloseableHttpResponse) httpResponse).getEntity()));
-                    }
+        // The same key is sent with each file.
+        String key;
+        try {
+            key = Base64.getEncoder().encodeToString(
+                    FileUtils.readFileToByteArray(new File(testPlan.getKeyFileLocation())));
+        } catch (IOException e) {
+            throw new TinkererOperationException("Error occurred while reading the key file "
+                    + testPlan.getKeyFileLocation() + " of test plan " + testPlan.getId(), e);
+        }
+        logCollector.collect(logFiles, key);
+        logger.info("Successfully downloaded all log files ");
+    }
 
-                    content = EntityUtils.toString(((CloseableHttpResponse) httpResponse).getEntity());
-                } catch (IOException e) {
-                    throw new TinkererOperationException("Error occurred while retrieving the carbon.home value" +
-                            "from agent" + agent.getAgentId()
-                            + "\nRunning on instance : " + agent.getInstanceName()
-                            + "\nfor test plan " + testPlan.getId(), e);
-                } catch (ParseException e) {
-                    throw new TinkererOperationException("Error occurred while parsing the response " +
-                            "wile retrieving carbon.home from agent" + agent.getAgentId()
-                            + "\nRunning on instance : " + agent.getInstanceName()
-                            + "\nfor test plan " + testPlan.getId(), e);
-                }
-                if (content.contains("carbon.home")) {
-                    String patternString = "carbon\\.home=[a-z\\/0-9-.]*";
-                    Pattern pattern = Pattern.compile(patternString);
-                    Matcher matcher = pattern.matcher(content);
+    /**
+     * Finds the log files of the given agent, and where to download them.
+     */
+    private List<LogCollector.LogFile> listLogFiles(Agent agent, String testType, TestPlan testPlan,
+                                                    String bastianIP, String authorization)
+            throws TinkererOperationException {
+        logger.info("Initiating LOG file download for Agent " + agent.getInstanceName()
+                + "\n agent instance ID " + agent.getInstanceId()
+                + "\n test plan " + testPlan.getId());
+        Gson gson = new GsonBuilder().disableHtmlEscaping().create();
 
-                    if (matcher.find()) {
-                        productBasePath = matcher.group().split("=")[1];
-                    }
-                }
-                logLocation = productBasePath + SCENARIO_LOG_LOCATION;
-            } else if (TestGridConstants.TEST_TYPE_INTEGRATION.equals(testType)) {
-                if (testPlan.getJobProperties().containsKey(WORKSPACE_DIR_POSIX)) {
-                    productBasePath = testPlan.getJobProperties().getProperty(WORKSPACE_DIR_POSIX);
-                } else {
-                    throw new TinkererOperationException("Product workspace path is not present, Please check if" +
-                            "entry is present in job-config.yml file : "
-                            + "\nfor test plan :" + testPlan.getId());
-                }
-                /*If the path contains the ~ character we need to replace it with ~{OS-USER} because,
-                agent executes as the root user, and it will infer ~ as root.
-                ex: ~ --replace into--> ~centos*/
-                productBasePath = productBasePath.replace("~", "~" + agent.getInstanceUser());
-                logLocation = productBasePath + INTEGRATION_LOG_LOCATION;
-            }
-            logger.info("Product base path found " + productBasePath);
-            Map<String, String> resultMap;
+        String productBasePath = "";
+        String logLocation = "";
+        String operationPath = this.getTinkererBase() + "test-plan/" + agent.getTestPlanId()
+                + "/agent/" + agent.getInstanceName() + "/operation";
+        if (TestGridConstants.TEST_TYPE_FUNCTIONAL.equals(testType)) {
+            //get the carbon.home from the instance where the product is running
+            String content = "";
             try {
                 Map<String, Object> payload = new HashMap<>();
                 payload.put("code", "SHELL");
-                payload.put("request", "ls " + logLocation);
-                Response logFiles = Request.Post(operationPath).setHeader(HttpHeaders.CONTENT_TYPE, "application/json")
-                        .setHeader(HttpHeaders.AUTHORIZATION,
-                                "Basic " + Base64.getEncoder().encodeToString(
-                                        StringUtil.concatStrings(this.getTinkererUserName(),
-                                                ":", this.getTinkererPassword()).getBytes(Charset.defaultCharset())))
-                        .bodyString(gson.toJson(payload), ContentType.APPLICATION_JSON).execute();
-                //check if REST api call was successful
-                HttpResponse response = logFiles.returnResponse();
-                if (response.getCode() != HttpStatus.SC_OK) {
+                payload.put("request", "ps -ef | grep 'carbon.home'");
+                Response execute = Request.Post(operationPath).setHeader
+                        (HttpHeaders.CONTENT_TYPE, "application/json")
+                        .setHeader(HttpHeaders.AUTHORIZATION, authorization)
+                        .bodyString(gson.toJson(payload), ContentType.APPLICATION_JSON)
+                        .execute();
+
+                HttpResponse httpResponse = execute.returnResponse();
+                if (httpResponse.getCode() != HttpStatus.SC_OK) {
                     throw new TinkererOperationException("Error occurred while performing tinkerer " +
-                            "REST api call for getting list of log files. \nError message :"
-                            + EntityUtils.toString(((CloseableHttpResponse) response).getEntity()));
+                            "REST api call for retrieving carbon.home. \nError message :" +
+                            EntityUtils.toString(((CloseableHttpResponse) httpResponse).getEntity()));
                 }
-                //create a map of json response
-                resultMap = new Gson().fromJson(EntityUtils.toString(((CloseableHttpResponse) response).getEntity()),
-                        new PropertyType().getType());
+
+                content = EntityUtils.toString(((CloseableHttpResponse) httpResponse).getEntity());
             } catch (IOException e) {
-                throw new TinkererOperationException("Error occurred while retrieving the list of log files from the" +
-                        "log location : " + logLocation
-                        + "\nfrom agent :" + agent.getAgentId()
+                throw new TinkererOperationException("Error occurred while retrieving the carbon.home value" +
+                        "from agent" + agent.getAgentId()
                         + "\nRunning on instance : " + agent.getInstanceName()
-                        + "\nfor test plan :" + testPlan.getId(), e);
+                        + "\nfor test plan " + testPlan.getId(), e);
             } catch (ParseException e) {
-                throw new TinkererOperationException("Error occurred while parsing the list of log files from the" +
-                        "log location : " + logLocation
-                        + "\nfrom agent :" + agent.getAgentId()
+                throw new TinkererOperationException("Error occurred while parsing the response " +
+                        "wile retrieving carbon.home from agent" + agent.getAgentId()
                         + "\nRunning on instance : " + agent.getInstanceName()
-                        + "\nfor test plan :" + testPlan.getId(), e);
+                        + "\nfor test plan " + testPlan.getId(), e);
             }
-            if (resultMap != null && resultMap.containsKey("response")) {
-                String response = resultMap.get("response");
-                // TODO: the response can also contain an error log instead of the actual response.
-                // so, we need to first make sure the command was successful via exit code.
-                List<String> logFileNames = Arrays.asList(response.split("\n"));
+            if (content.contains("carbon.home")) {
+                String patternString = "carbon\\.home=[a-z\\/0-9-.]*";
+                Pattern pattern = Pattern.compile(patternString);
+                Matcher matcher = pattern.matcher(content);
 
-                for (String logFileName : logFileNames) {
-                    try {
-                        logger.info("Downloading log file : " + logFileName);
-                        String key = Base64.getEncoder()
-                                .encodeToString(FileUtils.readFileToByteArray(new File(testPlan.getKeyFileLocation())));
-                        String source = logLocation + logFileName;
-                        String destination = Paths.get(TestGridUtil.deriveLogDownloadLocation(testPlan), logFileName)
-                                .toString();
-                        String bastianIP = deploymentCreationResult.getBastianIP();
-                        String downloadPath = this.getTinkererBase() + "test-plan/" + agent.getTestPlanId() +
-                                "/agent/" + agent.getInstanceName() + "/stream-file";
-                        Map<String, Object> payload = new HashMap<>();
-                        payload.put("code", "STREAM_FILE");
-                        Map<String, Object> subPayload = new HashMap<>();
-                        subPayload.put("key", key);
-                        subPayload.put("source", source);
-                        subPayload.put("destination", destination);
-                        if (bastianIP != null) {
-                            subPayload.put("bastian-ip", bastianIP);
-                        }
-                        payload.put("data", subPayload);
-                        Response execute = Request.Post(downloadPath)
-                                .setHeader(HttpHeaders.CONTENT_TYPE, "application/json")
-                                .setHeader(HttpHeaders.AUTHORIZATION,
-                                        "Basic " + Base64.getEncoder().encodeToString(
-                                                StringUtil.concatStrings(this.getTinkererUserName(),
-                                                        ":", this.getTinkererPassword())
-                                                        .getBytes(Charset.defaultCharset())))
-                                .bodyString(gson.toJson(payload), ContentType.APPLICATION_JSON)
-                                .execute();
-                        //check if REST api call was successful
-                        HttpResponse httpResponse = execute.returnResponse();
-                        if (httpResponse.getCode() != HttpStatus.SC_OK) {
-                            throw new TinkererOperationException("Error occurred while" +
-                                    " performing tinkerer REST api call for log download." +
-                                    "\nError message :"
-                                    + EntityUtils.toString(((CloseableHttpResponse) httpResponse).getEntity()));
-                        }
-                        //verify the downloaded files are present in the location
-                        if (!verifyFileDownload(destination)) {
-                            throw new TinkererOperationException("Failed to download the file :"
-                                    + destination);
-                        }
-                        logger.info("Download Location :" + destination);
-                    } catch (IOException e) {
-                        throw new TinkererOperationException("Error occurred while downloading " +
-                                "the log file location : " + logFileName
-                                + "\nfrom agent :" + agent.getAgentId()
-                                + "\nRunning on instance : " + agent.getInstanceName()
-                                + "\nfor test plan :" + testPlan.getId(), e);
-                    } catch (ParseException e) {
-                        throw new TinkererOperationException("Error occurred while parsing the " +
-                                "response from download " +
-                                "logfile operation : " + logFileName
-                                + "\nfrom agent :" + agent.getAgentId()
-                                + "\nRunning on instance : " + agent.getInstanceName()
-                                + "\nfor test plan :" + testPlan.getId(), e);
-                    } catch (TestGridException e) {
-                        throw new TinkererOperationException("Error occurred deriving the destination path " +
-                                  "for logfile : " + logFileName
-                                + "\nfrom agent :" + agent.getAgentId()
-                                + "\nRunning on instance : " + agent.getInstanceName()
-                                + "\nfor test plan :" + testPlan.getId(), e);
-                    }
+                if (matcher.find()) {
+                    productBasePath = matcher.group().split("=")[1];
                 }
-                logger.info("Successfully downloaded all log files ");
             }
+            logLocation = productBasePath + SCENARIO_LOG_LOCATION;
+        } else if (TestGridConstants.TEST_TYPE_INTEGRATION.equals(testType)) {
+            if (testPlan.getJobProperties().containsKey(WORKSPACE_DIR_POSIX)) {
+                productBasePath = testPlan.getJobProperties().getProperty(WORKSPACE_DIR_POSIX);
+            } else {
+                throw new TinkererOperationException("Product workspace path is not present, Please check if" +
+                        "entry is present in job-config.yml file : "
+                        + "\nfor test plan :" + testPlan.getId());
+            }
+            /*If the path contains the ~ character we need to replace it with ~{OS-USER} because,
+            agent executes as the root user, and it will infer ~ as root.
+            ex: ~ --replace into--> ~centos*/
+            productBasePath = productBasePath.replace("~", "~" + agent.getInstanceUser());
+            logLocation = productBasePath + INTEGRATION_LOG_LOCATION;
         }
-        if (deploymentCreationResult.getAgents().size() == 0) {
-            logger.warn("No registered agents found!");
+        logger.info("Product base path found " + productBasePath);
+        Map<String, String> resultMap;
+        try {
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("code", "SHELL");
+            payload.put("request", "ls " + logLocation);
+            Response logFiles = Request.Post(operationPath).setHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                    .setHeader(HttpHeaders.AUTHORIZATION, authorization)
+                    .bodyString(gson.toJson(payload), ContentType.APPLICATION_JSON).execute();
+            //check if REST api call was successful
+            HttpResponse response = logFiles.returnResponse();
+            if (response.getCode() != HttpStatus.SC_OK) {
+                throw new TinkererOperationException("Error occurred while performing tinkerer " +
+                        "REST api call for getting list of log files. \nError message :"
+                        + EntityUtils.toString(((CloseableHttpResponse) response).getEntity()));
+            }
+            //create a map of json response
+            resultMap = new Gson().fromJson(EntityUtils.toString(((CloseableHttpResponse) response).getEntity()),
+                    new PropertyType().getType());
+        } catch (IOException e) {
+            throw new TinkererOperationException("Error occurred while retrieving the list of log files from the" +
+                    "log location : " + logLocation
+                    + "\nfrom agent :" + agent.getAgentId()
+                    + "\nRunning on instance : " + agent.getInstanceName()
+                    + "\nfor test plan :" + testPlan.getId(), e);
+        } catch (ParseException e) {
+            throw new TinkererOperationException("Error occurred while parsing the list of log files from the" +
+                    "log location : " + logLocation
+                    + "\nfrom agent :" + agent.getAgentId()
+                    + "\nRunning on instance : " + agent.getInstanceName()
+                    + "\nfor test plan :" + testPlan.getId(), e);
+        }
+        List<LogCollector.LogFile> logFiles = new ArrayList<>();
+        if (resultMap != null && resultMap.containsKey("response")) {
+            String response = resultMap.get("response");
+            // TODO: the response can also contain an error log instead of the actual response.
+            // so, we need to first make sure the command was successful via exit code.
+            String downloadPath = this.getTinkererBase() + "test-plan/" + agent.getTestPlanId() +
+                    "/agent/" + agent.getInstanceName() + "/stream-file";
+            for (String logFileName : response.split("\n")) {
+                String destination = getLogDestination(TestGridUtil.deriveLogDownloadLocation(testPlan),
+                        agent.getInstanceName(), logFileName);
+                logFiles.add(new LogCollector.LogFile(agent.getInstanceName(), downloadPath,
+                        logLocation + logFileName, destination, bastianIP));
+            }
         }
+        return logFiles;
     }
 
     /**
-     * The static inner class used as a type reference for parsing the json response
-     * to a map of strings.
+     * Returns the path to download a log file of an instance to. The log files of each instance are kept in a
+     * directory of their own, since the instances of a deployment write log files of the same names.
+     *
+     * @param downloadLocation log download location of the test plan
+     * @param instanceName     name of the instance
+     * @param logFileName      name of the log file
+     * @return download destination
      */
-    private static class PropertyType extends TypeToken<HashMap<String, String>> {
+    static String getLogDestination(String downloadLocation, String instanceName, String logFileName) {
+        return Paths.get(downloadLocation, instanceName, logFileName).toString();
     }
 
     /**
-     * This method verifies if the specified file is present in the file system
-     *
-     * @param fileLocation path of the file
-     * @return true if exists, otherwise false
+     * The static inner class used as a type reference for parsing the json response
+     * to a map of strings.
      */
-    private boolean verifyFileDownload(String fileLocation) {
-        Path path = Paths.get(fileLocation);
-        return Files.exists(path) && Files.isRegularFile(path);
+    private static class PropertyType extends TypeToken<HashMap<String, String>> {
     }
 }
-
@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.testgrid.common.TestPlan;
+import org.wso2.testgrid.common.config.InfrastructureConfig;
+import org.wso2.testgrid.common.config.Script;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Simulates pipelined test plan executions with fake stages that sleep instead of provisioning infrastructure and
+ * running tests, and measures the makespan.
+ */
+public class PipelinedTestPlanExecutorTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(PipelinedTestPlanExecutorTest.class);
+    private static final int TEST_PLANS = 5;
+    private static final long PROVISION_MILLIS = 400;
+    private static final long TEST_MILLIS = 200;
+
+    @Test
+    public void testMakespan() {
+        long sequentialMillis = measureMakespan(0);
+        long lookAheadOneMillis = measureMakespan(1);
+        long lookAheadTwoMillis = measureMakespan(2);
+
+        logger.info(String.format("Makespan of %d test plans (%d ms infra, %d ms tests): %d ms without look-ahead, "
+                        + "%d ms with look-ahead 1, %d ms with look-ahead 2", TEST_PLANS, PROVISION_MILLIS,
+                TEST_MILLIS, sequentialMillis, lookAheadOneMillis, lookAheadTwoMillis));
+        Assert.assertTrue(sequentialMillis >= TEST_PLANS * (PROVISION_MILLIS + TEST_MILLIS));
+        Assert.assertTrue(lookAheadOneMillis < sequentialMillis * 0.85,
+                "Provisioning the next test plan while testing should shorten the makespan.");
+        Assert.assertTrue(lookAheadTwoMillis >= PROVISION_MILLIS + TEST_PLANS * TEST_MILLIS);
+        Assert.assertTrue(lookAheadTwoMillis < sequentialMillis * 0.6,
+                "Provisioning two test plans ahead should keep the tests running back to back.");
+    }
+
+    @Test
+    public void testResourceThrottling() {
+        FakeStages stages = new FakeStages(50, 50, null);
+        List<TestPlan> testPlans = createTestPlans(6);
+        Map<String, PipelinedTestPlanExecutor.Outcome> outcomes =
+                new PipelinedTestPlanExecutor(4, 2, testPlan -> 1, stages).execute(testPlans);
+
+        Assert.assertEquals(stages.maxLiveInfrastructures.get(), 2,
+                "Provisioned infrastructure should not exceed the resource limit.");
+        Assert.assertEquals(stages.tested, ids(testPlans), "Test plans should be tested in order.");
+        Assert.assertTrue(outcomes.values().stream().allMatch(PipelinedTestPlanExecutor.Outcome.SUCCEEDED::equals));
+    }
+
+    @Test
+    public void testLargeTestPlanRunsAlone() {
+        FakeStages stages = new FakeStages(50, 50, null);
+        List<TestPlan> testPlans = createTestPlans(3);
+        String largeTestPlanId = testPlans.get(1).getId();
+        new PipelinedTestPlanExecutor(2, 2, testPlan -> testPlan.getId().equals(largeTestPlanId) ? 3 : 1, stages)
+                .execute(testPlans);
+
+        Assert.assertEquals(stages.tested, ids(testPlans));
+        Assert.assertEquals(stages.maxLiveInfrastructures.get(), 1,
+                "A test plan exceeding the resource limit should only be provisioned when nothing else is.");
+    }
+
+    @Test
+    public void testCancelReleasesPreProvisionedInfrastructure() {
+        List<TestPlan> testPlans = createTestPlans(4);
+        CountDownLatch provisioned = new CountDownLatch(3);
+        List<Boolean> cancelResults = Collections.synchronizedList(new ArrayList<>());
+        PipelinedTestPlanExecutor[] executor = new PipelinedTestPlanExecutor[1];
+        FakeStages stages = new FakeStages(10, 10, testPlan -> {
+            if (testPlan == testPlans.get(0)) {
+                // Wait until the next two test plans are provisioned ahead, then cancel one of them.
+                await(provisioned);
+                cancelResults.add(executor[0].cancel(testPlans.get(0).getId()));
+                cancelResults.add(executor[0].cancel(testPlans.get(2).getId()));
+            }
+        });
+        stages.onProvisioned = testPlan -> provisioned.countDown();
+        executor[0] = new PipelinedTestPlanExecutor(2, 0, testPlan -> 1, stages);
+        Map<String, PipelinedTestPlanExecutor.Outcome> outcomes = executor[0].execute(testPlans);
+
+        Assert.assertEquals(cancelResults, Arrays.asList(false, true),
+                "Only test plans which are not being tested should be cancelled.");
+        Assert.assertEquals(outcomes.get(testPlans.get(2).getId()), PipelinedTestPlanExecutor.Outcome.CANCELLED);
+        Assert.assertEquals(stages.released, Collections.singletonList(testPlans.get(2).getId()),
+                "Pre-provisioned infrastructure of the cancelled test plan should be released.");
+        Assert.assertEquals(stages.tested, Arrays.asList(testPlans.get(0).getId(), testPlans.get(1).getId(),
+                testPlans.get(3).getId()));
+        Assert.assertEquals(stages.liveInfrastructures.get(), 0, "All infrastructure should be released.");
+    }
+
+    @Test
+    public void testCancelBeforeStart() {
+        FakeStages stages = new FakeStages(10, 10, null);
+        List<TestPlan> testPlans = createTestPlans(3);
+        PipelinedTestPlanExecutor executor = new PipelinedTestPlanExecutor(1, 0, testPlan -> 1, stages);
+        Assert.assertTrue(executor.cancel(testPlans.get(1).getId()));
+        Map<String, PipelinedTestPlanExecutor.Outcome> outcomes = executor.execute(testPlans);
+
+        Assert.assertEquals(outcomes.get(testPlans.get(1).getId()), PipelinedTestPlanExecutor.Outcome.CANCELLED);
+        Assert.assertFalse(stages.provisioned.contains(testPlans.get(1).getId()),
+                "Cancelled test plans should not be provisioned.");
+        Assert.assertEquals(stages.tested, Arrays.asList(testPlans.get(0).getId(), testPlans.get(2).getId()));
+    }
+
+    @Test
+    public void testFailedProvisioningIsReleased() {
+        List<TestPlan> testPlans = createTestPlans(2);
+        FakeStages stages = new FakeStages(10, 10, null);
+        stages.failProvisioning = testPlans.get(0).getId();
+        Map<String, PipelinedTestPlanExecutor.Outcome> outcomes =
+                new PipelinedTestPlanExecutor(1, 0, testPlan -> 1, stages).execute(testPlans);
+
+        Assert.assertEquals(outcomes.get(testPlans.get(0).getId()), PipelinedTestPlanExecutor.Outcome.FAILED);
+        Assert.assertEquals(outcomes.get(testPlans.get(1).getId()), PipelinedTestPlanExecutor.Outcome.SUCCEEDED);
+        Assert.assertEquals(stages.released, Collections.singletonList(testPlans.get(0).getId()));
+        Assert.assertEquals(stages.tested, Collections.singletonList(testPlans.get(1).getId()));
+    }
+
+    @Test
+    public void testResourceUnitsOfInfrastructureScripts() {
+        TestPlan testPlan = new TestPlan();
+        Assert.assertEquals(PipelinedTestPlanExecutor.getResourceUnits(testPlan), 1);
+
+        InfrastructureConfig.Provisioner provisioner = new InfrastructureConfig.Provisioner();
+        provisioner.setScripts(Arrays.asList(createScript(Script.Phase.CREATE), createScript(Script.Phase.CREATE),
+                createScript(Script.Phase.DESTROY)));
+        InfrastructureConfig infrastructureConfig = new InfrastructureConfig();
+        infrastructureConfig.setProvisioners(Collections.singletonList(provisioner));
+        testPlan.setInfrastructureConfig(infrastructureConfig);
+        Assert.assertEquals(PipelinedTestPlanExecutor.getResourceUnits(testPlan), 2,
+                "Each infrastructure script which is not destroying should take a resource unit.");
+    }
+
+    private static Script createScript(Script.Phase phase) {
+        Script script = new Script();
+        script.setPhase(phase);
+        return script;
+    }
+
+    private static long measureMakespan(int lookAhead) {
+        FakeStages stages = new FakeStages(PROVISION_MILLIS, TEST_MILLIS, null);
+        List<TestPlan> testPlans = createTestPlans(TEST_PLANS);
+        long start = System.nanoTime();
+        new PipelinedTestPlanExecutor(lookAhead, 0, testPlan -> 1, stages).execute(testPlans);
+        long makespan = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assert.assertEquals(stages.tested, ids(testPlans));
+        return makespan;
+    }
+
+    private static List<TestPlan> createTestPlans(int count) {
+        List<TestPlan> testPlans = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            TestPlan testPlan = new TestPlan();
+            testPlan.setId("test-plan-" + i);
+            testPlans.add(testPlan);
+        }
+        return testPlans;
+    }
+
+    private static List<String> ids(List<TestPlan> testPlans) {
+        List<String> ids = new ArrayList<>();
+        testPlans.forEach(testPlan -> ids.add(testPlan.getId()));
+        return ids;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Stages which sleep for a fixed time and record the test plans they ran.
+     */
+    private static class FakeStages implements PipelinedTestPlanExecutor.Stages {
+        private final long provisionMillis;
+        private final long testMillis;
+        private final Consumer<TestPlan> onTest;
+        private Consumer<TestPlan> onProvisioned = testPlan -> { };
+        private String failProvisioning;
+
+        private final Set<String> provisioned = ConcurrentHashMap.newKeySet();
+        private final List<String> tested = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> released = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger liveInfrastructures = new AtomicInteger();
+        private final AtomicInteger maxLiveInfrastructures = new AtomicInteger();
+
+        FakeStages(long provisionMillis, long testMillis, Consumer<TestPlan> onTest) {
+            this.provisionMillis = provisionMillis;
+            this.testMillis = testMillis;
+            this.onTest = onTest;
+        }
+
+        @Override
+        public void provision(TestPlan testPlan) {
+            maxLiveInfrastructures.accumulateAndGet(liveInfrastructures.incrementAndGet(), Math::max);
+            provisioned.add(testPlan.getId());
+            sleep(provisionMillis);
+            if (testPlan.getId().equals(failProvisioning)) {
+                throw new IllegalStateException("Stack creation failed.");
+            }
+            onProvisioned.accept(testPlan);
+        }
+
+        @Override
+        public boolean deployAndTest(TestPlan testPlan) {
+            tested.add(testPlan.getId());
+            if (onTest != null) {
+                onTest.accept(testPlan);
+            }
+            sleep(testMillis);
+            liveInfrastructures.decrementAndGet();
+            return true;
+        }
+
+        @Override
+        public void release(TestPlan testPlan) {
+            released.add(testPlan.getId());
+            liveInfrastructures.decrementAndGet();
+        }
+    }
+}
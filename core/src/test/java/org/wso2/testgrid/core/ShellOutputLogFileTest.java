@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.core;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.testgrid.common.ShellExecutor;
+import org.wso2.testgrid.logging.plugins.LogFilePathLookup;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the shell commands of two test plans at the same time, and checks that the output of each command is logged
+ * to the log file of its own test plan although the output of both is read by the shared process output pumps. The
+ * output of a command of a thread without a log file of its own should not go to the log file the pumps inherited.
+ */
+public class ShellOutputLogFileTest {
+
+    private static final int LINES = 500;
+
+    @Test
+    public void testConcurrentTestPlansLogToTheirOwnFiles() throws Exception {
+        String logDirectory = "shell-output-logs/" + UUID.randomUUID();
+        String firstLogFile = logDirectory + "/plan-a/test-run.log";
+        String secondLogFile = logDirectory + "/plan-b/test-run.log";
+        String inheritedLogFile = logDirectory + "/plan-0/test-run.log";
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            // Let a test plan start the pump threads first, so that they inherit its log file path.
+            executorService.submit(() -> runCommand(inheritedLogFile, "plan-0", 1, null)).get();
+
+            CountDownLatch start = new CountDownLatch(2);
+            Future<?> first = executorService.submit(() -> runCommand(firstLogFile, "plan-a", LINES, start));
+            Future<?> second = executorService.submit(() -> runCommand(secondLogFile, "plan-b", LINES, start));
+            first.get();
+            second.get();
+
+            executorService.submit(() -> runCommand(null, "common", LINES, null)).get();
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        assertLines(firstLogFile, "plan-a", "plan-b");
+        assertLines(secondLogFile, "plan-b", "plan-a");
+        for (String logFile : new String[]{inheritedLogFile, firstLogFile, secondLogFile}) {
+            Assert.assertTrue(readLines(logFile).stream().noneMatch(line -> line.contains("common-line-")),
+                    "Output of a thread without a log file of its own should not be in " + logFile + ".");
+        }
+    }
+
+    private Void runCommand(String logFile, String name, int lines, CountDownLatch start) throws Exception {
+        LogFilePathLookup.setThreadLogFilePath(logFile);
+        try {
+            if (start != null) {
+                start.countDown();
+                start.await();
+            }
+            new ShellExecutor().executeCommand("for i in $(seq 1 " + lines + "); do echo " + name + "-line-$i; done");
+        } finally {
+            LogFilePathLookup.setThreadLogFilePath(null);
+        }
+        return null;
+    }
+
+    private void assertLines(String logFile, String name, String otherName) throws Exception {
+        List<String> lines = readLines(logFile);
+        List<String> outputLines = lines.stream()
+                .filter(line -> line.contains(name + "-line-"))
+                .collect(Collectors.toList());
+        Assert.assertEquals(outputLines.size(), LINES, "All the output of " + name + " should be in its log file.");
+        Assert.assertTrue(lines.stream().noneMatch(line -> line.contains(otherName + "-line-")),
+                "Log file of " + name + " should not contain the output of " + otherName + ".");
+    }
+
+    private List<String> readLines(String logFile) throws Exception {
+        // The log files are routed to the target directory by the log4j2 configuration of the tests.
+        Path path = Paths.get("target", logFile);
+        Assert.assertTrue(Files.exists(path), "Log file should exist: " + path);
+        return Files.readAllLines(path, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.core;
+
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.testgrid.common.TestPlanQueueEntry;
+import org.wso2.testgrid.dao.TestGridDAOException;
+import org.wso2.testgrid.dao.uow.TestPlanQueueUOW;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Runs queued test plans using {@link TestPlanScheduler}. The phases of the test plans run by the scheduler are
+ * covered by {@code RunTestPlansCommandTest}.
+ * <p>
+ * The queue is kept in memory by a mocked {@link TestPlanQueueUOW} following the semantics of the database queue.
+ */
+public class TestPlanSchedulerTest {
+
+    private static final String RUNNER_ID = "runner-1";
+
+    private final List<TestPlanQueueEntry> queue = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void testFairQueuing() throws Exception {
+        TestPlanQueueUOW testPlanQueueUOW = mockQueue();
+        queue.clear();
+        for (int i = 0; i < 4; i++) {
+            queue.add(createEntry("product-a", i));
+        }
+        queue.add(createEntry("product-b", 4));
+        queue.add(createEntry("product-b", 5));
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+
+        new TestPlanScheduler(testPlanQueueUOW, "queue", RUNNER_ID, false, 1, entry -> {
+            started.add(entry.getProductName());
+            return true;
+        }).run();
+
+        Assert.assertEquals(started, Arrays.asList("product-a", "product-b", "product-a", "product-b",
+                "product-a", "product-a"), "Products should take turns in running their test plans.");
+    }
+
+    @Test
+    public void testSelectNextPrefersIdleProducts() {
+        List<TestPlanQueueEntry> queued = new ArrayList<>();
+        queued.add(createEntry("product-a", 0));
+        queued.add(createEntry("product-a", 1));
+        queued.add(createEntry("product-b", 2));
+        Map<String, Integer> running = new HashMap<>();
+        running.put("product-a", 1);
+
+        Assert.assertEquals(TestPlanScheduler.selectNext(queued, running, new HashMap<>()).get(), queued.get(2));
+        running.put("product-b", 1);
+        Assert.assertEquals(TestPlanScheduler.selectNext(queued, running, new HashMap<>()).get(), queued.get(0));
+    }
+
+    @Test
+    public void testResumeAfterCrash() throws Exception {
+        TestPlanQueueUOW testPlanQueueUOW = mockQueue();
+        queue.clear();
+        TestPlanQueueEntry interrupted = createEntry("product-a", 0);
+        interrupted.setState(TestPlanQueueEntry.State.RUNNING);
+        interrupted.setRunnerId(RUNNER_ID);
+        interrupted.setAttempts(1);
+        TestPlanQueueEntry crashedTwice = createEntry("product-a", 1);
+        crashedTwice.setState(TestPlanQueueEntry.State.RUNNING);
+        crashedTwice.setRunnerId(RUNNER_ID);
+        crashedTwice.setAttempts(TestPlanScheduler.MAX_ATTEMPTS);
+        TestPlanQueueEntry completed = createEntry("product-b", 2);
+        completed.setState(TestPlanQueueEntry.State.SUCCEEDED);
+        TestPlanQueueEntry queued = createEntry("product-b", 3);
+        queue.addAll(Arrays.asList(interrupted, crashedTwice, completed, queued));
+        List<String> run = Collections.synchronizedList(new ArrayList<>());
+
+        Map<TestPlanQueueEntry.State, Integer> results = new TestPlanScheduler(testPlanQueueUOW, "queue",
+                RUNNER_ID, true, 2, entry -> {
+            run.add(entry.getTestPlanId());
+            return true;
+        }).run();
+
+        Assert.assertEquals(results, Collections.singletonMap(TestPlanQueueEntry.State.SUCCEEDED, 2));
+        Assert.assertEquals(run.stream().sorted().collect(Collectors.toList()),
+                Arrays.asList(interrupted.getTestPlanId(), queued.getTestPlanId()).stream().sorted()
+                        .collect(Collectors.toList()));
+        Assert.assertEquals(interrupted.getAttempts(), 2);
+        Assert.assertEquals(crashedTwice.getState(), TestPlanQueueEntry.State.FAILED);
+        Assert.assertEquals(completed.getState(), TestPlanQueueEntry.State.SUCCEEDED);
+    }
+
+    @Test
+    public void testFailedTestPlans() throws Exception {
+        TestPlanQueueUOW testPlanQueueUOW = mockQueue();
+        queue.clear();
+        queue.add(createEntry("product-a", 0));
+        queue.add(createEntry("product-a", 1));
+        queue.add(createEntry("product-b", 2));
+
+        Map<TestPlanQueueEntry.State, Integer> results = new TestPlanScheduler(testPlanQueueUOW, "queue",
+                RUNNER_ID, false, 2, entry -> {
+            if (entry.getProductName().equals("product-b")) {
+                throw new IllegalStateException("Test plan execution was not succeeded.");
+            }
+            return entry.getTestPlanFile().endsWith("0.yaml");
+        }).run();
+
+        Assert.assertEquals(results.get(TestPlanQueueEntry.State.SUCCEEDED), Integer.valueOf(1));
+        Assert.assertEquals(results.get(TestPlanQueueEntry.State.FAILED), Integer.valueOf(2));
+    }
+
+    @Test
+    public void testNoResumeWithoutRunnerId() throws Exception {
+        TestPlanQueueUOW testPlanQueueUOW = mockQueue();
+        queue.clear();
+        TestPlanQueueEntry otherRunner = createEntry("product-a", 0);
+        otherRunner.setState(TestPlanQueueEntry.State.RUNNING);
+        otherRunner.setRunnerId(RUNNER_ID);
+        otherRunner.setAttempts(1);
+        queue.add(otherRunner);
+        queue.add(createEntry("product-a", 1));
+
+        Map<TestPlanQueueEntry.State, Integer> results = new TestPlanScheduler(testPlanQueueUOW, "queue",
+                RUNNER_ID, false, 2, entry -> true).run();
+
+        Assert.assertEquals(results, Collections.singletonMap(TestPlanQueueEntry.State.SUCCEEDED, 1));
+        Assert.assertEquals(otherRunner.getState(), TestPlanQueueEntry.State.RUNNING,
+                "Entries of a running runner should not be taken over unless resuming.");
+        Mockito.verify(testPlanQueueUOW, Mockito.never()).requeueUncompleted(Matchers.anyString(),
+                Matchers.anyString(), Matchers.anyInt());
+    }
+
+    @Test
+    public void testCompleteFailureKeepsScheduling() throws Exception {
+        TestPlanQueueUOW testPlanQueueUOW = mockQueue();
+        queue.clear();
+        TestPlanQueueEntry first = createEntry("product-a", 0);
+        queue.add(first);
+        queue.add(createEntry("product-b", 1));
+        queue.add(createEntry("product-a", 2));
+        Mockito.doThrow(new TestGridDAOException("Lost the connection."))
+                .when(testPlanQueueUOW).complete(Matchers.eq(first), Matchers.anyString(),
+                Matchers.any(TestPlanQueueEntry.State.class));
+
+        Map<TestPlanQueueEntry.State, Integer> results = new TestPlanScheduler(testPlanQueueUOW, "queue",
+                RUNNER_ID, false, 1, entry -> true).run();
+
+        Assert.assertEquals(results, Collections.singletonMap(TestPlanQueueEntry.State.SUCCEEDED, 3));
+        Assert.assertEquals(first.getState(), TestPlanQueueEntry.State.RUNNING,
+                "An entry which could not be completed should be left to be resumed.");
+        Assert.assertTrue(queue.stream().filter(entry -> entry != first)
+                .allMatch(entry -> entry.getState() == TestPlanQueueEntry.State.SUCCEEDED));
+    }
+
+    @Test
+    public void testQueueErrorWaitsForRunningTestPlans() throws Exception {
+        TestPlanQueueUOW testPlanQueueUOW = mockQueue();
+        queue.clear();
+        TestPlanQueueEntry running = createEntry("product-a", 0);
+        queue.add(running);
+        queue.add(createEntry("product-b", 1));
+        Mockito.when(testPlanQueueUOW.getQueuedEntries(Matchers.anyString()))
+                .thenReturn(new ArrayList<>(queue))
+                .thenThrow(new TestGridDAOException("Lost the connection."));
+        AtomicBoolean finished = new AtomicBoolean();
+
+        try {
+            new TestPlanScheduler(testPlanQueueUOW, "queue", RUNNER_ID, false, 2, entry -> {
+                Thread.sleep(200);
+                finished.set(true);
+                return true;
+            }).run();
+            Assert.fail("The queue error should be thrown.");
+        } catch (TestGridDAOException e) {
+            Assert.assertEquals(e.getMessage(), "Lost the connection.");
+        }
+        Assert.assertTrue(finished.get(), "The running test plan should complete before the error is thrown.");
+        Assert.assertEquals(running.getState(), TestPlanQueueEntry.State.SUCCEEDED);
+    }
+
+    /**
+     * Mocks the queue unit of work with the semantics of the database queue on top of {@link #queue}.
+     */
+    private TestPlanQueueUOW mockQueue() throws Exception {
+        TestPlanQueueUOW testPlanQueueUOW = Mockito.mock(TestPlanQueueUOW.class);
+        Mockito.when(testPlanQueueUOW.getQueuedEntries(Matchers.anyString())).thenAnswer(invocation -> {
+            synchronized (queue) {
+                return queue.stream()
+                        .filter(entry -> entry.getState() == TestPlanQueueEntry.State.QUEUED)
+                        .collect(Collectors.toList());
+            }
+        });
+        Mockito.when(testPlanQueueUOW.claim(Matchers.any(TestPlanQueueEntry.class), Matchers.anyString()))
+                .thenAnswer(invocation -> {
+                    TestPlanQueueEntry entry = invocation.getArgumentAt(0, TestPlanQueueEntry.class);
+                    synchronized (queue) {
+                        if (entry.getState() != TestPlanQueueEntry.State.QUEUED) {
+                            return false;
+                        }
+                        entry.setState(TestPlanQueueEntry.State.RUNNING);
+                        entry.setRunnerId(invocation.getArgumentAt(1, String.class));
+                        entry.setAttempts(entry.getAttempts() + 1);
+                        return true;
+                    }
+                });
+        Mockito.doAnswer(invocation -> {
+            TestPlanQueueEntry entry = invocation.getArgumentAt(0, TestPlanQueueEntry.class);
+            synchronized (queue) {
+                Assert.assertEquals(entry.getState(), TestPlanQueueEntry.State.RUNNING);
+                Assert.assertEquals(entry.getRunnerId(), invocation.getArgumentAt(1, String.class));
+                entry.setState(invocation.getArgumentAt(2, TestPlanQueueEntry.State.class));
+            }
+            return null;
+        }).when(testPlanQueueUOW).complete(Matchers.any(TestPlanQueueEntry.class), Matchers.anyString(),
+                Matchers.any(TestPlanQueueEntry.State.class));
+        Mockito.when(testPlanQueueUOW.requeueUncompleted(Matchers.anyString(), Matchers.anyString(),
+                Matchers.anyInt())).thenAnswer(invocation -> {
+            String runnerId = invocation.getArgumentAt(1, String.class);
+            int maxAttempts = invocation.getArgumentAt(2, Integer.class);
+            int requeued = 0;
+            synchronized (queue) {
+                for (TestPlanQueueEntry entry : queue) {
+                    if (entry.getState() != TestPlanQueueEntry.State.RUNNING
+                            || !runnerId.equals(entry.getRunnerId())) {
+                        continue;
+                    }
+                    if (entry.getAttempts() >= maxAttempts) {
+                        entry.setState(TestPlanQueueEntry.State.FAILED);
+                    } else {
+                        entry.setState(TestPlanQueueEntry.State.QUEUED);
+                        entry.setRunnerId(null);
+                        requeued++;
+                    }
+                }
+            }
+            return requeued;
+        });
+        return testPlanQueueUOW;
+    }
+
+    private static TestPlanQueueEntry createEntry(String productName, int index) {
+        TestPlanQueueEntry entry = new TestPlanQueueEntry();
+        entry.setId(UUID.randomUUID().toString());
+        entry.setQueueName("queue");
+        entry.setTestPlanId(UUID.randomUUID().toString());
+        entry.setProductName(productName);
+        entry.setTestPlanFile("test-plan-" + index + ".yaml");
+        entry.setWorkspace(Paths.get("target", "testplan-scheduler", entry.getTestPlanId()).toAbsolutePath()
+                .toString());
+        return entry;
+    }
+}
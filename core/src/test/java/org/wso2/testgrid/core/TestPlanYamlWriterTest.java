@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.core;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.testgrid.common.TestPlan;
+import org.wso2.testgrid.common.config.DeploymentConfig;
+import org.wso2.testgrid.common.config.InfrastructureConfig;
+import org.wso2.testgrid.common.config.Script;
+import org.wso2.testgrid.common.util.FileUtil;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.introspector.Property;
+import org.yaml.snakeyaml.nodes.NodeTuple;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.representer.Representer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the test plan files written by {@link TestPlanYamlWriter} with the dumped and post-processed ones.
+ */
+public class TestPlanYamlWriterTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(TestPlanYamlWriterTest.class);
+    private static final int TEST_PLANS = 2000;
+
+    @Test
+    public void testOutputMatchesDump() throws IOException {
+        TestPlan testPlan = createTestPlan(0);
+        StringWriter writer = new StringWriter();
+        new TestPlanYamlWriter().write(testPlan, writer);
+
+        Assert.assertEquals(writer.toString(), dump(createYaml(), testPlan));
+    }
+
+    @Test
+    public void testSharedReferencesAreWrittenInFull() throws IOException {
+        TestPlan testPlan = createTestPlan(0);
+        testPlan.setJobProperties(testPlan.getInfrastructureProperties());
+        Path file = Files.createTempFile("test-plan-", FileUtil.YAML_EXTENSION);
+        try {
+            new TestPlanYamlWriter().write(testPlan, file);
+            String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            Assert.assertFalse(content.contains("&id") || content.contains("*id") || content.contains("!!"),
+                    "Anchors, aliases and tags should not be written: " + content);
+
+            TestPlan readTestPlan = FileUtil.readYamlFile(file.toString(), TestPlan.class);
+            Assert.assertEquals(readTestPlan.getId(), testPlan.getId());
+            Assert.assertEquals(readTestPlan.getInfrastructureProperties(), testPlan.getInfrastructureProperties());
+            Assert.assertEquals(readTestPlan.getJobProperties(), testPlan.getInfrastructureProperties());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testWriteAll() throws IOException {
+        List<TestPlan> testPlans = new ArrayList<>(TEST_PLANS);
+        for (int i = 0; i < TEST_PLANS; i++) {
+            testPlans.add(createTestPlan(i));
+        }
+        Path directory = Files.createTempDirectory("test-plans");
+        try {
+            Yaml yaml = createYaml();
+            long start = System.nanoTime();
+            for (int i = 0; i < TEST_PLANS; i++) {
+                Files.write(directory.resolve("dumped-" + i + FileUtil.YAML_EXTENSION),
+                        dump(yaml, testPlans.get(i)).getBytes(StandardCharsets.UTF_8));
+            }
+            long dumpMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            List<Path> files = new ArrayList<>(TEST_PLANS);
+            for (int i = 0; i < TEST_PLANS; i++) {
+                files.add(directory.resolve("written-" + i + FileUtil.YAML_EXTENSION));
+            }
+            start = System.nanoTime();
+            new TestPlanYamlWriter().writeAll(testPlans, files, Runtime.getRuntime().availableProcessors());
+            long writeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            logger.info(String.format("Saving %d test plans: %d ms dumped and post-processed, %d ms streamed on %d "
+                    + "threads", TEST_PLANS, dumpMillis, writeMillis, Runtime.getRuntime().availableProcessors()));
+            for (int i = 0; i < TEST_PLANS; i += 97) {
+                Assert.assertEquals(Files.readAllBytes(files.get(i)),
+                        Files.readAllBytes(directory.resolve("dumped-" + i + FileUtil.YAML_EXTENSION)));
+            }
+        } finally {
+            FileUtils.deleteQuietly(directory.toFile());
+        }
+    }
+
+    private TestPlan createTestPlan(int index) {
+        Script script = new Script();
+        script.setName("deploy-" + index);
+        script.setType(Script.ScriptType.SHELL);
+        script.setFile("deploy.sh");
+        DeploymentConfig.DeploymentPattern deploymentPattern = new DeploymentConfig.DeploymentPattern();
+        deploymentPattern.setName("pattern-" + (index % 4));
+        deploymentPattern.setScripts(Collections.singletonList(script));
+
+        Properties parameters = new Properties();
+        parameters.setProperty("OS", "ubuntu-" + (index % 3));
+        parameters.setProperty("DBEngine", "mysql-" + (index % 5));
+        InfrastructureConfig infrastructureConfig = new InfrastructureConfig();
+        infrastructureConfig.setParameters(parameters);
+
+        Properties infrastructureProperties = new Properties();
+        infrastructureProperties.setProperty("region", "us-east-" + (index % 2));
+
+        TestPlan testPlan = new TestPlan();
+        testPlan.setId("product_pattern-" + (index % 4) + "_" + index + "_run1");
+        testPlan.setTestRunNumber(1);
+        testPlan.setDeployerType(TestPlan.DeployerType.SHELL);
+        testPlan.setInfrastructureConfig(infrastructureConfig);
+        testPlan.setDeploymentConfig(new DeploymentConfig(Collections.singletonList(deploymentPattern)));
+        testPlan.setInfrastructureProperties(infrastructureProperties);
+        testPlan.setJobProperties(new Properties());
+        testPlan.setKeyFileLocation("/keys/key-" + index + ".pem");
+        return testPlan;
+    }
+
+    /**
+     * Dumps the test plan the way the test plan files were saved before they were streamed.
+     */
+    private String dump(Yaml yaml, TestPlan testPlan) {
+        return yaml.dump(testPlan)
+                .replaceAll("[&,*]id[0-9]+", "")
+                .replaceAll("!!", "#");
+    }
+
+    private Yaml createYaml() {
+        DumperOptions options = new DumperOptions();
+        options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+        options.setPrettyFlow(true);
+        return new Yaml(new Representer() {
+            @Override
+            protected NodeTuple representJavaBeanProperty(Object javaBean, Property property, Object propertyValue,
+                    Tag customTag) {
+                return propertyValue == null ? null :
+                        super.representJavaBeanProperty(javaBean, property, propertyValue, customTag);
+            }
+        }, options);
+    }
+}
@@ -14,13 +14,17 @@ import org.wso2.testgrid.common.TestGridConstants;
 import org.wso2.testgrid.common.TestPlan;
 import org.wso2.testgrid.common.util.StringUtil;
 import org.wso2.testgrid.common.util.TestGridUtil;
+import org.wso2.testgrid.dao.dto.TestPlanCleanupReport;
 import org.wso2.testgrid.dao.uow.TestPlanUOW;
 
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
+import java.util.function.Consumer;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.powermock.api.mockito.PowerMockito.when;
 
@@ -47,7 +51,6 @@ public class CleanUpCommandTest extends PowerMockTestCase {
         List<String> dataToDelete = new ArrayList<String>();
         dataToDelete.add("TP1");
 
-        when(testPlanUOW.getTestPlansToCleanup(10)).thenReturn(dataToDelete);
         TestPlan testPlan = new TestPlan();
         String productName = "wso2-" + randomStr;
         actualTestPlanFileLocation = Paths.get("target", "testgrid-home", TestGridConstants.TESTGRID_JOB_DIR,
@@ -73,7 +76,12 @@ public class CleanUpCommandTest extends PowerMockTestCase {
         testPlan.setKeyFileLocation(Paths.get(workspaceDir, "workspace", "testkey.pem").toString());
         testPlan.setWorkspace(workspaceDir);
 
-        when(testPlanUOW.getTestPlanById("TP1")).thenReturn(Optional.of(testPlan));
+        when(testPlanUOW.cleanupTestPlans(eq(10), eq(false), any())).thenAnswer(invocation -> {
+            @SuppressWarnings("unchecked")
+            Consumer<List<TestPlan>> beforeDelete = invocation.getArgumentAt(2, Consumer.class);
+            beforeDelete.accept(Collections.singletonList(testPlan));
+            return new TestPlanCleanupReport(false, 10);
+        });
         CleanUpCommand cleanUpCommand = new CleanUpCommand(0, 10, testPlanUOW, dataToDelete,
                 null);
 
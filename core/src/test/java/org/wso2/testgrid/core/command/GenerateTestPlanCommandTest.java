@@ -51,12 +51,16 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Optional;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Random;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
@@ -124,9 +128,15 @@ public class GenerateTestPlanCommandTest extends PowerMockTestCase {
 
         logger.info("Product : " + product.getName());
         when(productUOW.persistProduct(anyString())).thenReturn(product);
-        when(testPlanUOW.persistTestPlan(any(TestPlan.class))).thenReturn(testPlan);
-        when(deploymentPatternUOW.getDeploymentPattern(any(Product.class), anyString())).
-                thenReturn(Optional.of(deploymentPattern));
+        when(testPlanUOW.insertTestPlans(anyListOf(TestPlan.class))).thenReturn(Collections.singletonList(testPlan));
+        when(deploymentPatternUOW.getOrCreateDeploymentPatterns(any(Product.class), anyCollectionOf(String.class)))
+                .thenAnswer(invocation -> {
+                    Map<String, DeploymentPattern> deploymentPatterns = new HashMap<>();
+                    for (Object name : invocation.getArgumentAt(1, Collection.class)) {
+                        deploymentPatterns.put((String) name, deploymentPattern);
+                    }
+                    return deploymentPatterns;
+                });
 
         GenerateTestPlanCommand generateTestPlanCommand = new GenerateTestPlanCommand(product.getName(),
                 jobConfigFileLocation, infrastructureCombinationsProvider, productUOW,
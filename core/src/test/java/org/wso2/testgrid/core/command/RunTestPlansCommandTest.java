@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.core.command;
+
+import org.apache.commons.io.FileUtils;
+import org.kohsuke.args4j.CmdLineParser;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.testgrid.common.TestGridConstants;
+import org.wso2.testgrid.common.TestPlan;
+import org.wso2.testgrid.common.TestPlanPhase;
+import org.wso2.testgrid.common.TestPlanQueueEntry;
+import org.wso2.testgrid.common.TestPlanStatus;
+import org.wso2.testgrid.common.exception.CommandExecutionException;
+import org.wso2.testgrid.core.PipelinedTestPlanExecutor;
+import org.wso2.testgrid.core.TestPlanExecutor;
+import org.wso2.testgrid.core.phase.DeployPhase;
+import org.wso2.testgrid.core.phase.InfraPhase;
+import org.wso2.testgrid.core.phase.Phase;
+import org.wso2.testgrid.core.phase.TestPhase;
+import org.wso2.testgrid.dao.uow.TestPlanQueueUOW;
+import org.wso2.testgrid.dao.uow.TestPlanUOW;
+import org.wso2.testgrid.logging.plugins.LogFilePathLookup;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Runs queued test plans through {@link RunTestPlansCommand} and {@link RunTestPlanCommand} with the real
+ * {@link TestPlanExecutor} and {@link PipelinedTestPlanExecutor}, whose phases are stubbed to sleep instead of
+ * provisioning infrastructure, deploying and testing.
+ */
+public class RunTestPlansCommandTest {
+
+    private static final Path WORKSPACES = Paths.get("target", "run-testplans");
+    private static final long PHASE_MILLIS = 200;
+
+    private final List<TestPlanQueueEntry> queue = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, Set<String>> logFilePaths = new ConcurrentHashMap<>();
+    private final AtomicInteger infraRunning = new AtomicInteger();
+    private final AtomicInteger maxInfraRunning = new AtomicInteger();
+    private final AtomicInteger deployRunning = new AtomicInteger();
+    private final AtomicInteger maxDeployRunning = new AtomicInteger();
+
+    @Test
+    public void testPhaseLimitsAndLogFiles() throws Exception {
+        queue.clear();
+        List<TestPlanQueueEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            entries.add(createEntry(i % 2 == 0 ? "product-a" : "product-b"));
+        }
+        queue.addAll(entries);
+        InfraPhase infraPhase = stubPhase(InfraPhase.class, TestPlanPhase.INFRA_PHASE_SUCCEEDED, infraRunning,
+                maxInfraRunning);
+        DeployPhase deployPhase = stubPhase(DeployPhase.class, TestPlanPhase.DEPLOY_PHASE_SUCCEEDED, deployRunning,
+                maxDeployRunning);
+        TestPhase testPhase = stubPhase(TestPhase.class, TestPlanPhase.TEST_PHASE_SUCCEEDED, new AtomicInteger(),
+                new AtomicInteger());
+        TestPlanUOW testPlanUOW = mockTestPlanUOW();
+
+        RunTestPlansCommand command = new RunTestPlansCommand((workspace, buildURL) -> new RunTestPlanCommand(
+                workspace, buildURL, testPlanUOW, new TestPlanExecutor(infraPhase, deployPhase, testPhase)), null);
+        new CmdLineParser(command).parseArgument("--dir", WORKSPACES.toString(), "--workspace",
+                WORKSPACES.toString(), "--workers", "4", "--max-infra", "2", "--max-deploy", "1");
+        Map<TestPlanQueueEntry.State, Integer> results = command.createScheduler(mockQueue(), "queue", "runner-1",
+                false).run();
+
+        Assert.assertEquals(results, Collections.singletonMap(TestPlanQueueEntry.State.SUCCEEDED, 6));
+        Assert.assertEquals(maxInfraRunning.get(), 2, "At most two infrastructures should be provisioned at once.");
+        Assert.assertEquals(maxDeployRunning.get(), 1, "Deployments should be created one at a time.");
+        for (TestPlanQueueEntry entry : entries) {
+            Assert.assertEquals(logFilePaths.get(entry.getTestPlanId()), Collections.singleton(
+                    Paths.get(entry.getWorkspace(), TestGridConstants.TESTRUN_LOG_FILE_NAME).toString()),
+                    "Each phase should log to the log file of its own test plan.");
+        }
+    }
+
+    @Test
+    public void testPipelined() throws Exception {
+        queue.clear();
+        List<TestPlanQueueEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            entries.add(createEntry(i % 2 == 0 ? "product-a" : "product-b"));
+        }
+        queue.addAll(entries);
+        List<String> tested = Collections.synchronizedList(new ArrayList<>());
+        LogFilePathLookup lookup = new LogFilePathLookup();
+        PipelinedTestPlanExecutor.Stages stages = new PipelinedTestPlanExecutor.Stages() {
+            @Override
+            public void provision(TestPlan testPlan) throws Exception {
+                logFilePaths.computeIfAbsent(testPlan.getId(), id -> ConcurrentHashMap.newKeySet())
+                        .add(lookup.lookup(null, "path"));
+                maxInfraRunning.accumulateAndGet(infraRunning.incrementAndGet(), Math::max);
+                Thread.sleep(PHASE_MILLIS);
+            }
+
+            @Override
+            public boolean deployAndTest(TestPlan testPlan) throws Exception {
+                logFilePaths.get(testPlan.getId()).add(lookup.lookup(null, "path"));
+                tested.add(testPlan.getId());
+                Thread.sleep(PHASE_MILLIS / 2);
+                infraRunning.decrementAndGet();
+                return true;
+            }
+
+            @Override
+            public void release(TestPlan testPlan) {
+                infraRunning.decrementAndGet();
+            }
+        };
+        TestPlanUOW testPlanUOW = mockTestPlanUOW();
+
+        RunTestPlansCommand command = new RunTestPlansCommand((workspace, buildURL) -> new RunTestPlanCommand(
+                workspace, buildURL, testPlanUOW, null), stages);
+        Map<TestPlanQueueEntry.State, Integer> results = command.runPipelined(mockQueue(), "queue", "runner-1",
+                false, 2, 2);
+
+        Assert.assertEquals(results, Collections.singletonMap(TestPlanQueueEntry.State.SUCCEEDED, 4));
+        Assert.assertEquals(tested, entries.stream().map(TestPlanQueueEntry::getTestPlanId)
+                .collect(Collectors.toList()), "Test plans should be tested one at a time in queue order.");
+        Assert.assertEquals(maxInfraRunning.get(), 2, "Provisioned infrastructure should not exceed two units.");
+        for (TestPlanQueueEntry entry : entries) {
+            Assert.assertEquals(logFilePaths.get(entry.getTestPlanId()), Collections.singleton(
+                    Paths.get(entry.getWorkspace(), TestGridConstants.TESTRUN_LOG_FILE_NAME).toString()),
+                    "Each stage should log to the log file of its own test plan.");
+        }
+    }
+
+    @Test
+    public void testInvalidWorkers() throws Exception {
+        RunTestPlansCommand command = new RunTestPlansCommand();
+        Files.createDirectories(WORKSPACES);
+        new CmdLineParser(command).parseArgument("--dir", WORKSPACES.toString(), "--workspace",
+                WORKSPACES.toString(), "--workers", "0");
+        try {
+            command.execute();
+            Assert.fail("Zero workers should be rejected.");
+        } catch (CommandExecutionException e) {
+            Assert.assertEquals(e.getMessage(), "Number of workers should be at least 1: --workers 0");
+        }
+    }
+
+    /**
+     * Stubs a phase which records the log file of the calling thread, sleeps while counting the test plans in the
+     * phase, and moves the test plan to the given phase.
+     */
+    private <T extends Phase> T stubPhase(Class<T> phaseClass, TestPlanPhase phase, AtomicInteger running,
+                                          AtomicInteger maxRunning) {
+        T stub = Mockito.mock(phaseClass);
+        LogFilePathLookup lookup = new LogFilePathLookup();
+        Mockito.doAnswer(invocation -> {
+            TestPlan testPlan = invocation.getArgumentAt(0, TestPlan.class);
+            logFilePaths.computeIfAbsent(testPlan.getId(), id -> ConcurrentHashMap.newKeySet())
+                    .add(lookup.lookup(null, "path"));
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(PHASE_MILLIS);
+            } finally {
+                running.decrementAndGet();
+            }
+            testPlan.setPhase(phase);
+            if (phase == TestPlanPhase.TEST_PHASE_SUCCEEDED) {
+                testPlan.setStatus(TestPlanStatus.SUCCESS);
+            }
+            return testPlan;
+        }).when(stub).execute(Matchers.any(TestPlan.class));
+        return stub;
+    }
+
+    /**
+     * Mocks the test plan unit of work returning a prepared test plan for each queued entry.
+     */
+    private TestPlanUOW mockTestPlanUOW() throws Exception {
+        TestPlanUOW testPlanUOW = Mockito.mock(TestPlanUOW.class);
+        Mockito.when(testPlanUOW.getTestPlanById(Matchers.anyString())).thenAnswer(invocation -> {
+            TestPlan testPlan = new TestPlan();
+            testPlan.setId(invocation.getArgumentAt(0, String.class));
+            testPlan.setPhase(TestPlanPhase.PREPARATION_SUCCEEDED);
+            testPlan.setStatus(TestPlanStatus.RUNNING);
+            testPlan.setTestScenarios(new ArrayList<>());
+            return Optional.of(testPlan);
+        });
+        return testPlanUOW;
+    }
+
+    /**
+     * Mocks the queue unit of work on top of {@link #queue}.
+     */
+    private TestPlanQueueUOW mockQueue() throws Exception {
+        TestPlanQueueUOW testPlanQueueUOW = Mockito.mock(TestPlanQueueUOW.class);
+        Mockito.when(testPlanQueueUOW.getQueuedEntries(Matchers.anyString())).thenAnswer(invocation -> {
+            synchronized (queue) {
+                return queue.stream()
+                        .filter(entry -> entry.getState() == TestPlanQueueEntry.State.QUEUED)
+                        .collect(Collectors.toList());
+            }
+        });
+        Mockito.when(testPlanQueueUOW.claim(Matchers.any(TestPlanQueueEntry.class), Matchers.anyString()))
+                .thenAnswer(invocation -> {
+                    TestPlanQueueEntry entry = invocation.getArgumentAt(0, TestPlanQueueEntry.class);
+                    synchronized (queue) {
+                        if (entry.getState() != TestPlanQueueEntry.State.QUEUED) {
+                            return false;
+                        }
+                        entry.setState(TestPlanQueueEntry.State.RUNNING);
+                        return true;
+                    }
+                });
+        return testPlanQueueUOW;
+    }
+
+    /**
+     * Creates an entry whose test plan YAML file is in a workspace of its own.
+     */
+    private static TestPlanQueueEntry createEntry(String productName) throws Exception {
+        String testPlanId = UUID.randomUUID().toString();
+        Path workspace = WORKSPACES.resolve(testPlanId).toAbsolutePath();
+        FileUtils.deleteQuietly(workspace.toFile());
+        Files.createDirectories(workspace);
+        Path testPlanFile = workspace.resolve("test-plan-" + testPlanId + ".yaml");
+        String yaml = "id: '" + testPlanId + "'\n"
+                + "infrastructureRepository: .\n"
+                + "deploymentRepository: .\n"
+                + "scenarioTestsRepository: .\n"
+                + "infrastructureConfig: {}\n";
+        Files.write(testPlanFile, yaml.getBytes(StandardCharsets.UTF_8));
+
+        TestPlanQueueEntry entry = new TestPlanQueueEntry();
+        entry.setId(UUID.randomUUID().toString());
+        entry.setQueueName("queue");
+        entry.setTestPlanId(testPlanId);
+        entry.setProductName(productName);
+        entry.setTestPlanFile(testPlanFile.toString());
+        entry.setWorkspace(workspace.toString());
+        return entry;
+    }
+}
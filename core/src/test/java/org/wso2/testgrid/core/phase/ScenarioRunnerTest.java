@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.core.phase;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.testgrid.automation.TestEngine;
+import org.wso2.testgrid.common.DeploymentCreationResult;
+import org.wso2.testgrid.common.TestGridConstants;
+import org.wso2.testgrid.common.TestPlan;
+import org.wso2.testgrid.common.TestPlanPhase;
+import org.wso2.testgrid.common.TestPlanStatus;
+import org.wso2.testgrid.common.config.ScenarioConfig;
+import org.wso2.testgrid.common.util.DataBucketsHelper;
+import org.wso2.testgrid.core.exception.TestPlanExecutorException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs local shell script scenarios with {@link ScenarioRunner}, one after another and in parallel.
+ */
+public class ScenarioRunnerTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScenarioRunnerTest.class);
+    private static final int SCENARIOS = 6;
+    private static final int SCENARIO_SECONDS = 1;
+    private static final String TEST_SCRIPT = "#!/bin/bash\n"
+            + "while [ $# -gt 0 ]; do\n"
+            + "  case \"$1\" in\n"
+            + "    --input-dir) INPUT_DIR=$2; shift 2 ;;\n"
+            + "    --output-dir) OUTPUT_DIR=$2; shift 2 ;;\n"
+            + "    *) shift ;;\n"
+            + "  esac\n"
+            + "done\n"
+            + "SCENARIO_DIR=\"$OUTPUT_DIR/scenarios/$(basename \"$(pwd)\")\"\n"
+            + "mkdir -p \"$SCENARIO_DIR\"\n"
+            + "cp \"$INPUT_DIR/deployment.properties\" \"$SCENARIO_DIR/\"\n"
+            + "sleep " + SCENARIO_SECONDS + "\n";
+
+    private final List<TestPlanStatus> reportedStatuses = new CopyOnWriteArrayList<>();
+
+    @BeforeMethod
+    public void clearReportedStatuses() {
+        reportedStatuses.clear();
+    }
+
+    @Test
+    public void testParallelScenariosSpeedUp() throws Exception {
+        TestPlan sequentialTestPlan = createTestPlan("sequential", SCENARIOS);
+        long start = System.nanoTime();
+        new ScenarioRunner(sequentialTestPlan, this::reportProgress)
+                .runScenarios(sequentialTestPlan.getScenarioConfigs(), 1);
+        long sequentialMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        TestPlan parallelTestPlan = createTestPlan("parallel", SCENARIOS);
+        start = System.nanoTime();
+        new ScenarioRunner(parallelTestPlan, this::reportProgress)
+                .runScenarios(parallelTestPlan.getScenarioConfigs(), SCENARIOS);
+        long parallelMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        logger.info(String.format("%d scenarios of %d s: %d ms one after another, %d ms in parallel (%.1fx)",
+                SCENARIOS, SCENARIO_SECONDS, sequentialMillis, parallelMillis,
+                (double) sequentialMillis / parallelMillis));
+        Assert.assertTrue(sequentialMillis >= TimeUnit.SECONDS.toMillis(SCENARIOS * SCENARIO_SECONDS));
+        Assert.assertTrue(parallelMillis * SCENARIOS / 2 < sequentialMillis,
+                "Running the scenarios in parallel should be close to " + SCENARIOS + " times faster.");
+        Assert.assertTrue(reportedStatuses.isEmpty());
+
+        for (ScenarioConfig scenarioConfig : sequentialTestPlan.getScenarioConfigs()) {
+            Assert.assertNull(scenarioConfig.getInputDir());
+        }
+        for (ScenarioConfig scenarioConfig : parallelTestPlan.getScenarioConfigs()) {
+            Assert.assertEquals(Paths.get(scenarioConfig.getInputDir()), DataBucketsHelper
+                    .getScenarioInputLocation(parallelTestPlan, scenarioConfig).toAbsolutePath());
+            String inputs = readScenarioInputs(parallelTestPlan, scenarioConfig);
+            Assert.assertTrue(inputs.contains("TEST_PLAN_ID=" + parallelTestPlan.getId()));
+            for (ScenarioConfig other : parallelTestPlan.getScenarioConfigs()) {
+                Assert.assertEquals(inputs.contains("SCENARIO=" + other.getName() + "\n"), other == scenarioConfig,
+                        "Inputs of " + scenarioConfig.getName() + " should only contain its own parameters.");
+            }
+        }
+    }
+
+    @Test
+    public void testSharedOutputDirsRunOneAfterAnother() throws Exception {
+        TestPlan testPlan = createTestPlan("shared-output", 2);
+        for (ScenarioConfig scenarioConfig : testPlan.getScenarioConfigs()) {
+            scenarioConfig.setOutputDir("shared");
+        }
+        new ScenarioRunner(testPlan, this::reportProgress).runScenarios(testPlan.getScenarioConfigs(), 2);
+
+        for (ScenarioConfig scenarioConfig : testPlan.getScenarioConfigs()) {
+            Assert.assertNull(scenarioConfig.getInputDir());
+            Assert.assertTrue(Files.exists(DataBucketsHelper.getTestOutputsLocation(testPlan)
+                    .resolve(Paths.get("shared", TestGridConstants.TEST_RESULTS_SCENARIO_DIR,
+                            scenarioConfig.getName()))));
+        }
+    }
+
+    @Test
+    public void testFailedScenarioStopsTheRun() throws Exception {
+        TestPlan testPlan = createTestPlan("failure", 3);
+        testPlan.getScenarioConfigs().get(1).setTestType("UNKNOWN");
+
+        Assert.assertThrows(TestPlanExecutorException.class, () -> new ScenarioRunner(testPlan, this::reportProgress)
+                .runScenarios(testPlan.getScenarioConfigs(), 3));
+        Assert.assertEquals(reportedStatuses, Collections.singletonList(TestPlanStatus.ERROR));
+    }
+
+    @Test
+    public void testConcurrencyFromJobProperties() {
+        TestPlan testPlan = new TestPlan();
+        testPlan.getJobProperties().setProperty(TestGridConstants.SCENARIO_CONCURRENCY, " 4 ");
+        Assert.assertEquals(ScenarioRunner.getConcurrency(testPlan), 4);
+        testPlan.getJobProperties().setProperty(TestGridConstants.SCENARIO_CONCURRENCY, "0");
+        Assert.assertEquals(ScenarioRunner.getConcurrency(testPlan), 1);
+        testPlan.getJobProperties().setProperty(TestGridConstants.SCENARIO_CONCURRENCY, "all");
+        Assert.assertEquals(ScenarioRunner.getConcurrency(testPlan), 1);
+    }
+
+    private void reportProgress(TestPlanPhase phase, TestPlanStatus status) {
+        Assert.assertEquals(phase, TestPlanPhase.TEST_PHASE_INCOMPLETE);
+        reportedStatuses.add(status);
+    }
+
+    /**
+     * Creates a test plan with the given number of scenario configs, each running the test script in its own
+     * scenario dir, and writes the test plan inputs to the data bucket.
+     */
+    private static TestPlan createTestPlan(String name, int scenarios) throws IOException {
+        Path workspace = Paths.get("target", "scenario-runner", name).toAbsolutePath();
+        FileUtils.deleteQuietly(workspace.toFile());
+        Path scenarioTests = Files.createDirectories(workspace.resolve("scenarioTests"));
+
+        TestPlan testPlan = new TestPlan();
+        testPlan.setId(UUID.randomUUID().toString());
+        testPlan.setWorkspace(workspace.toString());
+        testPlan.setScenarioTestsRepository(scenarioTests.toString());
+        testPlan.setDeploymentCreationResult(new DeploymentCreationResult());
+        List<ScenarioConfig> scenarioConfigs = new ArrayList<>();
+        for (int i = 1; i <= scenarios; i++) {
+            ScenarioConfig scenarioConfig = new ScenarioConfig();
+            scenarioConfig.setName("scenario" + i);
+            scenarioConfig.setFile(TestGridConstants.TEST_SCRIPT);
+            scenarioConfig.setTestType(TestEngine.DEFAULT.name());
+            scenarioConfig.setInputParameters(Collections.singletonMap("SCENARIO", scenarioConfig.getName()));
+            Path scenarioDir = Files.createDirectories(scenarioTests.resolve(scenarioConfig.getName()));
+            Files.write(scenarioDir.resolve(TestGridConstants.TEST_SCRIPT),
+                    TEST_SCRIPT.getBytes(StandardCharsets.UTF_8));
+            scenarioConfigs.add(scenarioConfig);
+        }
+        testPlan.setScenarioConfigs(scenarioConfigs);
+
+        Path inputLocation = DataBucketsHelper.getInputLocation(testPlan);
+        Files.createDirectories(inputLocation);
+        Files.write(inputLocation.resolve(DataBucketsHelper.DEPL_OUT_FILE),
+                ("TEST_PLAN_ID=" + testPlan.getId() + "\n").getBytes(StandardCharsets.UTF_8));
+        return testPlan;
+    }
+
+    private static String readScenarioInputs(TestPlan testPlan, ScenarioConfig scenarioConfig) throws IOException {
+        Path inputs = DataBucketsHelper.getTestOutputsLocation(testPlan).resolve(Paths.get(
+                scenarioConfig.getOutputDir(), TestGridConstants.TEST_RESULTS_SCENARIO_DIR, scenarioConfig.getName(),
+                DataBucketsHelper.DEPL_OUT_FILE));
+        return new String(Files.readAllBytes(inputs), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.core.util;
+
+import org.apache.commons.io.FileUtils;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.testgrid.common.config.Script;
+import org.wso2.testgrid.common.util.DataBucketsHelper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compares the files written by {@link DataBucketStore} with the ones of {@link JsonPropFileUtil}, and verifies that
+ * a failed flush leaves the previous files.
+ */
+public class DataBucketStoreTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataBucketStoreTest.class);
+    private static final int PROPERTY_UPDATES = 10_000;
+    private static final int PROPERTIES_PER_SCRIPT = 50;
+
+    private Path directory;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("data-bucket");
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        FileUtils.deleteQuietly(directory.toFile());
+    }
+
+    @Test
+    public void testSameFilesAsJsonPropFileUtil() throws IOException {
+        Path utilDir = Files.createDirectories(directory.resolve("util"));
+        Path storeDir = Files.createDirectories(directory.resolve("store"));
+        for (Path dir : new Path[] { utilDir, storeDir }) {
+            Files.write(propFile(dir), "infraKey=infraValue\n".getBytes(StandardCharsets.UTF_8));
+        }
+        Map<String, Object> general = inputs("TEST_PLAN_ID", "plan-1", "environment", "dev");
+        Map<String, Object> firstScript = inputs("dbEngine", "mysql", "environment", "prod");
+        Map<String, Object> secondScript = inputs("jdk", "ORACLE_JDK8");
+
+        JsonPropFileUtil.persistAdditionalInputs(general, propFile(utilDir), jsonFile(utilDir));
+        JsonPropFileUtil.updateParamsJson(jsonFile(utilDir), "dep", paramsFile(utilDir));
+        JsonPropFileUtil.persistAdditionalInputs(firstScript, propFile(utilDir), jsonFile(utilDir), "first");
+        JsonPropFileUtil.updateParamsJson(jsonFile(utilDir), "dep", paramsFile(utilDir));
+        JsonPropFileUtil.persistAdditionalInputs(inputs("password", "secret"), propFile(utilDir), jsonFile(utilDir));
+        JsonPropFileUtil.persistAdditionalInputs(secondScript, propFile(utilDir), jsonFile(utilDir), "second");
+        JsonPropFileUtil.updateParamsJson(jsonFile(utilDir), "test", paramsFile(utilDir));
+
+        DataBucketStore store = DataBucketStore.open(propFile(storeDir), jsonFile(storeDir), paramsFile(storeDir));
+        store.persistAdditionalInputs(general);
+        store.updateParamsJson("dep");
+        store.persistAdditionalInputs(firstScript, "first");
+        store.updateParamsJson("dep");
+        store.persistAdditionalInputs(inputs("password", "secret"));
+        store.persistAdditionalInputs(secondScript, "second");
+        store.updateParamsJson("test");
+        Assert.assertEquals(store.getProperty("environment"), "prod");
+        Assert.assertEquals(store.getProperty("infraKey"), "infraValue");
+        store.flush();
+        assertSameFiles(utilDir, storeDir);
+        Assert.assertTrue(readJson(jsonFile(storeDir)).getJSONObject("currentscript").has("password"));
+
+        Script script = new Script();
+        script.setInputParameters(firstScript);
+        JsonPropFileUtil.removeScriptConfigParams(script, propFile(utilDir));
+        store.removeScriptConfigParams(firstScript);
+        store.flush();
+        Assert.assertEquals(loadProperties(propFile(storeDir)), loadProperties(propFile(utilDir)));
+        Assert.assertNull(store.getProperty("dbEngine"));
+    }
+
+    @Test
+    public void testChangesAreWrittenOnFlush() throws IOException {
+        Files.write(propFile(directory), "existing=value\n".getBytes(StandardCharsets.UTF_8));
+        DataBucketStore store = DataBucketStore.open(propFile(directory), jsonFile(directory),
+                paramsFile(directory));
+        store.persistAdditionalInputs(inputs("added", "value"), "script");
+        store.updateParamsJson("infra");
+
+        Assert.assertTrue(store.isDirty());
+        Assert.assertEquals(store.getProperty("added"), "value");
+        Assert.assertEquals(read(propFile(directory)), "existing=value\n");
+        Assert.assertFalse(Files.exists(jsonFile(directory)));
+        Assert.assertFalse(Files.exists(paramsFile(directory)));
+
+        store.flush();
+        Assert.assertFalse(store.isDirty());
+        Assert.assertEquals(loadProperties(propFile(directory)).getProperty("added"), "value");
+        Assert.assertEquals(readJson(paramsFile(directory)).getJSONObject("infra-in").getString("added"), "value");
+
+        // A script appends to the file, and the store sees it once reloaded.
+        Files.write(propFile(directory), ("fromScript=output" + System.lineSeparator())
+                .getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        store.reload();
+        Assert.assertEquals(store.getProperty("fromScript"), "output");
+    }
+
+    @Test
+    public void testFailedFlushKeepsPreviousFiles() throws IOException {
+        DataBucketStore store = DataBucketStore.open(propFile(directory), jsonFile(directory),
+                paramsFile(directory));
+        store.persistAdditionalInputs(inputs("first", "1"));
+        store.updateParamsJson("dep");
+        store.flush();
+        String propContent = read(propFile(directory));
+        String jsonContent = read(jsonFile(directory));
+
+        store.persistAdditionalInputs(inputs("second", "2"), "script");
+        store.updateParamsJson("dep");
+        // The properties file cannot be replaced while a non-empty directory is in its place.
+        Path propFileBackup = directory.resolve("backup.properties");
+        Files.move(propFile(directory), propFileBackup);
+        Files.createDirectories(propFile(directory).resolve("busy"));
+        try {
+            store.flush();
+            Assert.fail("The flush should fail when the properties file cannot be replaced.");
+        } catch (IOException e) {
+            logger.debug("Flush failed as expected: " + e.getMessage());
+        }
+        Assert.assertTrue(store.isDirty());
+        Assert.assertEquals(read(jsonFile(directory)), jsonContent, "Files after the failed one are not written.");
+        assertNoTempFiles();
+
+        // A store opened after the failure, as after a crash, sees the previous files.
+        FileUtils.deleteDirectory(propFile(directory).toFile());
+        Files.move(propFileBackup, propFile(directory));
+        Assert.assertEquals(DataBucketStore.open(propFile(directory), jsonFile(directory), paramsFile(directory))
+                .getProperties(), Collections.singletonMap("first", "1"));
+        Assert.assertEquals(read(propFile(directory)), propContent);
+
+        // The changes are written by the next flush.
+        store.flush();
+        Assert.assertFalse(store.isDirty());
+        Assert.assertEquals(loadProperties(propFile(directory)).getProperty("second"), "2");
+        Assert.assertTrue(readJson(jsonFile(directory)).has("script"));
+        Assert.assertEquals(readJson(paramsFile(directory)).getJSONObject("dep-in").getString("second"), "2");
+        assertNoTempFiles();
+    }
+
+    @Test
+    public void testPartiallyWrittenTempFileIsIgnored() throws IOException {
+        Files.write(propFile(directory), "key=value\n".getBytes(StandardCharsets.UTF_8));
+        // What a flush interrupted while writing leaves behind.
+        Path tempFile = directory.resolve("." + DataBucketsHelper.DEPL_OUT_FILE + ".interrupted.tmp");
+        Files.write(tempFile, "key=val".getBytes(StandardCharsets.UTF_8));
+
+        DataBucketStore store = DataBucketStore.open(propFile(directory), jsonFile(directory),
+                paramsFile(directory));
+        Assert.assertEquals(store.getProperty("key"), "value");
+        store.persistAdditionalInputs(inputs("other", "value"));
+        store.flush();
+        Assert.assertEquals(loadProperties(propFile(directory)).getProperty("key"), "value");
+        Assert.assertEquals(read(tempFile), "key=val");
+    }
+
+    @Test
+    public void testPropertyUpdateTime() throws IOException {
+        Path utilDir = Files.createDirectories(directory.resolve("util"));
+        Path storeDir = Files.createDirectories(directory.resolve("store"));
+        List<Map<String, Object>> scriptInputs = new ArrayList<>();
+        for (int script = 0; script < PROPERTY_UPDATES / PROPERTIES_PER_SCRIPT; script++) {
+            Map<String, Object> inputs = new LinkedHashMap<>();
+            for (int property = 0; property < PROPERTIES_PER_SCRIPT; property++) {
+                inputs.put("key-" + script + "-" + property, "value-" + property);
+            }
+            scriptInputs.add(inputs);
+        }
+
+        long start = System.nanoTime();
+        for (Map<String, Object> inputs : scriptInputs) {
+            JsonPropFileUtil.persistAdditionalInputs(inputs, propFile(utilDir), jsonFile(utilDir));
+            JsonPropFileUtil.updateParamsJson(jsonFile(utilDir), "test", paramsFile(utilDir));
+        }
+        long utilMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        start = System.nanoTime();
+        DataBucketStore store = DataBucketStore.open(propFile(storeDir), jsonFile(storeDir), paramsFile(storeDir));
+        for (Map<String, Object> inputs : scriptInputs) {
+            store.persistAdditionalInputs(inputs);
+            store.updateParamsJson("test");
+        }
+        store.flush();
+        long storeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        logger.info(String.format("%d property updates in %d batches: %d ms with JsonPropFileUtil, %d ms with "
+                + "DataBucketStore", PROPERTY_UPDATES, scriptInputs.size(), utilMillis, storeMillis));
+        assertSameFiles(utilDir, storeDir);
+        Assert.assertEquals(store.getProperties().size(), PROPERTY_UPDATES);
+    }
+
+    private void assertSameFiles(Path expectedDir, Path actualDir) throws IOException {
+        Assert.assertEquals(read(propFile(actualDir)), read(propFile(expectedDir)));
+        Assert.assertTrue(readJson(jsonFile(actualDir)).similar(readJson(jsonFile(expectedDir))),
+                "The json files should be the same.");
+        Assert.assertTrue(readJson(paramsFile(actualDir)).similar(readJson(paramsFile(expectedDir))),
+                "The params.json files should be the same.");
+        Assert.assertTrue(read(jsonFile(actualDir)).endsWith("}\n"));
+    }
+
+    private void assertNoTempFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> tempFiles = files.filter(file -> file.getFileName().toString().endsWith(".tmp"))
+                    .collect(Collectors.toList());
+            Assert.assertTrue(tempFiles.isEmpty(), "Temporary files are left behind: " + tempFiles);
+        }
+    }
+
+    private static Map<String, Object> inputs(String... keysAndValues) {
+        Map<String, Object> inputs = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            inputs.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return inputs;
+    }
+
+    private static Path propFile(Path dir) {
+        return dir.resolve(DataBucketsHelper.DEPL_OUT_FILE);
+    }
+
+    private static Path jsonFile(Path dir) {
+        return dir.resolve(DataBucketsHelper.DEPL_OUT_JSONFILE);
+    }
+
+    private static Path paramsFile(Path dir) {
+        return dir.resolve(DataBucketsHelper.PARAMS_JSONFILE);
+    }
+
+    private static String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+
+    private static JSONObject readJson(Path file) throws IOException {
+        return new JSONObject(read(file));
+    }
+
+    private static Properties loadProperties(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            properties.load(inputStream);
+        }
+        return properties;
+    }
+}
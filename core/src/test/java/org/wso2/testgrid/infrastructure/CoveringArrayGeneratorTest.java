@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.wso2.testgrid.infrastructure;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import org.wso2.testgrid.common.config.InfrastructureConfig;
+import org.wso2.testgrid.common.config.JobConfig;
+import org.wso2.testgrid.common.config.TestgridYaml;
+import org.wso2.testgrid.common.infrastructure.InfrastructureCombination;
+import org.wso2.testgrid.common.infrastructure.InfrastructureParameter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Verifies that the rows of {@link CoveringArrayGenerator} cover every t-tuple, and reports how many fewer
+ * combinations they are than all the combinations.
+ */
+public class CoveringArrayGeneratorTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(CoveringArrayGeneratorTest.class);
+
+    @DataProvider
+    public Object[][] getCoveringArrayInputs() {
+        return new Object[][] {
+                { 2, new int[] { 3, 3, 3, 3 } },
+                { 2, new int[] { 5, 4, 3, 2, 2 } },
+                { 2, new int[] { 2, 2, 2, 2, 2, 2, 2, 2, 2, 2 } },
+                { 2, new int[] { 10, 10, 10, 10, 10, 10, 10, 10 } },
+                { 3, new int[] { 3, 3, 3, 3, 3, 3 } },
+                { 3, new int[] { 4, 3, 3, 2, 2, 2 } },
+                { 1, new int[] { 4, 2, 3 } },
+                { 4, new int[] { 2, 3, 2 } }
+        };
+    }
+
+    @Test(dataProvider = "getCoveringArrayInputs")
+    public void testEveryTupleIsCovered(int strength, int[] sizes) {
+        List<int[]> rows = new CoveringArrayGenerator(strength, 42L).generate(sizes);
+        int t = Math.min(strength, sizes.length);
+        assertCovered(rows, sizes, t);
+
+        long allCount = Arrays.stream(sizes).asLongStream().reduce(1, (a, b) -> a * b);
+        logger.info(String.format("%d-wise combinations of %s: %d instead of %d (%.1fx fewer)", t,
+                Arrays.toString(sizes), rows.size(), allCount, (double) allCount / rows.size()));
+        Assert.assertTrue(rows.size() <= allCount);
+        if (strength > sizes.length) {
+            Assert.assertEquals(rows.size(), allCount, "All the combinations are needed to cover them all.");
+        }
+    }
+
+    @Test
+    public void testSameSeedGivesSameRows() {
+        int[] sizes = { 4, 4, 3, 3, 2 };
+        List<int[]> rows = new CoveringArrayGenerator(2, 7L).generate(sizes);
+        List<int[]> sameSeedRows = new CoveringArrayGenerator(2, 7L).generate(sizes);
+        Assert.assertEquals(rows.size(), sameSeedRows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            Assert.assertEquals(rows.get(i), sameSeedRows.get(i));
+        }
+        assertCovered(new CoveringArrayGenerator(2, 8L).generate(sizes), sizes, 2);
+    }
+
+    @Test
+    public void testEmptyInputs() {
+        Assert.assertTrue(new CoveringArrayGenerator(2, 0L).generate(new int[] { 3, 0, 2 }).isEmpty());
+        List<int[]> rows = new CoveringArrayGenerator(2, 0L).generate(new int[0]);
+        Assert.assertEquals(rows.size(), 1, "There should be one empty row without parameters.");
+        Assert.assertEquals(rows.get(0).length, 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidStrength() {
+        new CoveringArrayGenerator(0, 0L);
+    }
+
+    @Test
+    public void testProviderHonoursExcludes() {
+        TreeMap<String, List<String>> infraResources = new TreeMap<>();
+        infraResources.put("DBEngine", Arrays.asList("MySQL-5.6", "MySQL-5.7", "Postgres-10.5", "Oracle-SE2-12.1"));
+        infraResources.put("JDK", Arrays.asList("ORACLE_JDK8", "OPEN_JDK8", "ADOPT_JDK8"));
+        infraResources.put("OS", Arrays.asList("Ubuntu-18.04", "Windows-2016", "CentOS-7.5"));
+        infraResources.put("Region", Collections.singletonList("us-east-1"));
+        JobConfig.Build build = new JobConfig.Build();
+        build.setCombinationAlgorithm("t_wise");
+        build.setInfraResources(Collections.singletonList(infraResources));
+        build.setSeed(3L);
+        InfrastructureConfig infrastructureConfig = new InfrastructureConfig();
+        infrastructureConfig.setExcludes(Collections.singletonList("Windows-2016"));
+        TestgridYaml testgridYaml = new TestgridYaml();
+        testgridYaml.setInfrastructureConfig(infrastructureConfig);
+
+        InfrastructureCombinationsProvider provider = new InfrastructureCombinationsProvider();
+        List<InfrastructureCombination> combinations = provider.getCombinationsForTWise(Collections.emptySet(),
+                build, testgridYaml);
+
+        Assert.assertTrue(combinations.size() < 4 * 3 * 2, "Pairwise combinations should be fewer than all.");
+        Set<String> pairs = new HashSet<>();
+        for (InfrastructureCombination combination : combinations) {
+            List<InfrastructureParameter> parameters = combination.getParameters().stream()
+                    .sorted((a, b) -> a.getType().compareTo(b.getType()))
+                    .collect(Collectors.toList());
+            Assert.assertEquals(parameters.size(), 4);
+            Assert.assertFalse(combination.getInfraCombinationId().contains("Windows-2016"));
+            Assert.assertEquals(combination.getInfraCombinationId(), parameters.stream()
+                    .map(InfrastructureParameter::getName)
+                    .collect(Collectors.joining("_")));
+            for (int i = 0; i < parameters.size(); i++) {
+                for (int j = i + 1; j < parameters.size(); j++) {
+                    pairs.add(parameters.get(i).getName() + "|" + parameters.get(j).getName());
+                }
+            }
+        }
+        // DBEngine x JDK, DBEngine x OS, DBEngine x Region, JDK x OS, JDK x Region, OS x Region
+        Assert.assertEquals(pairs.size(), 4 * 3 + 4 * 2 + 4 + 3 * 2 + 3 + 2);
+
+        List<String> sameSeedIds = provider.getCombinationsForTWise(Collections.emptySet(), build, testgridYaml)
+                .stream()
+                .map(InfrastructureCombination::getInfraCombinationId)
+                .collect(Collectors.toList());
+        Assert.assertEquals(sameSeedIds, combinations.stream()
+                .map(InfrastructureCombination::getInfraCombinationId)
+                .collect(Collectors.toList()), "The same seed should give the same combinations.");
+    }
+
+    private void assertCovered(List<int[]> rows, int[] sizes, int t) {
+        assertCovered(rows, sizes, t, new int[t], 0, 0);
+    }
+
+    private void assertCovered(List<int[]> rows, int[] sizes, int t, int[] parameters, int depth, int from) {
+        if (depth == t) {
+            Set<List<Integer>> covered = new HashSet<>();
+            for (int[] row : rows) {
+                covered.add(Arrays.stream(parameters).mapToObj(p -> row[p]).collect(Collectors.toList()));
+            }
+            int expected = Arrays.stream(parameters).map(p -> sizes[p]).reduce(1, (a, b) -> a * b);
+            Assert.assertEquals(covered.size(), expected, "Not every value combination of the parameters "
+                    + Arrays.toString(parameters) + " is covered.");
+            return;
+        }
+        for (int parameter = from; parameter < sizes.length; parameter++) {
+            parameters[depth] = parameter;
+            assertCovered(rows, sizes, t, parameters, depth + 1, parameter + 1);
+        }
+    }
+}
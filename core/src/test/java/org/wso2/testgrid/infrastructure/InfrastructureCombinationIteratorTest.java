@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.wso2.testgrid.infrastructure;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.testgrid.common.config.JobConfig;
+import org.wso2.testgrid.common.infrastructure.InfrastructureCombination;
+import org.wso2.testgrid.common.infrastructure.InfrastructureParameter;
+import org.wso2.testgrid.common.infrastructure.InfrastructureValueSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the combinations of {@link InfrastructureCombinationIterator} with the ones of the recursive and modulo
+ * based generation it replaced.
+ */
+public class InfrastructureCombinationIteratorTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(InfrastructureCombinationIteratorTest.class);
+
+    @Test
+    public void testAllMatchesRecursiveGeneration() {
+        List<List<InfrastructureParameter>> lists = createLists(3, 1, 4, 2);
+        Set<InfrastructureCombination> expected = new HashSet<>();
+        generateAllCombinations(lists, expected, 0, new InfrastructureCombination(), "");
+
+        List<InfrastructureCombination> combinations = InfrastructureCombinationIterator.allOf(lists).stream()
+                .collect(Collectors.toList());
+        Assert.assertEquals(combinations.size(), 24);
+        Assert.assertEquals(toKeys(combinations), toKeys(expected));
+    }
+
+    @Test
+    public void testAtLeastOneMatchesModuloGeneration() {
+        List<List<InfrastructureParameter>> lists = createLists(3, 1, 5, 2);
+        Set<InfrastructureCombination> expected = generateAtLeastOneCombinations(lists, 5);
+
+        List<InfrastructureCombination> combinations = InfrastructureCombinationIterator.atLeastOneOf(lists, 5)
+                .stream()
+                .collect(Collectors.toList());
+        Assert.assertEquals(combinations.size(), 5);
+        Assert.assertEquals(toKeys(combinations), toKeys(expected));
+        for (List<InfrastructureParameter> list : lists) {
+            for (InfrastructureParameter parameter : list) {
+                Assert.assertTrue(combinations.stream().anyMatch(c -> c.getParameters().contains(parameter)),
+                        "Each parameter should be in at least one combination: " + parameter);
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyLists() {
+        List<InfrastructureCombination> combinations = InfrastructureCombinationIterator
+                .allOf(Collections.emptyList()).stream()
+                .collect(Collectors.toList());
+        Assert.assertEquals(combinations.size(), 1, "There should be one empty combination without lists.");
+        Assert.assertEquals(combinations.get(0).getInfraCombinationId(), "");
+
+        List<List<InfrastructureParameter>> lists = createLists(2, 0, 3);
+        Assert.assertFalse(InfrastructureCombinationIterator.allOf(lists).hasNext());
+        Assert.assertFalse(InfrastructureCombinationIterator.atLeastOneOf(lists, 3).hasNext());
+    }
+
+    @Test
+    public void testProviderMatchesRecursiveGeneration() throws Exception {
+        JobConfig.Build build = new JobConfig.Build();
+        TreeMap<String, List<String>> infraResources = new TreeMap<>();
+        infraResources.put("DBEngine", Arrays.asList("MySQL-5.6", "MySQL-5.7", "Postgres-10.5"));
+        infraResources.put("JDK", Arrays.asList("ORACLE_JDK8", "OPEN_JDK8"));
+        infraResources.put("OS", Arrays.asList("Ubuntu-18.04", "Windows-2016", "CentOS-7.5"));
+        build.setInfraResources(Collections.singletonList(infraResources));
+        List<InfrastructureParameter> dbEngines = createList("DBEngine", "MySQL-5.6", "MySQL-5.7", "Postgres-10.5",
+                "SQLServer-SE-13.00");
+        List<InfrastructureParameter> operatingSystems = createList("OS", "Ubuntu-18.04", "CentOS-7.5");
+        Set<InfrastructureValueSet> valueSets = new HashSet<>();
+        valueSets.add(new InfrastructureValueSet("DBEngine", new HashSet<>(dbEngines)));
+        valueSets.add(new InfrastructureValueSet("OS", new HashSet<>(operatingSystems)));
+
+        Set<InfrastructureCombination> combinations = new InfrastructureCombinationsProvider()
+                .getCombinationsForAll(valueSets, build);
+
+        // Windows-2016 is not in the value set of the reserved OS type, hence it is left out.
+        List<List<InfrastructureParameter>> expectedLists = Arrays.asList(dbEngines.subList(0, 3),
+                createList("JDK", "ORACLE_JDK8", "OPEN_JDK8"), operatingSystems);
+        Set<InfrastructureCombination> expected = new HashSet<>();
+        generateAllCombinations(expectedLists, expected, 0, new InfrastructureCombination(), "");
+        Assert.assertEquals(combinations.size(), 12);
+        Assert.assertEquals(toKeys(combinations), toKeys(expected));
+    }
+
+    @Test
+    public void testGenerationTime() {
+        List<List<InfrastructureParameter>> lists = createLists(10, 10, 10, 10, 10, 10, 10, 10);
+        int limit = 100_000;
+        long start = System.nanoTime();
+        long count = InfrastructureCombinationIterator.allOf(lists).stream()
+                .limit(limit)
+                .filter(combination -> combination.getParameters().size() == lists.size())
+                .count();
+        long lazyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assert.assertEquals(count, limit);
+        Assert.assertEquals(InfrastructureCombinationIterator.allOf(lists).getCount(), 100_000_000L);
+
+        List<List<InfrastructureParameter>> fullLists = lists.subList(0, 5);
+        start = System.nanoTime();
+        Set<InfrastructureCombination> recursive = new HashSet<>();
+        generateAllCombinations(fullLists, recursive, 0, new InfrastructureCombination(), "");
+        long recursiveMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        start = System.nanoTime();
+        Set<InfrastructureCombination> iterated = InfrastructureCombinationIterator.allOf(fullLists).stream()
+                .collect(Collectors.toCollection(HashSet::new));
+        long iteratedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        logger.info(String.format("First %d of the combinations of 8 types x 10 values: %d ms. All %d combinations "
+                        + "of 5 types x 10 values: %d ms recursively, %d ms iterated", limit, lazyMillis,
+                iterated.size(), recursiveMillis, iteratedMillis));
+        Assert.assertEquals(iterated.size(), recursive.size());
+    }
+
+    private List<List<InfrastructureParameter>> createLists(int... sizes) {
+        List<List<InfrastructureParameter>> lists = new ArrayList<>(sizes.length);
+        for (int type = 0; type < sizes.length; type++) {
+            List<InfrastructureParameter> list = new ArrayList<>(sizes[type]);
+            for (int value = 0; value < sizes[type]; value++) {
+                list.add(new InfrastructureParameter("type-" + type + "-" + value, "type-" + type, "", true));
+            }
+            lists.add(list);
+        }
+        return lists;
+    }
+
+    private List<InfrastructureParameter> createList(String type, String... names) {
+        List<InfrastructureParameter> list = new ArrayList<>(names.length);
+        for (String name : names) {
+            list.add(new InfrastructureParameter(name, type, "", true));
+        }
+        return list;
+    }
+
+    private List<String> toKeys(Iterable<InfrastructureCombination> combinations) {
+        List<String> keys = new ArrayList<>();
+        for (InfrastructureCombination combination : combinations) {
+            keys.add(combination.getInfraCombinationId() + combination.getParameters().stream()
+                    .map(parameter -> parameter.getType() + ":" + parameter.getName())
+                    .collect(Collectors.joining(",", "[", "]")));
+        }
+        Collections.sort(keys);
+        return keys;
+    }
+
+    /**
+     * The recursive generation of all the combinations which copies the partial combination at each depth.
+     */
+    private void generateAllCombinations(List<List<InfrastructureParameter>> lists,
+                                         Set<InfrastructureCombination> result, int depth,
+                                         InfrastructureCombination current, String infraCombinationId) {
+        if (depth == lists.size()) {
+            infraCombinationId = infraCombinationId.startsWith("_") ?
+                    infraCombinationId.substring(1) : infraCombinationId;
+            current.setInfraCombinationId(infraCombinationId);
+            result.add(current);
+            return;
+        }
+
+        for (int i = 0; i < lists.get(depth).size(); i++) {
+            InfrastructureCombination tmp = new InfrastructureCombination();
+            tmp.addParameters(current.getParameters());
+            tmp.addParameter(lists.get(depth).get(i));
+            generateAllCombinations(lists, result, depth + 1,
+                    tmp, infraCombinationId + "_" + lists.get(depth).get(i).getName());
+        }
+    }
+
+    /**
+     * The generation of at least one of each parameter which selects the parameters by the modulus of the index.
+     */
+    private Set<InfrastructureCombination> generateAtLeastOneCombinations(List<List<InfrastructureParameter>> lists,
+                                                                          int maxSize) {
+        Set<InfrastructureCombination> infrastructureCombinations = new HashSet<>();
+        for (int combinationCount = 0; combinationCount < maxSize; combinationCount++) {
+            InfrastructureCombination infrastructureCombination = new InfrastructureCombination();
+            StringBuilder infraCombinationId = new StringBuilder();
+            for (List<InfrastructureParameter> list : lists) {
+                InfrastructureParameter infrastructureParameter = list.get(combinationCount % list.size());
+                infrastructureCombination.addParameter(infrastructureParameter);
+                infraCombinationId.append("_").append(infrastructureParameter.getName());
+            }
+            infrastructureCombination.setInfraCombinationId(infraCombinationId.substring(1));
+            infrastructureCombinations.add(infrastructureCombination);
+        }
+        return infrastructureCombinations;
+    }
+}
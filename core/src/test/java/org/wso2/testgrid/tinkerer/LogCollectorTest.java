@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.testgrid.tinkerer;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.testgrid.common.util.tinkerer.exception.TinkererOperationException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Downloads log files through {@link LogCollector} from a stub tinkerer, which serves each file after a delay.
+ */
+public class LogCollectorTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogCollectorTest.class);
+    private static final String KEY = "c3NoLWtleQ==";
+    private static final int HOSTS = 6;
+    private static final int FILES_PER_HOST = 15;
+    private static final int LATENCY_MILLIS = 20;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private Path directory;
+    // Whether the stub writes the files to their destinations, as the tinkerer does, instead of returning them.
+    private volatile boolean writeToDestination;
+    private volatile String failingSource;
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Integer> maxInFlight = new ConcurrentHashMap<>();
+    private final Set<String> receivedKeys = ConcurrentHashMap.newKeySet();
+    private final Set<String> receivedAuthorizations = ConcurrentHashMap.newKeySet();
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("log-collector");
+        inFlight.clear();
+        maxInFlight.clear();
+        receivedKeys.clear();
+        receivedAuthorizations.clear();
+        writeToDestination = false;
+        failingSource = null;
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/test-plan/", this::streamFile);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+        FileUtils.deleteQuietly(directory.toFile());
+    }
+
+    @Test
+    public void testParallelDownloadTime() throws Exception {
+        List<LogCollector.LogFile> logFiles = createLogFiles("sequential");
+        long start = System.nanoTime();
+        List<Path> sequential = new LogCollector("admin", "admin", 1, 1, false).collect(logFiles, KEY);
+        long sequentialMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertDownloaded(logFiles, sequential, false);
+
+        logFiles = createLogFiles("parallel");
+        maxInFlight.clear();
+        start = System.nanoTime();
+        List<Path> parallel = new LogCollector("admin", "admin", 8, 2, false).collect(logFiles, KEY);
+        long parallelMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertDownloaded(logFiles, parallel, false);
+
+        logger.info(String.format("Downloading %d log files of %d hosts with %d ms latency: %d ms one at a time, "
+                + "%d ms in parallel", logFiles.size(), HOSTS, LATENCY_MILLIS, sequentialMillis, parallelMillis));
+        Assert.assertTrue(parallelMillis < sequentialMillis, "The parallel download should be faster.");
+        for (Map.Entry<String, Integer> host : maxInFlight.entrySet()) {
+            Assert.assertTrue(host.getValue() <= 2, "Too many downloads at once from " + host.getKey());
+        }
+        Assert.assertEquals(receivedKeys.size(), 1);
+        Assert.assertTrue(receivedKeys.contains(KEY));
+        Assert.assertEquals(receivedAuthorizations.size(), 1);
+        Assert.assertTrue(receivedAuthorizations.contains("Basic YWRtaW46YWRtaW4="));
+    }
+
+    @Test
+    public void testCompressedDownloads() throws Exception {
+        List<LogCollector.LogFile> logFiles = createLogFiles("streamed");
+        assertDownloaded(logFiles, new LogCollector("admin", "admin", 4, 2, true).collect(logFiles, KEY), true);
+
+        // The tinkerer writes the files itself, and they are compressed afterwards.
+        writeToDestination = true;
+        logFiles = createLogFiles("written");
+        assertDownloaded(logFiles, new LogCollector("admin", "admin", 4, 2, true).collect(logFiles, KEY), true);
+        for (LogCollector.LogFile logFile : logFiles) {
+            Assert.assertFalse(Files.exists(directory.resolve(logFile.getDestination())),
+                    "The uncompressed file should be deleted.");
+        }
+    }
+
+    @Test
+    public void testFilesWrittenByTinkerer() throws Exception {
+        writeToDestination = true;
+        List<LogCollector.LogFile> logFiles = createLogFiles("written");
+        assertDownloaded(logFiles, new LogCollector("admin", "admin", 4, 2, false).collect(logFiles, KEY), false);
+    }
+
+    @Test
+    public void testFailedDownload() throws Exception {
+        List<LogCollector.LogFile> logFiles = createLogFiles("failed");
+        failingSource = logFiles.get(20).getSource();
+        try {
+            new LogCollector("admin", "admin", 4, 2, false).collect(logFiles, KEY);
+            Assert.fail("The collection should fail when a file cannot be downloaded.");
+        } catch (TinkererOperationException e) {
+            Assert.assertTrue(e.getMessage().contains("not found"), e.getMessage());
+        }
+    }
+
+    private List<LogCollector.LogFile> createLogFiles(String dirName) throws IOException {
+        Path downloadDir = Files.createDirectories(directory.resolve(dirName));
+        String base = "http://localhost:" + server.getAddress().getPort() + "/test-plan/plan-1/agent/";
+        List<LogCollector.LogFile> logFiles = new ArrayList<>();
+        for (int host = 0; host < HOSTS; host++) {
+            for (int file = 0; file < FILES_PER_HOST; file++) {
+                // Every host writes log files of the same names.
+                String name = "wso2carbon-" + file + ".log";
+                String instanceName = "node-" + host;
+                logFiles.add(new LogCollector.LogFile(instanceName, base + instanceName + "/stream-file",
+                        "/repository/logs/" + name,
+                        UnixClient.getLogDestination(downloadDir.toString(), instanceName, name), null));
+            }
+        }
+        return logFiles;
+    }
+
+    private void assertDownloaded(List<LogCollector.LogFile> logFiles, List<Path> downloaded, boolean compressed)
+            throws IOException {
+        Assert.assertEquals(downloaded.size(), logFiles.size());
+        for (int i = 0; i < logFiles.size(); i++) {
+            LogCollector.LogFile logFile = logFiles.get(i);
+            Path path = downloaded.get(i);
+            String expectedName = logFile.getDestination() + (compressed ? LogCollector.GZIP_EXTENSION : "");
+            Assert.assertEquals(path.toString(), expectedName);
+            String content;
+            try (InputStream inputStream = compressed ?
+                    new GZIPInputStream(Files.newInputStream(path)) : Files.newInputStream(path)) {
+                content = IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+            }
+            Assert.assertEquals(content, contentOf(logFile.getHost(), logFile.getSource()));
+        }
+    }
+
+    private static String contentOf(String host, String source) {
+        StringBuilder content = new StringBuilder();
+        for (int line = 0; line < 200; line++) {
+            content.append("[2018-10-01 10:00:").append(line % 60).append("] INFO - ").append(host).append(' ')
+                    .append(source).append('\n');
+        }
+        return content.toString();
+    }
+
+    /**
+     * Serves a stream-file operation of the tinkerer after a delay, keeping track of the downloads of each host.
+     */
+    private void streamFile(HttpExchange exchange) throws IOException {
+        String host = exchange.getRequestURI().getPath().split("/")[4];
+        AtomicInteger hostInFlight = inFlight.computeIfAbsent(host, h -> new AtomicInteger());
+        maxInFlight.merge(host, hostInFlight.incrementAndGet(), Math::max);
+        try {
+            JsonObject data;
+            try (InputStream inputStream = exchange.getRequestBody()) {
+                data = new Gson().fromJson(IOUtils.toString(inputStream, StandardCharsets.UTF_8), JsonObject.class)
+                        .getAsJsonObject("data");
+            }
+            receivedKeys.add(data.get("key").getAsString());
+            receivedAuthorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+            String source = data.get("source").getAsString();
+            try {
+                Thread.sleep(LATENCY_MILLIS);
+            } finally {
+                // Before responding, since the client sends the next request of the host once it has the response.
+                hostInFlight.decrementAndGet();
+            }
+
+            if (source.equals(failingSource)) {
+                byte[] error = ("File not found: " + source).getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(500, error.length);
+                try (OutputStream outputStream = exchange.getResponseBody()) {
+                    outputStream.write(error);
+                }
+                return;
+            }
+            byte[] content = contentOf(host, source).getBytes(StandardCharsets.UTF_8);
+            if (writeToDestination) {
+                Files.write(directory.resolve(data.get("destination").getAsString()), content);
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+                return;
+            }
+            // Chunked, as a streamed response would be.
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                for (int offset = 0; offset < content.length; offset += 1024) {
+                    outputStream.write(content, offset, Math.min(1024, content.length - offset));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        }
+    }
+}
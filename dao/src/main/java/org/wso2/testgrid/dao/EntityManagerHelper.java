@@ -17,57 +17,99 @@
  */
 package org.wso2.testgrid.dao;
 
+import org.eclipse.persistence.config.CascadePolicy;
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.testgrid.common.TestGridConstants;
 import org.wso2.testgrid.common.config.ConfigurationContext;
 import org.wso2.testgrid.common.config.ConfigurationContext.ConfigurationProperties;
+import org.wso2.testgrid.common.exception.TestGridRuntimeException;
 import org.wso2.testgrid.common.util.StringUtil;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.FlushModeType;
 import javax.persistence.Persistence;
+import javax.persistence.Query;
 
 /**
  * This class is responsible of handling operations related to entity manager.
+ * <p>
+ * An {@link EntityManager} is not thread safe, hence each thread is given its own entity manager per persistence
+ * unit. The entity managers of a persistence unit share a single {@link EntityManagerFactory}, which owns a bounded
+ * JDBC connection pool. Short lived threads (i.e. web requests) should call {@link #releaseEntityManager()} once
+ * done so that the entity manager is closed and its connection is returned to the pool.
  *
  * @since 1.0.0
  */
 public class EntityManagerHelper {
     private static final Logger logger = LoggerFactory.getLogger(EntityManagerHelper.class);
-    private static final Map<String, EntityManager> entityManagerMap = new HashMap<>();
-    private static final Map<String, EntityManagerFactory> entityManagerFactoryMap = new HashMap<>();
+    private static final ThreadLocal<Map<String, EntityManager>> entityManagerMap =
+            ThreadLocal.withInitial(HashMap::new);
+    private static final Map<String, EntityManagerFactory> entityManagerFactoryMap = new ConcurrentHashMap<>();
     private static final String TESTGRID_PU_MYSQL = "testgrid_mysql";
 
+    private static final String POOL_MIN_CONNECTIONS = "eclipselink.jdbc.connections.min";
+    private static final String POOL_MAX_CONNECTIONS = "eclipselink.jdbc.connections.max";
+    private static final String POOL_READ_MIN_CONNECTIONS = "eclipselink.jdbc.read-connections.min";
+    private static final String POOL_READ_MAX_CONNECTIONS = "eclipselink.jdbc.read-connections.max";
+
     /**
-     * Returns a thread safe {@link EntityManager}.
+     * Returns a {@link EntityManager} bound to the current thread.
      *
-     * @return thread safe {@link EntityManager}
+     * @return {@link EntityManager} of the current thread
      */
     public static EntityManager getEntityManager() {
         return getEntityManager(TESTGRID_PU_MYSQL);
     }
 
     /**
-     * Returns a thread safe {@link EntityManager}.
+     * Returns a {@link EntityManager} of the given persistence unit bound to the current thread.
      *
-     * @return thread safe {@link EntityManager}
+     * @param persistenceUnitName persistence unit name of the entity manager
+     * @return {@link EntityManager} of the current thread
      */
-    private static EntityManager getEntityManager(String persistenceUnitName) {
-        EntityManager entityManager = entityManagerMap.get(persistenceUnitName);
+    public static EntityManager getEntityManager(String persistenceUnitName) {
+        Map<String, EntityManager> threadEntityManagers = entityManagerMap.get();
+        EntityManager entityManager = threadEntityManagers.get(persistenceUnitName);
         if (entityManager == null || !entityManager.isOpen()) {
             EntityManagerFactory entityManagerFactory = getEntityManagerFactory(persistenceUnitName);
             entityManager = entityManagerFactory.createEntityManager();
             entityManager.setFlushMode(FlushModeType.COMMIT); // Flushing will happen on committing the transaction.
-            entityManagerMap.put(persistenceUnitName, entityManager);
+            threadEntityManagers.put(persistenceUnitName, entityManager);
         }
         return entityManager;
     }
 
+    /**
+     * Closes the entity managers bound to the current thread.
+     * <p>
+     * Any active transaction is rolled back, and the underlying connections are returned to the pool.
+     * The next call to {@link #getEntityManager()} from this thread creates a fresh entity manager.
+     */
+    public static void releaseEntityManager() {
+        Map<String, EntityManager> threadEntityManagers = entityManagerMap.get();
+        for (EntityManager entityManager : threadEntityManagers.values()) {
+            if (!entityManager.isOpen()) {
+                continue;
+            }
+            try {
+                if (entityManager.getTransaction().isActive()) {
+                    logger.warn("Rolling back an unfinished transaction of a released entity manager.");
+                    entityManager.getTransaction().rollback();
+                }
+            } finally {
+                entityManager.close();
+            }
+        }
+        entityManagerMap.remove();
+    }
+
     /**
      * Closes the entity manager.
      * <p>
@@ -77,16 +119,15 @@ public class EntityManagerHelper {
      */
     public static void closeEntityManager(String persistenceUnitName) {
         // Remove entity manager from thread local
-        EntityManager entityManager = entityManagerMap.get(persistenceUnitName);
-        if (entityManager != null) {
-            entityManagerMap.remove(persistenceUnitName);
+        EntityManager entityManager = entityManagerMap.get().remove(persistenceUnitName);
+        if (entityManager != null && entityManager.isOpen()) {
+            entityManager.close();
         }
 
         // Close and remove entity manager factory. This closes the entity manager automatically
-        EntityManagerFactory entityManagerFactory = entityManagerFactoryMap.get(persistenceUnitName);
+        EntityManagerFactory entityManagerFactory = entityManagerFactoryMap.remove(persistenceUnitName);
         if (entityManagerFactory != null) {
             entityManagerFactory.close();
-            entityManagerFactoryMap.remove(persistenceUnitName);
         }
     }
 
@@ -97,67 +138,101 @@ public class EntityManagerHelper {
      * @return entity manager factory with the given persistence unit name
      */
     private static EntityManagerFactory getEntityManagerFactory(String persistenceUnitName) {
+        // Factories are shared among all threads, hence created at most once per persistence unit.
+        return entityManagerFactoryMap.computeIfAbsent(persistenceUnitName,
+                EntityManagerHelper::createEntityManagerFactory);
+    }
 
-        Map<String, String> persistenceMap = new HashMap<String, String>();
-        EntityManagerFactory entityManagerFactory = entityManagerFactoryMap.get(persistenceUnitName);
-        if (entityManagerFactory == null) {
-
-            String dbUrl = ConfigurationContext.getProperty(ConfigurationProperties.DB_URL);
-            String dbUser = ConfigurationContext.getProperty(ConfigurationProperties.DB_USER);
-            String dbUserPass = ConfigurationContext.getProperty(ConfigurationProperties.DB_USER_PASS);
-            String tgEnvironment = ConfigurationContext.getProperty(ConfigurationProperties.TESTGRID_ENVIRONMENT);
+    /**
+     * Creates the entity manager factory for the given persistence unit name.
+     *
+     * @param persistenceUnitName persistence unit name of the entity manager factory
+     * @return entity manager factory with the given persistence unit name
+     */
+    private static EntityManagerFactory createEntityManagerFactory(String persistenceUnitName) {
+        Map<String, String> persistenceMap = new HashMap<>();
+        String dbUrl = ConfigurationContext.getProperty(ConfigurationProperties.DB_URL);
+        String dbUser = ConfigurationContext.getProperty(ConfigurationProperties.DB_USER);
+        String dbUserPass = ConfigurationContext.getProperty(ConfigurationProperties.DB_USER_PASS);
+        String tgEnvironment = ConfigurationContext.getProperty(ConfigurationProperties.TESTGRID_ENVIRONMENT);
+        String poolMin = ConfigurationContext.getProperty(ConfigurationProperties.DB_POOL_MIN_CONNECTIONS);
+        String poolMax = ConfigurationContext.getProperty(ConfigurationProperties.DB_POOL_MAX_CONNECTIONS);
 
-            if (dbUrl != null && dbUser != null && dbUserPass != null) {
-                //Override properties taken from persistence.xml
-                persistenceMap.put("javax.persistence.jdbc.url", dbUrl);
-                persistenceMap.put("javax.persistence.jdbc.user", dbUser);
-                persistenceMap.put("javax.persistence.jdbc.password", dbUserPass);
+        //Override connection pool bounds taken from persistence.xml
+        if (!StringUtil.isStringNullOrEmpty(poolMin)) {
+            persistenceMap.put(POOL_MIN_CONNECTIONS, poolMin);
+            persistenceMap.put(POOL_READ_MIN_CONNECTIONS, poolMin);
+        }
+        if (!StringUtil.isStringNullOrEmpty(poolMax)) {
+            persistenceMap.put(POOL_MAX_CONNECTIONS, poolMax);
+            persistenceMap.put(POOL_READ_MAX_CONNECTIONS, poolMax);
+        }
 
-                if (tgEnvironment.equals("local")) {
-                    persistenceMap.put("javax.persistence.jdbc.driver", "org.h2.Driver");
-                }
+        if (dbUrl != null && dbUser != null && dbUserPass != null) {
+            //Override properties taken from persistence.xml
+            persistenceMap.put("javax.persistence.jdbc.url", dbUrl);
+            persistenceMap.put("javax.persistence.jdbc.user", dbUser);
+            persistenceMap.put("javax.persistence.jdbc.password", dbUserPass);
 
-                entityManagerFactory = Persistence.createEntityManagerFactory(persistenceUnitName, persistenceMap);
-            } else {
-                logger.warn(StringUtil.concatStrings(
-                        "One or more database properties {",
-                        ConfigurationProperties.DB_URL.toString(), ", ",
-                        ConfigurationProperties.DB_USER.toString(), ", ",
-                        ConfigurationProperties.DB_USER_PASS.toString(),
-                        "} are not set in ", TestGridConstants.TESTGRID_CONFIG_FILE,
-                        ". Using default properties in persistence.xml"));
-                entityManagerFactory = Persistence.createEntityManagerFactory(persistenceUnitName);
+            if ("local".equals(tgEnvironment)) {
+                persistenceMap.put("javax.persistence.jdbc.driver", "org.h2.Driver");
             }
-            entityManagerFactoryMap.put(persistenceUnitName, entityManagerFactory);
+        } else {
+            logger.warn(StringUtil.concatStrings(
+                    "One or more database properties {",
+                    ConfigurationProperties.DB_URL.toString(), ", ",
+                    ConfigurationProperties.DB_USER.toString(), ", ",
+                    ConfigurationProperties.DB_USER_PASS.toString(),
+                    "} are not set in ", TestGridConstants.TESTGRID_CONFIG_FILE,
+                    ". Using default properties in persistence.xml"));
         }
+        EntityManagerFactory entityManagerFactory =
+                Persistence.createEntityManagerFactory(persistenceUnitName, persistenceMap);
+        migrateSchema(persistenceUnitName, entityManagerFactory);
         return entityManagerFactory;
     }
 
     /**
-     * Returns the refreshed result list.
+     * Brings the schema of the given persistence unit to the latest version.
+     * <p>
+     * Creating the first entity manager generates the missing tables, after which the pending
+     * {@link SchemaMigrator schema migrations} are applied on top of them.
      *
-     * @param entityManager Entity Manager object
-     * @param resultList    Result List of query execution
-     * @return List of refreshed results
+     * @param persistenceUnitName  persistence unit name of the entity manager factory
+     * @param entityManagerFactory entity manager factory of the persistence unit
      */
-    public static <T> List<T> refreshResultList(EntityManager entityManager, List<T> resultList) {
-        if (!resultList.isEmpty()) {
-            for (T entity : resultList) {
-                entityManager.refresh(entity);
+    private static void migrateSchema(String persistenceUnitName, EntityManagerFactory entityManagerFactory) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            int applied = SchemaMigrator.migrate(entityManager);
+            if (applied > 0) {
+                logger.info(StringUtil.concatStrings("Applied ", applied, " schema migration(s) to the ",
+                        persistenceUnitName, " database."));
+            }
+        } catch (TestGridDAOException e) {
+            entityManager.close();
+            entityManagerFactory.close();
+            throw new TestGridRuntimeException(StringUtil.concatStrings("Error on migrating the schema of the ",
+                    persistenceUnitName, " database."), e);
+        } finally {
+            if (entityManager.isOpen()) {
+                entityManager.close();
             }
         }
-        return resultList;
     }
 
     /**
-     * Returns the refreshed result.
+     * Sets the query hints which make the given query refresh the entities it reads.
+     * <p>
+     * The entities already managed by the entity manager are refreshed from the rows returned by the query itself,
+     * hence the results are fresh without issuing an additional query per entity. Relationships are not refreshed.
      *
-     * @param entityManager Entity Manager object
-     * @param result        Result of query execution
-     * @return Refreshed result
+     * @param query query to set the hints on
+     * @return the given query
      */
-    public static <T> T refreshResult(EntityManager entityManager, T result) {
-        entityManager.refresh(result);
-        return result;
+    public static <T extends Query> T withRefreshHints(T query) {
+        query.setHint(QueryHints.REFRESH, HintValues.TRUE);
+        query.setHint(QueryHints.REFRESH_CASCADE, CascadePolicy.NoCascading);
+        return query;
     }
 }
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.testgrid.common.infrastructure.InfrastructureParameter;
+import org.wso2.testgrid.common.infrastructure.InfrastructureValueSet;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * In-process cache of the infrastructure value set, i.e. the testgrid-ready {@link InfrastructureParameter}s
+ * grouped by their type.
+ * <p>
+ * The cache is invalidated whenever infrastructure parameters are written through the DAO layer. Since other
+ * processes may also write to the infrastructure parameter table, a cached value set additionally expires after
+ * {@link #EXPIRY_MILLIS}.
+ *
+ * @since 1.0.0
+ */
+public final class InfrastructureValueSetCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(InfrastructureValueSetCache.class);
+
+    /**
+     * Maximum time a loaded value set is served from the cache.
+     */
+    static final long EXPIRY_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final Object lock = new Object();
+
+    private static volatile CacheEntry cacheEntry;
+    private static long generation;
+
+    private InfrastructureValueSetCache() {
+    }
+
+    /**
+     * Returns the infrastructure value set, loading the infrastructure parameters if the cache is empty or stale.
+     * <p>
+     * The returned value sets are copies, hence callers are free to modify them.
+     *
+     * @param loader loads all testgrid-ready infrastructure parameters with a single query
+     * @return a set of {@link InfrastructureValueSet}s, one per infrastructure type
+     * @throws TestGridDAOException thrown when error on loading the infrastructure parameters
+     */
+    public static Set<InfrastructureValueSet> getValueSet(InfrastructureParameterLoader loader)
+            throws TestGridDAOException {
+        CacheEntry entry = cacheEntry;
+        if (entry != null && !entry.isExpired()) {
+            hits.incrementAndGet();
+            return entry.copy();
+        }
+        misses.incrementAndGet();
+
+        long loadedGeneration;
+        synchronized (lock) {
+            loadedGeneration = generation;
+        }
+        Map<String, Set<InfrastructureParameter>> parametersByType = loader.load().stream()
+                .collect(Collectors.groupingBy(InfrastructureParameter::getType,
+                        Collectors.toCollection(TreeSet::new)));
+        entry = new CacheEntry(parametersByType);
+        synchronized (lock) {
+            // Do not cache a value set that was invalidated while it was being loaded.
+            if (loadedGeneration == generation) {
+                cacheEntry = entry;
+            }
+        }
+        return entry.copy();
+    }
+
+    /**
+     * Discards the cached value set. The next {@link #getValueSet(InfrastructureParameterLoader)} call reloads it.
+     */
+    public static void invalidate() {
+        synchronized (lock) {
+            generation++;
+            cacheEntry = null;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Infrastructure value set cache invalidated.");
+        }
+    }
+
+    /**
+     * Returns the number of value set lookups served from the cache.
+     *
+     * @return cache hit count
+     */
+    public static long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of value set lookups that had to load the infrastructure parameters.
+     *
+     * @return cache miss count
+     */
+    public static long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Loads the testgrid-ready infrastructure parameters.
+     */
+    @FunctionalInterface
+    public interface InfrastructureParameterLoader {
+
+        /**
+         * Loads the testgrid-ready infrastructure parameters.
+         *
+         * @return list of infrastructure parameters
+         * @throws TestGridDAOException thrown when error on loading the infrastructure parameters
+         */
+        List<InfrastructureParameter> load() throws TestGridDAOException;
+    }
+
+    /**
+     * Value set loaded at a given time.
+     */
+    private static class CacheEntry {
+
+        private final Map<String, Set<InfrastructureParameter>> parametersByType;
+        private final long loadedAt = System.currentTimeMillis();
+
+        CacheEntry(Map<String, Set<InfrastructureParameter>> parametersByType) {
+            this.parametersByType = Collections.unmodifiableMap(parametersByType);
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() - loadedAt > EXPIRY_MILLIS;
+        }
+
+        Set<InfrastructureValueSet> copy() {
+            Set<InfrastructureValueSet> valueSets = new HashSet<>();
+            parametersByType.forEach((type, parameters) ->
+                    valueSets.add(new InfrastructureValueSet(type, parameters)));
+            return valueSets;
+        }
+    }
+}
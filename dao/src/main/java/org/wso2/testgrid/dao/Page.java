@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A page of a keyset paginated query.
+ *
+ * @param <T> type of the items of the page
+ * @since 1.0.0
+ */
+public class Page<T> {
+
+    private final List<T> items;
+    private final PageCursor nextCursor;
+
+    /**
+     * Constructs a page.
+     *
+     * @param items      items of the page
+     * @param nextCursor cursor of the next page, or {@code null} if this is the last page
+     */
+    public Page(List<T> items, PageCursor nextCursor) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Returns the items of the page.
+     *
+     * @return items of the page
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Returns the cursor of the next page.
+     *
+     * @return cursor of the next page, or an empty optional if this is the last page
+     */
+    public Optional<PageCursor> getNextCursor() {
+        return Optional.ofNullable(nextCursor);
+    }
+
+    /**
+     * Returns whether there are more items after this page.
+     *
+     * @return {@code true} if there is a next page, {@code false} otherwise
+     */
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao;
+
+import org.wso2.testgrid.common.AbstractUUIDEntity;
+import org.wso2.testgrid.common.util.StringUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * Position of a keyset paginated query, i.e. the {@code (created_timestamp, id)} of the last row of a page.
+ * <p>
+ * The next page contains the rows ordered after that position, hence the pages stay stable when new rows are
+ * inserted at the head or existing rows are updated while a client is paging, and fetching a page costs the same
+ * irrespective of how deep it is. The cursor is exposed to clients as an opaque URL safe token.
+ *
+ * @since 1.0.0
+ */
+public final class PageCursor {
+
+    private static final String SEPARATOR = ":";
+
+    private final Timestamp createdTimestamp;
+    private final String id;
+
+    /**
+     * Constructs a cursor positioned at the given row.
+     *
+     * @param createdTimestamp created timestamp of the row
+     * @param id               id of the row
+     */
+    public PageCursor(Timestamp createdTimestamp, String id) {
+        this.createdTimestamp = new Timestamp(createdTimestamp.getTime());
+        this.createdTimestamp.setNanos(createdTimestamp.getNanos());
+        this.id = id;
+    }
+
+    /**
+     * Returns a cursor positioned at the given entity.
+     *
+     * @param entity last entity of a page
+     * @return cursor positioned at the entity
+     */
+    public static PageCursor of(AbstractUUIDEntity entity) {
+        return new PageCursor(entity.getCreatedTimestamp(), entity.getId());
+    }
+
+    /**
+     * Decodes a cursor token returned by {@link #encode()}.
+     *
+     * @param token cursor token
+     * @return decoded cursor
+     * @throws IllegalArgumentException thrown when the token is not a valid cursor
+     */
+    public static PageCursor decode(String token) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(SEPARATOR, 3);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid page cursor: " + token, e);
+        }
+        if (parts.length != 3 || parts[2].isEmpty()) {
+            throw new IllegalArgumentException("Invalid page cursor: " + token);
+        }
+        try {
+            Timestamp timestamp = new Timestamp(Long.parseLong(parts[0]));
+            timestamp.setNanos(Integer.parseInt(parts[1]));
+            return new PageCursor(timestamp, parts[2]);
+        } catch (IllegalArgumentException e) { // Also covers NumberFormatException
+            throw new IllegalArgumentException("Invalid page cursor: " + token, e);
+        }
+    }
+
+    /**
+     * Encodes the cursor as an opaque, URL safe token.
+     *
+     * @return cursor token
+     */
+    public String encode() {
+        String cursor = StringUtil.concatStrings(createdTimestamp.getTime(), SEPARATOR, createdTimestamp.getNanos(),
+                SEPARATOR, id);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the created timestamp of the last row of the page.
+     *
+     * @return created timestamp
+     */
+    public Timestamp getCreatedTimestamp() {
+        Timestamp timestamp = new Timestamp(createdTimestamp.getTime());
+        timestamp.setNanos(createdTimestamp.getNanos());
+        return timestamp;
+    }
+
+    /**
+     * Returns the id of the last row of the page.
+     *
+     * @return id
+     */
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        PageCursor that = (PageCursor) o;
+        return createdTimestamp.equals(that.createdTimestamp) && id.equals(that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(createdTimestamp, id);
+    }
+
+    @Override
+    public String toString() {
+        return StringUtil.concatStrings("PageCursor{createdTimestamp='", createdTimestamp, "', id='", id, "'}");
+    }
+}
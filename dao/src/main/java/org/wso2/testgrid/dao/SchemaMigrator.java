@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.testgrid.common.util.StringUtil;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+
+/**
+ * Applies the versioned schema migrations in {@value #MIGRATION_LOCATION} on top of the tables generated by
+ * EclipseLink.
+ * <p>
+ * The tables are still created by the {@code create-tables} DDL generation, which never alters existing tables.
+ * Changes to existing tables, such as indexes, are therefore shipped as migration scripts named
+ * {@code V<version>__<description>.sql}. The applied versions are recorded in the {@value #SCHEMA_VERSION_TABLE}
+ * table, hence each script runs once per database, including databases created by earlier TestGrid releases.
+ * <p>
+ * A {@code CREATE INDEX} statement is skipped if the index already exists, so that a migration interrupted half way
+ * (DDL statements are not transactional in MySQL) can simply be applied again.
+ * <p>
+ * Several TestGrid processes may start against the same database at once, e.g. the web application and a build
+ * job. On MySQL the migrations are applied while holding the {@value #MIGRATION_LOCK} named lock, so the other
+ * processes wait and then find the migrations applied. On other databases, a statement or version record which fails
+ * because another process applied the same migration concurrently is treated as applied.
+ *
+ * @since 1.0.0
+ */
+public final class SchemaMigrator {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    /**
+     * Table recording the applied migration versions.
+     */
+    static final String SCHEMA_VERSION_TABLE = "schema_version";
+
+    /**
+     * Class path location of the migration scripts.
+     */
+    static final String MIGRATION_LOCATION = "db/migration/";
+
+    /**
+     * Migration scripts in the order they should be applied. New scripts must be appended to this list.
+     */
+    static final List<String> MIGRATIONS = Collections.unmodifiableList(Arrays.asList(
+            "V1__create_query_indexes.sql",
+            "V2__create_test_plan_history_index.sql",
+            "V3__create_test_plan_queue_index.sql",
+            "V4__create_test_plan_cleanup_table.sql"
+    ));
+
+    /**
+     * MySQL named lock held while the migrations are applied.
+     */
+    static final String MIGRATION_LOCK = "testgrid_schema_migration";
+
+    private static final int MIGRATION_LOCK_TIMEOUT_SECONDS = 300;
+
+    private static final Pattern MIGRATION_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    private static final Pattern CREATE_INDEX = Pattern.compile(
+            "CREATE\\s+(?:UNIQUE\\s+)?INDEX\\s+(\\w+)\\s+ON\\s+(\\w+)\\s*\\(", Pattern.CASE_INSENSITIVE);
+
+    private SchemaMigrator() {
+    }
+
+    /**
+     * Applies the migrations which are not yet recorded in the database.
+     *
+     * @param entityManager entity manager of the database to migrate
+     * @return number of migrations applied
+     * @throws TestGridDAOException thrown when error on applying a migration
+     */
+    public static int migrate(EntityManager entityManager) throws TestGridDAOException {
+        EntityTransaction transaction = entityManager.getTransaction();
+        transaction.begin();
+        try {
+            Connection connection = entityManager.unwrap(Connection.class);
+            int applied = migrate(connection);
+            transaction.commit();
+            return applied;
+        } catch (SQLException | RuntimeException e) {
+            throw new TestGridDAOException("Error on migrating the TestGrid database schema.", e);
+        } finally {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+        }
+    }
+
+    private static int migrate(Connection connection) throws SQLException, TestGridDAOException {
+        boolean locked = isMySQL(connection) && acquireLock(connection);
+        try {
+            return applyMigrations(connection);
+        } finally {
+            if (locked) {
+                releaseLock(connection);
+            }
+        }
+    }
+
+    private static int applyMigrations(Connection connection) throws SQLException, TestGridDAOException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(StringUtil.concatStrings("CREATE TABLE IF NOT EXISTS ", SCHEMA_VERSION_TABLE,
+                    " (version INT NOT NULL, description VARCHAR(255) NOT NULL, ",
+                    "installed_timestamp TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, PRIMARY KEY (version))"));
+        }
+        Set<Integer> appliedVersions = getAppliedVersions(connection);
+
+        int applied = 0;
+        for (String migration : MIGRATIONS) {
+            Matcher matcher = MIGRATION_NAME.matcher(migration);
+            if (!matcher.matches()) {
+                throw new TestGridDAOException("Invalid schema migration name: " + migration);
+            }
+            int version = Integer.parseInt(matcher.group(1));
+            if (appliedVersions.contains(version)) {
+                continue;
+            }
+            String description = matcher.group(2).replace('_', ' ');
+            logger.info(StringUtil.concatStrings("Migrating the TestGrid database schema to version ", version,
+                    " (", description, ")."));
+            for (String sql : readStatements(migration)) {
+                if (!isExistingIndex(connection, sql)) {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.executeUpdate(sql);
+                    } catch (SQLException e) {
+                        // Another process may have created the same index in the meantime.
+                        if (!isExistingIndex(connection, sql)) {
+                            throw e;
+                        }
+                    }
+                }
+            }
+            try (PreparedStatement statement = connection.prepareStatement(StringUtil.concatStrings(
+                    "INSERT INTO ", SCHEMA_VERSION_TABLE, " (version, description) VALUES (?, ?)"))) {
+                statement.setInt(1, version);
+                statement.setString(2, description);
+                statement.executeUpdate();
+            } catch (SQLException e) {
+                if (!getAppliedVersions(connection).contains(version)) {
+                    throw e;
+                }
+                logger.info(StringUtil.concatStrings("Schema version ", version,
+                        " was applied by another TestGrid process."));
+                continue;
+            }
+            applied++;
+        }
+        return applied;
+    }
+
+    private static boolean isMySQL(Connection connection) throws SQLException {
+        return connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ENGLISH).contains("mysql");
+    }
+
+    /**
+     * Acquires the {@value #MIGRATION_LOCK} named lock of the MySQL session, waiting for other processes which are
+     * migrating the schema.
+     */
+    private static boolean acquireLock(Connection connection) throws SQLException, TestGridDAOException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            statement.setString(1, MIGRATION_LOCK);
+            statement.setInt(2, MIGRATION_LOCK_TIMEOUT_SECONDS);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next() && resultSet.getInt(1) == 1) {
+                    return true;
+                }
+            }
+        }
+        throw new TestGridDAOException(StringUtil.concatStrings("Timed out after ", MIGRATION_LOCK_TIMEOUT_SECONDS,
+                " seconds while waiting for another TestGrid process to migrate the database schema."));
+    }
+
+    private static void releaseLock(Connection connection) {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            statement.setString(1, MIGRATION_LOCK);
+            statement.executeQuery().close();
+        } catch (SQLException e) {
+            logger.warn("Error on releasing the schema migration lock. It is released when the connection closes.", e);
+        }
+    }
+
+    private static Set<Integer> getAppliedVersions(Connection connection) throws SQLException {
+        Set<Integer> versions = new HashSet<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT version FROM " + SCHEMA_VERSION_TABLE)) {
+            while (resultSet.next()) {
+                versions.add(resultSet.getInt(1));
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Returns whether the given statement creates an index which already exists.
+     */
+    private static boolean isExistingIndex(Connection connection, String sql) throws SQLException {
+        Matcher matcher = CREATE_INDEX.matcher(sql);
+        if (!matcher.lookingAt()) {
+            return false;
+        }
+        String indexName = matcher.group(1);
+        String tableName = matcher.group(2);
+        DatabaseMetaData metaData = connection.getMetaData();
+        // Unquoted identifiers are stored as is by MySQL but in upper case by H2.
+        for (String table : new String[] { tableName, tableName.toUpperCase(Locale.ENGLISH) }) {
+            try (ResultSet indexes = metaData.getIndexInfo(connection.getCatalog(), null, table, false, true)) {
+                while (indexes.next()) {
+                    if (indexName.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+                        logger.info(StringUtil.concatStrings("Index ", indexName, " already exists."));
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the semicolon separated statements of the given migration script, ignoring {@code --} comments.
+     */
+    static List<String> readStatements(String migration) throws TestGridDAOException {
+        String location = MIGRATION_LOCATION + migration;
+        InputStream inputStream = SchemaMigrator.class.getClassLoader().getResourceAsStream(location);
+        if (inputStream == null) {
+            throw new TestGridDAOException("Schema migration " + location + " is not found in the class path.");
+        }
+        List<String> statements = new ArrayList<>();
+        StringBuilder statement = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("--")) {
+                    continue;
+                }
+                statement.append(statement.length() == 0 ? "" : " ").append(line);
+                if (line.endsWith(";")) {
+                    statements.add(statement.substring(0, statement.length() - 1));
+                    statement.setLength(0);
+                }
+            }
+        } catch (IOException e) {
+            throw new TestGridDAOException("Error on reading the schema migration " + location, e);
+        }
+        if (statement.length() > 0) {
+            statements.add(statement.toString());
+        }
+        return statements;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao.dto;
+
+/**
+ * Defines a model object of a test plan selected to be removed by the retention cleanup.
+ *
+ * @since 1.0.0
+ */
+public class TestPlanCleanupCandidate {
+
+    private final String testPlanId;
+    private final String productName;
+    private final String infraParameters;
+
+    public TestPlanCleanupCandidate(String testPlanId, String productName, String infraParameters) {
+        this.testPlanId = testPlanId;
+        this.productName = productName;
+        this.infraParameters = infraParameters;
+    }
+
+    public String getTestPlanId() {
+        return testPlanId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public String getInfraParameters() {
+        return infraParameters;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao.dto;
+
+import org.wso2.testgrid.common.util.StringUtil;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Defines a model object of the outcome of a retention cleanup, i.e. the test plans, test scenarios and test cases
+ * removed, or to be removed in a dry run.
+ *
+ * @since 1.0.0
+ */
+public class TestPlanCleanupReport {
+
+    private final boolean dryRun;
+    private final int buildsToKeep;
+    private final Map<String, Map<String, Integer>> testPlansByInfraCombination = new TreeMap<>();
+    private long testPlans;
+    private long testScenarios;
+    private long testCases;
+
+    public TestPlanCleanupReport(boolean dryRun, int buildsToKeep) {
+        this.dryRun = dryRun;
+        this.buildsToKeep = buildsToKeep;
+    }
+
+    /**
+     * Records a test plan selected by the cleanup.
+     *
+     * @param candidate selected test plan
+     */
+    public void addTestPlan(TestPlanCleanupCandidate candidate) {
+        testPlansByInfraCombination.computeIfAbsent(candidate.getProductName(), product -> new TreeMap<>())
+                .merge(candidate.getInfraParameters(), 1, Integer::sum);
+        testPlans++;
+    }
+
+    public void addTestScenarios(long count) {
+        testScenarios += count;
+    }
+
+    public void addTestCases(long count) {
+        testCases += count;
+    }
+
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    public int getBuildsToKeep() {
+        return buildsToKeep;
+    }
+
+    public long getTestPlans() {
+        return testPlans;
+    }
+
+    public long getTestScenarios() {
+        return testScenarios;
+    }
+
+    public long getTestCases() {
+        return testCases;
+    }
+
+    /**
+     * Returns the number of test plans selected for each infra combination of each product.
+     *
+     * @return map of product name to the number of selected test plans of each infra combination
+     */
+    public Map<String, Map<String, Integer>> getTestPlansByInfraCombination() {
+        return Collections.unmodifiableMap(testPlansByInfraCombination);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder(StringUtil.concatStrings(dryRun ? "Would remove " : "Removed ",
+                testPlans, " test plans, ", testScenarios, " test scenarios and ", testCases,
+                " test cases, keeping the last ", buildsToKeep, " builds of each infra combination."));
+        testPlansByInfraCombination.forEach((product, infraCombinations) -> infraCombinations.forEach(
+                (infraParameters, count) -> report.append(System.lineSeparator()).append(StringUtil.concatStrings(
+                        "  ", product, " ", infraParameters, ": ", count))));
+        return report.toString();
+    }
+}
@@ -24,9 +24,13 @@ import org.wso2.testgrid.dao.SortOrder;
 import org.wso2.testgrid.dao.TestGridDAOException;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceUnitUtil;
 import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
@@ -43,6 +47,12 @@ import javax.persistence.criteria.Root;
  */
 abstract class AbstractRepository<T> {
 
+    /**
+     * Number of entities (each with its cascaded children) written before the persistence context is flushed
+     * and cleared during a bulk persist.
+     */
+    static final int PERSIST_CHUNK_SIZE = 50;
+
     final EntityManager entityManager;
 
     /**
@@ -76,6 +86,86 @@ abstract class AbstractRepository<T> {
         }
     }
 
+    /**
+     * Persists or updates a collection of entities in the database within a single transaction.
+     * <p>
+     * Entities without an identifier are inserted using {@link EntityManager#persist(Object)} so that no lookup is
+     * done and the given instances receive their generated ids; the rest are merged. The persistence context is
+     * flushed and cleared every {@link #PERSIST_CHUNK_SIZE} entities to bound memory usage. Nothing is written if
+     * any of the entities fails.
+     *
+     * @param entities entities to persist in the database
+     * @return added or updated entity instances, in the iteration order of the given collection
+     * @throws TestGridDAOException thrown when error on persisting entities
+     */
+    List<T> persistAll(Collection<T> entities) throws TestGridDAOException {
+        return persistAll(entities, entity -> { });
+    }
+
+    /**
+     * Persists or updates a collection of entities in the database within a single transaction.
+     *
+     * @param entities     entities to persist in the database
+     * @param beforeInsert callback invoked on each new entity before it is persisted, within the transaction
+     * @return added or updated entity instances, in the iteration order of the given collection
+     * @throws TestGridDAOException thrown when error on persisting entities
+     * @see #persistAll(Collection)
+     */
+    List<T> persistAll(Collection<T> entities, Consumer<T> beforeInsert) throws TestGridDAOException {
+        return persistAll(entities, false, beforeInsert);
+    }
+
+    /**
+     * Inserts a collection of new entities in the database within a single transaction.
+     * <p>
+     * Unlike {@link #persistAll(Collection, Consumer)}, entities which already have an identifier, e.g. one derived
+     * from their content, are inserted as well instead of being merged.
+     *
+     * @param entities     new entities to insert in the database
+     * @param beforeInsert callback invoked on each entity before it is persisted, within the transaction
+     * @return inserted entity instances, in the iteration order of the given collection
+     * @throws TestGridDAOException thrown when error on inserting entities
+     */
+    List<T> insertAll(Collection<T> entities, Consumer<T> beforeInsert) throws TestGridDAOException {
+        return persistAll(entities, true, beforeInsert);
+    }
+
+    private List<T> persistAll(Collection<T> entities, boolean insertAll, Consumer<T> beforeInsert)
+            throws TestGridDAOException {
+        List<T> persisted = new ArrayList<>(entities.size());
+        if (entities.isEmpty()) {
+            return persisted;
+        }
+        PersistenceUnitUtil persistenceUnitUtil = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        EntityTransaction transaction = entityManager.getTransaction();
+        try {
+            transaction.begin();
+            int pending = 0;
+            for (T entity : entities) {
+                if (insertAll || persistenceUnitUtil.getIdentifier(entity) == null) {
+                    beforeInsert.accept(entity);
+                    entityManager.persist(entity);
+                    persisted.add(entity);
+                } else {
+                    persisted.add(entityManager.merge(entity));
+                }
+                if (++pending == PERSIST_CHUNK_SIZE) {
+                    entityManager.flush();
+                    entityManager.clear();
+                    pending = 0;
+                }
+            }
+            transaction.commit();
+            return persisted;
+        } catch (Exception e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw new TestGridDAOException(StringUtil.concatStrings(
+                    "Error occurred when persisting ", entities.size(), " entities in database."), e);
+        }
+    }
+
     /**
      * Removes an entity from database.
      *
@@ -134,7 +224,7 @@ abstract class AbstractRepository<T> {
             //Where criteria
             criteriaQuery.where(criteriaBuilder.and(predicates.toArray(new Predicate[predicates.size()])));
             TypedQuery<T> query = entityManager.createQuery(criteriaQuery);
-            return EntityManagerHelper.refreshResultList(entityManager, query.getResultList());
+            return EntityManagerHelper.withRefreshHints(query).getResultList();
         } catch (Exception e) {
             throw new TestGridDAOException(StringUtil
                     .concatStrings("Error when searching for entities with the params: ", params), e);
@@ -160,7 +250,7 @@ abstract class AbstractRepository<T> {
             Root<T> rootEntry = criteriaQuery.from(entityType);
             CriteriaQuery<T> criteriaQueryAll = criteriaQuery.select(rootEntry);
             TypedQuery<T> allQuery = entityManager.createQuery(criteriaQueryAll);
-            return EntityManagerHelper.refreshResultList(entityManager, allQuery.getResultList());
+            return EntityManagerHelper.withRefreshHints(allQuery).getResultList();
         } catch (Exception e) {
             throw new TestGridDAOException("Error occurred when searching for entity.", e);
         }
@@ -204,7 +294,20 @@ abstract class AbstractRepository<T> {
             query = entityManager.createQuery(criteriaQuery);
             query.setParameter(parameterExpression, entry.getValue());
         }
-        return EntityManagerHelper.refreshResultList(entityManager, query.getResultList());
+        return EntityManagerHelper.withRefreshHints(query).getResultList();
+    }
+
+    /**
+     * Creates a native query mapping its rows to the given entity type.
+     * <p>
+     * The entities read by the query are refreshed from the returned rows.
+     *
+     * @param nativeQuery native SQL query
+     * @param resultClass entity type of the results
+     * @return native query
+     */
+    Query createNativeQuery(String nativeQuery, Class<?> resultClass) {
+        return EntityManagerHelper.withRefreshHints(entityManager.createNativeQuery(nativeQuery, resultClass));
     }
 
     /**
@@ -217,7 +320,7 @@ abstract class AbstractRepository<T> {
     List<Object> executeTypedQuery(String nativeQuery) throws TestGridDAOException {
         try {
             Query query = entityManager.createNativeQuery(nativeQuery);
-            return EntityManagerHelper.refreshResultList(entityManager, query.getResultList());
+            return query.getResultList();
         } catch (Exception e) {
             throw new TestGridDAOException(StringUtil.concatStrings("Error on executing the native SQL query [",
                     nativeQuery, "]"), e);
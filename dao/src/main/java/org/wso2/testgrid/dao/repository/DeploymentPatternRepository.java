@@ -20,6 +20,7 @@ package org.wso2.testgrid.dao.repository;
 import com.google.common.collect.LinkedListMultimap;
 import org.wso2.testgrid.common.DeploymentPattern;
 import org.wso2.testgrid.common.DeploymentPatternTestFailureStat;
+import org.wso2.testgrid.common.Product;
 import org.wso2.testgrid.common.Status;
 import org.wso2.testgrid.common.util.StringUtil;
 import org.wso2.testgrid.dao.EntityManagerHelper;
@@ -28,6 +29,9 @@ import org.wso2.testgrid.dao.TestGridDAOException;
 
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import javax.persistence.EntityManager;
@@ -93,6 +97,47 @@ public class DeploymentPatternRepository extends AbstractRepository<DeploymentPa
         return super.findByFields(DeploymentPattern.class, params);
     }
 
+    /**
+     * Returns the deployment patterns of the given product having any of the given names.
+     *
+     * @param product product of the deployment patterns
+     * @param names   names of the deployment patterns
+     * @return matching {@link DeploymentPattern} instances
+     */
+    public List<DeploymentPattern> findByProductAndNames(Product product, List<String> names) {
+        if (names.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return EntityManagerHelper.withRefreshHints(entityManager.createQuery(
+                "SELECT dp FROM DeploymentPattern dp WHERE dp.product.id = :productId AND dp.name IN :names",
+                DeploymentPattern.class)
+                .setParameter("productId", product.getId())
+                .setParameter("names", NativeQueryBuilder.padToBucket(names)))
+                .getResultList();
+    }
+
+    /**
+     * Inserts the given new {@link DeploymentPattern} instances in the database within a single transaction.
+     *
+     * @param entities new deployment patterns to insert in the database
+     * @return inserted {@link DeploymentPattern} instances
+     * @throws TestGridDAOException thrown when error on inserting the deployment patterns
+     */
+    public List<DeploymentPattern> insertAll(Collection<DeploymentPattern> entities) throws TestGridDAOException {
+        Map<DeploymentPattern, Product> detachedProducts = new IdentityHashMap<>();
+        try {
+            return super.insertAll(entities, deploymentPattern -> {
+                Product product = deploymentPattern.getProduct();
+                if (product != null && product.getId() != null && !entityManager.contains(product)) {
+                    detachedProducts.put(deploymentPattern, product);
+                    deploymentPattern.setProduct(entityManager.getReference(Product.class, product.getId()));
+                }
+            });
+        } finally {
+            detachedProducts.forEach(DeploymentPattern::setProduct);
+        }
+    }
+
     /**
      * Returns all the entries from the TestPlan table.
      *
@@ -130,10 +175,10 @@ public class DeploymentPatternRepository extends AbstractRepository<DeploymentPa
                 "AS tp ON dp.id = tp.DEPLOYMENTPATTERN_id where tp.created_timestamp <= '" + date + "' AND " +
                 "dp.PRODUCT_id = '" + productId + "' GROUP BY dp.id;";
         try {
-            Query query = entityManager.createNativeQuery(queryStr, DeploymentPattern.class);
+            Query query = createNativeQuery(queryStr, DeploymentPattern.class);
             @SuppressWarnings("unchecked")
             List<DeploymentPattern> resultList = (List<DeploymentPattern>) query.getResultList();
-            return EntityManagerHelper.refreshResultList(entityManager, resultList);
+            return resultList;
         } catch (Exception e) {
             throw new TestGridDAOException(StringUtil.concatStrings("Error on executing the native SQL" +
                     " query [", queryStr, "]"), e);
@@ -157,7 +202,7 @@ public class DeploymentPatternRepository extends AbstractRepository<DeploymentPa
         try {
             Query query = entityManager.createNativeQuery(queryStr);
             @SuppressWarnings("unchecked")
-            List resultList = EntityManagerHelper.refreshResultList(entityManager, query.getResultList());
+            List resultList = query.getResultList();
             return this.getDeploymentPatternTestFailureStats(resultList);
         } catch (Exception e) {
             throw new TestGridDAOException(StringUtil.concatStrings("Error on executing the native SQL " +
@@ -19,6 +19,7 @@
 package org.wso2.testgrid.dao.repository;
 
 import org.wso2.testgrid.common.infrastructure.InfrastructureParameter;
+import org.wso2.testgrid.dao.InfrastructureValueSetCache;
 import org.wso2.testgrid.dao.TestGridDAOException;
 import org.wso2.testgrid.dao.specification.Specification;
 
@@ -47,24 +48,34 @@ public class InfrastructureParameterRepository extends AbstractRepository<Infras
     }
 
     /**
-     * Persists an {@link InfrastructureParameter} instance in the database.
+     * Persists an {@link InfrastructureParameter} instance in the database and invalidates the cached
+     * infrastructure value set.
      *
      * @param entity InfrastructureParameter to persist in the database
      * @return added or updated {@link InfrastructureParameter} instance
      * @throws TestGridDAOException thrown when error on persisting the InfrastructureParameter instance
      */
     public InfrastructureParameter persist(InfrastructureParameter entity) throws TestGridDAOException {
-        return super.persist(entity);
+        try {
+            return super.persist(entity);
+        } finally {
+            InfrastructureValueSetCache.invalidate();
+        }
     }
 
     /**
-     * Removes an {@link InfrastructureParameter} instance from database.
+     * Removes an {@link InfrastructureParameter} instance from database and invalidates the cached
+     * infrastructure value set.
      *
      * @param entity InfrastructureParameter instance to be removed from database.
      * @throws TestGridDAOException thrown when error on removing entry from database
      */
     public void delete(InfrastructureParameter entity) throws TestGridDAOException {
-        super.delete(entity);
+        try {
+            super.delete(entity);
+        } finally {
+            InfrastructureValueSetCache.invalidate();
+        }
     }
 
     /**
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.persistence.Query;
+
+/**
+ * Builds native SQL queries whose values are always bound as parameters.
+ * <p>
+ * The text of a query therefore only depends on its structure, hence the database and the prepared statement cache
+ * of the connection pool can reuse the parsed statement across calls. {@code IN} lists are padded to a size bucket
+ * by repeating their last value, which does not change the result of the query but limits the number of distinct
+ * statements to one per bucket instead of one per list size.
+ */
+final class NativeQueryBuilder {
+
+    /**
+     * Largest {@code IN} list bucket. Longer lists are padded to a multiple of this size.
+     */
+    static final int MAX_IN_LIST_BUCKET = 256;
+
+    private final StringBuilder sql = new StringBuilder();
+    private final List<Object> parameters = new ArrayList<>();
+
+    /**
+     * Appends a fragment of SQL. The fragment must not contain any values.
+     *
+     * @param fragment SQL fragment
+     * @return this builder
+     */
+    NativeQueryBuilder append(String fragment) {
+        sql.append(fragment);
+        return this;
+    }
+
+    /**
+     * Appends a parameter placeholder bound to the given value.
+     *
+     * @param value value of the parameter
+     * @return this builder
+     */
+    NativeQueryBuilder bind(Object value) {
+        sql.append('?');
+        parameters.add(value);
+        return this;
+    }
+
+    /**
+     * Appends the comma separated placeholders of an {@code IN} list bound to the given values, padded to the size
+     * bucket of the list.
+     *
+     * @param values values of the list, which should not be empty
+     * @return this builder
+     */
+    NativeQueryBuilder bindInList(List<?> values) {
+        if (values.isEmpty()) {
+            throw new IllegalArgumentException("IN list should have at least one value.");
+        }
+        List<?> padded = padToBucket(values);
+        for (int i = 0; i < padded.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            bind(padded.get(i));
+        }
+        return this;
+    }
+
+    /**
+     * Returns the SQL text of the query.
+     *
+     * @return SQL text
+     */
+    String getSql() {
+        return sql.toString();
+    }
+
+    /**
+     * Returns the values of the parameters in the order of their placeholders.
+     *
+     * @return parameter values
+     */
+    List<Object> getParameters() {
+        return Collections.unmodifiableList(parameters);
+    }
+
+    /**
+     * Binds the parameters to the given query created from {@link #getSql()}.
+     *
+     * @param query query to bind the parameters to
+     * @return the given query
+     */
+    Query bindTo(Query query) {
+        for (int i = 0; i < parameters.size(); i++) {
+            query.setParameter(i + 1, parameters.get(i));
+        }
+        return query;
+    }
+
+    /**
+     * Returns the size bucket of an {@code IN} list of the given size, i.e. the next power of two up to
+     * {@value #MAX_IN_LIST_BUCKET}, or the next multiple of {@value #MAX_IN_LIST_BUCKET} above it.
+     *
+     * @param size size of the list
+     * @return bucket size
+     */
+    static int bucketSize(int size) {
+        if (size <= 1) {
+            return 1;
+        }
+        if (size > MAX_IN_LIST_BUCKET) {
+            return (size + MAX_IN_LIST_BUCKET - 1) / MAX_IN_LIST_BUCKET * MAX_IN_LIST_BUCKET;
+        }
+        return Integer.highestOneBit(size - 1) << 1;
+    }
+
+    /**
+     * Pads the given list to its size bucket by repeating the last value. Collection valued JPQL parameters can be
+     * padded with this as well, since EclipseLink expands them to one placeholder per value.
+     *
+     * @param values values of an {@code IN} list
+     * @param <E>    type of the values
+     * @return the given list if it already fills its bucket, otherwise a padded copy
+     */
+    static <E> List<E> padToBucket(List<E> values) {
+        int bucketSize = bucketSize(values.size());
+        if (values.isEmpty() || values.size() == bucketSize) {
+            return values;
+        }
+        List<E> padded = new ArrayList<>(bucketSize);
+        padded.addAll(values);
+        E last = values.get(values.size() - 1);
+        while (padded.size() < bucketSize) {
+            padded.add(last);
+        }
+        return padded;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao.repository;
+
+import org.wso2.testgrid.common.Product;
+import org.wso2.testgrid.common.ProductSummary;
+import org.wso2.testgrid.common.util.StringUtil;
+import org.wso2.testgrid.dao.EntityManagerHelper;
+import org.wso2.testgrid.dao.TestGridDAOException;
+
+import java.util.List;
+import java.util.UUID;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+
+/**
+ * Repository class for {@link ProductSummary} table.
+ *
+ * @since 1.0.0
+ */
+public class ProductSummaryRepository extends AbstractRepository<ProductSummary> {
+
+    private static final String UPSERT_QUERY = "INSERT INTO product_summary (id, PRODUCT_id, current_status, "
+            + "last_stable_status, last_build_timestamp, last_failure_timestamp, created_timestamp, "
+            + "modified_timestamp) VALUES (?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP) "
+            + "ON DUPLICATE KEY UPDATE current_status = VALUES(current_status), "
+            + "last_stable_status = VALUES(last_stable_status), "
+            + "last_build_timestamp = VALUES(last_build_timestamp), "
+            + "last_failure_timestamp = VALUES(last_failure_timestamp), modified_timestamp = CURRENT_TIMESTAMP";
+
+    private static final String UPDATE_STATUS_QUERY = "UPDATE product_summary SET current_status = ?, "
+            + "last_stable_status = ?, last_build_timestamp = GREATEST(COALESCE(last_build_timestamp, ?), ?), ";
+
+    private static final String UPDATE_FAILURE_TIMESTAMP_QUERY =
+            "last_failure_timestamp = GREATEST(COALESCE(last_failure_timestamp, ?), ?), ";
+
+    private static final String UPDATE_WHERE_PRODUCT_QUERY = "modified_timestamp = CURRENT_TIMESTAMP "
+            + "WHERE PRODUCT_id = ?";
+
+    /**
+     * Constructs an instance of the repository class.
+     *
+     * @param entityManager {@link EntityManager} instance
+     */
+    public ProductSummaryRepository(EntityManager entityManager) {
+        super(entityManager);
+    }
+
+    /**
+     * Persists an {@link ProductSummary} instance in the database.
+     *
+     * @param entity ProductSummary to persist in the database
+     * @return added or updated {@link ProductSummary} instance
+     * @throws TestGridDAOException thrown when error on persisting the ProductSummary instance
+     */
+    public ProductSummary persist(ProductSummary entity) throws TestGridDAOException {
+        return super.persist(entity);
+    }
+
+    /**
+     * Returns the {@link ProductSummary} of the given product.
+     *
+     * @param product product of the summary
+     * @return summary of the product, or {@code null} if the summary is not computed yet
+     * @throws TestGridDAOException thrown when error on searching for the summary
+     */
+    public ProductSummary findByProduct(Product product) throws TestGridDAOException {
+        try {
+            TypedQuery<ProductSummary> query = entityManager.createQuery(
+                    "SELECT s FROM ProductSummary s WHERE s.product.id = :productId", ProductSummary.class)
+                    .setParameter("productId", product.getId());
+            List<ProductSummary> summaries = EntityManagerHelper.withRefreshHints(query).getResultList();
+            return summaries.isEmpty() ? null : summaries.get(0);
+        } catch (Exception e) {
+            throw new TestGridDAOException(StringUtil.concatStrings(
+                    "Error occurred when searching for the summary of product ", product.getName()), e);
+        }
+    }
+
+    /**
+     * Inserts the given {@link ProductSummary}, or updates the summary of its product if one exists already.
+     * <p>
+     * The insert and the update are a single statement so that concurrent refreshes of a product which has no
+     * summary yet do not fail on the unique product column, and no row lock is held while the summary is computed.
+     *
+     * @param summary summary to store; its product must be set
+     * @throws TestGridDAOException thrown when error on storing the summary
+     */
+    public void upsert(ProductSummary summary) throws TestGridDAOException {
+        EntityTransaction transaction = entityManager.getTransaction();
+        try {
+            transaction.begin();
+            entityManager.createNativeQuery(UPSERT_QUERY)
+                    .setParameter(1, UUID.randomUUID().toString())
+                    .setParameter(2, summary.getProduct().getId())
+                    .setParameter(3, summary.getCurrentStatus().name())
+                    .setParameter(4, summary.getLastStableStatus() == null ?
+                            null : summary.getLastStableStatus().name())
+                    .setParameter(5, summary.getLastBuildTimestamp())
+                    .setParameter(6, summary.getLastFailureTimestamp())
+                    .executeUpdate();
+            transaction.commit();
+        } catch (Exception e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw new TestGridDAOException(StringUtil.concatStrings(
+                    "Error occurred when storing the summary of product ", summary.getProduct().getName()), e);
+        }
+    }
+
+    /**
+     * Updates the summary of the product of the given {@link ProductSummary} from a test plan which reached a final
+     * status, without recomputing the timestamps from the test plans of the product.
+     * <p>
+     * The statuses are replaced, while the last build and last failure timestamps only move forward; the last
+     * failure timestamp is left as it is when the given one is {@code null}.
+     *
+     * @param summary statuses of the product and the timestamps of the test plan; its product must be set
+     * @return {@code true} if the summary was updated, or {@code false} if the product has no summary yet
+     * @throws TestGridDAOException thrown when error on updating the summary
+     */
+    public boolean update(ProductSummary summary) throws TestGridDAOException {
+        boolean failed = summary.getLastFailureTimestamp() != null;
+        String queryStr = failed ?
+                UPDATE_STATUS_QUERY + UPDATE_FAILURE_TIMESTAMP_QUERY + UPDATE_WHERE_PRODUCT_QUERY :
+                UPDATE_STATUS_QUERY + UPDATE_WHERE_PRODUCT_QUERY;
+        EntityTransaction transaction = entityManager.getTransaction();
+        try {
+            transaction.begin();
+            Query query = entityManager.createNativeQuery(queryStr)
+                    .setParameter(1, summary.getCurrentStatus().name())
+                    .setParameter(2, summary.getLastStableStatus() == null ?
+                            null : summary.getLastStableStatus().name())
+                    .setParameter(3, summary.getLastBuildTimestamp())
+                    .setParameter(4, summary.getLastBuildTimestamp());
+            int index = 5;
+            if (failed) {
+                query.setParameter(index++, summary.getLastFailureTimestamp())
+                        .setParameter(index++, summary.getLastFailureTimestamp());
+            }
+            int updated = query.setParameter(index, summary.getProduct().getId()).executeUpdate();
+            transaction.commit();
+            return updated > 0;
+        } catch (Exception e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw new TestGridDAOException(StringUtil.concatStrings(
+                    "Error occurred when updating the summary of product ", summary.getProduct().getName()), e);
+        }
+    }
+
+    /**
+     * Returns the summaries of all the products, along with their products, using a single query.
+     *
+     * @return list of {@link ProductSummary} instances
+     * @throws TestGridDAOException thrown when error on searching for the summaries
+     */
+    public List<ProductSummary> findAll() throws TestGridDAOException {
+        try {
+            TypedQuery<ProductSummary> query = entityManager.createQuery(
+                    "SELECT s FROM ProductSummary s JOIN FETCH s.product", ProductSummary.class);
+            return EntityManagerHelper.withRefreshHints(query).getResultList();
+        } catch (Exception e) {
+            throw new TestGridDAOException("Error occurred when retrieving the product summaries.", e);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao.repository;
+
+import org.wso2.testgrid.common.util.StringUtil;
+import org.wso2.testgrid.dao.TestGridDAOException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maps the rows of native query results to objects by passing the columns of a row, in order, to a public
+ * constructor of the target type.
+ * <p>
+ * The constructors are resolved once per target type into {@link MethodHandle}s taking the row array, hence mapping
+ * a row neither looks up the constructor nor allocates anything but the mapped object. A constructor is chosen by
+ * the number of columns; if the type has several constructors of that arity, it is chosen by the runtime types of
+ * the columns instead, where a {@code null} column is taken as a {@link String}, and cached per column types.
+ *
+ * @param <T> type of the mapped objects
+ */
+final class RowMapper<T> {
+
+    private static final MethodType ROW_CONSTRUCTOR_TYPE = MethodType.methodType(Object.class, Object[].class);
+    private static final ClassValue<RowMapper<?>> MAPPERS = new ClassValue<RowMapper<?>>() {
+        @Override
+        protected RowMapper<?> computeValue(Class<?> type) {
+            return new RowMapper<>(type);
+        }
+    };
+
+    private final Class<T> type;
+    private final Map<Integer, MethodHandle> constructorsByArity = new HashMap<>();
+    private final ConcurrentMap<List<Class<?>>, MethodHandle> constructorsByColumnTypes = new ConcurrentHashMap<>();
+
+    private RowMapper(Class<T> type) {
+        this.type = type;
+        Map<Integer, Integer> arities = new HashMap<>();
+        for (Constructor<?> constructor : type.getConstructors()) {
+            arities.merge(constructor.getParameterCount(), 1, Integer::sum);
+        }
+        for (Constructor<?> constructor : type.getConstructors()) {
+            if (arities.get(constructor.getParameterCount()) == 1) {
+                try {
+                    constructorsByArity.put(constructor.getParameterCount(), toRowConstructor(constructor));
+                } catch (IllegalAccessException e) {
+                    // Resolved by the column types when mapping, which reports the failure.
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the mapper of the given type.
+     *
+     * @param type type of the mapped objects
+     * @param <T>  type of the mapped objects
+     * @return row mapper
+     */
+    @SuppressWarnings("unchecked")
+    static <T> RowMapper<T> of(Class<T> type) {
+        return (RowMapper<T>) MAPPERS.get(type);
+    }
+
+    /**
+     * Maps the given rows.
+     *
+     * @param rows rows of a native query result
+     * @return mapped objects, in the order of the rows
+     * @throws TestGridDAOException thrown when a row does not match a constructor of the type
+     */
+    List<T> mapAll(List<Object[]> rows) throws TestGridDAOException {
+        List<T> result = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            result.add(map(row));
+        }
+        return result;
+    }
+
+    /**
+     * Maps a row.
+     *
+     * @param row columns of a native query result row
+     * @return mapped object
+     * @throws TestGridDAOException thrown when the row does not match a constructor of the type
+     */
+    T map(Object[] row) throws TestGridDAOException {
+        MethodHandle constructor = constructorsByArity.get(row.length);
+        if (constructor == null) {
+            constructor = getConstructorByColumnTypes(row);
+        }
+        try {
+            return type.cast((Object) constructor.invokeExact(row));
+        } catch (ClassCastException | NullPointerException e) {
+            throw new TestGridDAOException(StringUtil.concatStrings("Row ", Arrays.toString(row),
+                    " does not match the constructor of ", type.getName()), e);
+        } catch (Throwable e) {
+            throw new TestGridDAOException("Error occurred while mapping a row to " + type.getName(), e);
+        }
+    }
+
+    private MethodHandle getConstructorByColumnTypes(Object[] row) throws TestGridDAOException {
+        List<Class<?>> columnTypes = new ArrayList<>(row.length);
+        for (Object column : row) {
+            columnTypes.add(column == null ? String.class : column.getClass());
+        }
+        MethodHandle constructor = constructorsByColumnTypes.get(columnTypes);
+        if (constructor == null) {
+            try {
+                constructor = toRowConstructor(type.getConstructor(columnTypes.toArray(new Class<?>[0])));
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new TestGridDAOException(StringUtil.concatStrings("No public constructor of ", type.getName(),
+                        " matches the columns ", columnTypes), e);
+            }
+            constructorsByColumnTypes.putIfAbsent(columnTypes, constructor);
+        }
+        return constructor;
+    }
+
+    /**
+     * Adapts the given constructor to take the row array and to return an {@link Object}.
+     */
+    private static MethodHandle toRowConstructor(Constructor<?> constructor) throws IllegalAccessException {
+        return MethodHandles.publicLookup().unreflectConstructor(constructor)
+                .asSpreader(Object[].class, constructor.getParameterCount())
+                .asType(ROW_CONSTRUCTOR_TYPE);
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao.repository;
+
+import org.wso2.testgrid.common.TestPlanQueueEntry;
+import org.wso2.testgrid.dao.EntityManagerHelper;
+import org.wso2.testgrid.dao.TestGridDAOException;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+
+/**
+ * Repository class for {@link TestPlanQueueEntry} table.
+ * <p>
+ * State changes of the entries are done with conditional bulk updates, so that an entry can be taken from the queue
+ * by only one runner even if several runners share the queue.
+ *
+ * @since 1.0.0
+ */
+public class TestPlanQueueRepository extends AbstractRepository<TestPlanQueueEntry> {
+
+    /**
+     * Constructs an instance of the repository class.
+     *
+     * @param entityManager {@link EntityManager} instance
+     */
+    public TestPlanQueueRepository(EntityManager entityManager) {
+        super(entityManager);
+    }
+
+    /**
+     * Adds the given entries to the queue, skipping the entries of test plans which are already queued.
+     *
+     * @param entries entries to add
+     * @return added entries
+     * @throws TestGridDAOException thrown when error on persisting the entries
+     */
+    public List<TestPlanQueueEntry> enqueue(Collection<TestPlanQueueEntry> entries) throws TestGridDAOException {
+        Set<String> queuedTestPlanIds = new HashSet<>();
+        if (!entries.isEmpty()) {
+            List<String> testPlanIds = entries.stream()
+                    .map(TestPlanQueueEntry::getTestPlanId)
+                    .distinct()
+                    .collect(Collectors.toList());
+            try {
+                TypedQuery<String> query = entityManager.createQuery("SELECT e.testPlanId FROM TestPlanQueueEntry e "
+                        + "WHERE e.testPlanId IN :testPlanIds", String.class)
+                        .setParameter("testPlanIds", NativeQueryBuilder.padToBucket(testPlanIds));
+                queuedTestPlanIds.addAll(EntityManagerHelper.withRefreshHints(query).getResultList());
+            } catch (Exception e) {
+                throw new TestGridDAOException("Error occurred when searching for queued test plans.", e);
+            }
+        }
+        List<TestPlanQueueEntry> newEntries = entries.stream()
+                .filter(entry -> queuedTestPlanIds.add(entry.getTestPlanId()))
+                .collect(Collectors.toList());
+        return persistAll(newEntries);
+    }
+
+    /**
+     * Returns the queued entries of the given queue, oldest first.
+     *
+     * @param queueName queue name
+     * @return queued entries
+     * @throws TestGridDAOException thrown when error on searching for the entries
+     */
+    public List<TestPlanQueueEntry> findQueued(String queueName) throws TestGridDAOException {
+        try {
+            TypedQuery<TestPlanQueueEntry> query = entityManager.createQuery("SELECT e FROM TestPlanQueueEntry e "
+                    + "WHERE e.queueName = :queueName AND e.state = :state "
+                    + "ORDER BY e.createdTimestamp, e.testPlanFile, e.id", TestPlanQueueEntry.class)
+                    .setParameter("queueName", queueName)
+                    .setParameter("state", TestPlanQueueEntry.State.QUEUED);
+            return EntityManagerHelper.withRefreshHints(query).getResultList();
+        } catch (Exception e) {
+            throw new TestGridDAOException("Error occurred when searching for the entries of queue " + queueName, e);
+        }
+    }
+
+    /**
+     * Returns the number of entries of the given queue in each state.
+     *
+     * @param queueName queue name
+     * @return number of entries by state
+     * @throws TestGridDAOException thrown when error on counting the entries
+     */
+    public Map<TestPlanQueueEntry.State, Long> countByState(String queueName) throws TestGridDAOException {
+        Map<TestPlanQueueEntry.State, Long> counts = new EnumMap<>(TestPlanQueueEntry.State.class);
+        try {
+            TypedQuery<Object[]> query = entityManager.createQuery("SELECT e.state, COUNT(e) FROM TestPlanQueueEntry "
+                    + "e WHERE e.queueName = :queueName GROUP BY e.state", Object[].class)
+                    .setParameter("queueName", queueName);
+            for (Object[] row : query.getResultList()) {
+                counts.put((TestPlanQueueEntry.State) row[0], ((Number) row[1]).longValue());
+            }
+            return counts;
+        } catch (Exception e) {
+            throw new TestGridDAOException("Error occurred when counting the entries of queue " + queueName, e);
+        }
+    }
+
+    /**
+     * Takes the given entry from the queue for the given runner, if it is still queued.
+     *
+     * @param entryId  id of the entry
+     * @param runnerId id of the runner
+     * @return {@code true} if the entry was taken, {@code false} if another runner took it first
+     * @throws TestGridDAOException thrown when error on updating the entry
+     */
+    public boolean claim(String entryId, String runnerId) throws TestGridDAOException {
+        Query query = entityManager.createQuery("UPDATE TestPlanQueueEntry e SET e.state = :running, "
+                + "e.runnerId = :runnerId, e.attempts = e.attempts + 1 WHERE e.id = :id AND e.state = :queued")
+                .setParameter("running", TestPlanQueueEntry.State.RUNNING)
+                .setParameter("runnerId", runnerId)
+                .setParameter("id", entryId)
+                .setParameter("queued", TestPlanQueueEntry.State.QUEUED);
+        return executeUpdate(query) == 1;
+    }
+
+    /**
+     * Records the final state of an entry taken by the given runner.
+     *
+     * @param entryId  id of the entry
+     * @param runnerId id of the runner
+     * @param state    final state of the entry
+     * @return {@code true} if the entry was updated, {@code false} if it is not held by the runner
+     * @throws TestGridDAOException thrown when error on updating the entry
+     */
+    public boolean complete(String entryId, String runnerId, TestPlanQueueEntry.State state)
+            throws TestGridDAOException {
+        Query query = entityManager.createQuery("UPDATE TestPlanQueueEntry e SET e.state = :state "
+                + "WHERE e.id = :id AND e.runnerId = :runnerId AND e.state = :running")
+                .setParameter("state", state)
+                .setParameter("id", entryId)
+                .setParameter("runnerId", runnerId)
+                .setParameter("running", TestPlanQueueEntry.State.RUNNING);
+        return executeUpdate(query) == 1;
+    }
+
+    /**
+     * Returns the entries of the given queue left running by the given runner back to the queue. Entries which were
+     * already taken the given number of times are marked as failed instead.
+     *
+     * @param queueName   queue name
+     * @param runnerId    id of the runner
+     * @param maxAttempts number of times an entry may be taken from the queue
+     * @return number of entries returned to the queue
+     * @throws TestGridDAOException thrown when error on updating the entries
+     */
+    public int requeue(String queueName, String runnerId, int maxAttempts) throws TestGridDAOException {
+        Query failQuery = entityManager.createQuery("UPDATE TestPlanQueueEntry e SET e.state = :failed "
+                + "WHERE e.queueName = :queueName AND e.runnerId = :runnerId AND e.state = :running "
+                + "AND e.attempts >= :maxAttempts")
+                .setParameter("failed", TestPlanQueueEntry.State.FAILED)
+                .setParameter("queueName", queueName)
+                .setParameter("runnerId", runnerId)
+                .setParameter("running", TestPlanQueueEntry.State.RUNNING)
+                .setParameter("maxAttempts", maxAttempts);
+        executeUpdate(failQuery);
+        Query requeueQuery = entityManager.createQuery("UPDATE TestPlanQueueEntry e SET e.state = :queued, "
+                + "e.runnerId = NULL WHERE e.queueName = :queueName AND e.runnerId = :runnerId "
+                + "AND e.state = :running")
+                .setParameter("queued", TestPlanQueueEntry.State.QUEUED)
+                .setParameter("queueName", queueName)
+                .setParameter("runnerId", runnerId)
+                .setParameter("running", TestPlanQueueEntry.State.RUNNING);
+        return executeUpdate(requeueQuery);
+    }
+
+    /**
+     * Executes the given update query within its own transaction.
+     */
+    private int executeUpdate(Query query) throws TestGridDAOException {
+        EntityTransaction transaction = entityManager.getTransaction();
+        try {
+            transaction.begin();
+            int updated = query.executeUpdate();
+            transaction.commit();
+            return updated;
+        } catch (Exception e) {
+            throw new TestGridDAOException("Error occurred when updating the test plan queue.", e);
+        } finally {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+        }
+    }
+}
@@ -20,22 +20,31 @@ package org.wso2.testgrid.dao.repository;
 import com.google.common.collect.LinkedListMultimap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.wso2.testgrid.common.DeploymentPattern;
 import org.wso2.testgrid.common.Product;
 import org.wso2.testgrid.common.TestPlan;
+import org.wso2.testgrid.common.TestPlanPhase;
+import org.wso2.testgrid.common.TestPlanStatus;
 import org.wso2.testgrid.common.util.StringUtil;
-import org.wso2.testgrid.dao.EntityManagerHelper;
+import org.wso2.testgrid.dao.Page;
+import org.wso2.testgrid.dao.PageCursor;
 import org.wso2.testgrid.dao.SortOrder;
 import org.wso2.testgrid.dao.TestGridDAOException;
 import org.wso2.testgrid.dao.dto.TestCaseFailureResultDTO;
+import org.wso2.testgrid.dao.dto.TestPlanCleanupCandidate;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
 import javax.persistence.Query;
@@ -48,6 +57,55 @@ import javax.persistence.Query;
 public class TestPlanRepository extends AbstractRepository<TestPlan> {
     private static final Logger logger = LoggerFactory.getLogger(TestPlanRepository.class);
 
+    // Native queries of the repository. The indexes these queries rely on are created by the schema migrations.
+    static final String TEST_PLANS_BY_DEPLOYMENT_PATTERN_AND_DATE_SQL = "SELECT tp.id, tp.DEPLOYMENTPATTERN_id, "
+            + "tp.infra_parameters, tp.status FROM (SELECT infra_parameters, max(created_timestamp) AS maxtime, "
+            + "DEPLOYMENTPATTERN_id FROM test_plan WHERE created_timestamp <= ? AND DEPLOYMENTPATTERN_id = ? "
+            + "GROUP BY infra_parameters) AS r INNER JOIN test_plan AS tp on tp.infra_parameters = "
+            + "r.infra_parameters AND tp.created_timestamp = r.maxtime AND "
+            + "tp.DEPLOYMENTPATTERN_id = r.DEPLOYMENTPATTERN_id;";
+    static final String LAST_FAILURE_OF_PRODUCT_SQL = "SELECT  t.* from test_plan t INNER JOIN (SELECT "
+            + "tp.infra_parameters,max(tp.modified_timestamp) AS time, dp.name FROM test_plan tp INNER JOIN "
+            + "deployment_pattern dp ON tp.DEPLOYMENTPATTERN_id=dp.id AND tp.status='FAIL' "
+            + "AND  tp.DEPLOYMENTPATTERN_id IN (SELECT id FROM deployment_pattern WHERE "
+            + "PRODUCT_id = ?) GROUP BY tp.infra_parameters,dp.name) as x ON "
+            + "t.infra_parameters=x.infra_parameters AND t.modified_timestamp=x.time ORDER BY time DESC LIMIT 1";
+    static final String LAST_STABLE_BUILD_SQL = "select * from test_plan where infra_parameters= ?  AND "
+            + "DEPLOYMENTPATTERN_id=?  AND status!='RUNNING' order by modified_timestamp desc limit 1";
+    static final String LAST_BUILD_SQL = "select  t.* from test_plan t inner join (select tp.infra_parameters,"
+            + "max(tp.modified_timestamp) AS time, dp.name from test_plan tp inner join "
+            + "deployment_pattern dp on tp.DEPLOYMENTPATTERN_id=dp.id and  tp.DEPLOYMENTPATTERN_id "
+            + "in (select id from deployment_pattern where PRODUCT_id=?)"
+            + "group by tp.infra_parameters,dp.name) AS x on t.infra_parameters=x.infra_parameters "
+            + "AND t.modified_timestamp=x.time order by time desc limit 1";
+    static final String DEPLOYMENT_PATTERN_IDS_SQL = "select id from deployment_pattern where PRODUCT_id= ?;";
+    static final String LAST_FAILURE_SQL = "select * from test_plan where infra_parameters= ?  AND "
+            + "DEPLOYMENTPATTERN_id=?  AND status='FAIL' order by modified_timestamp desc limit 1";
+    static final String TEST_PLAN_HISTORY_SQL = " select t.* from test_plan t inner join deployment_pattern dp inner "
+            + "join product p on p.id=dp.PRODUCT_id and dp.id=t.DEPLOYMENTPATTERN_id "
+            + "where t.infra_parameters=? AND dp.id=? AND p.id=? ORDER BY modified_timestamp DESC";
+    static final String TEST_PLAN_HISTORY_FIRST_PAGE_SQL = "select * from test_plan where infra_parameters=? AND "
+            + "DEPLOYMENTPATTERN_id=? ORDER BY created_timestamp DESC, id DESC LIMIT ?";
+    static final String TEST_PLAN_HISTORY_NEXT_PAGE_SQL = "select * from test_plan where infra_parameters=? AND "
+            + "DEPLOYMENTPATTERN_id=? AND (created_timestamp < ? OR (created_timestamp = ? AND id < ?)) "
+            + "ORDER BY created_timestamp DESC, id DESC LIMIT ?";
+    static final String CLEANUP_CANDIDATES_SQL = "SELECT TESTPLAN_id, product_name, infra_parameters FROM "
+            + "test_plan_cleanup WHERE run_id = ? AND TESTPLAN_id > ? ORDER BY TESTPLAN_id LIMIT ?";
+    static final String TEST_EXECUTION_HISTORY_SQL = "select tp.* from test_plan tp inner join (Select distinct "
+            + "infra_parameters from test_plan where DEPLOYMENTPATTERN_id in (select id from deployment_pattern "
+            + "where PRODUCT_id=?)) as rn on tp.infra_parameters=rn.infra_parameters and tp.DEPLOYMENTPATTERN_id "
+            + "in (select id from deployment_pattern where PRODUCT_id=?) and modified_timestamp between ? and ?;";
+
+    /**
+     * Number of test plans deleted in one go.
+     */
+    static final int DELETE_CHUNK_SIZE = 100;
+
+    /**
+     * Maximum number of test cases deleted in a single transaction.
+     */
+    static final int DELETE_ROW_LIMIT = 10_000;
+
     /**
      * Constructs an instance of the repository class.
      *
@@ -68,6 +126,32 @@ public class TestPlanRepository extends AbstractRepository<TestPlan> {
         return super.persist(entity);
     }
 
+    /**
+     * Inserts the given new {@link TestPlan} instances in the database within a single transaction.
+     * <p>
+     * The test plans are inserted even if their ids are already set, hence no lookup is done per test plan.
+     *
+     * @param entities new test plans to insert in the database
+     * @return inserted {@link TestPlan} instances
+     * @throws TestGridDAOException thrown when error on inserting the test plans
+     */
+    public List<TestPlan> insertAll(Collection<TestPlan> entities) throws TestGridDAOException {
+        Map<TestPlan, DeploymentPattern> detachedDeploymentPatterns = new IdentityHashMap<>();
+        try {
+            return super.insertAll(entities, testPlan -> {
+                DeploymentPattern deploymentPattern = testPlan.getDeploymentPattern();
+                if (deploymentPattern != null && deploymentPattern.getId() != null
+                        && !entityManager.contains(deploymentPattern)) {
+                    detachedDeploymentPatterns.put(testPlan, deploymentPattern);
+                    testPlan.setDeploymentPattern(
+                            entityManager.getReference(DeploymentPattern.class, deploymentPattern.getId()));
+                }
+            });
+        } finally {
+            detachedDeploymentPatterns.forEach(TestPlan::setDeploymentPattern);
+        }
+    }
+
     /**
      * Removes an {@link TestPlan} instance from database.
      *
@@ -132,16 +216,14 @@ public class TestPlanRepository extends AbstractRepository<TestPlan> {
      */
     public List<TestPlan> findByDeploymentPatternAndDate(String deploymentId, Timestamp date) throws
             TestGridDAOException {
-        String queryStr = "SELECT tp.id, tp.DEPLOYMENTPATTERN_id, tp.infra_parameters, tp.status FROM (SELECT " +
-                "infra_parameters, max(created_timestamp) AS maxtime, DEPLOYMENTPATTERN_id FROM test_plan WHERE " +
-                "created_timestamp <= '" + date + "' AND DEPLOYMENTPATTERN_id = '" + deploymentId + "' GROUP BY " +
-                "infra_parameters) AS r INNER JOIN test_plan AS tp on tp.infra_parameters = r.infra_parameters AND " +
-                "tp.created_timestamp = r.maxtime AND tp.DEPLOYMENTPATTERN_id = r.DEPLOYMENTPATTERN_id;";
+        String queryStr = TEST_PLANS_BY_DEPLOYMENT_PATTERN_AND_DATE_SQL;
         try {
-            Query query = entityManager.createNativeQuery(queryStr, TestPlan.class);
+            Query query = createNativeQuery(queryStr, TestPlan.class)
+                    .setParameter(1, date)
+                    .setParameter(2, deploymentId);
             @SuppressWarnings("unchecked")
             List<TestPlan> resultList = (List<TestPlan>) query.getResultList();
-            return EntityManagerHelper.refreshResultList(entityManager, resultList);
+            return resultList;
         } catch (Exception e) {
             throw new TestGridDAOException(StringUtil.concatStrings("Error on executing the native SQL" +
                     " query [", queryStr, "]"), e);
@@ -155,18 +237,11 @@ public class TestPlanRepository extends AbstractRepository<TestPlan> {
      * @return instance of a {@link TestPlan} representing the last failed test plan.
      */
     public TestPlan getLastFailure(Product product) {
-        String sql = "SELECT  t.* from test_plan t INNER JOIN (SELECT tp.infra_parameters," +
-                "max(tp.modified_timestamp) AS time, dp.name FROM test_plan tp INNER JOIN " +
-                "deployment_pattern dp ON tp.DEPLOYMENTPATTERN_id=dp.id AND tp.status='FAIL' " +
-                "AND  tp.DEPLOYMENTPATTERN_id IN (SELECT id FROM deployment_pattern WHERE " +
-                "PRODUCT_id = ?) GROUP BY tp.infra_parameters,dp.name) as x ON " +
-                "t.infra_parameters=x.infra_parameters AND t.modified_timestamp=x.time ORDER BY time DESC LIMIT 1";
-
-        List resultList = entityManager.createNativeQuery(sql, TestPlan.class)
+        List resultList = createNativeQuery(LAST_FAILURE_OF_PRODUCT_SQL, TestPlan.class)
                 .setParameter(1, product.getId())
                 .getResultList();
         if (!resultList.isEmpty()) {
-            return (TestPlan) EntityManagerHelper.refreshResult(entityManager, resultList.get(0));
+            return (TestPlan) resultList.get(0);
         } else {
             return null;
         }
@@ -180,16 +255,13 @@ public class TestPlanRepository extends AbstractRepository<TestPlan> {
      * @return instance of a {@link TestPlan} representing the last failed test plan.
      */
     public TestPlan getLastStableBuild(TestPlan testPlan) {
-        String sql = "select * from test_plan where infra_parameters= ?  AND DEPLOYMENTPATTERN_id=? " +
-                " AND status!='RUNNING' order by modified_timestamp desc limit 1";
-
-        List resultList = entityManager.createNativeQuery(sql, TestPlan.class)
+        List resultList = createNativeQuery(LAST_STABLE_BUILD_SQL, TestPlan.class)
                 .setParameter(1, testPlan.getInfraParameters())
                 .setParameter(2, testPlan.getDeploymentPattern().getId())
                 .getResultList();
 
         if (!resultList.isEmpty()) {
-            return (TestPlan) EntityManagerHelper.refreshResult(entityManager, resultList.get(0));
+            return (TestPlan) resultList.get(0);
         } else {
             return null;
         }
@@ -202,18 +274,11 @@ public class TestPlanRepository extends AbstractRepository<TestPlan> {
      * @return instance of {@link TestPlan} for the last build
      */
     public TestPlan getLastBuild(Product product) {
-        String sql = "select  t.* from test_plan t inner join (select tp.infra_parameters," +
-                "max(tp.modified_timestamp) AS time, dp.name from test_plan tp inner join " +
-                "deployment_pattern dp on tp.DEPLOYMENTPATTERN_id=dp.id and  tp.DEPLOYMENTPATTERN_id " +
-                "in (select id from deployment_pattern where PRODUCT_id=?)" +
-                "group by tp.infra_parameters,dp.name) AS x on t.infra_parameters=x.infra_parameters " +
-                "AND t.modified_timestamp=x.time order by time desc limit 1";
-
-        List resultList = entityManager.createNativeQuery(sql, TestPlan.class)
+        List resultList = createNativeQuery(LAST_BUILD_SQL, TestPlan.class)
                 .setParameter(1, product.getId())
                 .getResultList();
         if (!resultList.isEmpty()) {
-            return (TestPlan) EntityManagerHelper.refreshResult(entityManager, resultList.get(0));
+            return (TestPlan) resultList.get(0);
         } else {
             return null;
         }
@@ -227,39 +292,7 @@ public class TestPlanRepository extends AbstractRepository<TestPlan> {
      * @return a list of {@link TestPlan}
      */
     public List<TestPlan> getLatestTestPlans(Product product) {
-        String deploymentIdsRetrievingQuery = "select id from deployment_pattern where PRODUCT_id= ?;";
-        @SuppressWarnings("unchecked")
-        List<String> deploymentIds = (List<String>) entityManager
-                .createNativeQuery(deploymentIdsRetrievingQuery).setParameter(1, product.getId()).getResultList();
-
-        StringBuilder sql = new StringBuilder(
-                "select tp.* from test_plan tp inner join (Select distinct infra_parameters, max(test_run_number) "
-                        + "as test_run_number from test_plan where  DEPLOYMENTPATTERN_id in (");
-        if (deploymentIds.isEmpty()) {
-            return Collections.emptyList();
-        } else {
-            int deploymentIdLen = deploymentIds.size();
-            for (int i = 0; i < deploymentIdLen - 1; i++) {
-                sql.append("?, ");
-            }
-            sql.append("?) group by infra_parameters, DEPLOYMENTPATTERN_id) as latest_test_run_nums on "
-                    + "tp.infra_parameters=latest_test_run_nums.infra_parameters and "
-                    + "tp.test_run_number=latest_test_run_nums.test_run_number and tp.DEPLOYMENTPATTERN_id in (");
-            for (int i = 0; i < deploymentIdLen - 1; i++) {
-                sql.append("?, ");
-            }
-            sql.append("?);");
-            Query query = entityManager.createNativeQuery(sql.toString(), TestPlan.class);
-            int index = 1;
-            for (int i = 0; i < 2; i++) {
-                for (String s : deploymentIds) {
-                    query.setParameter(index++, s);
-                }
-            }
-            @SuppressWarnings("unchecked")
-            List<TestPlan> resultList = (List<TestPlan>) query.getResultList();
-            return EntityManagerHelper.refreshResultList(entityManager, resultList);
-        }
+        return getLatestTestPlans(product, false);
     }
 
     /**
@@ -270,40 +303,79 @@ public class TestPlanRepository extends AbstractRepository<TestPlan> {
      * @return a list of {@link TestPlan}
      */
     public List<TestPlan> getLatestStableTestPlans(Product product) {
-        String deploymentIdsRetrievingQuery = "select id from deployment_pattern where PRODUCT_id= ?;";
-        @SuppressWarnings("unchecked")
-        List<String> deploymentIds = (List<String>) entityManager
-                .createNativeQuery(deploymentIdsRetrievingQuery).setParameter(1, product.getId()).getResultList();
+        return getLatestTestPlans(product, true);
+    }
 
-        StringBuilder sql = new StringBuilder(
-                "select tp.* from test_plan tp inner join (Select distinct infra_parameters, max(test_run_number) "
-                        + "as test_run_number from test_plan " +
-                        "where test_plan.status != 'RUNNING' and DEPLOYMENTPATTERN_id in (");
+    private List<TestPlan> getLatestTestPlans(Product product, boolean stableOnly) {
+        List<String> deploymentIds = getDeploymentPatternIds(product);
         if (deploymentIds.isEmpty()) {
             return Collections.emptyList();
-        } else {
-            int deploymentIdLen = deploymentIds.size();
-            for (int i = 0; i < deploymentIdLen - 1; i++) {
-                sql.append("?, ");
-            }
-            sql.append("?) group by infra_parameters, DEPLOYMENTPATTERN_id) as latest_test_run_nums on "
-                    + "tp.infra_parameters=latest_test_run_nums.infra_parameters and "
-                    + "tp.test_run_number=latest_test_run_nums.test_run_number and tp.DEPLOYMENTPATTERN_id in (");
-            for (int i = 0; i < deploymentIdLen - 1; i++) {
-                sql.append("?, ");
-            }
-            sql.append("?);");
-            Query query = entityManager.createNativeQuery(sql.toString(), TestPlan.class);
-            int index = 1;
-            for (int i = 0; i < 2; i++) {
-                for (String s : deploymentIds) {
-                    query.setParameter(index++, s);
-                }
-            }
-            @SuppressWarnings("unchecked")
-            List<TestPlan> resultList = (List<TestPlan>) query.getResultList();
-            return EntityManagerHelper.refreshResultList(entityManager, resultList);
         }
+        NativeQueryBuilder queryBuilder = latestTestPlansQuery(deploymentIds, stableOnly);
+        @SuppressWarnings("unchecked")
+        List<TestPlan> resultList = (List<TestPlan>) queryBuilder
+                .bindTo(createNativeQuery(queryBuilder.getSql(), TestPlan.class))
+                .getResultList();
+        return resultList;
+    }
+
+    /**
+     * Returns the distinct statuses of the latest test plans of the given product, without reading the test plans
+     * themselves.
+     *
+     * @param product    the product being queried
+     * @param stableOnly whether only the test plans which are not running are considered
+     * @return the statuses of the latest test plans, empty if the product has none
+     */
+    public Set<TestPlanStatus> getLatestTestPlanStatuses(Product product, boolean stableOnly) {
+        List<String> deploymentIds = getDeploymentPatternIds(product);
+        if (deploymentIds.isEmpty()) {
+            return EnumSet.noneOf(TestPlanStatus.class);
+        }
+        NativeQueryBuilder queryBuilder = latestTestPlansQuery("distinct tp.status", deploymentIds, stableOnly);
+        @SuppressWarnings("unchecked")
+        List<String> statuses = (List<String>) queryBuilder
+                .bindTo(entityManager.createNativeQuery(queryBuilder.getSql()))
+                .getResultList();
+        Set<TestPlanStatus> resultSet = EnumSet.noneOf(TestPlanStatus.class);
+        for (String status : statuses) {
+            resultSet.add(TestPlanStatus.valueOf(status));
+        }
+        return resultSet;
+    }
+
+    private List<String> getDeploymentPatternIds(Product product) {
+        @SuppressWarnings("unchecked")
+        List<String> deploymentIds = (List<String>) entityManager
+                .createNativeQuery(DEPLOYMENT_PATTERN_IDS_SQL).setParameter(1, product.getId()).getResultList();
+        return deploymentIds;
+    }
+
+    /**
+     * Returns the query of the latest test plan of each infra combination of the given deployment patterns.
+     */
+    static NativeQueryBuilder latestTestPlansQuery(List<String> deploymentIds, boolean stableOnly) {
+        return latestTestPlansQuery("tp.*", deploymentIds, stableOnly);
+    }
+
+    /**
+     * Returns the query of the given columns of the latest test plan of each infra combination of the given
+     * deployment patterns.
+     */
+    static NativeQueryBuilder latestTestPlansQuery(String columns, List<String> deploymentIds, boolean stableOnly) {
+        NativeQueryBuilder queryBuilder = new NativeQueryBuilder()
+                .append("select " + columns + " from test_plan tp inner join (Select distinct infra_parameters, "
+                        + "max(test_run_number) as test_run_number from test_plan where ");
+        if (stableOnly) {
+            queryBuilder.append("test_plan.status != 'RUNNING' and ");
+        }
+        return queryBuilder.append("DEPLOYMENTPATTERN_id in (")
+                .bindInList(deploymentIds)
+                .append(") group by infra_parameters, DEPLOYMENTPATTERN_id) as latest_test_run_nums on "
+                        + "tp.infra_parameters=latest_test_run_nums.infra_parameters and "
+                        + "tp.test_run_number=latest_test_run_nums.test_run_number and tp.DEPLOYMENTPATTERN_id in (")
+                .bindInList(deploymentIds)
+                .append(")");
     }
 
     /**
@@ -313,16 +385,13 @@ public class TestPlanRepository extends AbstractRepository<TestPlan> {
      * @return a {@link TestPlan} representing the last failed build
      */
     public TestPlan getLastFailure(TestPlan testPlan) {
-        String sql = "select * from test_plan where infra_parameters= ?  AND DEPLOYMENTPATTERN_id=? " +
-                " AND status='FAIL' order by modified_timestamp desc limit 1";
-
-        List resultList = entityManager.createNativeQuery(sql, TestPlan.class)
+        List resultList = createNativeQuery(LAST_FAILURE_SQL, TestPlan.class)
                 .setParameter(1, testPlan.getInfraParameters())
                 .setParameter(2, testPlan.getDeploymentPattern().getId())
                 .getResultList();
 
         if (!resultList.isEmpty()) {
-            return (TestPlan) EntityManagerHelper.refreshResult(entityManager, resultList.get(0));
+            return (TestPlan) resultList.get(0);
         } else {
             return null;
         }
@@ -336,34 +405,86 @@ public class TestPlanRepository extends AbstractRepository<TestPlan> {
      * @return a List of {@link TestPlan} representing the history of that test plan
      */
     public List<TestPlan> getTestPlanHistory(TestPlan testPlan) {
-        String sql = " select t.* from test_plan t inner join deployment_pattern dp inner " +
-                "join product p on p.id=dp.PRODUCT_id and dp.id=t.DEPLOYMENTPATTERN_id " +
-                "where t.infra_parameters=? AND dp.id=? AND p.id=? ORDER BY modified_timestamp DESC";
-
         @SuppressWarnings("unchecked")
-        List<TestPlan> resultList = (List<TestPlan>) entityManager.createNativeQuery(sql, TestPlan.class)
+        List<TestPlan> resultList = (List<TestPlan>) createNativeQuery(TEST_PLAN_HISTORY_SQL, TestPlan.class)
                 .setParameter(1, testPlan.getInfraParameters())
                 .setParameter(2, testPlan.getDeploymentPattern().getId())
                 .setParameter(3, testPlan.getDeploymentPattern().getProduct().getId())
                 .getResultList();
-        return EntityManagerHelper.refreshResultList(entityManager, resultList);
+        return resultList;
+    }
+
+    /**
+     * Returns a page of the test plans that belong to the same infrastructure combination and deployment pattern
+     * as the given test plan, latest first.
+     * <p>
+     * The pages are keyset paginated on {@code (created_timestamp, id)}, hence fetching a page reads only the rows
+     * of that page irrespective of the length of the history. Unlike the modified timestamp, which changes with the
+     * status of a test plan, the created timestamp keeps a running test plan in its place while a client is paging.
+     *
+     * @param testPlan test plan being queried
+     * @param cursor   position after which the page starts, or {@code null} for the first page
+     * @param pageSize maximum number of test plans in the page
+     * @return a page of {@link TestPlan}s representing the history of the test plan
+     */
+    public Page<TestPlan> getTestPlanHistory(TestPlan testPlan, PageCursor cursor, int pageSize) {
+        Query query;
+        if (cursor == null) {
+            query = createNativeQuery(TEST_PLAN_HISTORY_FIRST_PAGE_SQL, TestPlan.class)
+                    .setParameter(1, testPlan.getInfraParameters())
+                    .setParameter(2, testPlan.getDeploymentPattern().getId())
+                    .setParameter(3, pageSize + 1);
+        } else {
+            query = createNativeQuery(TEST_PLAN_HISTORY_NEXT_PAGE_SQL, TestPlan.class)
+                    .setParameter(1, testPlan.getInfraParameters())
+                    .setParameter(2, testPlan.getDeploymentPattern().getId())
+                    .setParameter(3, cursor.getCreatedTimestamp())
+                    .setParameter(4, cursor.getCreatedTimestamp())
+                    .setParameter(5, cursor.getId())
+                    .setParameter(6, pageSize + 1);
+        }
+        // One extra row tells whether there is a next page.
+        @SuppressWarnings("unchecked")
+        List<TestPlan> resultList = (List<TestPlan>) query.getResultList();
+        if (resultList.size() <= pageSize) {
+            return new Page<>(resultList, null);
+        }
+        List<TestPlan> items = new ArrayList<>(resultList.subList(0, pageSize));
+        return new Page<>(items, PageCursor.of(items.get(pageSize - 1)));
     }
 
     /**
-     * This method returns all the test plans that are older than a specified duration.
+     * This method returns all the pending or running test plans that are older than a specified duration.
      *
      * @param duration duration in hours/minutes or any other time unit
-     * @param timeUnit unit of time for duration
+     * @param timeUnit unit of time for duration, i.e. one of the MySQL interval units from {@code SECOND} to
+     *                 {@code YEAR}
      * @return a List of testplans that are older than the specified time
+     * @throws IllegalArgumentException thrown when the duration or the time unit is invalid
      */
     public List<TestPlan> getTestPlanOlderThan(String duration, String timeUnit) {
-        String sql = StringUtil.concatStrings(
-                "select t.* from test_plan t where t.created_timestamp < (NOW() - INTERVAL ",
-                duration , " ", timeUnit, ") and (t.status = 'PENDING' or t.status = 'RUNNING') ");
+        ChronoUnit unit;
+        try {
+            String unitName = timeUnit.trim().toUpperCase(Locale.ENGLISH);
+            unit = ChronoUnit.valueOf(unitName.endsWith("S") ? unitName : unitName + "S");
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid time unit: " + timeUnit, e);
+        }
+        Timestamp createdBefore = Timestamp.valueOf(
+                LocalDateTime.now().minus(Long.parseLong(duration.trim()), unit));
+        NativeQueryBuilder queryBuilder = testPlansOlderThanQuery(createdBefore);
         @SuppressWarnings("unchecked")
-        List<TestPlan> resultList = (List<TestPlan>) entityManager.createNativeQuery(sql, TestPlan.class)
+        List<TestPlan> resultList = (List<TestPlan>) queryBuilder
+                .bindTo(createNativeQuery(queryBuilder.getSql(), TestPlan.class))
                 .getResultList();
-        return EntityManagerHelper.refreshResultList(entityManager, resultList);
+        return resultList;
+    }
+
+    static NativeQueryBuilder testPlansOlderThanQuery(Timestamp createdBefore) {
+        return new NativeQueryBuilder()
+                .append("select t.* from test_plan t where t.created_timestamp < ")
+                .bind(createdBefore)
+                .append(" and (t.status = 'PENDING' or t.status = 'RUNNING')");
     }
 
     /**
@@ -374,112 +495,255 @@ public class TestPlanRepository extends AbstractRepository<TestPlan> {
      */
     public List<TestCaseFailureResultDTO> getTestFailureSummaryByTPId(List<String> testPlanIds)
             throws TestGridDAOException {
-        StringBuilder sql = new StringBuilder("select failed_tc.test_name as name, failed_tc.failure_message as "
-                + "failureMessage, tp.infra_parameters as infraParametrs from test_plan tp join (select tc"
-                + ".test_name, tc.failure_message, ts.TESTPLAN_id  from test_case tc inner join test_scenario ts on "
-                + "ts.id=tc.TESTSCENARIO_id and tc.status = 'FAIL' and ts.TESTPLAN_id in (");
-        for (int i = 0; i < testPlanIds.size() - 1; i++) {
-            sql.append("?, ");
-        }
-        sql.append("?)) failed_tc on tp.id = failed_tc.TESTPLAN_id;");
-        Query query = entityManager.createNativeQuery(sql.toString());
-        int index = 1;
-        for (String s : testPlanIds) {
-            query.setParameter(index++, s);
+        if (testPlanIds.isEmpty()) {
+            return Collections.emptyList();
         }
-
+        NativeQueryBuilder queryBuilder = testFailureSummaryQuery(testPlanIds);
         @SuppressWarnings("unchecked")
-        List<Object[]> records = query.getResultList();
-        return mapObject(TestCaseFailureResultDTO.class, records);
+        List<Object[]> records = queryBuilder.bindTo(entityManager.createNativeQuery(queryBuilder.getSql()))
+                .getResultList();
+        return RowMapper.of(TestCaseFailureResultDTO.class).mapAll(records);
+    }
+
+    static NativeQueryBuilder testFailureSummaryQuery(List<String> testPlanIds) {
+        return new NativeQueryBuilder()
+                .append("select failed_tc.test_name as name, failed_tc.failure_message as failureMessage, "
+                        + "tp.infra_parameters as infraParametrs from test_plan tp join (select tc.test_name, "
+                        + "tc.failure_message, ts.TESTPLAN_id  from test_case tc inner join test_scenario ts on "
+                        + "ts.id=tc.TESTSCENARIO_id and tc.status = 'FAIL' and ts.TESTPLAN_id in (")
+                .bindInList(testPlanIds)
+                .append(")) failed_tc on tp.id = failed_tc.TESTPLAN_id");
     }
 
     /**
-     * This method returns the testplans need to be deleted
+     * Records the test plans which are older than the last given number of builds of their infra combination of
+     * the product, under the given cleanup run.
+     * <p>
+     * The test plans are ranked within each product and infra combination with a single windowed query, hence the
+     * whole table is evaluated in one pass, once per cleanup. The recorded candidates are then read in chunks with
+     * {@link #getTestPlansToCleanup(String, String, int)}, and are removed from the record with
+     * {@link #clearTestPlansToCleanup(String)} when the cleanup is over.
      *
-     * @param count number of builds that need be saved for each infra combination in each job
-     * @return a List of {@link String} testpan ids
+     * @param runId        id of the cleanup run
+     * @param buildsToKeep number of latest builds to keep for each infra combination of a product
+     * @return the number of recorded test plans
+     * @throws TestGridDAOException thrown when error on recording the test plans
      */
-    public List<String> getTestPlansToCleanup(int count) {
+    public int markTestPlansToCleanup(String runId, int buildsToKeep) throws TestGridDAOException {
+        return executeUpdate(new NativeQueryBuilder()
+                .append("INSERT INTO test_plan_cleanup (run_id, TESTPLAN_id, product_name, infra_parameters) "
+                        + "SELECT CAST(").bind(runId)
+                .append(" AS CHAR(36)), r.id, r.product_name, r.infra_parameters FROM (SELECT tp.id, "
+                        + "p.name AS product_name, tp.infra_parameters, ROW_NUMBER() OVER (PARTITION BY p.id, "
+                        + "tp.infra_parameters ORDER BY tp.modified_timestamp DESC, tp.id DESC) AS build_rank FROM "
+                        + "test_plan tp INNER JOIN deployment_pattern dp ON dp.id = tp.DEPLOYMENTPATTERN_id INNER "
+                        + "JOIN product p ON p.id = dp.PRODUCT_id WHERE tp.infra_parameters IS NOT NULL) r "
+                        + "WHERE r.build_rank > ").bind(buildsToKeep));
+    }
 
+    /**
+     * Returns a chunk of the test plans recorded by {@link #markTestPlansToCleanup(String, int)}, ordered by the
+     * test plan id.
+     * <p>
+     * Chunks are fetched after a given test plan id on the primary key of the record, hence each chunk costs the
+     * same irrespective of how many test plans were recorded or already removed.
+     *
+     * @param runId   id of the cleanup run
+     * @param afterId id after which the chunk starts, or {@code null} for the first chunk
+     * @param limit   maximum number of test plans in the chunk
+     * @return a list of {@link TestPlanCleanupCandidate}s
+     * @throws TestGridDAOException thrown when error on mapping the result
+     */
+    public List<TestPlanCleanupCandidate> getTestPlansToCleanup(String runId, String afterId, int limit)
+            throws TestGridDAOException {
+        @SuppressWarnings("unchecked")
+        List<Object[]> records = entityManager.createNativeQuery(CLEANUP_CANDIDATES_SQL)
+                .setParameter(1, runId)
+                .setParameter(2, afterId == null ? "" : afterId)
+                .setParameter(3, limit)
+                .getResultList();
+        return RowMapper.of(TestPlanCleanupCandidate.class).mapAll(records);
+    }
 
-        List<String> toDelete = new ArrayList<String>();
+    /**
+     * Removes the record of the test plans of the given cleanup run.
+     *
+     * @param runId id of the cleanup run
+     * @throws TestGridDAOException thrown when error on removing the record
+     */
+    public void clearTestPlansToCleanup(String runId) throws TestGridDAOException {
+        executeUpdate(new NativeQueryBuilder()
+                .append("DELETE FROM test_plan_cleanup WHERE run_id = ").bind(runId));
+    }
 
-        String sql = "select distinct infra_parameters from test_plan";
-        Query query = entityManager.createNativeQuery(sql);
-        @SuppressWarnings("unchecked")
-        List<String> infraCombinations = (List<String>) query.getResultList();
+    /**
+     * Returns the test plans of the given ids along with their deployment patterns and products.
+     *
+     * @param testPlanIds ids of the test plans
+     * @return a list of {@link TestPlan}s
+     */
+    public List<TestPlan> findByIds(List<String> testPlanIds) {
+        if (testPlanIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return entityManager.createQuery("SELECT tp FROM TestPlan tp JOIN FETCH tp.deploymentPattern dp "
+                + "JOIN FETCH dp.product WHERE tp.id IN :ids", TestPlan.class)
+                .setParameter("ids", NativeQueryBuilder.padToBucket(testPlanIds))
+                .getResultList();
+    }
 
-        sql = "select distinct name from product";
-        query = entityManager.createNativeQuery(sql);
-        @SuppressWarnings("unchecked")
-        List<String> products = (List<String>) query.getResultList();
-
-        String [] createTemp = {"drop table if exists temp ;", "drop table if exists temp2 ;",
-                "create temporary table temp (id VARCHAR(255), modified_timestamp TIMESTAMP, name VARCHAR(50), " +
-                "infra_parameters  VARCHAR(255)); ",
-                "INSERT INTO  temp (id,name,modified_timestamp,infra_parameters ) " +
-                        "select test_plan.id, product.name, test_plan.modified_timestamp, test_plan.infra_parameters " +
-                        "from test_plan,product,deployment_pattern " +
-                        "where test_plan.DEPLOYMENTPATTERN_id = deployment_pattern.id and " +
-                        "deployment_pattern.PRODUCT_id = product.id;",
-                "create temporary table temp2 (id VARCHAR(255), modified_timestamp TIMESTAMP, name  VARCHAR(50), " +
-                        "infra_parameters  VARCHAR(255));",
-                "insert  temp2 SELECT * FROM temp;"};
-
-        EntityTransaction txn = entityManager.getTransaction();
-        txn.begin();
-        for (String sqlQ : createTemp) {
-            entityManager.createNativeQuery(sqlQ).executeUpdate();
+    /**
+     * Returns the number of test scenarios and test cases of the given test plans.
+     *
+     * @param testPlanIds ids of the test plans
+     * @return the number of test scenarios and the number of test cases, respectively
+     */
+    public long[] countTestPlanChildren(List<String> testPlanIds) {
+        if (testPlanIds.isEmpty()) {
+            return new long[] { 0, 0 };
         }
-        txn.commit();
+        return new long[] {
+                count(new NativeQueryBuilder()
+                        .append("SELECT COUNT(*) FROM test_scenario WHERE TESTPLAN_id IN (")
+                        .bindInList(testPlanIds)
+                        .append(")")),
+                count(new NativeQueryBuilder()
+                        .append("SELECT COUNT(*) FROM test_case tc INNER JOIN test_scenario ts "
+                                + "ON ts.id = tc.TESTSCENARIO_id WHERE ts.TESTPLAN_id IN (")
+                        .bindInList(testPlanIds)
+                        .append(")"))
+        };
+    }
 
-        @SuppressWarnings("unchecked")
-        List<String> quaryResultOfInfra;
-        for (String product : products) {
-            for (String infra : infraCombinations) {
-                logger.info(StringUtil.concatStrings("identifying testplans that need to be deleted in" +
-                        " product ", product, "infra combination : ", infra));
-                sql = "select id from temp2 as tp left join (select id from temp where name = ? and " +
-                        "infra_parameters = ? order by (modified_timestamp) DESC limit ?)p2 USING(id) " +
-                        "WHERE p2.id IS NULL and infra_parameters = ?  and name = ? order by (modified_timestamp) DESC";
-
-                query = entityManager.createNativeQuery(sql);
-                query.setParameter(1, product);
-                query.setParameter(2, infra);
-                query.setParameter(3, count);
-                query.setParameter(4, infra);
-                query.setParameter(5, product);
-                quaryResultOfInfra = (List<String>) query.getResultList();
-                for (String data : quaryResultOfInfra) {
-                    logger.info(data);
-                    toDelete.add(data);
-                }
+    /**
+     * Deletes the given test plans along with their test scenarios and test cases.
+     * <p>
+     * The rows are deleted in chunks of {@value #DELETE_CHUNK_SIZE} test plans, and test cases in batches of at
+     * most {@value #DELETE_ROW_LIMIT} rows, each in its own transaction, so that the size of a transaction does not
+     * depend on the number of test cases of the test plans.
+     *
+     * @param testPlanIds ids of the test plans to delete
+     * @return the number of deleted test plans, test scenarios and test cases, respectively
+     * @throws TestGridDAOException thrown when error on deleting the test plans
+     */
+    public long[] deleteTestPlans(List<String> testPlanIds) throws TestGridDAOException {
+        long[] deleted = new long[3];
+        for (int from = 0; from < testPlanIds.size(); from += DELETE_CHUNK_SIZE) {
+            List<String> chunk = testPlanIds.subList(from, Math.min(from + DELETE_CHUNK_SIZE, testPlanIds.size()));
+            if (logger.isDebugEnabled()) {
+                logger.debug(StringUtil.concatStrings("Deleting test plans ", chunk));
             }
+            int deletedTestCases;
+            do {
+                deletedTestCases = executeUpdate(new NativeQueryBuilder()
+                        .append("DELETE FROM test_case WHERE TESTSCENARIO_id IN (SELECT id FROM test_scenario WHERE "
+                                + "TESTPLAN_id IN (")
+                        .bindInList(chunk)
+                        .append(")) LIMIT ")
+                        .bind(DELETE_ROW_LIMIT));
+                deleted[2] += deletedTestCases;
+            } while (deletedTestCases == DELETE_ROW_LIMIT);
+            deleted[1] += executeUpdate(new NativeQueryBuilder()
+                    .append("DELETE FROM test_scenario WHERE TESTPLAN_id IN (")
+                    .bindInList(chunk)
+                    .append(")"));
+            deleted[0] += executeUpdate(new NativeQueryBuilder()
+                    .append("DELETE FROM test_plan WHERE id IN (")
+                    .bindInList(chunk)
+                    .append(")"));
         }
-        return toDelete;
+        // Managed instances of the deleted rows should not be flushed again.
+        entityManager.clear();
+        return deleted;
     }
 
     /**
-     * Delete a list of test_plans from db
-     * @param testPlans list of test plan ids that need to be deleted
+     * Updates the status and phase columns of the given test plan only, without merging the test plan with its
+     * test scenarios and test cases.
+     *
+     * @param testPlanId id of the test plan
+     * @param status     status of the test plan
+     * @param phase      phase of the test plan, or {@code null} to keep the persisted phase
+     * @return {@code true} if the test plan was updated, {@code false} if it is not in the database
+     * @throws TestGridDAOException thrown when error on updating the test plan
      */
-    public void deleteTestPlans(List<String> testPlans) {
-        String sql;
-        EntityTransaction txn = null;
-        try {
-            txn = entityManager.getTransaction();
-            txn.begin();
+    public boolean updateStatus(String testPlanId, TestPlanStatus status, TestPlanPhase phase)
+            throws TestGridDAOException {
+        NativeQueryBuilder queryBuilder = new NativeQueryBuilder()
+                .append("UPDATE test_plan SET status = ").bind(status.name());
+        if (phase != null) {
+            queryBuilder.append(", phase = ").bind(phase.name());
+        }
+        return executeUpdate(queryBuilder
+                .append(", modified_timestamp = ").bind(new Timestamp(System.currentTimeMillis()))
+                .append(" WHERE id = ").bind(testPlanId)) == 1;
+    }
 
-            for (String testplan : testPlans) {
-                sql = "delete from test_plan where id = '" + testplan + "'";
-                entityManager.createNativeQuery(sql).executeUpdate();
-            }
-            txn.commit();
+    /**
+     * Updates the status and phase columns of the given test plans, with one statement per
+     * {@value NativeQueryBuilder#MAX_IN_LIST_BUCKET} test plans.
+     *
+     * @param testPlanIds ids of the test plans
+     * @param status      status of the test plans
+     * @param phase       phase of the test plans
+     * @return the number of updated test plans
+     * @throws TestGridDAOException thrown when error on updating the test plans
+     */
+    public int updateStatus(List<String> testPlanIds, TestPlanStatus status, TestPlanPhase phase)
+            throws TestGridDAOException {
+        int updated = 0;
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (int from = 0; from < testPlanIds.size(); from += NativeQueryBuilder.MAX_IN_LIST_BUCKET) {
+            List<String> chunk = testPlanIds.subList(from,
+                    Math.min(from + NativeQueryBuilder.MAX_IN_LIST_BUCKET, testPlanIds.size()));
+            updated += executeUpdate(new NativeQueryBuilder()
+                    .append("UPDATE test_plan SET status = ").bind(status.name())
+                    .append(", phase = ").bind(phase.name())
+                    .append(", modified_timestamp = ").bind(now)
+                    .append(" WHERE id IN (").bindInList(chunk).append(")"));
+        }
+        return updated;
+    }
+
+    /**
+     * Returns the latest test run number of each infrastructure combination of the given deployment patterns.
+     *
+     * @param deploymentPatternIds ids of the deployment patterns
+     * @return deployment pattern id, infrastructure parameters and the latest test run number of each
+     * infrastructure combination that has been run
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object[]> getLatestTestRunNumbers(List<String> deploymentPatternIds) {
+        if (deploymentPatternIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        NativeQueryBuilder queryBuilder = new NativeQueryBuilder()
+                .append("SELECT DEPLOYMENTPATTERN_id, infra_parameters, MAX(test_run_number) FROM test_plan "
+                        + "WHERE DEPLOYMENTPATTERN_id IN (")
+                .bindInList(deploymentPatternIds)
+                .append(") GROUP BY DEPLOYMENTPATTERN_id, infra_parameters");
+        return queryBuilder.bindTo(entityManager.createNativeQuery(queryBuilder.getSql())).getResultList();
+    }
+
+    private long count(NativeQueryBuilder queryBuilder) {
+        return ((Number) queryBuilder.bindTo(entityManager.createNativeQuery(queryBuilder.getSql()))
+                .getSingleResult()).longValue();
+    }
+
+    private int executeUpdate(NativeQueryBuilder queryBuilder) throws TestGridDAOException {
+        EntityTransaction transaction = entityManager.getTransaction();
+        try {
+            transaction.begin();
+            int updated = queryBuilder.bindTo(entityManager.createNativeQuery(queryBuilder.getSql()))
+                    .executeUpdate();
+            transaction.commit();
+            return updated;
         } catch (Exception e) {
-            if (txn != null) {
-                logger.error("Transaction is being rolled back due to error : \n", e);
-                txn.rollback();
+            if (transaction.isActive()) {
+                transaction.rollback();
             }
+            throw new TestGridDAOException(StringUtil.concatStrings("Error on executing the native SQL query [",
+                    queryBuilder.getSql(), "]"), e);
         }
     }
 
@@ -490,21 +754,24 @@ public class TestPlanRepository extends AbstractRepository<TestPlan> {
      * @return a List of {@link String} representing statuses of given test plans
      */
     public List<String> getTestPlanStatuses(List<String> testPlanIds) {
-        StringBuilder sql = new StringBuilder("select status from test_plan where id in (");
-        for (int i = 0; i < testPlanIds.size() - 1; i++) {
-            sql.append("?, ");
-        }
-        sql.append("?);");
-        Query query = entityManager.createNativeQuery(sql.toString());
-        int index = 1;
-        for (String s : testPlanIds) {
-            query.setParameter(index++, s);
+        if (testPlanIds.isEmpty()) {
+            return Collections.emptyList();
         }
+        NativeQueryBuilder queryBuilder = testPlanStatusesQuery(testPlanIds);
         @SuppressWarnings("unchecked")
-        List<String> statuses = (List<String>) query.getResultList();
+        List<String> statuses = (List<String>) queryBuilder
+                .bindTo(entityManager.createNativeQuery(queryBuilder.getSql()))
+                .getResultList();
         return statuses;
     }
 
+    static NativeQueryBuilder testPlanStatusesQuery(List<String> testPlanIds) {
+        return new NativeQueryBuilder()
+                .append("select status from test_plan where id in (")
+                .bindInList(testPlanIds)
+                .append(")");
+    }
+
     /**
      * This method returns the history of test execution summary for given product.
      *
@@ -514,51 +781,25 @@ public class TestPlanRepository extends AbstractRepository<TestPlan> {
      * @return a List of {@link TestPlan} representing executed test plans of a given product for a given time range
      */
     public List<TestPlan> getTestExecutionHistory(String productId, String from, String to) {
-        String sql = "select tp.* from test_plan tp inner join (Select distinct infra_parameters from test_plan where  "
-                + "DEPLOYMENTPATTERN_id in (select id from deployment_pattern where PRODUCT_id=?)) as rn on "
-                + "tp.infra_parameters=rn.infra_parameters and tp.DEPLOYMENTPATTERN_id "
-                + "in (select id from deployment_pattern where PRODUCT_id=?) and modified_timestamp between ? and ?;";
-
         @SuppressWarnings("unchecked")
-        List<TestPlan> resultList = (List<TestPlan>) entityManager.createNativeQuery(sql, TestPlan.class)
+        List<TestPlan> resultList = (List<TestPlan>) createNativeQuery(TEST_EXECUTION_HISTORY_SQL, TestPlan.class)
                 .setParameter(1, productId)
                 .setParameter(2, productId)
                 .setParameter(3, from)
                 .setParameter(4, to)
                 .getResultList();
-        return EntityManagerHelper.refreshResultList(entityManager, resultList);
+        return resultList;
         }
 
     /**
      * This method is responsible to map list of objects to a given class.
+     * The columns of each record are passed to a public constructor of the class, see {@link RowMapper}.
      *
      * @param type    Mapping class
      * @param records lst of objects that are mapping to instance of the given class
      * @return a List of mapped objects
      */
     public static <T> List<T> mapObject(Class<T> type, List<Object[]> records) throws TestGridDAOException {
-        List<T> result = new LinkedList<>();
-        for (Object[] record : records) {
-            List<Class<?>> tupleTypes = new ArrayList<>();
-            for (Object field : record) {
-                //if a filed contains null value assign empty string. If null values in the either infra_combination
-                // column or test case name column or test case description column, null value could be passed to here.
-                if (field == null) {
-                    field = "";
-                }
-                tupleTypes.add(field.getClass());
-            }
-            Constructor<T> ctor;
-            try {
-                ctor = type.getConstructor(tupleTypes.toArray(new Class<?>[record.length]));
-                result.add(ctor.newInstance(record));
-            } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException |
-                    InstantiationException e) {
-                throw new TestGridDAOException("Error occured while mapping object to TestCaseFailureResultDTO object",
-                        e);
-            }
-
-        }
-        return result;
+        return RowMapper.of(type).mapAll(records);
     }
 }
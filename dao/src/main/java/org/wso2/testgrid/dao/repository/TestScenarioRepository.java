@@ -18,10 +18,13 @@
 package org.wso2.testgrid.dao.repository;
 
 import com.google.common.collect.LinkedListMultimap;
+import org.wso2.testgrid.common.TestPlan;
 import org.wso2.testgrid.common.TestScenario;
 import org.wso2.testgrid.dao.SortOrder;
 import org.wso2.testgrid.dao.TestGridDAOException;
 
+import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import javax.persistence.EntityManager;
@@ -53,6 +56,32 @@ public class TestScenarioRepository extends AbstractRepository<TestScenario> {
         return super.persist(entity);
     }
 
+    /**
+     * Persists a collection of {@link TestScenario} instances, along with their test cases, in a single transaction.
+     * <p>
+     * New test scenarios usually refer to a detached {@link TestPlan}. Since persisting a new scenario cascades to
+     * its test plan, the test plan is swapped with a managed reference while the scenario is inserted and restored
+     * once the transaction completes.
+     *
+     * @param entities TestScenarios to persist in the database
+     * @return added or updated {@link TestScenario} instances
+     * @throws TestGridDAOException thrown when error on persisting the TestScenario instances
+     */
+    public List<TestScenario> persistAll(Collection<TestScenario> entities) throws TestGridDAOException {
+        Map<TestScenario, TestPlan> detachedTestPlans = new IdentityHashMap<>();
+        try {
+            return super.persistAll(entities, testScenario -> {
+                TestPlan testPlan = testScenario.getTestPlan();
+                if (testPlan != null && testPlan.getId() != null && !entityManager.contains(testPlan)) {
+                    detachedTestPlans.put(testScenario, testPlan);
+                    testScenario.setTestPlan(entityManager.getReference(TestPlan.class, testPlan.getId()));
+                }
+            });
+        } finally {
+            detachedTestPlans.forEach(TestScenario::setTestPlan);
+        }
+    }
+
     /**
      * Removes an {@link TestScenario} instance from database.
      *
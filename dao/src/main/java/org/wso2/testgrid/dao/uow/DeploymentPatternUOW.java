@@ -25,7 +25,10 @@ import org.wso2.testgrid.dao.TestGridDAOException;
 import org.wso2.testgrid.dao.repository.DeploymentPatternRepository;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -44,7 +47,15 @@ public class DeploymentPatternUOW {
      * Constructs an instance of {@link DeploymentPatternUOW} to manager use cases related to test cases.
      */
     public DeploymentPatternUOW() {
-        EntityManager entityManager = EntityManagerHelper.getEntityManager();
+        this(EntityManagerHelper.getEntityManager());
+    }
+
+    /**
+     * Constructs an instance of {@link DeploymentPatternUOW} to manager use cases related to deployment patterns.
+     *
+     * @param entityManager {@link EntityManager} instance
+     */
+    public DeploymentPatternUOW(EntityManager entityManager) {
         deploymentPatternRepository = new DeploymentPatternRepository(entityManager);
     }
 
@@ -90,6 +101,40 @@ public class DeploymentPatternUOW {
         return deploymentPatternRepository.persist(deploymentPattern);
     }
 
+    /**
+     * Returns the deployment patterns of the given product for the given names, creating the ones which do not
+     * exist yet. The existing deployment patterns are read with one query and the new ones are inserted in one
+     * transaction.
+     *
+     * @param product product of the deployment patterns
+     * @param names   deployment pattern names
+     * @return deployment patterns by name
+     * @throws TestGridDAOException thrown when error on persisting the new deployment patterns
+     */
+    public Map<String, DeploymentPattern> getOrCreateDeploymentPatterns(Product product, Collection<String> names)
+            throws TestGridDAOException {
+        List<String> distinctNames = new ArrayList<>(new LinkedHashSet<>(names));
+        Map<String, DeploymentPattern> deploymentPatterns = new HashMap<>();
+        for (DeploymentPattern deploymentPattern :
+                deploymentPatternRepository.findByProductAndNames(product, distinctNames)) {
+            deploymentPatterns.put(deploymentPattern.getName(), deploymentPattern);
+        }
+
+        List<DeploymentPattern> newDeploymentPatterns = new ArrayList<>();
+        for (String name : distinctNames) {
+            if (!deploymentPatterns.containsKey(name)) {
+                DeploymentPattern deploymentPattern = new DeploymentPattern();
+                deploymentPattern.setName(name);
+                deploymentPattern.setProduct(product);
+                newDeploymentPatterns.add(deploymentPattern);
+            }
+        }
+        for (DeploymentPattern deploymentPattern : deploymentPatternRepository.insertAll(newDeploymentPatterns)) {
+            deploymentPatterns.put(deploymentPattern.getName(), deploymentPattern);
+        }
+        return deploymentPatterns;
+    }
+
     /**
      * Returns the {@link DeploymentPattern} instance for the given id.
      *
@@ -22,23 +22,20 @@ package org.wso2.testgrid.dao.uow;
 import org.wso2.testgrid.common.infrastructure.InfrastructureParameter;
 import org.wso2.testgrid.common.infrastructure.InfrastructureValueSet;
 import org.wso2.testgrid.dao.EntityManagerHelper;
+import org.wso2.testgrid.dao.InfrastructureValueSetCache;
 import org.wso2.testgrid.dao.TestGridDAOException;
 import org.wso2.testgrid.dao.repository.InfrastructureParameterRepository;
 
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.TreeSet;
 import javax.persistence.EntityManager;
 
 import static org.wso2.testgrid.common.infrastructure.InfrastructureParameter.INFRASTRUCTURE_PARAMETER_NAME_COLUMN;
 import static org.wso2.testgrid.common.infrastructure.InfrastructureParameter
         .INFRASTRUCTURE_PARAMETER_READY_FOR_TESTGRID_METAMODEL_NAME;
-import static org.wso2.testgrid.common.infrastructure.InfrastructureParameter
-        .INFRASTRUCTURE_PARAMETER_TYPE_METAMODEL_NAME;
 
 /**
  * This class defines the Unit of work related to a {@link InfrastructureParameter}.
@@ -53,7 +50,15 @@ public class InfrastructureParameterUOW {
      * Constructs an instance of {@link InfrastructureParameterUOW} to manager use cases related to product test plan.
      */
     public InfrastructureParameterUOW() {
-        EntityManager entityManager = EntityManagerHelper.getEntityManager();
+        this(EntityManagerHelper.getEntityManager());
+    }
+
+    /**
+     * Constructs an instance of {@link InfrastructureParameterUOW} to manager use cases related to product test plan.
+     *
+     * @param entityManager {@link EntityManager} instance
+     */
+    public InfrastructureParameterUOW(EntityManager entityManager) {
         infraParamRepository = new InfrastructureParameterRepository(entityManager);
     }
 
@@ -86,30 +91,20 @@ public class InfrastructureParameterUOW {
     }
 
     /**
+     * Returns the testgrid-ready infrastructure parameters grouped by their type.
+     * <p>
+     * The value set is served from the {@link InfrastructureValueSetCache}, which loads all the parameters with a
+     * single query and is invalidated whenever infrastructure parameters are written.
      *
      * @return a set of {@link InfrastructureValueSet} instances. Each set item contains a
      * {@link InfrastructureValueSet} of a given type.
+     * @throws TestGridDAOException thrown when error on retrieving the infrastructure parameters
      */
     public Set<InfrastructureValueSet> getValueSet() throws TestGridDAOException {
-        List<String> types = infraParamRepository
-                .find(((root, query, cb) -> {
-                    query.select(root.get(INFRASTRUCTURE_PARAMETER_TYPE_METAMODEL_NAME)).distinct(true);
-                    return cb.isTrue(root.get(INFRASTRUCTURE_PARAMETER_READY_FOR_TESTGRID_METAMODEL_NAME));
-                }), String.class);
-
-        //create sets of ValueSets by infrastructure type
-        Set<InfrastructureValueSet> infrastructureParameterSets = new HashSet<>();
-        for (String type : types) {
-            List<InfrastructureParameter> infrastructureParameters = infraParamRepository
-                    .find((root, query, cb) -> cb.and(
-                            cb.equal(root.get(INFRASTRUCTURE_PARAMETER_TYPE_METAMODEL_NAME), type),
-                            cb.isTrue(root.get(INFRASTRUCTURE_PARAMETER_READY_FOR_TESTGRID_METAMODEL_NAME))),
-                            InfrastructureParameter.class);
-
-            InfrastructureValueSet valueSet = new InfrastructureValueSet(type, new TreeSet<>(infrastructureParameters));
-            infrastructureParameterSets.add(valueSet);
-        }
-        return infrastructureParameterSets;
+        return InfrastructureValueSetCache.getValueSet(() -> infraParamRepository
+                .find((root, query, cb) ->
+                                cb.isTrue(root.get(INFRASTRUCTURE_PARAMETER_READY_FOR_TESTGRID_METAMODEL_NAME)),
+                        InfrastructureParameter.class));
     }
 
     /**
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao.uow;
+
+import org.wso2.testgrid.common.Product;
+import org.wso2.testgrid.common.ProductSummary;
+import org.wso2.testgrid.dao.EntityManagerHelper;
+import org.wso2.testgrid.dao.TestGridDAOException;
+import org.wso2.testgrid.dao.repository.ProductRepository;
+import org.wso2.testgrid.dao.repository.ProductSummaryRepository;
+
+import java.util.List;
+import java.util.Optional;
+import javax.persistence.EntityManager;
+
+/**
+ * This class defines the Unit of work related to a {@link ProductSummary}.
+ *
+ * @since 1.0.0
+ */
+public class ProductSummaryUOW {
+
+    private final ProductSummaryRepository productSummaryRepository;
+    private final ProductRepository productRepository;
+    private final TestPlanUOW testPlanUOW;
+
+    /**
+     * Constructs an instance of {@link ProductSummaryUOW} to manage use cases related to product summaries.
+     */
+    public ProductSummaryUOW() {
+        this(EntityManagerHelper.getEntityManager());
+    }
+
+    /**
+     * Constructs an instance of {@link ProductSummaryUOW} to manage use cases related to product summaries.
+     *
+     * @param entityManager {@link EntityManager} instance
+     */
+    public ProductSummaryUOW(EntityManager entityManager) {
+        productSummaryRepository = new ProductSummaryRepository(entityManager);
+        productRepository = new ProductRepository(entityManager);
+        testPlanUOW = new TestPlanUOW(entityManager);
+    }
+
+    /**
+     * Returns the summaries of all the products.
+     *
+     * @return list of {@link ProductSummary} instances
+     * @throws TestGridDAOException thrown when error on retrieving the summaries
+     */
+    public List<ProductSummary> getProductSummaries() throws TestGridDAOException {
+        return productSummaryRepository.findAll();
+    }
+
+    /**
+     * Returns the summary of the given product.
+     *
+     * @param product product of the summary
+     * @return summary of the product, or an empty optional if the summary is not computed yet
+     * @throws TestGridDAOException thrown when error on retrieving the summary
+     */
+    public Optional<ProductSummary> getProductSummary(Product product) throws TestGridDAOException {
+        return Optional.ofNullable(productSummaryRepository.findByProduct(product));
+    }
+
+    /**
+     * Recomputes the summary of the given product from its test plans and stores it.
+     *
+     * @param product product to refresh the summary of
+     * @return the refreshed {@link ProductSummary} instance
+     * @throws TestGridDAOException thrown when error on computing or persisting the summary
+     * @see TestPlanUOW#refreshProductSummary(Product)
+     */
+    public ProductSummary refreshProductSummary(Product product) throws TestGridDAOException {
+        return testPlanUOW.refreshProductSummary(product);
+    }
+
+    /**
+     * Recomputes the summaries of all the products.
+     *
+     * @return number of refreshed product summaries
+     * @throws TestGridDAOException thrown when error on computing or persisting a summary
+     */
+    public int refreshAllProductSummaries() throws TestGridDAOException {
+        List<Product> products = productRepository.findAll();
+        for (Product product : products) {
+            refreshProductSummary(product);
+        }
+        return products.size();
+    }
+}
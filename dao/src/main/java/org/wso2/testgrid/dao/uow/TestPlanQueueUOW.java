@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao.uow;
+
+import org.wso2.testgrid.common.TestPlanQueueEntry;
+import org.wso2.testgrid.dao.EntityManagerHelper;
+import org.wso2.testgrid.dao.TestGridDAOException;
+import org.wso2.testgrid.dao.repository.TestPlanQueueRepository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityManager;
+
+/**
+ * This class defines the Unit of work related to the persistent queue of {@link TestPlanQueueEntry}s.
+ *
+ * @since 1.0.0
+ */
+public class TestPlanQueueUOW {
+
+    private final TestPlanQueueRepository testPlanQueueRepository;
+
+    /**
+     * Constructs an instance of {@link TestPlanQueueUOW} to manage use cases related to the test plan queue.
+     */
+    public TestPlanQueueUOW() {
+        this(EntityManagerHelper.getEntityManager());
+    }
+
+    /**
+     * Constructs an instance of {@link TestPlanQueueUOW} to manage use cases related to the test plan queue.
+     *
+     * @param entityManager {@link EntityManager} instance
+     */
+    public TestPlanQueueUOW(EntityManager entityManager) {
+        testPlanQueueRepository = new TestPlanQueueRepository(entityManager);
+    }
+
+    /**
+     * Adds the given entries to the queue. Entries of test plans which are already queued are skipped, hence a
+     * directory of test plans can be queued again when resuming.
+     *
+     * @param entries entries to add
+     * @return added entries
+     * @throws TestGridDAOException thrown when error on persisting the entries
+     */
+    public List<TestPlanQueueEntry> enqueue(Collection<TestPlanQueueEntry> entries) throws TestGridDAOException {
+        return testPlanQueueRepository.enqueue(entries);
+    }
+
+    /**
+     * Returns the queued entries of the given queue, oldest first.
+     *
+     * @param queueName queue name
+     * @return queued entries
+     * @throws TestGridDAOException thrown when error on retrieving the entries
+     */
+    public List<TestPlanQueueEntry> getQueuedEntries(String queueName) throws TestGridDAOException {
+        return testPlanQueueRepository.findQueued(queueName);
+    }
+
+    /**
+     * Returns the number of entries of the given queue in each state.
+     *
+     * @param queueName queue name
+     * @return number of entries by state
+     * @throws TestGridDAOException thrown when error on counting the entries
+     */
+    public Map<TestPlanQueueEntry.State, Long> getEntryCounts(String queueName) throws TestGridDAOException {
+        return testPlanQueueRepository.countByState(queueName);
+    }
+
+    /**
+     * Takes the given entry from the queue for the given runner.
+     *
+     * @param entry    queued entry
+     * @param runnerId id of the runner
+     * @return {@code true} if the entry was taken, {@code false} if another runner took it first
+     * @throws TestGridDAOException thrown when error on updating the entry
+     */
+    public boolean claim(TestPlanQueueEntry entry, String runnerId) throws TestGridDAOException {
+        return testPlanQueueRepository.claim(entry.getId(), runnerId);
+    }
+
+    /**
+     * Records the final state of an entry taken by the given runner.
+     *
+     * @param entry    entry taken by the runner
+     * @param runnerId id of the runner
+     * @param state    final state of the entry
+     * @throws TestGridDAOException thrown when error on updating the entry
+     */
+    public void complete(TestPlanQueueEntry entry, String runnerId, TestPlanQueueEntry.State state)
+            throws TestGridDAOException {
+        if (!testPlanQueueRepository.complete(entry.getId(), runnerId, state)) {
+            throw new TestGridDAOException("Test plan queue entry " + entry.getId() + " is not held by runner " +
+                    runnerId);
+        }
+    }
+
+    /**
+     * Returns the entries of the given queue which the given runner did not complete, for example because it
+     * crashed, back to the queue.
+     *
+     * @param queueName   queue name
+     * @param runnerId    id of the runner
+     * @param maxAttempts number of times an entry may be taken from the queue; entries already taken as many times
+     *                    are marked as failed instead
+     * @return number of entries returned to the queue
+     * @throws TestGridDAOException thrown when error on updating the entries
+     */
+    public int requeueUncompleted(String queueName, String runnerId, int maxAttempts) throws TestGridDAOException {
+        return testPlanQueueRepository.requeue(queueName, runnerId, maxAttempts);
+    }
+}
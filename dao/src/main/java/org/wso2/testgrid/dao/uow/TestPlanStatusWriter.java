@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao.uow;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.testgrid.common.Product;
+import org.wso2.testgrid.common.TestPlan;
+import org.wso2.testgrid.common.TestPlanPhase;
+import org.wso2.testgrid.common.TestPlanStatus;
+import org.wso2.testgrid.common.util.StringUtil;
+import org.wso2.testgrid.dao.EntityManagerHelper;
+import org.wso2.testgrid.dao.TestGridDAOException;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Writes the status and phase changes of a {@link TestPlan} with targeted updates instead of merging the whole
+ * test plan, and updates the product summary when the test plan reached a final status.
+ * <p>
+ * When an interval is given, changes made within the interval after a write are coalesced: only the latest status
+ * and phase are written, once the interval has passed. The pending change is written by a shared background
+ * thread, or by {@link #flush()}, which should be invoked before the test plan is persisted as a whole.
+ * <p>
+ * The product summary is updated right after the final status is written, on the same thread, so that it is up to
+ * date once {@link #flush()} returns even if the JVM exits then. Only the statuses of the latest test plans of the
+ * product are read for it; see {@link TestPlanUOW#updateProductSummary(Product, TestPlanStatus)}.
+ *
+ * @since 1.0.0
+ */
+public class TestPlanStatusWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(TestPlanStatusWriter.class);
+
+    private static final ScheduledExecutorService FLUSH_EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "test-plan-status-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    @SuppressWarnings("deprecation")
+    private static final Set<TestPlanStatus> FINAL_STATUSES = EnumSet.of(TestPlanStatus.SUCCESS,
+            TestPlanStatus.FAIL, TestPlanStatus.ERROR, TestPlanStatus.DID_NOT_RUN);
+
+    private final TestPlanUOW testPlanUOW;
+    private final long intervalNanos;
+    private final Supplier<TestPlanUOW> backgroundUOWSupplier;
+
+    private StatusUpdate pending;
+    private ScheduledFuture<?> scheduledFlush;
+    private long lastWriteNanos;
+    private boolean written;
+
+    /**
+     * Constructs a writer that writes on the background thread with the entity manager of that thread.
+     *
+     * @param testPlanUOW    unit of work used on the calling threads
+     * @param intervalMillis interval within which changes are coalesced, 0 or less to write each change
+     */
+    public TestPlanStatusWriter(TestPlanUOW testPlanUOW, long intervalMillis) {
+        this(testPlanUOW, intervalMillis, TestPlanUOW::new);
+    }
+
+    /**
+     * Constructs a writer.
+     *
+     * @param testPlanUOW           unit of work used on the calling threads
+     * @param intervalMillis        interval within which changes are coalesced, 0 or less to write each change
+     * @param backgroundUOWSupplier supplies the unit of work used on the background thread
+     */
+    public TestPlanStatusWriter(TestPlanUOW testPlanUOW, long intervalMillis,
+                                Supplier<TestPlanUOW> backgroundUOWSupplier) {
+        this.testPlanUOW = testPlanUOW;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, intervalMillis));
+        this.backgroundUOWSupplier = backgroundUOWSupplier;
+    }
+
+    /**
+     * Records the current status and phase of the given test plan, and writes them unless they are coalesced with
+     * the following changes.
+     *
+     * @param testPlan      test plan whose status or phase changed
+     * @param statusChanged whether the status changed, which requires the product summary to be updated once
+     *                      the status is final
+     */
+    public synchronized void update(TestPlan testPlan, boolean statusChanged) {
+        pending = new StatusUpdate(testPlan, statusChanged || (pending != null && pending.statusChanged));
+        long sinceLastWrite = System.nanoTime() - lastWriteNanos;
+        if (intervalNanos == 0 || !written || sinceLastWrite >= intervalNanos) {
+            write(testPlanUOW);
+        } else if (scheduledFlush == null) {
+            scheduledFlush = FLUSH_EXECUTOR.schedule(this::flushInBackground, intervalNanos - sinceLastWrite,
+                    TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Writes the pending change, if any, on the calling thread. A change being written in the background is
+     * waited for, so that the status and the product summary are persisted once this returns.
+     */
+    public synchronized void flush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        if (pending != null) {
+            write(testPlanUOW);
+        }
+    }
+
+    private synchronized void flushInBackground() {
+        try {
+            if (scheduledFlush == null || pending == null) {
+                return;
+            }
+            scheduledFlush = null;
+            write(backgroundUOWSupplier.get());
+        } finally {
+            EntityManagerHelper.releaseEntityManager();
+        }
+    }
+
+    private void write(TestPlanUOW uow) {
+        StatusUpdate update = pending;
+        pending = null;
+        lastWriteNanos = System.nanoTime();
+        written = true;
+        try {
+            if (update.testPlanId == null || update.status == null
+                    || !uow.updateTestPlanStatus(update.testPlanId, update.status, update.phase)) {
+                // Not persisted yet, hence the whole test plan is persisted.
+                uow.persistTestPlan(update.testPlan);
+            }
+        } catch (TestGridDAOException e) {
+            logger.error(StringUtil.concatStrings("Error occurred while persisting the status of the test plan ",
+                    update.testPlanId, "."), e);
+            return;
+        }
+        if (update.statusChanged && update.product != null && FINAL_STATUSES.contains(update.status)) {
+            try {
+                uow.updateProductSummary(update.product, update.status);
+            } catch (TestGridDAOException | RuntimeException e) {
+                logger.warn(StringUtil.concatStrings("Error occurred while updating the product summary of the ",
+                        "test plan ", update.testPlanId, ". It will be updated on the next final status."), e);
+            }
+        }
+    }
+
+    /**
+     * Status and phase of a test plan at the time they changed.
+     */
+    private static class StatusUpdate {
+        private final TestPlan testPlan;
+        private final String testPlanId;
+        private final TestPlanStatus status;
+        private final TestPlanPhase phase;
+        private final Product product;
+        private final boolean statusChanged;
+
+        StatusUpdate(TestPlan testPlan, boolean statusChanged) {
+            this.testPlan = testPlan;
+            this.testPlanId = testPlan.getId();
+            this.status = testPlan.getStatus();
+            this.phase = testPlan.getPhase();
+            this.product = testPlan.getDeploymentPattern() == null ? null :
+                    testPlan.getDeploymentPattern().getProduct();
+            this.statusChanged = statusChanged;
+        }
+    }
+}
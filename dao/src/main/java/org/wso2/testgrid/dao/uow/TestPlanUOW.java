@@ -17,17 +17,33 @@
  */
 package org.wso2.testgrid.dao.uow;
 
+import org.wso2.testgrid.common.DeploymentPattern;
 import org.wso2.testgrid.common.Product;
+import org.wso2.testgrid.common.ProductSummary;
 import org.wso2.testgrid.common.TestPlan;
+import org.wso2.testgrid.common.TestPlanPhase;
 import org.wso2.testgrid.common.TestPlanStatus;
+import org.wso2.testgrid.common.util.StringUtil;
 import org.wso2.testgrid.dao.EntityManagerHelper;
+import org.wso2.testgrid.dao.Page;
+import org.wso2.testgrid.dao.PageCursor;
 import org.wso2.testgrid.dao.TestGridDAOException;
 import org.wso2.testgrid.dao.dto.TestCaseFailureResultDTO;
+import org.wso2.testgrid.dao.dto.TestPlanCleanupCandidate;
+import org.wso2.testgrid.dao.dto.TestPlanCleanupReport;
+import org.wso2.testgrid.dao.repository.ProductSummaryRepository;
 import org.wso2.testgrid.dao.repository.TestPlanRepository;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import javax.persistence.EntityManager;
 
@@ -38,14 +54,29 @@ import javax.persistence.EntityManager;
  */
 public class TestPlanUOW {
 
+    /**
+     * Number of test plans removed in each chunk of a cleanup.
+     */
+    public static final int CLEANUP_CHUNK_SIZE = 500;
+
     private final TestPlanRepository testPlanRepository;
+    private final ProductSummaryRepository productSummaryRepository;
 
     /**
      * Constructs an instance of {@link TestPlanUOW} to manager use cases related to test plans.
      */
     public TestPlanUOW() {
-        EntityManager entityManager = EntityManagerHelper.getEntityManager();
+        this(EntityManagerHelper.getEntityManager());
+    }
+
+    /**
+     * Constructs an instance of {@link TestPlanUOW} to manager use cases related to test plans.
+     *
+     * @param entityManager {@link EntityManager} instance
+     */
+    public TestPlanUOW(EntityManager entityManager) {
         testPlanRepository = new TestPlanRepository(entityManager);
+        productSummaryRepository = new ProductSummaryRepository(entityManager);
     }
 
     /**
@@ -71,6 +102,67 @@ public class TestPlanUOW {
         return persisted;
     }
 
+    /**
+     * Updates the status and phase of the test plan with the given id with a single statement, instead of merging
+     * the whole test plan as {@link #persistTestPlan(TestPlan)} does.
+     *
+     * @param testPlanId id of the test plan
+     * @param status     status of the test plan
+     * @param phase      phase of the test plan
+     * @return {@code true} if the test plan was updated, {@code false} if it is not persisted yet
+     * @throws TestGridDAOException thrown when error on updating the test plan
+     */
+    public boolean updateTestPlanStatus(String testPlanId, TestPlanStatus status, TestPlanPhase phase)
+            throws TestGridDAOException {
+        return testPlanRepository.updateStatus(testPlanId, status, phase);
+    }
+
+    /**
+     * Inserts the given new test plans with a single transaction.
+     *
+     * @param testPlans new test plans
+     * @return the inserted test plans, in the given order
+     * @throws TestGridDAOException thrown when error on persisting the test plans; none of them are persisted then
+     */
+    public List<TestPlan> insertTestPlans(List<TestPlan> testPlans) throws TestGridDAOException {
+        return testPlanRepository.insertAll(testPlans);
+    }
+
+    /**
+     * Updates the status and phase of the test plans with the given ids.
+     *
+     * @param testPlanIds ids of the test plans
+     * @param status      status of the test plans
+     * @param phase       phase of the test plans
+     * @return the number of updated test plans
+     * @throws TestGridDAOException thrown when error on updating the test plans
+     */
+    public int updateTestPlanStatuses(List<String> testPlanIds, TestPlanStatus status, TestPlanPhase phase)
+            throws TestGridDAOException {
+        return testPlanRepository.updateStatus(testPlanIds, status, phase);
+    }
+
+    /**
+     * Returns the latest test run number of each infrastructure combination of the given deployment patterns,
+     * read with a single query.
+     *
+     * @param deploymentPatterns deployment patterns
+     * @return latest test run numbers by deployment pattern id and then by the infrastructure parameters of the
+     * test plans
+     */
+    public Map<String, Map<String, Integer>> getLatestTestRunNumbers(Collection<DeploymentPattern> deploymentPatterns) {
+        List<String> deploymentPatternIds = deploymentPatterns.stream()
+                .map(DeploymentPattern::getId)
+                .distinct()
+                .collect(Collectors.toList());
+        Map<String, Map<String, Integer>> testRunNumbers = new HashMap<>();
+        for (Object[] row : testPlanRepository.getLatestTestRunNumbers(deploymentPatternIds)) {
+            testRunNumbers.computeIfAbsent((String) row[0], id -> new HashMap<>())
+                    .put((String) row[1], ((Number) row[2]).intValue());
+        }
+        return testRunNumbers;
+    }
+
     /**
      * Returns the {@link TestPlan} instance for the given id.
      *
@@ -87,10 +179,12 @@ public class TestPlanUOW {
     }
 
     /**
-     * Delete a list of test_plans from db
+     * Delete a list of test_plans from db along with their test scenarios and test cases.
+     *
      * @param testPlans list of test plan ids that need to be deleted
+     * @throws TestGridDAOException thrown when error on deleting the test plans
      */
-    public void deleteTestPlans(List<String> testPlans) {
+    public void deleteTestPlans(List<String> testPlans) throws TestGridDAOException {
         testPlanRepository.deleteTestPlans(testPlans);
     }
 
@@ -135,34 +229,79 @@ public class TestPlanUOW {
      * @return a {@link TestPlanStatus} for the product
      */
     public TestPlanStatus getCurrentStatus(Product product) {
-        List<TestPlan> testPlans = testPlanRepository.getLatestTestPlans(product);
-        List<TestPlan> succesfulPlans = testPlans.stream().filter(testPlan ->
-                testPlan.getStatus().equals(TestPlanStatus.SUCCESS)
-        ).collect(Collectors.toList());
-        boolean running = testPlans.stream().anyMatch(testPlan -> TestPlanStatus.RUNNING.equals(testPlan.getStatus()));
-        boolean error = testPlans.stream().anyMatch(testPlan -> TestPlanStatus.ERROR.equals(testPlan.getStatus()));
-        //check if there are pending test_plans
-
-        if (running) {
+        return aggregateStatus(testPlanRepository.getLatestTestPlans(product).stream()
+                .map(TestPlan::getStatus).collect(Collectors.toSet()));
+    }
+
+    public TestPlanStatus getLastStableStatus(Product product) {
+        return aggregateStatus(testPlanRepository.getLatestStableTestPlans(product).stream()
+                .map(TestPlan::getStatus).collect(Collectors.toSet()));
+    }
+
+    /**
+     * Returns the status of a product whose latest test plans have the given statuses: running if any of them is
+     * running, error if any of them erred, success if all of them succeeded and fail otherwise.
+     */
+    private static TestPlanStatus aggregateStatus(Set<TestPlanStatus> statuses) {
+        if (statuses.contains(TestPlanStatus.RUNNING)) {
             return TestPlanStatus.RUNNING;
-        } else if (error) {
+        } else if (statuses.contains(TestPlanStatus.ERROR)) {
             return TestPlanStatus.ERROR;
-        } else {
-            return succesfulPlans.size() == testPlans.size() ? TestPlanStatus.SUCCESS : TestPlanStatus.FAIL;
         }
+        return statuses.stream().allMatch(TestPlanStatus.SUCCESS::equals) ? TestPlanStatus.SUCCESS :
+                TestPlanStatus.FAIL;
     }
 
-    public TestPlanStatus getLastStableStatus(Product product) {
-        List<TestPlan> testPlans = testPlanRepository.getLatestStableTestPlans(product);
-        List<TestPlan> succesfulPlans = testPlans.stream().filter(testPlan ->
-                testPlan.getStatus().equals(TestPlanStatus.SUCCESS)
-        ).collect(Collectors.toList());
-        boolean error = testPlans.stream().anyMatch(testPlan -> TestPlanStatus.ERROR.equals(testPlan.getStatus()));
-        if (error) {
-            return TestPlanStatus.ERROR;
+    /**
+     * Recomputes the {@link ProductSummary} of the given product from its test plans and stores it.
+     * <p>
+     * This needs to be invoked whenever a test plan of the product is added or reaches a final status. The summary
+     * is computed without holding any lock and is then written with a single upsert.
+     *
+     * @param product product to refresh the summary of
+     * @return the refreshed {@link ProductSummary} instance
+     * @throws TestGridDAOException thrown when error on computing or persisting the summary
+     */
+    public ProductSummary refreshProductSummary(Product product) throws TestGridDAOException {
+        ProductSummary summary = new ProductSummary();
+        summary.setProduct(product);
+        TestPlanStatus currentStatus = getCurrentStatus(product);
+        summary.setCurrentStatus(currentStatus);
+        summary.setLastStableStatus(TestPlanStatus.RUNNING.equals(currentStatus) ?
+                getLastStableStatus(product) : currentStatus);
+        TestPlan lastBuild = testPlanRepository.getLastBuild(product);
+        summary.setLastBuildTimestamp(lastBuild == null ? null : lastBuild.getModifiedTimestamp());
+        TestPlan lastFailure = testPlanRepository.getLastFailure(product);
+        summary.setLastFailureTimestamp(lastFailure == null ? null : lastFailure.getModifiedTimestamp());
+        productSummaryRepository.upsert(summary);
+        return productSummaryRepository.findByProduct(product);
+    }
+
+    /**
+     * Updates the {@link ProductSummary} of the given product after one of its test plans reached the given final
+     * status.
+     * <p>
+     * Unlike {@link #refreshProductSummary(Product)}, only the statuses of the latest test plans are read; the last
+     * build and last failure timestamps are moved to the time of this status. The summary is refreshed as a whole
+     * if the product has none yet.
+     *
+     * @param product product to update the summary of
+     * @param status  final status the test plan reached
+     * @throws TestGridDAOException thrown when error on computing or persisting the summary
+     */
+    public void updateProductSummary(Product product, TestPlanStatus status) throws TestGridDAOException {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        ProductSummary summary = new ProductSummary();
+        summary.setProduct(product);
+        TestPlanStatus currentStatus = aggregateStatus(testPlanRepository.getLatestTestPlanStatuses(product, false));
+        summary.setCurrentStatus(currentStatus);
+        summary.setLastStableStatus(TestPlanStatus.RUNNING.equals(currentStatus) ?
+                aggregateStatus(testPlanRepository.getLatestTestPlanStatuses(product, true)) : currentStatus);
+        summary.setLastBuildTimestamp(now);
+        summary.setLastFailureTimestamp(TestPlanStatus.FAIL.equals(status) ? now : null);
+        if (!productSummaryRepository.update(summary)) {
+            refreshProductSummary(product);
         }
-        //check if there are pending test_plans
-        return succesfulPlans.size() == testPlans.size() ? TestPlanStatus.SUCCESS : TestPlanStatus.FAIL;
     }
 
     /**
@@ -198,12 +337,77 @@ public class TestPlanUOW {
     }
 
     /**
-     * Returns a list of testplans that needed to be deleted
-     * @param count number of datasource that need to be saved in each infra combination
-     * @return list of testplans
+     * Returns a page of the test plans history for a give type of infrastructure combination and deployment
+     * pattern, latest first.
+     *
+     * @param testPlan a {@link TestPlan} object containing the infra combination and deployment pattern
+     * @param cursor   cursor token of the page returned by {@link PageCursor#encode()}, or {@code null} for the
+     *                 first page
+     * @param pageSize maximum number of test plans in the page
+     * @return a page of TestPlans corresponding to the query
+     * @throws IllegalArgumentException thrown when the cursor token is invalid or the page size is not positive
+     */
+    public Page<TestPlan> getTestPlanHistory(TestPlan testPlan, String cursor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size should be positive: " + pageSize);
+        }
+        PageCursor pageCursor = StringUtil.isStringNullOrEmpty(cursor) ? null : PageCursor.decode(cursor);
+        return testPlanRepository.getTestPlanHistory(testPlan, pageCursor, pageSize);
+    }
+
+    /**
+     * Removes the test plans older than the last given number of builds of each infra combination of each product,
+     * along with their test scenarios and test cases.
+     * <p>
+     * The test plans to remove are selected once, with a single pass over the test plans, and are then processed in
+     * chunks of {@value #CLEANUP_CHUNK_SIZE}, hence the memory used does not depend on the number of test plans
+     * removed. In a dry run nothing is removed, and the returned report lists what
+     * would have been removed.
+     *
+     * @param buildsToKeep number of latest builds to keep for each infra combination of a product
+     * @param dryRun       whether to only report the test plans to be removed
+     * @param beforeDelete called with each chunk of test plans before they are removed (i.e. to remove their
+     *                     artifacts), not called in a dry run
+     * @return report of the removed test plans
+     * @throws TestGridDAOException thrown when error on removing the test plans
      */
-    public List<String> getTestPlansToCleanup(int count) {
-        return testPlanRepository.getTestPlansToCleanup(count);
+    public TestPlanCleanupReport cleanupTestPlans(int buildsToKeep, boolean dryRun,
+            Consumer<List<TestPlan>> beforeDelete) throws TestGridDAOException {
+        TestPlanCleanupReport report = new TestPlanCleanupReport(dryRun, buildsToKeep);
+        String runId = UUID.randomUUID().toString();
+        try {
+            if (testPlanRepository.markTestPlansToCleanup(runId, buildsToKeep) == 0) {
+                return report;
+            }
+            String afterId = null;
+            List<TestPlanCleanupCandidate> candidates;
+            do {
+                candidates = testPlanRepository.getTestPlansToCleanup(runId, afterId, CLEANUP_CHUNK_SIZE);
+                if (candidates.isEmpty()) {
+                    break;
+                }
+                List<String> testPlanIds = new ArrayList<>(candidates.size());
+                for (TestPlanCleanupCandidate candidate : candidates) {
+                    report.addTestPlan(candidate);
+                    testPlanIds.add(candidate.getTestPlanId());
+                }
+                afterId = testPlanIds.get(testPlanIds.size() - 1);
+
+                if (dryRun) {
+                    long[] children = testPlanRepository.countTestPlanChildren(testPlanIds);
+                    report.addTestScenarios(children[0]);
+                    report.addTestCases(children[1]);
+                } else {
+                    beforeDelete.accept(testPlanRepository.findByIds(testPlanIds));
+                    long[] deleted = testPlanRepository.deleteTestPlans(testPlanIds);
+                    report.addTestScenarios(deleted[1]);
+                    report.addTestCases(deleted[2]);
+                }
+            } while (candidates.size() == CLEANUP_CHUNK_SIZE);
+            return report;
+        } finally {
+            testPlanRepository.clearTestPlansToCleanup(runId);
+        }
     }
 
     /**
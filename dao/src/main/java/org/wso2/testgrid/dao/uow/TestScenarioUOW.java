@@ -23,6 +23,7 @@ import org.wso2.testgrid.dao.EntityManagerHelper;
 import org.wso2.testgrid.dao.TestGridDAOException;
 import org.wso2.testgrid.dao.repository.TestScenarioRepository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import javax.persistence.EntityManager;
@@ -55,6 +56,18 @@ public class TestScenarioUOW {
         return testScenarioRepository.persist(testScenario);
     }
 
+    /**
+     * Persists a collection of {@link TestScenario} instances, along with their test cases, in a single transaction.
+     *
+     * @param testScenarios {@link TestScenario} instances to be persisted
+     * @return the persisted {@link TestScenario} instances
+     * @throws TestGridDAOException thrown when error on persisting the {@link TestScenario} instances
+     */
+    public List<TestScenario> persistTestScenarios(Collection<TestScenario> testScenarios)
+            throws TestGridDAOException {
+        return testScenarioRepository.persistAll(testScenarios);
+    }
+
     /**
      * Returns the {@link TestScenario} instance for the given id.
      *
@@ -0,0 +1,43 @@
+--
+-- Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+--
+-- WSO2 Inc. licenses this file to you under the Apache License,
+-- Version 2.0 (the "License"); you may not use this file except
+-- in compliance with the License.
+-- You may obtain a copy of the License at
+--
+-- http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing,
+-- software distributed under the License is distributed on an
+-- "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+-- KIND, either express or implied.  See the License for the
+-- specific language governing permissions and limitations
+-- under the License.
+--
+
+-- Latest test plan of each infra combination of a deployment pattern (dashboard, test plan history).
+CREATE INDEX idx_test_plan_dp_infra_run ON test_plan (DEPLOYMENTPATTERN_id, infra_parameters, test_run_number);
+
+-- Last stable build / last failure of an infra combination, ordered by the modified time.
+CREATE INDEX idx_test_plan_dp_infra_modified ON test_plan (DEPLOYMENTPATTERN_id, infra_parameters, modified_timestamp);
+
+-- Last failure of a product and failed test plan counts of a deployment pattern.
+CREATE INDEX idx_test_plan_dp_status_modified ON test_plan (DEPLOYMENTPATTERN_id, status, modified_timestamp);
+
+-- Test plans of a deployment pattern created before a given time.
+CREATE INDEX idx_test_plan_dp_created ON test_plan (DEPLOYMENTPATTERN_id, created_timestamp);
+
+-- Joins the latest build of each infra combination back to its test plan.
+CREATE INDEX idx_test_plan_infra_modified ON test_plan (infra_parameters, modified_timestamp);
+
+-- Stale pending / running test plans.
+CREATE INDEX idx_test_plan_status_created ON test_plan (status, created_timestamp);
+
+CREATE INDEX idx_deployment_pattern_product ON deployment_pattern (PRODUCT_id);
+
+CREATE INDEX idx_test_scenario_plan_status ON test_scenario (TESTPLAN_id, status);
+
+CREATE INDEX idx_test_case_scenario_status ON test_case (TESTSCENARIO_id, status);
+
+CREATE INDEX idx_infrastructure_parameter_type ON infrastructure_parameter (type, ready_for_testgrid);
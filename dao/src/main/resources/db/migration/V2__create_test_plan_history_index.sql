@@ -0,0 +1,20 @@
+--
+-- Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+--
+-- WSO2 Inc. licenses this file to you under the Apache License,
+-- Version 2.0 (the "License"); you may not use this file except
+-- in compliance with the License.
+-- You may obtain a copy of the License at
+--
+-- http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing,
+-- software distributed under the License is distributed on an
+-- "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+-- KIND, either express or implied.  See the License for the
+-- specific language governing permissions and limitations
+-- under the License.
+--
+
+-- Keyset paginated history of an infra combination. The primary key completes the (created_timestamp, id) key.
+CREATE INDEX idx_test_plan_dp_infra_created ON test_plan (DEPLOYMENTPATTERN_id, infra_parameters, created_timestamp);
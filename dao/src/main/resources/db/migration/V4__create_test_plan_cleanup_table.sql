@@ -0,0 +1,26 @@
+--
+-- Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+--
+-- WSO2 Inc. licenses this file to you under the Apache License,
+-- Version 2.0 (the "License"); you may not use this file except
+-- in compliance with the License.
+-- You may obtain a copy of the License at
+--
+-- http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing,
+-- software distributed under the License is distributed on an
+-- "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+-- KIND, either express or implied.  See the License for the
+-- specific language governing permissions and limitations
+-- under the License.
+--
+
+-- Test plans selected by a retention cleanup run, ranked once and then removed in chunks of the primary key.
+CREATE TABLE IF NOT EXISTS test_plan_cleanup (
+    run_id VARCHAR(36) NOT NULL,
+    TESTPLAN_id VARCHAR(255) NOT NULL,
+    product_name VARCHAR(255),
+    infra_parameters VARCHAR(255),
+    PRIMARY KEY (run_id, TESTPLAN_id)
+);
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao;
+
+import org.testng.annotations.AfterClass;
+import org.wso2.testgrid.common.DeploymentPattern;
+import org.wso2.testgrid.common.Product;
+import org.wso2.testgrid.common.TestPlan;
+import org.wso2.testgrid.common.TestPlanPhase;
+import org.wso2.testgrid.common.TestPlanStatus;
+import org.wso2.testgrid.common.util.StringUtil;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+import javax.persistence.EntityManager;
+
+/**
+ * Base class of the DAO tests which run against the embedded H2 persistence unit.
+ */
+public abstract class DAOTestBase {
+
+    /**
+     * Persistence unit defined in the test persistence.xml.
+     */
+    protected static final String TESTGRID_PU_H2 = "testgrid_h2";
+
+    /**
+     * Returns the H2 entity manager bound to the current thread.
+     *
+     * @return H2 entity manager
+     */
+    protected EntityManager getEntityManager() {
+        return EntityManagerHelper.getEntityManager(TESTGRID_PU_H2);
+    }
+
+    /**
+     * Inserts a product with the given number of deployment patterns, infra combinations and test runs.
+     * <p>
+     * Test plans of a given infra combination get increasing run numbers and creation timestamps.
+     *
+     * @param deploymentPatterns number of deployment patterns of the product
+     * @param infraCombinations  number of infra combinations of each deployment pattern
+     * @param testRuns           number of test runs of each infra combination
+     * @return persisted product
+     */
+    protected Product createProduct(int deploymentPatterns, int infraCombinations, int testRuns) {
+        EntityManager entityManager = getEntityManager();
+        String randomStr = StringUtil.generateRandomString(8);
+        long now = System.currentTimeMillis();
+        List<TestPlanStatus> statuses = Arrays.asList(TestPlanStatus.SUCCESS, TestPlanStatus.FAIL,
+                TestPlanStatus.ERROR);
+
+        entityManager.getTransaction().begin();
+        Product product = new Product();
+        product.setName("wso2-" + randomStr);
+        entityManager.persist(product);
+        for (int dp = 0; dp < deploymentPatterns; dp++) {
+            DeploymentPattern deploymentPattern = new DeploymentPattern();
+            deploymentPattern.setName("dp-" + dp + "-" + randomStr);
+            deploymentPattern.setProduct(product);
+            entityManager.persist(deploymentPattern);
+            for (int infra = 0; infra < infraCombinations; infra++) {
+                for (int run = 1; run <= testRuns; run++) {
+                    TestPlan testPlan = new TestPlan();
+                    testPlan.setDeploymentPattern(deploymentPattern);
+                    testPlan.setInfraParameters("{\"OS\":\"os-" + infra + "\"}");
+                    testPlan.setTestRunNumber(run);
+                    testPlan.setStatus(statuses.get((dp + infra + run) % statuses.size()));
+                    testPlan.setPhase(TestPlanPhase.TEST_PHASE_SUCCEEDED);
+                    Timestamp timestamp = new Timestamp(now - (testRuns - run) * 60_000L);
+                    testPlan.setCreatedTimestamp(timestamp);
+                    testPlan.setModifiedTimestamp(timestamp);
+                    entityManager.persist(testPlan);
+                }
+            }
+        }
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+        return product;
+    }
+
+    /**
+     * Returns the value at the given percentile of the sorted latencies.
+     *
+     * @param sortedLatencies latencies sorted in the ascending order
+     * @param percentile      percentile between 0 and 100
+     * @return latency at the percentile
+     */
+    protected static long percentile(long[] sortedLatencies, double percentile) {
+        if (sortedLatencies.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(0, Math.min(index, sortedLatencies.length - 1))];
+    }
+
+    @AfterClass
+    public void releaseEntityManagers() {
+        EntityManagerHelper.releaseEntityManager();
+    }
+}
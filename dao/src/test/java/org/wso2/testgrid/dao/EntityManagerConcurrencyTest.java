@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.testgrid.common.Product;
+import org.wso2.testgrid.dao.repository.ProductRepository;
+import org.wso2.testgrid.dao.repository.TestPlanRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import javax.persistence.EntityManager;
+
+/**
+ * Concurrency benchmark of the repository read paths against the embedded H2 database.
+ * <p>
+ * The same read workload is run with a single entity manager shared (and hence serialized) among all the threads,
+ * which is how {@link EntityManagerHelper} used to behave, and with the per-thread entity managers backed by
+ * the connection pool. Throughput and p99 latency of both modes are logged.
+ */
+public class EntityManagerConcurrencyTest extends DAOTestBase {
+
+    private static final Logger logger = LoggerFactory.getLogger(EntityManagerConcurrencyTest.class);
+    private static final int THREADS = 8;
+    private static final int ITERATIONS_PER_THREAD = 200;
+
+    private final List<Product> products = new ArrayList<>();
+
+    @BeforeClass
+    public void init() {
+        for (int i = 0; i < 5; i++) {
+            products.add(createProduct(2, 5, 10));
+        }
+    }
+
+    @Test
+    public void testPerThreadEntityManagers() throws Exception {
+        Set<EntityManager> entityManagers = ConcurrentHashMap.newKeySet();
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executorService.submit(() -> {
+                    try {
+                        EntityManager entityManager = getEntityManager();
+                        entityManagers.add(entityManager);
+                        Assert.assertSame(getEntityManager(), entityManager,
+                                "Entity manager should be reused within the same thread.");
+                    } finally {
+                        EntityManagerHelper.releaseEntityManager();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        Assert.assertEquals(entityManagers.size(), THREADS, "Each thread should get its own entity manager.");
+        for (EntityManager entityManager : entityManagers) {
+            Assert.assertFalse(entityManager.isOpen(), "Released entity managers should be closed.");
+        }
+    }
+
+    @Test
+    public void benchmarkConcurrentReads() throws Exception {
+        EntityManager sharedEntityManager = EntityManagerHelper.getEntityManager(TESTGRID_PU_H2);
+        WorkloadResult shared = runWorkload(() -> sharedEntityManager, true);
+        WorkloadResult perThread = runWorkload(this::getEntityManager, false);
+
+        Assert.assertEquals(perThread.latencies.length, THREADS * ITERATIONS_PER_THREAD);
+        logger.info("Shared entity manager: " + shared);
+        logger.info("Per-thread entity managers: " + perThread);
+    }
+
+    private WorkloadResult runWorkload(Supplier<EntityManager> entityManagerSupplier, boolean serialize)
+            throws Exception {
+        Object lock = new Object();
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        List<Future<List<Long>>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < THREADS; i++) {
+            final int threadIndex = i;
+            futures.add(executorService.submit(() -> {
+                List<Long> latencies = new ArrayList<>();
+                try {
+                    for (int j = 0; j < ITERATIONS_PER_THREAD; j++) {
+                        Product product = products.get((threadIndex + j) % products.size());
+                        long operationStart = System.nanoTime();
+                        if (serialize) {
+                            synchronized (lock) {
+                                read(entityManagerSupplier.get(), product, j);
+                            }
+                        } else {
+                            read(entityManagerSupplier.get(), product, j);
+                        }
+                        latencies.add(System.nanoTime() - operationStart);
+                    }
+                } finally {
+                    if (!serialize) {
+                        EntityManagerHelper.releaseEntityManager();
+                    }
+                }
+                return latencies;
+            }));
+        }
+        List<Long> latencies = new ArrayList<>();
+        try {
+            for (Future<List<Long>> future : futures) {
+                latencies.addAll(future.get());
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        return new WorkloadResult(latencies, System.nanoTime() - start);
+    }
+
+    private void read(EntityManager entityManager, Product product, int iteration) throws TestGridDAOException {
+        if (iteration % 2 == 0) {
+            new TestPlanRepository(entityManager).getLatestTestPlans(product);
+        } else {
+            new ProductRepository(entityManager).findAll();
+        }
+    }
+
+    /**
+     * Latencies and wall clock time of a single benchmark run.
+     */
+    private static class WorkloadResult {
+        private final long[] latencies;
+        private final long elapsedNanos;
+
+        WorkloadResult(List<Long> latencies, long elapsedNanos) {
+            this.latencies = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            double throughput = latencies.length / (elapsedNanos / 1_000_000_000.0);
+            return String.format("%d reads in %d ms, throughput %.1f ops/s, p50 %.2f ms, p99 %.2f ms",
+                    latencies.length, elapsedNanos / 1_000_000, throughput,
+                    percentile(latencies, 50) / 1_000_000.0, percentile(latencies, 99) / 1_000_000.0);
+        }
+    }
+}
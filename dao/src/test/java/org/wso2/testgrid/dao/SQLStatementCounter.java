@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao;
+
+import org.eclipse.persistence.sessions.SessionEvent;
+import org.eclipse.persistence.sessions.SessionEventAdapter;
+
+/**
+ * Session event listener which counts the SQL statements executed by the current thread.
+ * <p>
+ * Registered in the test persistence.xml through the {@code eclipselink.session-event-listener} property.
+ */
+public class SQLStatementCounter extends SessionEventAdapter {
+
+    private static final ThreadLocal<int[]> count = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Override
+    public void preExecuteCall(SessionEvent event) {
+        count.get()[0]++;
+    }
+
+    /**
+     * Resets the statement count of the current thread.
+     */
+    public static void reset() {
+        count.get()[0] = 0;
+    }
+
+    /**
+     * Returns the number of statements executed by the current thread since the last reset.
+     *
+     * @return statement count
+     */
+    public static int getCount() {
+        return count.get()[0];
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import javax.persistence.EntityManager;
+
+/**
+ * Verifies that the schema migrations are applied once and upgrade an existing database in place.
+ */
+public class SchemaMigratorTest extends DAOTestBase {
+
+    @Test
+    public void testMigrationsAppliedOnFactoryCreation() throws TestGridDAOException {
+        Assert.assertEquals(appliedVersionCount(), SchemaMigrator.MIGRATIONS.size());
+        Assert.assertTrue(indexExists("IDX_TEST_PLAN_DP_INFRA_RUN"));
+
+        Assert.assertEquals(SchemaMigrator.migrate(getEntityManager()), 0, "Migrations should be applied once.");
+    }
+
+    @Test(dependsOnMethods = "testMigrationsAppliedOnFactoryCreation")
+    public void testExistingDatabaseUpgradedInPlace() throws TestGridDAOException {
+        // Simulate a database created before the indexes were introduced, with one index created by hand.
+        EntityManager entityManager = getEntityManager();
+        entityManager.getTransaction().begin();
+        for (String statement : SchemaMigrator.readStatements(SchemaMigrator.MIGRATIONS.get(0))) {
+            String indexName = statement.split("\\s+")[2];
+            if (!"idx_test_plan_dp_infra_run".equals(indexName)) {
+                entityManager.createNativeQuery("DROP INDEX " + indexName).executeUpdate();
+            }
+        }
+        entityManager.createNativeQuery("DELETE FROM " + SchemaMigrator.SCHEMA_VERSION_TABLE).executeUpdate();
+        entityManager.getTransaction().commit();
+        Assert.assertFalse(indexExists("IDX_TEST_CASE_SCENARIO_STATUS"));
+
+        Assert.assertEquals(SchemaMigrator.migrate(entityManager), SchemaMigrator.MIGRATIONS.size());
+        Assert.assertTrue(indexExists("IDX_TEST_CASE_SCENARIO_STATUS"));
+        Assert.assertTrue(indexExists("IDX_TEST_PLAN_DP_INFRA_RUN"));
+        Assert.assertEquals(appliedVersionCount(), SchemaMigrator.MIGRATIONS.size());
+    }
+
+    private long appliedVersionCount() {
+        return ((Number) getEntityManager()
+                .createNativeQuery("SELECT COUNT(*) FROM " + SchemaMigrator.SCHEMA_VERSION_TABLE)
+                .getSingleResult()).longValue();
+    }
+
+    private boolean indexExists(String indexName) {
+        @SuppressWarnings("unchecked")
+        List<Object> indexes = getEntityManager()
+                .createNativeQuery("SELECT INDEX_NAME FROM INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME = ?")
+                .setParameter(1, indexName)
+                .getResultList();
+        return !indexes.isEmpty();
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.testgrid.common.Product;
+import org.wso2.testgrid.common.Status;
+import org.wso2.testgrid.common.TestCase;
+import org.wso2.testgrid.common.TestPlan;
+import org.wso2.testgrid.common.TestScenario;
+import org.wso2.testgrid.dao.DAOTestBase;
+import org.wso2.testgrid.dao.TestGridDAOException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares persisting test scenarios one by one with the batched, single-transaction bulk persist.
+ */
+public class BulkPersistenceTest extends DAOTestBase {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkPersistenceTest.class);
+    private static final int SCENARIOS = 40;
+    private static final int TEST_CASES_PER_SCENARIO = 250;
+
+    private TestPlan perEntityTestPlan;
+    private TestPlan bulkTestPlan;
+
+    @BeforeClass
+    public void init() {
+        Product product = createProduct(1, 1, 2);
+        List<TestPlan> testPlans = getEntityManager()
+                .createQuery("SELECT tp FROM TestPlan tp WHERE tp.deploymentPattern.product.id = :productId "
+                        + "ORDER BY tp.testRunNumber", TestPlan.class)
+                .setParameter("productId", product.getId())
+                .getResultList();
+        perEntityTestPlan = testPlans.get(0);
+        bulkTestPlan = testPlans.get(1);
+        getEntityManager().clear();
+    }
+
+    @Test
+    public void testPersistAllAssignsIdsAndKeepsTestPlan() throws TestGridDAOException {
+        TestScenarioRepository testScenarioRepository = new TestScenarioRepository(getEntityManager());
+        List<TestScenario> testScenarios = createTestScenarios(perEntityTestPlan, 3, 5, "ids");
+
+        List<TestScenario> persisted = testScenarioRepository.persistAll(testScenarios);
+
+        Assert.assertEquals(persisted.size(), testScenarios.size());
+        for (TestScenario testScenario : testScenarios) {
+            Assert.assertNotNull(testScenario.getId());
+            Assert.assertSame(testScenario.getTestPlan(), perEntityTestPlan);
+            testScenario.getTestCases().forEach(testCase -> Assert.assertNotNull(testCase.getId()));
+        }
+
+        // Persisting the same instances again updates the existing rows.
+        testScenarios.get(0).setStatus(Status.FAIL);
+        testScenarioRepository.persistAll(testScenarios);
+        getEntityManager().clear();
+        Assert.assertEquals(testScenarioRepository.findByPrimaryKey(testScenarios.get(0).getId()).getStatus(),
+                Status.FAIL);
+        Assert.assertEquals(countTestCases(perEntityTestPlan), 3 * 5);
+    }
+
+    @Test(dependsOnMethods = "testPersistAllAssignsIdsAndKeepsTestPlan")
+    public void benchmarkBulkPersistence() throws TestGridDAOException {
+        TestScenarioRepository testScenarioRepository = new TestScenarioRepository(getEntityManager());
+        long existingTestCases = countTestCases(perEntityTestPlan);
+
+        List<TestScenario> perEntityScenarios = createTestScenarios(perEntityTestPlan, SCENARIOS,
+                TEST_CASES_PER_SCENARIO, "per-entity");
+        long start = System.nanoTime();
+        for (TestScenario testScenario : perEntityScenarios) {
+            testScenarioRepository.persist(testScenario);
+        }
+        long perEntityNanos = System.nanoTime() - start;
+        getEntityManager().clear();
+
+        List<TestScenario> bulkScenarios = createTestScenarios(bulkTestPlan, SCENARIOS,
+                TEST_CASES_PER_SCENARIO, "bulk");
+        start = System.nanoTime();
+        testScenarioRepository.persistAll(bulkScenarios);
+        long bulkNanos = System.nanoTime() - start;
+        getEntityManager().clear();
+
+        long expected = (long) SCENARIOS * TEST_CASES_PER_SCENARIO;
+        Assert.assertEquals(countTestCases(perEntityTestPlan) - existingTestCases, expected);
+        Assert.assertEquals(countTestCases(bulkTestPlan), expected);
+
+        logger.info(String.format("Persisted %d scenarios with %d test cases: per entity %d ms (%.0f rows/s), "
+                        + "bulk %d ms (%.0f rows/s)", SCENARIOS, expected,
+                TimeUnit.NANOSECONDS.toMillis(perEntityNanos), rowsPerSecond(expected, perEntityNanos),
+                TimeUnit.NANOSECONDS.toMillis(bulkNanos), rowsPerSecond(expected, bulkNanos)));
+    }
+
+    private List<TestScenario> createTestScenarios(TestPlan testPlan, int scenarios, int testCases, String prefix) {
+        List<TestScenario> testScenarios = new ArrayList<>(scenarios);
+        for (int i = 0; i < scenarios; i++) {
+            TestScenario testScenario = new TestScenario();
+            testScenario.setName(prefix + "-scenario-" + i);
+            testScenario.setDescription(prefix + " scenario " + i);
+            testScenario.setDir(prefix + "-scenario-" + i);
+            testScenario.setStatus(Status.SUCCESS);
+            testScenario.setTestPlan(testPlan);
+            for (int j = 0; j < testCases; j++) {
+                TestCase testCase = new TestCase();
+                testCase.setName(prefix + "-test-" + i + "-" + j);
+                testCase.setSuccess(j % 10 == 0 ? Status.FAIL : Status.SUCCESS);
+                testCase.setFailureMessage(j % 10 == 0 ? "Assertion failed" : null);
+                testCase.setTestScenario(testScenario);
+                testScenario.addTestCase(testCase);
+            }
+            testScenarios.add(testScenario);
+        }
+        return testScenarios;
+    }
+
+    private long countTestCases(TestPlan testPlan) {
+        return getEntityManager()
+                .createQuery("SELECT COUNT(tc) FROM TestCase tc WHERE tc.testScenario.testPlan.id = :testPlanId",
+                        Long.class)
+                .setParameter("testPlanId", testPlan.getId())
+                .getSingleResult();
+    }
+
+    private static double rowsPerSecond(long rows, long nanos) {
+        return rows * (double) TimeUnit.SECONDS.toNanos(1) / Math.max(nanos, 1);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.testgrid.common.Product;
+import org.wso2.testgrid.common.TestPlan;
+import org.wso2.testgrid.dao.DAOTestBase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+/**
+ * Verifies the bind-parameterized queries of {@link NativeQueryBuilder} and benchmarks repeated
+ * {@link TestPlanRepository#getLatestTestPlans(Product)} calls with and without the prepared statement cache.
+ */
+public class NativeQueryBuilderTest extends DAOTestBase {
+
+    private static final Logger logger = LoggerFactory.getLogger(NativeQueryBuilderTest.class);
+    private static final int ITERATIONS = Integer.getInteger("testgrid.benchmark.latestTestPlansCalls", 2_000);
+
+    @Test
+    public void testBucketSize() {
+        int[][] expectations = { { 0, 1 }, { 1, 1 }, { 2, 2 }, { 3, 4 }, { 5, 8 }, { 8, 8 }, { 100, 128 },
+                { 256, 256 }, { 257, 512 }, { 600, 768 } };
+        for (int[] expectation : expectations) {
+            Assert.assertEquals(NativeQueryBuilder.bucketSize(expectation[0]), expectation[1],
+                    "Bucket of " + expectation[0]);
+        }
+    }
+
+    @Test
+    public void testInListIsPaddedWithLastValue() {
+        NativeQueryBuilder queryBuilder = new NativeQueryBuilder()
+                .append("select * from test_plan where status = ")
+                .bind("FAIL")
+                .append(" and id in (")
+                .bindInList(Arrays.asList("a", "b", "c"))
+                .append(")");
+
+        Assert.assertEquals(queryBuilder.getSql(), "select * from test_plan where status = ? and id in (?, ?, ?, ?)");
+        Assert.assertEquals(queryBuilder.getParameters(), Arrays.asList("FAIL", "a", "b", "c", "c"));
+        Assert.assertThrows(IllegalArgumentException.class,
+                () -> new NativeQueryBuilder().bindInList(Collections.emptyList()));
+    }
+
+    @Test
+    public void testStatementsPerBucket() {
+        Set<String> statements = new HashSet<>();
+        for (int size = 1; size <= 300; size++) {
+            List<String> ids = IntStream.range(0, size).mapToObj(String::valueOf).collect(Collectors.toList());
+            NativeQueryBuilder queryBuilder = TestPlanRepository.latestTestPlansQuery(ids, false);
+            Assert.assertFalse(queryBuilder.getSql().contains("'0'"), "Values should not be inlined.");
+            statements.add(queryBuilder.getSql());
+        }
+        // Buckets 1, 2, 4, ..., 256 and 512
+        Assert.assertEquals(statements.size(), 10);
+    }
+
+    @Test
+    public void testPaddingDoesNotChangeResults() {
+        Product product = createProduct(3, 4, 2);
+        TestPlanRepository testPlanRepository = new TestPlanRepository(getEntityManager());
+
+        List<TestPlan> latestTestPlans = testPlanRepository.getLatestTestPlans(product);
+        Assert.assertEquals(latestTestPlans.size(), 3 * 4);
+        for (TestPlan testPlan : latestTestPlans) {
+            Assert.assertEquals(testPlan.getTestRunNumber(), 2);
+        }
+        List<String> ids = latestTestPlans.stream().map(TestPlan::getId).collect(Collectors.toList());
+        Assert.assertEquals(testPlanRepository.getTestPlanStatuses(ids).size(), ids.size());
+        Assert.assertEquals(testPlanRepository.findByIds(ids.subList(0, 5)).size(), 5);
+    }
+
+    @Test
+    public void benchmarkLatestTestPlans() {
+        List<Product> products = new ArrayList<>();
+        for (int deploymentPatterns = 1; deploymentPatterns <= 6; deploymentPatterns++) {
+            products.add(createProduct(deploymentPatterns, 5, 3));
+        }
+
+        long[] cached = runLatestTestPlans(getEntityManager(), products);
+
+        Map<String, String> properties = new HashMap<>();
+        properties.put("eclipselink.session-name", "testgrid_h2_without_statement_cache");
+        properties.put("eclipselink.ddl-generation", "none");
+        properties.put("eclipselink.jdbc.cache-statements", "false");
+        EntityManagerFactory entityManagerFactory = Persistence.createEntityManagerFactory(TESTGRID_PU_H2,
+                properties);
+        long[] uncached;
+        try {
+            EntityManager entityManager = entityManagerFactory.createEntityManager();
+            uncached = runLatestTestPlans(entityManager, products);
+            entityManager.close();
+        } finally {
+            entityManagerFactory.close();
+        }
+
+        logger.info(String.format("getLatestTestPlans over %d calls: p50 %.3f ms, p99 %.3f ms with the statement "
+                        + "cache; p50 %.3f ms, p99 %.3f ms without", ITERATIONS, percentile(cached, 50) / 1e6,
+                percentile(cached, 99) / 1e6, percentile(uncached, 50) / 1e6, percentile(uncached, 99) / 1e6));
+    }
+
+    /**
+     * Calls {@link TestPlanRepository#getLatestTestPlans(Product)} for the given products in turns, and returns the
+     * sorted latencies of the calls.
+     */
+    private static long[] runLatestTestPlans(EntityManager entityManager, List<Product> products) {
+        TestPlanRepository testPlanRepository = new TestPlanRepository(entityManager);
+        // Warm up
+        for (Product product : products) {
+            testPlanRepository.getLatestTestPlans(product);
+        }
+        long[] latencies = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            Product product = products.get(i % products.size());
+            long start = System.nanoTime();
+            List<TestPlan> testPlans = testPlanRepository.getLatestTestPlans(product);
+            latencies[i] = System.nanoTime() - start;
+            Assert.assertEquals(testPlans.size(), (i % products.size() + 1) * 5);
+            entityManager.clear();
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao.repository;
+
+import com.google.common.collect.LinkedListMultimap;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.testgrid.common.DeploymentPattern;
+import org.wso2.testgrid.common.Product;
+import org.wso2.testgrid.common.TestPlan;
+import org.wso2.testgrid.common.TestPlanStatus;
+import org.wso2.testgrid.dao.DAOTestBase;
+import org.wso2.testgrid.dao.SQLStatementCounter;
+import org.wso2.testgrid.dao.SortOrder;
+import org.wso2.testgrid.dao.TestGridDAOException;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityManager;
+
+/**
+ * Verifies that the repository read paths execute a constant number of SQL statements regardless of the
+ * number of entities they return, while still returning fresh entities.
+ */
+public class RepositoryStatementCountTest extends DAOTestBase {
+
+    private Product smallProduct;
+    private Product largeProduct;
+    private Map<String, Object> smallPlansParams;
+    private Map<String, Object> largePlansParams;
+
+    @BeforeClass
+    public void init() throws TestGridDAOException {
+        smallProduct = createProduct(1, 2, 5);
+        largeProduct = createProduct(1, 20, 25);
+        DeploymentPatternRepository deploymentPatternRepository = new DeploymentPatternRepository(
+                getEntityManager());
+        DeploymentPattern smallDeploymentPattern = deploymentPatternRepository.findByFields(
+                params(DeploymentPattern.PRODUCT_COLUMN, smallProduct)).get(0);
+        DeploymentPattern largeDeploymentPattern = deploymentPatternRepository.findByFields(
+                params(DeploymentPattern.PRODUCT_COLUMN, largeProduct)).get(0);
+        smallPlansParams = params(TestPlan.DEPLOYMENT_PATTERN_COLUMN, smallDeploymentPattern);
+        largePlansParams = params(TestPlan.DEPLOYMENT_PATTERN_COLUMN, largeDeploymentPattern);
+    }
+
+    @Test
+    public void testFindByFieldsStatementCount() throws TestGridDAOException {
+        TestPlanRepository testPlanRepository = new TestPlanRepository(getEntityManager());
+        int small = countStatements(() -> testPlanRepository.findByFields(smallPlansParams), 10);
+        int large = countStatements(() -> testPlanRepository.findByFields(largePlansParams), 500);
+        Assert.assertEquals(large, small, "Statement count must not depend on the result size.");
+        Assert.assertEquals(large, 1, "findByFields should execute a single statement.");
+    }
+
+    @Test
+    public void testFindAllStatementCount() throws TestGridDAOException {
+        ProductRepository productRepository = new ProductRepository(getEntityManager());
+        int count = countStatements(productRepository::findAll, -1);
+        Assert.assertEquals(count, 1, "findAll should execute a single statement.");
+    }
+
+    @Test
+    public void testOrderByFieldsStatementCount() throws TestGridDAOException {
+        TestPlanRepository testPlanRepository = new TestPlanRepository(getEntityManager());
+        LinkedListMultimap<SortOrder, String> orderBy = LinkedListMultimap.create();
+        orderBy.put(SortOrder.DESCENDING, TestPlan.TESTRUN_NUMBER_COLUMN);
+        int small = countStatements(() -> testPlanRepository.orderByFields(smallPlansParams, orderBy), 10);
+        int large = countStatements(() -> testPlanRepository.orderByFields(largePlansParams, orderBy), 500);
+        Assert.assertEquals(large, small, "Statement count must not depend on the result size.");
+        Assert.assertEquals(large, 1, "orderByFields should execute a single statement.");
+    }
+
+    @Test
+    public void testNativeQueryStatementCount() throws TestGridDAOException {
+        TestPlanRepository testPlanRepository = new TestPlanRepository(getEntityManager());
+        int small = countStatements(() -> testPlanRepository.getLatestTestPlans(smallProduct), 2);
+        int large = countStatements(() -> testPlanRepository.getLatestTestPlans(largeProduct), 20);
+        Assert.assertEquals(large, small, "Statement count must not depend on the result size.");
+        Assert.assertEquals(large, 2, "getLatestTestPlans should execute the deployment id and test plan "
+                + "queries only.");
+    }
+
+    @Test
+    public void testQueryReturnsFreshEntities() throws TestGridDAOException {
+        EntityManager entityManager = getEntityManager();
+        TestPlanRepository testPlanRepository = new TestPlanRepository(entityManager);
+        List<TestPlan> testPlans = testPlanRepository.findByFields(smallPlansParams);
+        TestPlan testPlan = testPlans.get(0);
+        TestPlanStatus newStatus = testPlan.getStatus() == TestPlanStatus.RUNNING ?
+                TestPlanStatus.SUCCESS : TestPlanStatus.RUNNING;
+
+        // Update the row behind the back of the entity manager which holds the test plan
+        EntityManager otherEntityManager = entityManager.getEntityManagerFactory().createEntityManager();
+        try {
+            otherEntityManager.getTransaction().begin();
+            otherEntityManager.createNativeQuery("UPDATE test_plan SET status = ? WHERE id = ?")
+                    .setParameter(1, newStatus.name())
+                    .setParameter(2, testPlan.getId())
+                    .executeUpdate();
+            otherEntityManager.getTransaction().commit();
+        } finally {
+            otherEntityManager.close();
+        }
+
+        SQLStatementCounter.reset();
+        List<TestPlan> refreshed = testPlanRepository.findByFields(smallPlansParams);
+        Assert.assertEquals(SQLStatementCounter.getCount(), 1);
+        TestPlan refreshedTestPlan = refreshed.stream()
+                .filter(plan -> plan.getId().equals(testPlan.getId()))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("Test plan not found: " + testPlan.getId()));
+        Assert.assertEquals(refreshedTestPlan.getStatus(), newStatus, "Query returned a stale test plan.");
+    }
+
+    /**
+     * Runs the given read once to warm up the persistence context, and returns the number of statements executed
+     * by a second run.
+     *
+     * @param read           repository read
+     * @param expectedResult expected result size, or -1 to skip the check
+     * @return statement count of the second run
+     */
+    private int countStatements(RepositoryRead read, int expectedResult) throws TestGridDAOException {
+        read.execute();
+        SQLStatementCounter.reset();
+        List<?> result = read.execute();
+        int count = SQLStatementCounter.getCount();
+        if (expectedResult >= 0) {
+            Assert.assertEquals(result.size(), expectedResult);
+        }
+        return count;
+    }
+
+    private static Map<String, Object> params(String field, Object value) {
+        return Collections.singletonMap(field, value);
+    }
+
+    /**
+     * A repository call returning a list.
+     */
+    @FunctionalInterface
+    private interface RepositoryRead {
+        List<?> execute() throws TestGridDAOException;
+    }
+}
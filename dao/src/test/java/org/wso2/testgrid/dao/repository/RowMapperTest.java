@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+import org.wso2.testgrid.dao.TestGridDAOException;
+import org.wso2.testgrid.dao.dto.TestCaseFailureResultDTO;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Verifies {@link RowMapper} against the previous reflection based mapping of {@link TestPlanRepository#mapObject}.
+ * <p>
+ * The benchmark of both depends on the JIT and the garbage collector, hence it only runs when
+ * {@code -Dtestgrid.benchmark=true} is given.
+ */
+public class RowMapperTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(RowMapperTest.class);
+    private static final int ROWS = Integer.getInteger("testgrid.benchmark.mappedRows", 100_000);
+    private static final int ROUNDS = 5;
+    private static final boolean BENCHMARK = Boolean.getBoolean("testgrid.benchmark");
+
+    @Test
+    public void testMapsLikePreviousMapper() throws TestGridDAOException {
+        List<Object[]> rows = rows(100);
+        rows.add(new Object[] { "testWithoutMessage", null, "{\"OS\":\"CentOS\"}" });
+
+        List<TestCaseFailureResultDTO> mapped = RowMapper.of(TestCaseFailureResultDTO.class).mapAll(rows);
+        List<TestCaseFailureResultDTO> expected = previousMapObject(TestCaseFailureResultDTO.class, rows);
+        Assert.assertEquals(mapped.size(), expected.size());
+        for (int i = 0; i < mapped.size(); i++) {
+            Assert.assertEquals(mapped.get(i).getName(), expected.get(i).getName());
+            Assert.assertEquals(mapped.get(i).getFailureMessage(), expected.get(i).getFailureMessage());
+            Assert.assertEquals(mapped.get(i).getInfraParameters(), expected.get(i).getInfraParameters());
+        }
+        Assert.assertSame(RowMapper.of(TestCaseFailureResultDTO.class), RowMapper.of(TestCaseFailureResultDTO.class));
+    }
+
+    @Test
+    public void testConstructorChosenByColumnTypes() throws TestGridDAOException {
+        RowMapper<Stat> rowMapper = RowMapper.of(Stat.class);
+        Assert.assertEquals(rowMapper.map(new Object[] { "dp", 3L }).count, 3L);
+        Assert.assertEquals(rowMapper.map(new Object[] { "dp", "7" }).count, 7L);
+        Assert.assertEquals(rowMapper.map(new Object[] { "dp" }).count, 0L);
+        Assert.assertNull(rowMapper.map(new Object[] { null, null }).name);
+    }
+
+    @Test
+    public void testMismatchedRow() {
+        RowMapper<TestCaseFailureResultDTO> rowMapper = RowMapper.of(TestCaseFailureResultDTO.class);
+        Assert.assertThrows(TestGridDAOException.class, () -> rowMapper.map(new Object[] { "name", 1L, "{}" }));
+        Assert.assertThrows(TestGridDAOException.class, () -> rowMapper.map(new Object[] { "name" }));
+        Assert.assertThrows(TestGridDAOException.class, () -> RowMapper.of(Stat.class).map(new Object[] { 1, 2 }));
+    }
+
+    @Test
+    public void benchmarkRowMapping() throws TestGridDAOException {
+        if (!BENCHMARK) {
+            throw new SkipException("Benchmarks run only with -Dtestgrid.benchmark=true.");
+        }
+        List<Object[]> rows = rows(ROWS);
+        RowMapper<TestCaseFailureResultDTO> rowMapper = RowMapper.of(TestCaseFailureResultDTO.class);
+        // Warm up
+        previousMapObject(TestCaseFailureResultDTO.class, rows);
+        rowMapper.mapAll(rows);
+
+        long previousNanos = Long.MAX_VALUE;
+        long previousBytes = Long.MAX_VALUE;
+        long nanos = Long.MAX_VALUE;
+        long bytes = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long allocationStart = allocatedBytes();
+            long start = System.nanoTime();
+            int size = previousMapObject(TestCaseFailureResultDTO.class, rows).size();
+            previousNanos = Math.min(previousNanos, System.nanoTime() - start);
+            previousBytes = Math.min(previousBytes, allocatedBytes() - allocationStart);
+            Assert.assertEquals(size, ROWS);
+
+            allocationStart = allocatedBytes();
+            start = System.nanoTime();
+            size = rowMapper.mapAll(rows).size();
+            nanos = Math.min(nanos, System.nanoTime() - start);
+            bytes = Math.min(bytes, allocatedBytes() - allocationStart);
+            Assert.assertEquals(size, ROWS);
+        }
+        logger.info(String.format("Mapping %d rows: previous mapper %.0f rows/ms, %d bytes/row; row mapper "
+                        + "%.0f rows/ms, %d bytes/row", ROWS, ROWS / (previousNanos / 1e6), previousBytes / ROWS,
+                ROWS / (nanos / 1e6), bytes / ROWS));
+        if (bytes > 0) {
+            Assert.assertTrue(bytes < previousBytes, "Row mapper should allocate less than the previous mapper.");
+        }
+    }
+
+    private static List<Object[]> rows(int count) {
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[] { "test" + i, "Expected " + i + " but found " + (i + 1),
+                    "{\"OS\":\"Ubuntu\",\"JDK\":\"ORACLE_JDK" + (i % 3 + 7) + "\"}" });
+        }
+        return rows;
+    }
+
+    /**
+     * Previous implementation of {@link TestPlanRepository#mapObject}, which looked up the constructor of every row.
+     */
+    private static <T> List<T> previousMapObject(Class<T> type, List<Object[]> records) throws TestGridDAOException {
+        List<T> result = new LinkedList<>();
+        for (Object[] record : records) {
+            List<Class<?>> tupleTypes = new ArrayList<>();
+            for (Object field : record) {
+                tupleTypes.add(field == null ? String.class : field.getClass());
+            }
+            try {
+                Constructor<T> ctor = type.getConstructor(tupleTypes.toArray(new Class<?>[record.length]));
+                result.add(ctor.newInstance(record));
+            } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException |
+                    InstantiationException e) {
+                throw new TestGridDAOException("Error occurred while mapping " + Arrays.toString(record), e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread so far, or zero if the JVM does not measure it.
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threadMXBean)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    /**
+     * Row type with several constructors of the same arity.
+     */
+    public static class Stat {
+
+        private final String name;
+        private final long count;
+
+        public Stat(String name) {
+            this(name, 0L);
+        }
+
+        public Stat(String name, Long count) {
+            this.name = name;
+            this.count = count == null ? 0 : count;
+        }
+
+        public Stat(String name, String count) {
+            this(name, count == null ? null : Long.valueOf(count));
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.testgrid.common.TestPlan;
+import org.wso2.testgrid.dao.DAOTestBase;
+import org.wso2.testgrid.dao.TestGridDAOException;
+import org.wso2.testgrid.dao.dto.TestPlanCleanupReport;
+import org.wso2.testgrid.dao.uow.TestPlanUOW;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+
+/**
+ * Compares the set based test plan cleanup against the previous algorithm, which ranked the test plans of each
+ * infra combination of each product with a separate query.
+ * <p>
+ * The cleanup applies to every product, hence each test starts from a database without test plans.
+ */
+public class TestPlanCleanupTest extends DAOTestBase {
+
+    private static final Logger logger = LoggerFactory.getLogger(TestPlanCleanupTest.class);
+    private static final int BUILDS_TO_KEEP = 3;
+    private static final int BENCHMARK_TEST_CASES = Integer.getInteger("testgrid.benchmark.cleanupTestCases",
+            200_000);
+
+    @BeforeMethod
+    public void clearTestPlans() {
+        EntityManager entityManager = getEntityManager();
+        entityManager.getTransaction().begin();
+        entityManager.createNativeQuery("DELETE FROM test_case").executeUpdate();
+        entityManager.createNativeQuery("DELETE FROM test_scenario").executeUpdate();
+        entityManager.createNativeQuery("DELETE FROM test_plan").executeUpdate();
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+    }
+
+    @Test
+    public void testCleanupMatchesPreviousAlgorithm() throws TestGridDAOException {
+        createProduct(2, 3, 8);
+        createProduct(1, 2, 2);
+        createProduct(3, 1, 5);
+        insertTestPlanWithoutInfraCombination();
+        insertChildren(2, 3);
+
+        Set<String> expected = previousCleanupCandidates(BUILDS_TO_KEEP);
+        TestPlanRepository testPlanRepository = new TestPlanRepository(getEntityManager());
+        String runId = UUID.randomUUID().toString();
+        Assert.assertEquals(testPlanRepository.markTestPlansToCleanup(runId, BUILDS_TO_KEEP), expected.size());
+        Set<String> candidates = new HashSet<>();
+        String afterId = null;
+        List<String> chunk;
+        do {
+            // A small chunk makes the keyset span several chunks.
+            chunk = testPlanRepository.getTestPlansToCleanup(runId, afterId, 7).stream()
+                    .map(candidate -> candidate.getTestPlanId())
+                    .collect(Collectors.toList());
+            candidates.addAll(chunk);
+            afterId = chunk.isEmpty() ? afterId : chunk.get(chunk.size() - 1);
+        } while (chunk.size() == 7);
+        testPlanRepository.clearTestPlansToCleanup(runId);
+
+        // Deployment patterns of a product share the infra combinations, e.g. 16 test plans of which 13 go.
+        Assert.assertEquals(expected.size(), 3 * 13 + 12);
+        Assert.assertEquals(candidates, expected);
+
+        long testPlans = count("SELECT COUNT(*) FROM test_plan");
+        TestPlanUOW testPlanUOW = new TestPlanUOW(getEntityManager());
+        List<String> removed = new ArrayList<>();
+        TestPlanCleanupReport report = testPlanUOW.cleanupTestPlans(BUILDS_TO_KEEP, false,
+                plans -> plans.forEach(plan -> removed.add(plan.getId())));
+
+        Assert.assertEquals(new HashSet<>(removed), expected);
+        Assert.assertEquals(report.getTestPlans(), expected.size());
+        Assert.assertEquals(report.getTestScenarios(), expected.size() * 2L);
+        Assert.assertEquals(report.getTestCases(), expected.size() * 6L);
+        Assert.assertEquals(count("SELECT COUNT(*) FROM test_plan"), testPlans - expected.size());
+        Assert.assertTrue(previousCleanupCandidates(BUILDS_TO_KEEP).isEmpty());
+        Assert.assertEquals(count("SELECT COUNT(*) FROM test_scenario ts LEFT JOIN test_plan tp ON "
+                + "tp.id = ts.TESTPLAN_id WHERE tp.id IS NULL"), 0);
+        Assert.assertEquals(count("SELECT COUNT(*) FROM test_case tc LEFT JOIN test_scenario ts ON "
+                + "ts.id = tc.TESTSCENARIO_id WHERE ts.id IS NULL"), 0);
+        Assert.assertEquals(count("SELECT COUNT(*) FROM test_case"), (testPlans - expected.size()) * 6);
+        Assert.assertEquals(count("SELECT COUNT(*) FROM test_plan_cleanup"), 0,
+                "The selected test plans should not be kept after the cleanup.");
+    }
+
+    @Test
+    public void testDryRunRemovesNothing() throws TestGridDAOException {
+        createProduct(1, 2, 6);
+        insertChildren(1, 4);
+        long testPlans = count("SELECT COUNT(*) FROM test_plan");
+        long testCases = count("SELECT COUNT(*) FROM test_case");
+
+        TestPlanCleanupReport report = new TestPlanUOW(getEntityManager()).cleanupTestPlans(BUILDS_TO_KEEP, true,
+                plans -> Assert.fail("Test plans should not be removed in a dry run."));
+
+        Assert.assertTrue(report.isDryRun());
+        Assert.assertEquals(report.getTestPlans(), 6);
+        Assert.assertEquals(report.getTestScenarios(), 6);
+        Assert.assertEquals(report.getTestCases(), 24);
+        Assert.assertEquals(report.getTestPlansByInfraCombination().size(), 1);
+        Assert.assertEquals(report.getTestPlansByInfraCombination().values().iterator().next().size(), 2);
+        Assert.assertEquals(count("SELECT COUNT(*) FROM test_plan"), testPlans);
+        Assert.assertEquals(count("SELECT COUNT(*) FROM test_case"), testCases);
+        logger.info(report.toString());
+    }
+
+    @Test
+    public void benchmarkCleanup() throws TestGridDAOException {
+        createProduct(2, 5, 10);
+        int testPlans = 2 * 5 * 10;
+        insertChildren(2, Math.max(1, BENCHMARK_TEST_CASES / (testPlans * 2)));
+        long testCases = count("SELECT COUNT(*) FROM test_case");
+
+        long start = System.nanoTime();
+        Set<String> expected = previousCleanupCandidates(BUILDS_TO_KEEP);
+        long previousSelection = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        TestPlanCleanupReport report = new TestPlanUOW(getEntityManager()).cleanupTestPlans(BUILDS_TO_KEEP, false,
+                plans -> { });
+        long cleanup = System.nanoTime() - start;
+
+        logger.info(String.format("Removed %d of %d test plans and %d of %d test cases in %d ms (selection by the "
+                        + "previous algorithm alone took %d ms)", report.getTestPlans(), testPlans,
+                report.getTestCases(), testCases, TimeUnit.NANOSECONDS.toMillis(cleanup),
+                TimeUnit.NANOSECONDS.toMillis(previousSelection)));
+        Assert.assertEquals(report.getTestPlans(), expected.size());
+        Assert.assertEquals(count("SELECT COUNT(*) FROM test_case"), testCases - report.getTestCases());
+        Assert.assertEquals(report.getTestCases(), testCases * expected.size() / testPlans);
+    }
+
+    /**
+     * Previous cleanup algorithm: for each infra combination of each product, every test plan except the latest
+     * given number of builds.
+     */
+    private Set<String> previousCleanupCandidates(int buildsToKeep) {
+        @SuppressWarnings("unchecked")
+        List<Object[]> combinations = getEntityManager().createNativeQuery("SELECT DISTINCT dp.PRODUCT_id, "
+                + "tp.infra_parameters FROM test_plan tp INNER JOIN deployment_pattern dp ON "
+                + "dp.id = tp.DEPLOYMENTPATTERN_id WHERE tp.infra_parameters IS NOT NULL")
+                .getResultList();
+        Set<String> candidates = new HashSet<>();
+        for (Object[] combination : combinations) {
+            @SuppressWarnings("unchecked")
+            List<Object> ids = getEntityManager().createNativeQuery("SELECT tp.id FROM test_plan tp INNER JOIN "
+                    + "deployment_pattern dp ON dp.id = tp.DEPLOYMENTPATTERN_id WHERE dp.PRODUCT_id = ? AND "
+                    + "tp.infra_parameters = ? ORDER BY tp.modified_timestamp DESC, tp.id DESC")
+                    .setParameter(1, combination[0])
+                    .setParameter(2, combination[1])
+                    .getResultList();
+            ids.stream().skip(buildsToKeep).forEach(id -> candidates.add(String.valueOf(id)));
+        }
+        return candidates;
+    }
+
+    private void insertTestPlanWithoutInfraCombination() {
+        List<TestPlan> testPlans = getEntityManager()
+                .createQuery("SELECT tp FROM TestPlan tp", TestPlan.class)
+                .setMaxResults(1)
+                .getResultList();
+        getEntityManager().getTransaction().begin();
+        getEntityManager().createNativeQuery("INSERT INTO test_plan (id, created_timestamp, modified_timestamp, "
+                + "status, phase, test_run_number, DEPLOYMENTPATTERN_id) SELECT RANDOM_UUID(), DATEADD('DAY', -X, "
+                + "CURRENT_TIMESTAMP), DATEADD('DAY', -X, CURRENT_TIMESTAMP), 'SUCCESS', 'TEST_PHASE_SUCCEEDED', X, ? "
+                + "FROM SYSTEM_RANGE(1, 5)")
+                .setParameter(1, testPlans.get(0).getDeploymentPattern().getId())
+                .executeUpdate();
+        getEntityManager().getTransaction().commit();
+        getEntityManager().clear();
+    }
+
+    /**
+     * Inserts the given number of test scenarios to every test plan, and the given number of test cases to every
+     * test scenario.
+     */
+    private void insertChildren(int scenariosPerTestPlan, int casesPerScenario) {
+        EntityManager entityManager = getEntityManager();
+        entityManager.getTransaction().begin();
+        entityManager.createNativeQuery("INSERT INTO test_scenario (id, created_timestamp, modified_timestamp, "
+                + "name, description, status, is_pre_script_success, is_post_script_success, TESTPLAN_id) "
+                + "SELECT RANDOM_UUID(), CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, CONCAT('scenario-', r.X), "
+                + "'scenario', 'SUCCESS', TRUE, TRUE, tp.id FROM test_plan tp CROSS JOIN SYSTEM_RANGE(1, ?) r")
+                .setParameter(1, scenariosPerTestPlan)
+                .executeUpdate();
+        entityManager.createNativeQuery("INSERT INTO test_case (id, created_timestamp, modified_timestamp, "
+                + "test_name, status, TESTSCENARIO_id) SELECT RANDOM_UUID(), CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, "
+                + "CONCAT('case-', r.X), 'SUCCESS', ts.id FROM test_scenario ts CROSS JOIN SYSTEM_RANGE(1, ?) r")
+                .setParameter(1, casesPerScenario)
+                .executeUpdate();
+        entityManager.getTransaction().commit();
+    }
+
+    private long count(String sql) {
+        return ((Number) getEntityManager().createNativeQuery(sql).getSingleResult()).longValue();
+    }
+}
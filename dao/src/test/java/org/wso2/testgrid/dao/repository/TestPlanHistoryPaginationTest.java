@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.testgrid.common.Product;
+import org.wso2.testgrid.common.TestPlan;
+import org.wso2.testgrid.common.TestPlanPhase;
+import org.wso2.testgrid.common.TestPlanStatus;
+import org.wso2.testgrid.dao.DAOTestBase;
+import org.wso2.testgrid.dao.Page;
+import org.wso2.testgrid.dao.PageCursor;
+import org.wso2.testgrid.dao.TestGridDAOException;
+import org.wso2.testgrid.dao.uow.TestPlanUOW;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Verifies the keyset paginated test plan history and shows that the cost of a page does not depend on the length
+ * of the history.
+ */
+public class TestPlanHistoryPaginationTest extends DAOTestBase {
+
+    private static final Logger logger = LoggerFactory.getLogger(TestPlanHistoryPaginationTest.class);
+    private static final int PAGE_SIZE = 50;
+    private static final int REPETITIONS = 20;
+    private static final int MAX_HISTORY = Integer.getInteger("testgrid.benchmark.historyRows", 100_000);
+    private static final int MAX_FULL_HISTORY = 10_000;
+
+    @Test
+    public void testPagesCoverHistoryInOrder() {
+        TestPlan testPlan = createHistory();
+        // Three test plans share each created timestamp, hence the id decides their order.
+        insertHistory(testPlan, 1, 251);
+        List<String> expected = historyIds(testPlan);
+
+        TestPlanUOW testPlanUOW = new TestPlanUOW(getEntityManager());
+        List<String> paged = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            Page<TestPlan> page = testPlanUOW.getTestPlanHistory(testPlan, cursor, PAGE_SIZE);
+            Assert.assertTrue(page.getItems().size() <= PAGE_SIZE);
+            page.getItems().forEach(item -> paged.add(item.getId()));
+            cursor = page.getNextCursor().map(PageCursor::encode).orElse(null);
+            pages++;
+        } while (cursor != null);
+
+        Assert.assertEquals(paged, expected);
+        Assert.assertEquals(pages, (expected.size() + PAGE_SIZE - 1) / PAGE_SIZE);
+    }
+
+    @Test
+    public void testStatusUpdatesKeepPagesStable() throws TestGridDAOException {
+        TestPlan testPlan = createHistory();
+        insertHistory(testPlan, 1, 3 * PAGE_SIZE);
+        List<String> expected = historyIds(testPlan);
+        TestPlanRepository testPlanRepository = new TestPlanRepository(getEntityManager());
+
+        Page<TestPlan> firstPage = testPlanRepository.getTestPlanHistory(testPlan, null, PAGE_SIZE);
+        // Test plans of the pages already read and of those yet to be read change their status meanwhile.
+        testPlanRepository.updateStatus(expected.get(PAGE_SIZE / 2), TestPlanStatus.FAIL, null);
+        testPlanRepository.updateStatus(expected.get(expected.size() - 1), TestPlanStatus.RUNNING,
+                TestPlanPhase.TEST_PHASE_STARTED);
+        getEntityManager().clear();
+        List<String> paged = new ArrayList<>();
+        firstPage.getItems().forEach(item -> paged.add(item.getId()));
+        PageCursor cursor = firstPage.getNextCursor().orElse(null);
+        while (cursor != null) {
+            Page<TestPlan> page = testPlanRepository.getTestPlanHistory(testPlan, cursor, PAGE_SIZE);
+            page.getItems().forEach(item -> paged.add(item.getId()));
+            cursor = page.getNextCursor().orElse(null);
+        }
+
+        Assert.assertEquals(paged, expected, "Each test plan should be paged once, in the order it was created.");
+    }
+
+    @Test
+    public void testCursorToken() {
+        Timestamp timestamp = new Timestamp(1_530_000_000_123L);
+        timestamp.setNanos(123_456_789);
+        PageCursor cursor = new PageCursor(timestamp, "7f1c6e0a-1b9d-4c1e-8f7e-3f0f5c2a9d11");
+
+        PageCursor decoded = PageCursor.decode(cursor.encode());
+        Assert.assertEquals(decoded, cursor);
+        Assert.assertEquals(decoded.getCreatedTimestamp(), timestamp);
+        Assert.assertEquals(cursor.encode(), decoded.encode(), "Cursor token should be stable.");
+        Assert.assertTrue(cursor.encode().matches("[A-Za-z0-9_-]+"), "Cursor token should be URL safe.");
+
+        for (String invalid : Arrays.asList("not a cursor", "bm90LWEtY3Vyc29y", "MTIzOjQ1Ng")) {
+            Assert.assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(invalid));
+        }
+    }
+
+    @Test
+    public void benchmarkHistoryPagination() {
+        TestPlan testPlan = createHistory();
+        TestPlanRepository testPlanRepository = new TestPlanRepository(getEntityManager());
+        int inserted = 0;
+        long firstPageAllocation = -1;
+        for (int historySize = 1_000; historySize <= MAX_HISTORY; historySize *= 10) {
+            insertHistory(testPlan, inserted + 1, historySize);
+            inserted = historySize;
+            PageCursor middle = cursorAt(testPlan, historySize / 2);
+
+            long[] firstPageLatencies = new long[REPETITIONS];
+            long[] middlePageLatencies = new long[REPETITIONS];
+            long allocatedBytes = 0;
+            for (int i = 0; i < REPETITIONS; i++) {
+                long allocationStart = allocatedBytes();
+                long start = System.nanoTime();
+                Page<TestPlan> firstPage = testPlanRepository.getTestPlanHistory(testPlan, null, PAGE_SIZE);
+                firstPageLatencies[i] = System.nanoTime() - start;
+                allocatedBytes += allocatedBytes() - allocationStart;
+                getEntityManager().clear();
+
+                start = System.nanoTime();
+                Page<TestPlan> middlePage = testPlanRepository.getTestPlanHistory(testPlan, middle, PAGE_SIZE);
+                middlePageLatencies[i] = System.nanoTime() - start;
+                getEntityManager().clear();
+
+                Assert.assertEquals(firstPage.getItems().size(), PAGE_SIZE);
+                Assert.assertEquals(middlePage.getItems().size(), PAGE_SIZE);
+                Assert.assertTrue(firstPage.hasNext());
+            }
+            long allocationPerPage = allocatedBytes / REPETITIONS;
+            Arrays.sort(firstPageLatencies);
+            Arrays.sort(middlePageLatencies);
+
+            String fullHistory = "skipped";
+            if (historySize <= MAX_FULL_HISTORY) {
+                // Previous implementation: the whole history in a single response.
+                long start = System.nanoTime();
+                int size = testPlanRepository.getTestPlanHistory(testPlan).size();
+                fullHistory = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms";
+                getEntityManager().clear();
+                Assert.assertEquals(size, historySize);
+            }
+            logger.info(String.format("History of %d test plans: first page p50 %.2f ms, middle page p50 %.2f ms, "
+                            + "%d KB allocated per page, full history %s", historySize,
+                    percentile(firstPageLatencies, 50) / 1e6, percentile(middlePageLatencies, 50) / 1e6,
+                    allocationPerPage / 1024, fullHistory));
+
+            if (firstPageAllocation < 0) {
+                firstPageAllocation = allocationPerPage;
+            } else if (firstPageAllocation > 0) {
+                Assert.assertTrue(allocationPerPage < 2 * firstPageAllocation + 256 * 1024,
+                        "Memory needed for a page should not grow with the history: " + allocationPerPage + " vs "
+                                + firstPageAllocation + " bytes.");
+            }
+        }
+    }
+
+    /**
+     * Returns a test plan of a new product, whose infra combination and deployment pattern identify the history.
+     */
+    private TestPlan createHistory() {
+        Product product = createProduct(1, 1, 1);
+        TestPlan testPlan = getEntityManager()
+                .createQuery("SELECT tp FROM TestPlan tp WHERE tp.deploymentPattern.product.id = :productId",
+                        TestPlan.class)
+                .setParameter("productId", product.getId())
+                .getSingleResult();
+        testPlan.getDeploymentPattern().getProduct().getId();
+        return testPlan;
+    }
+
+    /**
+     * Inserts the test runs {@code from} to {@code to} of the history of the given test plan.
+     */
+    private void insertHistory(TestPlan testPlan, int from, int to) {
+        Timestamp base = new Timestamp(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(365));
+        getEntityManager().getTransaction().begin();
+        getEntityManager().createNativeQuery("INSERT INTO test_plan (id, created_timestamp, modified_timestamp, "
+                + "status, phase, infra_parameters, test_run_number, DEPLOYMENTPATTERN_id) "
+                + "SELECT RANDOM_UUID(), DATEADD('SECOND', X / 3, ?), DATEADD('SECOND', X / 3, ?), 'SUCCESS', "
+                + "'TEST_PHASE_SUCCEEDED', ?, X, ? FROM SYSTEM_RANGE(?, ?)")
+                .setParameter(1, base)
+                .setParameter(2, base)
+                .setParameter(3, testPlan.getInfraParameters())
+                .setParameter(4, testPlan.getDeploymentPattern().getId())
+                .setParameter(5, from)
+                .setParameter(6, to)
+                .executeUpdate();
+        getEntityManager().getTransaction().commit();
+    }
+
+    private List<String> historyIds(TestPlan testPlan) {
+        @SuppressWarnings("unchecked")
+        List<Object> ids = getEntityManager()
+                .createNativeQuery("SELECT id FROM test_plan WHERE infra_parameters = ? AND DEPLOYMENTPATTERN_id = ? "
+                        + "ORDER BY created_timestamp DESC, id DESC")
+                .setParameter(1, testPlan.getInfraParameters())
+                .setParameter(2, testPlan.getDeploymentPattern().getId())
+                .getResultList();
+        return ids.stream().map(String::valueOf).collect(Collectors.toList());
+    }
+
+    private PageCursor cursorAt(TestPlan testPlan, int offset) {
+        Object[] row = (Object[]) getEntityManager()
+                .createNativeQuery("SELECT created_timestamp, id FROM test_plan WHERE infra_parameters = ? AND "
+                        + "DEPLOYMENTPATTERN_id = ? ORDER BY created_timestamp DESC, id DESC LIMIT 1 OFFSET ?")
+                .setParameter(1, testPlan.getInfraParameters())
+                .setParameter(2, testPlan.getDeploymentPattern().getId())
+                .setParameter(3, offset)
+                .getSingleResult();
+        return new PageCursor((Timestamp) row[0], String.valueOf(row[1]));
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread so far, or zero if the JVM does not measure it.
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threadMXBean)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import org.wso2.testgrid.dao.DAOTestBase;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import javax.persistence.Query;
+
+/**
+ * Runs {@code EXPLAIN} for the native queries of {@link TestPlanRepository} and verifies that none of them scans the
+ * test plan, test scenario or test case tables.
+ * <p>
+ * {@link TestPlanRepository#markTestPlansToCleanup(String, int)} is not covered since it ranks every test plan
+ * in a single pass by design.
+ */
+public class TestPlanQueryPlanTest extends DAOTestBase {
+
+    private static final Logger logger = LoggerFactory.getLogger(TestPlanQueryPlanTest.class);
+    private static final String[] LARGE_TABLES = { "TEST_PLAN", "TEST_SCENARIO", "TEST_CASE" };
+
+    private final String id = "00000000-0000-0000-0000-000000000000";
+    private final List<String> ids = Arrays.asList(id, "ffffffff-ffff-ffff-ffff-ffffffffffff");
+    private final Timestamp now = new Timestamp(System.currentTimeMillis());
+
+    @BeforeClass
+    public void init() {
+        // Give the optimizer realistic row counts to choose the access paths from.
+        createProduct(3, 10, 5);
+        getEntityManager().getTransaction().begin();
+        getEntityManager().createNativeQuery("ANALYZE").executeUpdate();
+        getEntityManager().getTransaction().commit();
+    }
+
+    @DataProvider(name = "nativeQueries")
+    public Object[][] nativeQueries() {
+        return new Object[][] {
+                { TestPlanRepository.TEST_PLANS_BY_DEPLOYMENT_PATTERN_AND_DATE_SQL, new Object[] { now, id } },
+                { TestPlanRepository.LAST_FAILURE_OF_PRODUCT_SQL, new Object[] { id } },
+                { TestPlanRepository.LAST_STABLE_BUILD_SQL, new Object[] { "{}", id } },
+                { TestPlanRepository.LAST_BUILD_SQL, new Object[] { id } },
+                { TestPlanRepository.DEPLOYMENT_PATTERN_IDS_SQL, new Object[] { id } },
+                query(TestPlanRepository.latestTestPlansQuery(ids, false)),
+                query(TestPlanRepository.latestTestPlansQuery(ids, true)),
+                { TestPlanRepository.LAST_FAILURE_SQL, new Object[] { "{}", id } },
+                { TestPlanRepository.TEST_PLAN_HISTORY_SQL, new Object[] { "{}", id, id } },
+                query(TestPlanRepository.testPlansOlderThanQuery(now)),
+                query(TestPlanRepository.testFailureSummaryQuery(ids)),
+                query(TestPlanRepository.testPlanStatusesQuery(ids)),
+                { TestPlanRepository.TEST_EXECUTION_HISTORY_SQL, new Object[] { id, id, now, now } }
+        };
+    }
+
+    @Test(dataProvider = "nativeQueries")
+    public void testNativeQueryUsesIndex(String sql, Object[] params) {
+        String plan = explain(sql, params).get(0);
+        logger.info("Query plan: " + plan);
+
+        String upperCasePlan = plan.toUpperCase(Locale.ENGLISH);
+        for (String table : LARGE_TABLES) {
+            Assert.assertFalse(upperCasePlan.contains("PUBLIC." + table + ".TABLESCAN"),
+                    "Query scans the " + table + " table: " + plan);
+        }
+        Assert.assertTrue(upperCasePlan.contains("PUBLIC.IDX_") || upperCasePlan.contains("PRIMARY_KEY"),
+                "Query does not use an index: " + plan);
+    }
+
+    @Test
+    public void testQueriesUseDeclaredIndexes() {
+        List<String> plans = explain(TestPlanRepository.LAST_STABLE_BUILD_SQL, "{}", id);
+        Assert.assertTrue(plans.get(0).toUpperCase(Locale.ENGLISH).contains("IDX_TEST_PLAN_DP_INFRA_MODIFIED"),
+                plans.get(0));
+        NativeQueryBuilder latestTestPlans = TestPlanRepository.latestTestPlansQuery(Collections.singletonList(id),
+                false);
+        plans = explain(latestTestPlans.getSql(), latestTestPlans.getParameters().toArray());
+        Assert.assertTrue(plans.get(0).toUpperCase(Locale.ENGLISH).contains("IDX_TEST_PLAN_DP_INFRA_RUN"),
+                plans.get(0));
+    }
+
+    private static Object[] query(NativeQueryBuilder queryBuilder) {
+        return new Object[] { queryBuilder.getSql(), queryBuilder.getParameters().toArray() };
+    }
+
+    private List<String> explain(String sql, Object... params) {
+        Query query = getEntityManager().createNativeQuery("EXPLAIN " + sql);
+        for (int i = 0; i < params.length; i++) {
+            query.setParameter(i + 1, params[i]);
+        }
+        @SuppressWarnings("unchecked")
+        List<String> plans = (List<String>) query.getResultList();
+        return plans;
+    }
+}
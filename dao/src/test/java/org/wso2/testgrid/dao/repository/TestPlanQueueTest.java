@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao.repository;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.testgrid.common.TestPlanQueueEntry;
+import org.wso2.testgrid.common.util.StringUtil;
+import org.wso2.testgrid.dao.DAOTestBase;
+import org.wso2.testgrid.dao.EntityManagerHelper;
+import org.wso2.testgrid.dao.TestGridDAOException;
+import org.wso2.testgrid.dao.uow.TestPlanQueueUOW;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tests the persistent test plan queue against the embedded H2 database.
+ */
+public class TestPlanQueueTest extends DAOTestBase {
+
+    private static final int RUNNERS = 4;
+
+    @Test
+    public void testEnqueueSkipsQueuedTestPlans() throws Exception {
+        String queue = newQueueName();
+        TestPlanQueueUOW testPlanQueueUOW = new TestPlanQueueUOW(getEntityManager());
+        List<TestPlanQueueEntry> entries = createEntries(queue, "product-a", 3);
+
+        Assert.assertEquals(testPlanQueueUOW.enqueue(entries).size(), 3);
+        List<TestPlanQueueEntry> requeued = new ArrayList<>();
+        requeued.add(copy(entries.get(0)));
+        requeued.add(copy(entries.get(0)));
+        Assert.assertTrue(testPlanQueueUOW.enqueue(requeued).isEmpty(), "Queued test plans should be skipped.");
+
+        List<TestPlanQueueEntry> queued = testPlanQueueUOW.getQueuedEntries(queue);
+        Assert.assertEquals(queued.size(), 3);
+        Assert.assertEquals(queued.get(0).getTestPlanId(), entries.get(0).getTestPlanId(),
+                "Entries should be returned in queue order.");
+    }
+
+    @Test
+    public void testClaimIsExclusive() throws Exception {
+        String queue = newQueueName();
+        List<TestPlanQueueEntry> entries = new TestPlanQueueUOW(getEntityManager())
+                .enqueue(createEntries(queue, "product-a", 10));
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(RUNNERS);
+        List<Future<Integer>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < RUNNERS; i++) {
+                String runnerId = "runner-" + i;
+                futures.add(executorService.submit(() -> {
+                    try {
+                        TestPlanQueueUOW testPlanQueueUOW = new TestPlanQueueUOW(getEntityManager());
+                        start.await();
+                        int claimed = 0;
+                        for (TestPlanQueueEntry entry : entries) {
+                            if (testPlanQueueUOW.claim(entry, runnerId)) {
+                                claimed++;
+                            }
+                        }
+                        return claimed;
+                    } finally {
+                        EntityManagerHelper.releaseEntityManager();
+                    }
+                }));
+            }
+            start.countDown();
+            int claimed = 0;
+            for (Future<Integer> future : futures) {
+                claimed += future.get();
+            }
+            Assert.assertEquals(claimed, entries.size(), "Each entry should be claimed by exactly one runner.");
+        } finally {
+            executorService.shutdown();
+        }
+
+        Map<TestPlanQueueEntry.State, Long> counts = new TestPlanQueueUOW(getEntityManager()).getEntryCounts(queue);
+        Assert.assertEquals(counts.get(TestPlanQueueEntry.State.RUNNING), Long.valueOf(entries.size()));
+        Assert.assertNull(counts.get(TestPlanQueueEntry.State.QUEUED));
+    }
+
+    @Test
+    public void testComplete() throws Exception {
+        String queue = newQueueName();
+        TestPlanQueueUOW testPlanQueueUOW = new TestPlanQueueUOW(getEntityManager());
+        List<TestPlanQueueEntry> entries = testPlanQueueUOW.enqueue(createEntries(queue, "product-a", 2));
+
+        Assert.assertTrue(testPlanQueueUOW.claim(entries.get(0), "runner-1"));
+        Assert.assertFalse(testPlanQueueUOW.claim(entries.get(0), "runner-2"));
+        try {
+            testPlanQueueUOW.complete(entries.get(0), "runner-2", TestPlanQueueEntry.State.SUCCEEDED);
+            Assert.fail("An entry should only be completed by the runner holding it.");
+        } catch (TestGridDAOException e) {
+            // expected
+        }
+        testPlanQueueUOW.complete(entries.get(0), "runner-1", TestPlanQueueEntry.State.SUCCEEDED);
+
+        Map<TestPlanQueueEntry.State, Long> counts = testPlanQueueUOW.getEntryCounts(queue);
+        Assert.assertEquals(counts.get(TestPlanQueueEntry.State.SUCCEEDED), Long.valueOf(1));
+        Assert.assertEquals(counts.get(TestPlanQueueEntry.State.QUEUED), Long.valueOf(1));
+    }
+
+    @Test
+    public void testRequeueAfterCrash() throws Exception {
+        String queue = newQueueName();
+        TestPlanQueueUOW testPlanQueueUOW = new TestPlanQueueUOW(getEntityManager());
+        List<TestPlanQueueEntry> entries = testPlanQueueUOW.enqueue(createEntries(queue, "product-a", 3));
+        for (TestPlanQueueEntry entry : entries) {
+            Assert.assertTrue(testPlanQueueUOW.claim(entry, "runner-1"));
+        }
+        testPlanQueueUOW.complete(entries.get(0), "runner-1", TestPlanQueueEntry.State.SUCCEEDED);
+        Assert.assertFalse(testPlanQueueUOW.claim(entries.get(0), "runner-2"),
+                "Completed entries should not be claimed again.");
+
+        // runner-1 crashes, leaving two entries running. Other runners' entries are not touched.
+        Assert.assertEquals(testPlanQueueUOW.requeueUncompleted(queue, "runner-2", 2), 0);
+        Assert.assertEquals(testPlanQueueUOW.requeueUncompleted(queue, "runner-1", 2), 2);
+        Assert.assertEquals(testPlanQueueUOW.getQueuedEntries(queue).size(), 2);
+
+        // The second attempt crashes as well; the entries are given up.
+        for (TestPlanQueueEntry entry : testPlanQueueUOW.getQueuedEntries(queue)) {
+            Assert.assertEquals(entry.getAttempts(), 1);
+            Assert.assertNull(entry.getRunnerId());
+            Assert.assertTrue(testPlanQueueUOW.claim(entry, "runner-1"));
+        }
+        Assert.assertEquals(testPlanQueueUOW.requeueUncompleted(queue, "runner-1", 2), 0);
+
+        Map<TestPlanQueueEntry.State, Long> counts = testPlanQueueUOW.getEntryCounts(queue);
+        Assert.assertEquals(counts.get(TestPlanQueueEntry.State.SUCCEEDED), Long.valueOf(1));
+        Assert.assertEquals(counts.get(TestPlanQueueEntry.State.FAILED), Long.valueOf(2));
+        Assert.assertNull(counts.get(TestPlanQueueEntry.State.RUNNING));
+    }
+
+    private static String newQueueName() {
+        return "queue-" + StringUtil.generateRandomString(8);
+    }
+
+    private static List<TestPlanQueueEntry> createEntries(String queue, String productName, int count) {
+        List<TestPlanQueueEntry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            TestPlanQueueEntry entry = new TestPlanQueueEntry();
+            entry.setQueueName(queue);
+            entry.setTestPlanId(StringUtil.generateRandomString(16));
+            entry.setProductName(productName);
+            entry.setTestPlanFile("/testplans/test-plan-" + i + ".yaml");
+            entry.setWorkspace("/workspace");
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    private static TestPlanQueueEntry copy(TestPlanQueueEntry entry) {
+        TestPlanQueueEntry copy = new TestPlanQueueEntry();
+        copy.setQueueName(entry.getQueueName());
+        copy.setTestPlanId(entry.getTestPlanId());
+        copy.setProductName(entry.getProductName());
+        copy.setTestPlanFile(entry.getTestPlanFile());
+        copy.setWorkspace(entry.getWorkspace());
+        return copy;
+    }
+}
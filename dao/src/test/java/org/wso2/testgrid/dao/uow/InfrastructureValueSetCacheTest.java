@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao.uow;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.testgrid.common.infrastructure.InfrastructureParameter;
+import org.wso2.testgrid.common.infrastructure.InfrastructureValueSet;
+import org.wso2.testgrid.common.util.StringUtil;
+import org.wso2.testgrid.dao.DAOTestBase;
+import org.wso2.testgrid.dao.InfrastructureValueSetCache;
+import org.wso2.testgrid.dao.SQLStatementCounter;
+import org.wso2.testgrid.dao.TestGridDAOException;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Verifies that the infrastructure value set is loaded once per cache lifetime and reloaded after infrastructure
+ * parameters are written.
+ */
+public class InfrastructureValueSetCacheTest extends DAOTestBase {
+
+    private static final int REQUESTS = 5;
+    private static final int VALUE_SET_LOOKUPS_PER_REQUEST = 3;
+
+    private final String suffix = StringUtil.generateRandomString(6);
+    private final String osType = "OS-" + suffix;
+    private final String jdkType = "JDK-" + suffix;
+
+    @BeforeClass
+    public void init() throws TestGridDAOException {
+        InfrastructureParameterUOW infrastructureParameterUOW = new InfrastructureParameterUOW(getEntityManager());
+        infrastructureParameterUOW.persistInfrastructureParameter(parameter("ubuntu", osType, true));
+        infrastructureParameterUOW.persistInfrastructureParameter(parameter("centos", osType, true));
+        infrastructureParameterUOW.persistInfrastructureParameter(parameter("windows", osType, false));
+        infrastructureParameterUOW.persistInfrastructureParameter(parameter("openjdk8", jdkType, true));
+    }
+
+    @Test
+    public void testValueSetLoadedOncePerCacheLifetime() throws TestGridDAOException {
+        InfrastructureValueSetCache.invalidate();
+        long hits = InfrastructureValueSetCache.getHitCount();
+        long misses = InfrastructureValueSetCache.getMissCount();
+        SQLStatementCounter.reset();
+
+        for (int request = 0; request < REQUESTS; request++) {
+            // Each web request creates its own unit of work and looks the value set up several times.
+            InfrastructureParameterUOW infrastructureParameterUOW = new InfrastructureParameterUOW(
+                    getEntityManager());
+            for (int lookup = 0; lookup < VALUE_SET_LOOKUPS_PER_REQUEST; lookup++) {
+                Set<InfrastructureValueSet> valueSet = infrastructureParameterUOW.getValueSet();
+                Assert.assertEquals(valueNames(valueSet, osType), "centos,ubuntu");
+                Assert.assertEquals(valueNames(valueSet, jdkType), "openjdk8");
+            }
+        }
+
+        Assert.assertEquals(SQLStatementCounter.getCount(), 1, "Value set should be queried once.");
+        Assert.assertEquals(InfrastructureValueSetCache.getMissCount() - misses, 1);
+        Assert.assertEquals(InfrastructureValueSetCache.getHitCount() - hits,
+                REQUESTS * VALUE_SET_LOOKUPS_PER_REQUEST - 1);
+    }
+
+    @Test(dependsOnMethods = "testValueSetLoadedOncePerCacheLifetime")
+    public void testValueSetReloadedAfterWrite() throws TestGridDAOException {
+        InfrastructureParameterUOW infrastructureParameterUOW = new InfrastructureParameterUOW(getEntityManager());
+        infrastructureParameterUOW.getValueSet();
+        infrastructureParameterUOW.persistInfrastructureParameter(parameter("oraclejdk8", jdkType, true));
+
+        SQLStatementCounter.reset();
+        Assert.assertEquals(valueNames(infrastructureParameterUOW.getValueSet(), jdkType), "openjdk8,oraclejdk8");
+        Assert.assertEquals(valueNames(infrastructureParameterUOW.getValueSet(), jdkType), "openjdk8,oraclejdk8");
+        Assert.assertEquals(SQLStatementCounter.getCount(), 1, "Value set should be reloaded once after a write.");
+    }
+
+    @Test
+    public void testReturnedValueSetIsACopy() throws TestGridDAOException {
+        InfrastructureParameterUOW infrastructureParameterUOW = new InfrastructureParameterUOW(getEntityManager());
+        infrastructureParameterUOW.getValueSet().forEach(valueSet -> valueSet.getValues().clear());
+
+        Assert.assertEquals(valueNames(infrastructureParameterUOW.getValueSet(), osType), "centos,ubuntu");
+    }
+
+    private InfrastructureParameter parameter(String name, String type, boolean readyForTestGrid) {
+        return new InfrastructureParameter(name + "-" + suffix, type, "{}", readyForTestGrid);
+    }
+
+    private String valueNames(Set<InfrastructureValueSet> valueSets, String type) {
+        return valueSets.stream()
+                .filter(valueSet -> type.equals(valueSet.getType()))
+                .flatMap(valueSet -> valueSet.getValues().stream())
+                .map(parameter -> parameter.getName().replace("-" + suffix, ""))
+                .sorted()
+                .collect(Collectors.joining(","));
+    }
+}
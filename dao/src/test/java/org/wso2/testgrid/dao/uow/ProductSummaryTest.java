@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao.uow;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.testgrid.common.Product;
+import org.wso2.testgrid.common.ProductSummary;
+import org.wso2.testgrid.common.TestPlan;
+import org.wso2.testgrid.common.TestPlanStatus;
+import org.wso2.testgrid.dao.DAOTestBase;
+import org.wso2.testgrid.dao.SQLStatementCounter;
+import org.wso2.testgrid.dao.TestGridDAOException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verifies the precomputed product summaries and compares reading them with computing the product statuses
+ * from the latest test plans on each request.
+ */
+public class ProductSummaryTest extends DAOTestBase {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSummaryTest.class);
+    private static final int PRODUCTS = Integer.getInteger("testgrid.benchmark.products", 200);
+    private static final int INFRA_COMBINATIONS = 20;
+    private static final int TEST_RUNS = Integer.getInteger("testgrid.benchmark.testRuns", 25);
+
+    @Test
+    public void testSummaryFollowsTestPlanStatus() throws TestGridDAOException {
+        Product product = createProduct(1, 3, 2);
+        TestPlanUOW testPlanUOW = new TestPlanUOW(getEntityManager());
+        ProductSummaryUOW productSummaryUOW = new ProductSummaryUOW(getEntityManager());
+        Assert.assertFalse(productSummaryUOW.getProductSummary(product).isPresent());
+
+        ProductSummary summary = productSummaryUOW.refreshProductSummary(product);
+        TestPlanStatus stableStatus = testPlanUOW.getCurrentStatus(product);
+        Assert.assertEquals(summary.getCurrentStatus(), stableStatus);
+        Assert.assertEquals(summary.getLastStableStatus(), stableStatus);
+        Assert.assertEquals(summary.getLastBuildTimestamp(),
+                testPlanUOW.getLastBuild(product).getModifiedTimestamp());
+        Assert.assertEquals(summary.getLastFailureTimestamp(),
+                testPlanUOW.getLastFailure(product).getModifiedTimestamp());
+
+        // A new test run starts for one of the infra combinations.
+        TestPlan latestTestPlan = testPlanUOW.getLatestTestPlans(product).get(0);
+        latestTestPlan.setStatus(TestPlanStatus.RUNNING);
+        testPlanUOW.persistTestPlan(latestTestPlan);
+        summary = testPlanUOW.refreshProductSummary(product);
+
+        Assert.assertEquals(summary.getCurrentStatus(), TestPlanStatus.RUNNING);
+        Assert.assertTrue(summary.isRunning());
+        Assert.assertEquals(summary.getLastStableStatus(), testPlanUOW.getLastStableStatus(product));
+        Assert.assertEquals(productSummaryUOW.getProductSummary(product).map(ProductSummary::getId).orElse(null),
+                summary.getId(), "Refreshing should update the existing summary.");
+    }
+
+    @Test
+    public void benchmarkProductStatuses() throws TestGridDAOException {
+        long start = System.nanoTime();
+        List<Product> products = new ArrayList<>(PRODUCTS);
+        for (int i = 0; i < PRODUCTS; i++) {
+            products.add(createProduct(1, INFRA_COMBINATIONS, TEST_RUNS));
+        }
+        logger.info(String.format("Inserted %d products with %d test plans each in %d ms.", PRODUCTS,
+                INFRA_COMBINATIONS * TEST_RUNS, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+
+        TestPlanUOW testPlanUOW = new TestPlanUOW(getEntityManager());
+        ProductSummaryUOW productSummaryUOW = new ProductSummaryUOW(getEntityManager());
+        ProductUOW productUOW = new ProductUOW(getEntityManager());
+
+        start = System.nanoTime();
+        int refreshed = productSummaryUOW.refreshAllProductSummaries();
+        long backfillNanos = System.nanoTime() - start;
+        Assert.assertTrue(refreshed >= PRODUCTS);
+
+        // Previous dashboard implementation: evaluate the latest test plans of every product.
+        start = System.nanoTime();
+        Map<String, TestPlanStatus> computedStatuses = new HashMap<>();
+        for (Product product : productUOW.getProducts()) {
+            computedStatuses.put(product.getId(), testPlanUOW.getCurrentStatus(product));
+        }
+        long computeNanos = System.nanoTime() - start;
+
+        SQLStatementCounter.reset();
+        start = System.nanoTime();
+        Map<String, TestPlanStatus> summaryStatuses = new HashMap<>();
+        productUOW.getProducts();
+        for (ProductSummary summary : productSummaryUOW.getProductSummaries()) {
+            summaryStatuses.put(summary.getProduct().getId(), summary.getCurrentStatus());
+        }
+        long summaryNanos = System.nanoTime() - start;
+
+        Assert.assertEquals(SQLStatementCounter.getCount(), 2, "Dashboard should read products and summaries once.");
+        for (Product product : products) {
+            Assert.assertEquals(summaryStatuses.get(product.getId()), computedStatuses.get(product.getId()));
+        }
+        logger.info(String.format("Product statuses of %d products: computed per request %d ms, "
+                        + "precomputed summary %d ms, backfill %d ms", computedStatuses.size(),
+                TimeUnit.NANOSECONDS.toMillis(computeNanos), TimeUnit.NANOSECONDS.toMillis(summaryNanos),
+                TimeUnit.NANOSECONDS.toMillis(backfillNanos)));
+    }
+}
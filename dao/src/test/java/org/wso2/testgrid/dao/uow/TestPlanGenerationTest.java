@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao.uow;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.testgrid.common.DeploymentPattern;
+import org.wso2.testgrid.common.Product;
+import org.wso2.testgrid.common.TestPlan;
+import org.wso2.testgrid.common.TestPlanPhase;
+import org.wso2.testgrid.common.TestPlanStatus;
+import org.wso2.testgrid.common.config.DeploymentConfig;
+import org.wso2.testgrid.common.config.InfrastructureConfig;
+import org.wso2.testgrid.common.config.Script;
+import org.wso2.testgrid.common.exception.CommandExecutionException;
+import org.wso2.testgrid.common.util.TestGridUtil;
+import org.wso2.testgrid.dao.DAOTestBase;
+import org.wso2.testgrid.dao.SQLStatementCounter;
+import org.wso2.testgrid.dao.TestGridDAOException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Generates test plans against H2 one at a time, the way the test plans were generated before, and with the
+ * batched lookups and inserts.
+ */
+public class TestPlanGenerationTest extends DAOTestBase {
+
+    private static final Logger logger = LoggerFactory.getLogger(TestPlanGenerationTest.class);
+    private static final int DEPLOYMENT_PATTERNS = 4;
+    private static final int INFRA_COMBINATIONS = 500;
+
+    @Test
+    public void testGenerateTestPlans() throws Exception {
+        Product perPlanProduct = createProduct(0, 0, 0);
+        List<TestPlan> perPlanTestPlans = createTestPlans(perPlanProduct);
+        SQLStatementCounter.reset();
+        long start = System.nanoTime();
+        List<TestPlan> perPlanResults = generatePerPlan(perPlanProduct, perPlanTestPlans);
+        long perPlanMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        int perPlanStatements = SQLStatementCounter.getCount();
+
+        Product batchedProduct = createProduct(0, 0, 0);
+        List<TestPlan> batchedTestPlans = createTestPlans(batchedProduct);
+        SQLStatementCounter.reset();
+        start = System.nanoTime();
+        List<TestPlan> batchedResults = generateBatched(batchedProduct, batchedTestPlans);
+        long batchedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        int batchedStatements = SQLStatementCounter.getCount();
+
+        logger.info(String.format("Generating %d test plans: %d ms and %d statements one at a time, "
+                        + "%d ms and %d statements batched", batchedTestPlans.size(), perPlanMillis,
+                perPlanStatements, batchedMillis, batchedStatements));
+        Assert.assertEquals(batchedResults.size(), perPlanResults.size());
+        Assert.assertTrue(batchedStatements * 4 < perPlanStatements,
+                "The batched generation should need far fewer statements.");
+        assertPersisted(batchedProduct, 1);
+
+        // A second run continues the test run numbers of each infrastructure combination.
+        generateBatched(batchedProduct, createTestPlans(batchedProduct));
+        assertPersisted(batchedProduct, 2);
+    }
+
+    private List<TestPlan> generatePerPlan(Product product, List<TestPlan> testPlans)
+            throws TestGridDAOException, CommandExecutionException {
+        DeploymentPatternUOW deploymentPatternUOW = new DeploymentPatternUOW(getEntityManager());
+        TestPlanUOW testPlanUOW = new TestPlanUOW(getEntityManager());
+        List<TestPlan> persistedTestPlans = new ArrayList<>(testPlans.size());
+        for (TestPlan testPlan : testPlans) {
+            String name = TestGridUtil.getDeploymentPatternName(testPlan);
+            Optional<DeploymentPattern> deploymentPattern = deploymentPatternUOW.getDeploymentPattern(product, name);
+            TestPlan testPlanEntity = TestGridUtil.toTestPlanEntity(deploymentPattern.isPresent() ?
+                    deploymentPattern.get() : deploymentPatternUOW.persistDeploymentPattern(product, name), testPlan);
+            TestPlan persistedTestPlan = testPlanUOW.persistTestPlan(testPlanEntity);
+            persistedTestPlan.setStatus(TestPlanStatus.RUNNING);
+            persistedTestPlan.setPhase(TestPlanPhase.PREPARATION_SUCCEEDED);
+            persistedTestPlans.add(testPlanUOW.persistTestPlan(persistedTestPlan));
+        }
+        return persistedTestPlans;
+    }
+
+    private List<TestPlan> generateBatched(Product product, List<TestPlan> testPlans)
+            throws TestGridDAOException, CommandExecutionException {
+        DeploymentPatternUOW deploymentPatternUOW = new DeploymentPatternUOW(getEntityManager());
+        TestPlanUOW testPlanUOW = new TestPlanUOW(getEntityManager());
+        Map<String, DeploymentPattern> deploymentPatterns = deploymentPatternUOW.getOrCreateDeploymentPatterns(
+                product, testPlans.stream().map(TestGridUtil::getDeploymentPatternName).collect(Collectors.toList()));
+        Map<String, Map<String, Integer>> latestTestRunNumbers =
+                testPlanUOW.getLatestTestRunNumbers(deploymentPatterns.values());
+        List<TestPlan> testPlanEntities = new ArrayList<>(testPlans.size());
+        for (TestPlan testPlan : testPlans) {
+            DeploymentPattern deploymentPattern = deploymentPatterns.get(
+                    TestGridUtil.getDeploymentPatternName(testPlan));
+            testPlanEntities.add(TestGridUtil.toTestPlanEntity(deploymentPattern, testPlan,
+                    latestTestRunNumbers.computeIfAbsent(deploymentPattern.getId(), id -> new HashMap<>())));
+        }
+        List<TestPlan> persistedTestPlans = testPlanUOW.insertTestPlans(testPlanEntities);
+        testPlanUOW.updateTestPlanStatuses(persistedTestPlans.stream().map(TestPlan::getId)
+                .collect(Collectors.toList()), TestPlanStatus.RUNNING, TestPlanPhase.PREPARATION_SUCCEEDED);
+        return persistedTestPlans;
+    }
+
+    private void assertPersisted(Product product, int testRuns) {
+        getEntityManager().clear();
+        List<TestPlan> testPlans = getEntityManager()
+                .createQuery("SELECT tp FROM TestPlan tp WHERE tp.deploymentPattern.product.id = :productId",
+                        TestPlan.class)
+                .setParameter("productId", product.getId())
+                .getResultList();
+        Assert.assertEquals(testPlans.size(), DEPLOYMENT_PATTERNS * INFRA_COMBINATIONS * testRuns);
+        Map<Integer, Long> testRunNumbers = testPlans.stream()
+                .collect(Collectors.groupingBy(TestPlan::getTestRunNumber, Collectors.counting()));
+        for (int run = 1; run <= testRuns; run++) {
+            Assert.assertEquals(testRunNumbers.get(run), Long.valueOf(DEPLOYMENT_PATTERNS * INFRA_COMBINATIONS),
+                    "Each infrastructure combination should have one test plan of run " + run);
+        }
+        for (TestPlan testPlan : testPlans) {
+            Assert.assertEquals(testPlan.getStatus(), TestPlanStatus.RUNNING);
+            Assert.assertEquals(testPlan.getPhase(), TestPlanPhase.PREPARATION_SUCCEEDED);
+        }
+    }
+
+    private List<TestPlan> createTestPlans(Product product) {
+        List<TestPlan> testPlans = new ArrayList<>(DEPLOYMENT_PATTERNS * INFRA_COMBINATIONS);
+        for (int dp = 0; dp < DEPLOYMENT_PATTERNS; dp++) {
+            for (int infra = 0; infra < INFRA_COMBINATIONS; infra++) {
+                Script script = new Script();
+                script.setName("deploy");
+                script.setType(Script.ScriptType.SHELL);
+                script.setFile("deploy.sh");
+                DeploymentConfig.DeploymentPattern deploymentPattern = new DeploymentConfig.DeploymentPattern();
+                deploymentPattern.setName("dp-" + dp + "-" + product.getName());
+                deploymentPattern.setScripts(Collections.singletonList(script));
+
+                Properties parameters = new Properties();
+                parameters.setProperty("OS", "os-" + infra);
+                InfrastructureConfig infrastructureConfig = new InfrastructureConfig();
+                infrastructureConfig.setParameters(parameters);
+
+                TestPlan testPlan = new TestPlan();
+                testPlan.setInfrastructureConfig(infrastructureConfig);
+                testPlan.setDeploymentConfig(new DeploymentConfig(Collections.singletonList(deploymentPattern)));
+                testPlans.add(testPlan);
+            }
+        }
+        return testPlans;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.testgrid.dao.uow;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.testgrid.common.Product;
+import org.wso2.testgrid.common.ProductSummary;
+import org.wso2.testgrid.common.Status;
+import org.wso2.testgrid.common.TestCase;
+import org.wso2.testgrid.common.TestPlan;
+import org.wso2.testgrid.common.TestPlanPhase;
+import org.wso2.testgrid.common.TestPlanStatus;
+import org.wso2.testgrid.common.TestScenario;
+import org.wso2.testgrid.dao.DAOTestBase;
+import org.wso2.testgrid.dao.SQLStatementCounter;
+import org.wso2.testgrid.dao.TestGridDAOException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the SQL statements of test plan status transitions written with full merges and with targeted updates.
+ */
+public class TestPlanStatusUpdateTest extends DAOTestBase {
+
+    private static final Logger logger = LoggerFactory.getLogger(TestPlanStatusUpdateTest.class);
+    private static final int SCENARIOS = 10;
+    private static final int TEST_CASES_PER_SCENARIO = 20;
+
+    @Test
+    public void testStatementsPerTransition() throws TestGridDAOException {
+        TestPlanUOW testPlanUOW = new TestPlanUOW(getEntityManager());
+        TestPlan testPlan = createTestPlanWithResults(testPlanUOW);
+
+        testPlan.setPhase(TestPlanPhase.TEST_PHASE_STARTED);
+        SQLStatementCounter.reset();
+        testPlan = testPlanUOW.persistTestPlan(testPlan);
+        int mergeStatements = SQLStatementCounter.getCount();
+
+        TestPlanStatusWriter statusWriter = new TestPlanStatusWriter(testPlanUOW, 0);
+        testPlan.setPhase(TestPlanPhase.TEST_PHASE_SUCCEEDED);
+        SQLStatementCounter.reset();
+        statusWriter.update(testPlan, false);
+        int updateStatements = SQLStatementCounter.getCount();
+
+        logger.info(String.format("Statements per phase transition of a test plan with %d test cases: "
+                + "%d with a merge, %d with a targeted update", SCENARIOS * TEST_CASES_PER_SCENARIO,
+                mergeStatements, updateStatements));
+        Assert.assertEquals(updateStatements, 1, "A phase transition should be a single update.");
+        Assert.assertTrue(mergeStatements > updateStatements);
+        Assert.assertEquals(getPersistedPhase(testPlan), TestPlanPhase.TEST_PHASE_SUCCEEDED.name());
+    }
+
+    @Test
+    public void testTransitionsAreCoalesced() throws TestGridDAOException {
+        TestPlanUOW testPlanUOW = new TestPlanUOW(getEntityManager());
+        TestPlan testPlan = getTestPlan(createProduct(1, 1, 1));
+        TestPlanStatusWriter statusWriter = new TestPlanStatusWriter(testPlanUOW, TimeUnit.MINUTES.toMillis(1));
+
+        SQLStatementCounter.reset();
+        testPlan.setPhase(TestPlanPhase.INFRA_PHASE_STARTED);
+        statusWriter.update(testPlan, false);
+        testPlan.setPhase(TestPlanPhase.INFRA_PHASE_SUCCEEDED);
+        statusWriter.update(testPlan, false);
+        testPlan.setPhase(TestPlanPhase.DEPLOY_PHASE_STARTED);
+        statusWriter.update(testPlan, false);
+        Assert.assertEquals(SQLStatementCounter.getCount(), 1, "Only the first transition should be written.");
+        Assert.assertEquals(getPersistedPhase(testPlan), TestPlanPhase.INFRA_PHASE_STARTED.name());
+
+        statusWriter.flush();
+        Assert.assertEquals(SQLStatementCounter.getCount(), 2, "Flushing should write the latest transition once.");
+        Assert.assertEquals(getPersistedPhase(testPlan), TestPlanPhase.DEPLOY_PHASE_STARTED.name());
+        statusWriter.flush();
+        Assert.assertEquals(SQLStatementCounter.getCount(), 2, "Nothing should be written without a change.");
+    }
+
+    @Test
+    public void testPendingTransitionIsWrittenInBackground() throws Exception {
+        TestPlanUOW testPlanUOW = new TestPlanUOW(getEntityManager());
+        TestPlan testPlan = getTestPlan(createProduct(1, 1, 1));
+        TestPlanStatusWriter statusWriter = new TestPlanStatusWriter(testPlanUOW, 100,
+                () -> new TestPlanUOW(getEntityManager()));
+
+        testPlan.setPhase(TestPlanPhase.TEST_PHASE_STARTED);
+        statusWriter.update(testPlan, false);
+        testPlan.setPhase(TestPlanPhase.TEST_PHASE_SUCCEEDED);
+        statusWriter.update(testPlan, false);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!TestPlanPhase.TEST_PHASE_SUCCEEDED.name().equals(getPersistedPhase(testPlan))
+                && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        Assert.assertEquals(getPersistedPhase(testPlan), TestPlanPhase.TEST_PHASE_SUCCEEDED.name(),
+                "The pending transition should be written after the interval.");
+    }
+
+    @Test
+    public void testFinalStatusRefreshesProductSummary() throws Exception {
+        Product product = createProduct(1, 1, 1);
+        TestPlanUOW testPlanUOW = new TestPlanUOW(getEntityManager());
+        ProductSummaryUOW productSummaryUOW = new ProductSummaryUOW(getEntityManager());
+        TestPlanStatus initialStatus = productSummaryUOW.refreshProductSummary(product).getCurrentStatus();
+        TestPlan testPlan = getTestPlan(product);
+
+        TestPlanStatusWriter statusWriter = new TestPlanStatusWriter(testPlanUOW, TimeUnit.MINUTES.toMillis(1),
+                () -> new TestPlanUOW(getEntityManager()));
+        testPlan.setPhase(TestPlanPhase.INFRA_PHASE_STARTED);
+        testPlan.setStatus(TestPlanStatus.RUNNING);
+        statusWriter.update(testPlan, true);
+        Assert.assertEquals(getSummaryStatus(productSummaryUOW, product), initialStatus,
+                "A test plan which is still running should not refresh the product summary.");
+
+        testPlan.setPhase(TestPlanPhase.TEST_PHASE_SUCCEEDED);
+        statusWriter.update(testPlan, false);
+        testPlan.setStatus(TestPlanStatus.SUCCESS);
+        statusWriter.update(testPlan, true);
+        statusWriter.flush();
+        Assert.assertEquals(getSummaryStatus(productSummaryUOW, product), TestPlanStatus.SUCCESS,
+                "A coalesced final status should update the product summary before the flush returns.");
+
+        testPlan.setStatus(TestPlanStatus.FAIL);
+        statusWriter.update(testPlan, true);
+        statusWriter.flush();
+        ProductSummary summary = productSummaryUOW.getProductSummary(product).orElse(null);
+        Assert.assertNotNull(summary, "The product should have a summary.");
+        Assert.assertNotNull(summary.getLastFailureTimestamp(), "A failure should set the last failure timestamp.");
+        ProductSummary refreshedSummary = testPlanUOW.refreshProductSummary(product);
+        Assert.assertEquals(summary.getCurrentStatus(), refreshedSummary.getCurrentStatus(),
+                "The updated summary should have the status of a recomputed summary.");
+        Assert.assertEquals(summary.getLastStableStatus(), refreshedSummary.getLastStableStatus(),
+                "The updated summary should have the last stable status of a recomputed summary.");
+    }
+
+    private TestPlanStatus getSummaryStatus(ProductSummaryUOW productSummaryUOW, Product product)
+            throws TestGridDAOException {
+        return productSummaryUOW.getProductSummary(product).map(ProductSummary::getCurrentStatus).orElse(null);
+    }
+
+    private TestPlan createTestPlanWithResults(TestPlanUOW testPlanUOW) throws TestGridDAOException {
+        TestPlan testPlan = getTestPlan(createProduct(1, 1, 1));
+        List<TestScenario> testScenarios = new ArrayList<>(SCENARIOS);
+        for (int i = 0; i < SCENARIOS; i++) {
+            TestScenario testScenario = new TestScenario();
+            testScenario.setName("scenario-" + i);
+            testScenario.setDir("scenario-" + i);
+            testScenario.setStatus(Status.SUCCESS);
+            testScenario.setTestPlan(testPlan);
+            for (int j = 0; j < TEST_CASES_PER_SCENARIO; j++) {
+                TestCase testCase = new TestCase();
+                testCase.setName("test-" + i + "-" + j);
+                testCase.setSuccess(Status.SUCCESS);
+                testCase.setTestScenario(testScenario);
+                testScenario.addTestCase(testCase);
+            }
+            testScenarios.add(testScenario);
+        }
+        testPlan.setTestScenarios(testScenarios);
+        return testPlanUOW.persistTestPlan(testPlan);
+    }
+
+    private TestPlan getTestPlan(Product product) {
+        return getEntityManager()
+                .createQuery("SELECT tp FROM TestPlan tp WHERE tp.deploymentPattern.product.id = :productId "
+                        + "ORDER BY tp.testRunNumber", TestPlan.class)
+                .setParameter("productId", product.getId())
+                .getResultList().get(0);
+    }
+
+    private String getPersistedPhase(TestPlan testPlan) {
+        return (String) getEntityManager()
+                .createNativeQuery("SELECT phase FROM test_plan WHERE id = ?")
+                .setParameter(1, testPlan.getId())
+                .getSingleResult();
+    }
+}
@@ -17,12 +17,15 @@
  */
 package org.wso2.testgrid.logging.plugins;
 
+import org.apache.logging.log4j.ThreadContext;
 import org.apache.logging.log4j.core.LogEvent;
 import org.apache.logging.log4j.core.config.plugins.Plugin;
 import org.apache.logging.log4j.core.lookup.StrLookup;
+import org.wso2.testgrid.common.ProcessRunner;
 import org.wso2.testgrid.common.util.TestGridUtil;
 
 import java.nio.file.Paths;
+import java.util.Map;
 
 /**
  * Looks up the log file location based on product test directory, deployment pattern
@@ -33,7 +36,18 @@ import java.nio.file.Paths;
  */
 @Plugin(name = "path", category = StrLookup.CATEGORY)
 public class LogFilePathLookup implements StrLookup {
+
+    /**
+     * Key of the log file path of a thread in its {@link ThreadContext}. Log events carry it, hence the lines a thread
+     * logs through others, such as the output of its processes, go to its log file.
+     */
+    public static final String LOG_FILE_PATH_KEY = "testgrid.logFilePath";
+
+    // Log file path in the logging context of the threads which log to the common log file.
+    private static final String COMMON_LOG_FILE_PATH = "";
+
     private static String logFilePath = Paths.get(TestGridUtil.getTestGridHomePath(), "testgrid.log").toString();
+    private static final InheritableThreadLocal<String> threadLogFilePath = new InheritableThreadLocal<>();
 
     @Override
     public String lookup(String key) {
@@ -42,7 +56,22 @@ public class LogFilePathLookup implements StrLookup {
 
     @Override
     public String lookup(LogEvent logEvent, String key) {
-        return logFilePath;
+        String path = logEvent != null ? logEvent.getContextData().getValue(LOG_FILE_PATH_KEY)
+                : ThreadContext.get(LOG_FILE_PATH_KEY);
+        if (path == null) {
+            path = threadLogFilePath.get();
+        }
+        return path == null || COMMON_LOG_FILE_PATH.equals(path) ? logFilePath : path;
+    }
+
+    /**
+     * Returns a copy of the {@link ThreadContext} of the current thread, along with the log file path of the thread.
+     */
+    private static Map<String, String> getProcessLoggingContext() {
+        Map<String, String> context = ThreadContext.getContext();
+        String path = threadLogFilePath.get();
+        context.put(LOG_FILE_PATH_KEY, path != null ? path : COMMON_LOG_FILE_PATH);
+        return context;
     }
 
     /**
@@ -53,4 +82,26 @@ public class LogFilePathLookup implements StrLookup {
     public static void setLogFilePath(String logFilePath) {
         LogFilePathLookup.logFilePath = logFilePath;
     }
+
+    /**
+     * Sets the log file path of the current thread and of the threads it starts, overriding the path set by
+     * {@link #setLogFilePath(String)}. This lets test plans running at the same time log to their own files.
+     * The path is also put in the {@link ThreadContext} of the current thread under {@link #LOG_FILE_PATH_KEY}, which
+     * takes precedence over the path a thread inherited.
+     *
+     * @param logFilePath log file path, or {@code null} to use the common log file path again
+     */
+    public static void setThreadLogFilePath(String logFilePath) {
+        // The shared process output pumps may have inherited the log file path of the thread which created them,
+        // hence the context they log with carries the path of the thread starting the process, which is the common
+        // one when that thread has no path of its own. Until a thread has a path, the pumps cannot inherit one.
+        ProcessRunner.setLoggingContextSupplier(LogFilePathLookup::getProcessLoggingContext);
+        if (logFilePath == null) {
+            threadLogFilePath.remove();
+            ThreadContext.remove(LOG_FILE_PATH_KEY);
+        } else {
+            threadLogFilePath.set(logFilePath);
+            ThreadContext.put(LOG_FILE_PATH_KEY, logFilePath);
+        }
+    }
 }
@@ -18,6 +18,7 @@
 
 package org.wso2.testgrid.reporting;
 
+import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.PropertiesFileCredentialsProvider;
 import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.services.s3.AmazonS3;
@@ -96,6 +97,8 @@ public class TestReportEngineTest extends BaseClass {
         PowerMockito.when(amazonS3ClientBuilderMock.withRegion(anyString())).thenReturn(amazonS3ClientBuilderMock);
         PowerMockito.when(amazonS3ClientBuilderMock
                 .withCredentials(any(PropertiesFileCredentialsProvider.class))).thenReturn(amazonS3ClientBuilderMock);
+        PowerMockito.when(amazonS3ClientBuilderMock.withClientConfiguration(any(ClientConfiguration.class)))
+                .thenReturn(amazonS3ClientBuilderMock);
         PowerMockito.when(amazonS3ClientBuilderMock.build()).thenReturn(s3ClientMock);
 
         when(s3ClientMock.getObject(anyString(), anyString())).thenReturn(s3ObjectMock);
@@ -22,6 +22,7 @@ import org.apache.velocity.exception.ResourceNotFoundException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.testgrid.common.Product;
+import org.wso2.testgrid.common.ProductSummary;
 import org.wso2.testgrid.common.TestPlanStatus;
 import org.wso2.testgrid.common.config.ConfigurationContext;
 import org.wso2.testgrid.common.exception.TestGridRuntimeException;
@@ -30,8 +31,8 @@ import org.wso2.testgrid.common.plugins.ArtifactReadable;
 import org.wso2.testgrid.common.plugins.ArtifactReaderException;
 import org.wso2.testgrid.common.util.StringUtil;
 import org.wso2.testgrid.dao.TestGridDAOException;
+import org.wso2.testgrid.dao.uow.ProductSummaryUOW;
 import org.wso2.testgrid.dao.uow.ProductUOW;
-import org.wso2.testgrid.dao.uow.TestPlanUOW;
 import org.wso2.testgrid.reporting.AxisColumn;
 import org.wso2.testgrid.web.bean.ErrorResponse;
 import org.wso2.testgrid.web.bean.ProductStatus;
@@ -39,7 +40,9 @@ import org.wso2.testgrid.web.utils.Constants;
 
 import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.TreeSet;
 import javax.ws.rs.DefaultValue;
@@ -118,23 +121,28 @@ public class ProductService {
     @GET
     @Path("/product-status")
     public Response getAllProductStatuses() {
-        TestPlanUOW testPlanUOW = new TestPlanUOW();
         ProductUOW productUOW = new ProductUOW();
+        ProductSummaryUOW productSummaryUOW = new ProductSummaryUOW();
         TreeSet<ProductStatus> list = new TreeSet<>();
         try {
+            Map<String, ProductSummary> summaries = new HashMap<>();
+            for (ProductSummary summary : productSummaryUOW.getProductSummaries()) {
+                summaries.put(summary.getProduct().getId(), summary);
+            }
             for (Product product : productUOW.getProducts()) {
-                TestPlanStatus currentStatus = testPlanUOW.getCurrentStatus(product);
+                ProductSummary summary = summaries.get(product.getId());
+                if (summary == null) {
+                    // Summary of the product is yet to be backfilled.
+                    summary = productSummaryUOW.refreshProductSummary(product);
+                }
                 ProductStatus status = new ProductStatus(product.getId(), product.getName(),
-                        currentStatus.toString());
+                        summary.getCurrentStatus().toString());
                 //If last test-plan status is running, update status to the last stable status and
                 //Set running property to true
-                if (currentStatus.equals(TestPlanStatus.RUNNING)) {
-                    currentStatus = testPlanUOW.getLastStableStatus(product);
-                    status.setProductStatus(currentStatus.toString());
-                    status.setRunning(true);
-                } else {
-                    status.setRunning(false);
+                if (summary.isRunning() && summary.getLastStableStatus() != null) {
+                    status.setProductStatus(summary.getLastStableStatus().toString());
                 }
+                status.setRunning(summary.isRunning());
                 status.setLastSuccessTimestamp(product.getLastSuccessTimestamp());
                 status.setLastFailureTimestamp(product.getLastFailureTimestamp());
                 list.add(status);
@@ -161,14 +169,17 @@ public class ProductService {
     public Response getProductStatus(
             @PathParam("productName") String productName) {
         try {
-            TestPlanUOW testPlanUOW = new TestPlanUOW();
+            ProductSummaryUOW productSummaryUOW = new ProductSummaryUOW();
             ProductUOW productUOW = new ProductUOW();
             Optional<Product> productInstance = productUOW.getProduct(productName);
             Product product;
             if (productInstance.isPresent()) {
                 product = productInstance.get();
+                Optional<ProductSummary> summary = productSummaryUOW.getProductSummary(product);
+                TestPlanStatus currentStatus = summary.isPresent() ? summary.get().getCurrentStatus() :
+                        productSummaryUOW.refreshProductSummary(product).getCurrentStatus();
                 ProductStatus productStatus = new ProductStatus(product.getId(), product.getName(),
-                        testPlanUOW.getCurrentStatus(product).toString());
+                        currentStatus.toString());
                 productStatus.setLastSuccessTimestamp(product.getLastSuccessTimestamp());
                 productStatus.setLastFailureTimestamp(product.getLastFailureTimestamp());
                 return Response.status(Response.Status.OK).entity(productStatus).build();
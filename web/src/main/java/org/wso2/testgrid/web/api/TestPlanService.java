@@ -18,11 +18,10 @@
 
 package org.wso2.testgrid.web.api;
 
+import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.ListObjectsRequest;
 import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
-import com.amazonaws.services.s3.transfer.TransferManager;
-import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
 import org.apache.hc.core5.http.HttpStatus;
 import org.json.JSONArray;
 import org.slf4j.Logger;
@@ -38,9 +37,11 @@ import org.wso2.testgrid.common.infrastructure.InfrastructureValueSet;
 import org.wso2.testgrid.common.plugins.AWSArtifactReader;
 import org.wso2.testgrid.common.plugins.ArtifactReadable;
 import org.wso2.testgrid.common.plugins.ArtifactReaderException;
+import org.wso2.testgrid.common.util.S3ClientRegistry;
 import org.wso2.testgrid.common.util.S3StorageUtil;
 import org.wso2.testgrid.common.util.StringUtil;
 import org.wso2.testgrid.common.util.TestGridUtil;
+import org.wso2.testgrid.dao.Page;
 import org.wso2.testgrid.dao.TestGridDAOException;
 import org.wso2.testgrid.dao.uow.InfrastructureParameterUOW;
 import org.wso2.testgrid.dao.uow.TestPlanUOW;
@@ -54,6 +55,7 @@ import org.wso2.testgrid.web.bean.TestPlanStatus;
 import org.wso2.testgrid.web.operation.GrafanaTimeLimitGetter;
 import org.wso2.testgrid.web.operation.JenkinsJobConfigurationProvider;
 import org.wso2.testgrid.web.operation.JenkinsPipelineManager;
+import org.wso2.testgrid.web.utils.Constants;
 import org.yaml.snakeyaml.DumperOptions;
 import org.yaml.snakeyaml.Yaml;
 
@@ -411,25 +413,40 @@ public class TestPlanService {
     }
 
     /**
-     * Returns the testplan history of same infrastructure combination and deployment pattern
-     * as the queried testplan.
+     * Returns a page of the testplan history of same infrastructure combination and deployment pattern
+     * as the queried testplan, latest first.
+     * <p>
+     * The history is keyset paginated. If there are more test plans, the cursor of the next page is returned in the
+     * {@value Constants#RESPONSE_HEADER_NEXT_CURSOR} response header.
      *
      * @param testPlanId id of test plan being queried
+     * @param cursor     cursor of the page returned by the previous request, or empty for the first page
+     * @param pageSize   maximum number of test plans in the page
      * @return a list of testplans representing the history.
      */
     @GET
     @Path("/history/{testPlanId}")
-    public Response getTestPlanHistory(@PathParam("testPlanId") String testPlanId) {
+    public Response getTestPlanHistory(@PathParam("testPlanId") String testPlanId,
+            @QueryParam("cursor") String cursor, @QueryParam("page-size") Integer pageSize) {
         TestPlanUOW testPlanUOW = new TestPlanUOW();
         try {
             Optional<TestPlan> planOptional = testPlanUOW.getTestPlanById(testPlanId);
             if (planOptional.isPresent()) {
                 TestPlan testPlan = planOptional.get();
-                List<TestPlan> history = testPlanUOW.getTestPlanHistory(testPlan);
+                Page<TestPlan> history;
+                try {
+                    history = testPlanUOW.getTestPlanHistory(testPlan, cursor, getHistoryPageSize(pageSize));
+                } catch (IllegalArgumentException e) {
+                    return Response.status(Response.Status.BAD_REQUEST).entity(
+                            new ErrorResponse.ErrorResponseBuilder().setMessage(e.getMessage()).build()).build();
+                }
                 final Set<InfrastructureValueSet> infraValueSet = infrastructureParameterUOW.getValueSet();
                 List<org.wso2.testgrid.web.bean.TestPlan> testPlanBeans =
-                        APIUtil.getTestPlanBeans(infraValueSet, history, false);
-                return Response.status(Response.Status.OK).entity(testPlanBeans).build();
+                        APIUtil.getTestPlanBeans(infraValueSet, history.getItems(), false);
+                Response.ResponseBuilder response = Response.status(Response.Status.OK).entity(testPlanBeans);
+                history.getNextCursor().ifPresent(nextCursor ->
+                        response.header(Constants.RESPONSE_HEADER_NEXT_CURSOR, nextCursor.encode()));
+                return response.build();
             } else {
                 String msg = "No test plan found for the given id " + testPlanId;
                 logger.error(msg);
@@ -444,6 +461,37 @@ public class TestPlanService {
         }
     }
 
+    /**
+     * Returns the page size of the history API, bounded by {@value Constants#MAX_HISTORY_PAGE_SIZE}.
+     * <p>
+     * A configured page size which is not a positive number falls back to the default. A page size requested by the
+     * client which is not positive is rejected by {@link TestPlanUOW#getTestPlanHistory(TestPlan, String, int)}.
+     *
+     * @param requestedPageSize page size requested by the client, or {@code null} to use the configured page size
+     * @return page size
+     */
+    private static int getHistoryPageSize(Integer requestedPageSize) {
+        int pageSize = Constants.DEFAULT_HISTORY_PAGE_SIZE;
+        if (requestedPageSize != null) {
+            pageSize = requestedPageSize;
+        } else {
+            String configuredPageSize = ConfigurationContext.getProperty(ConfigurationProperties.HISTORY_PAGE_SIZE);
+            if (!StringUtil.isStringNullOrEmpty(configuredPageSize)) {
+                try {
+                    pageSize = Integer.parseInt(configuredPageSize.trim());
+                } catch (NumberFormatException e) {
+                    pageSize = 0;
+                }
+                if (pageSize <= 0) {
+                    logger.warn("Invalid " + ConfigurationProperties.HISTORY_PAGE_SIZE + ": " + configuredPageSize
+                            + ". Using the default page size " + Constants.DEFAULT_HISTORY_PAGE_SIZE + ".");
+                    pageSize = Constants.DEFAULT_HISTORY_PAGE_SIZE;
+                }
+            }
+        }
+        return Math.min(pageSize, Constants.MAX_HISTORY_PAGE_SIZE);
+    }
+
     /**
      * Save the {@link TestPlanRequest} object as a YAML file.
      *
@@ -684,7 +732,8 @@ public class TestPlanService {
                     ConfigurationContext.getProperty(ConfigurationContext.ConfigurationProperties.AWS_S3_BUCKET_NAME));
             TestPlan testPlan = testPlanOptional.get();
             String archiveFileDir = S3StorageUtil.deriveS3DeploymentOutputsDir(testPlan, artifactDownloadable);
-            TransferManager transferManager = TransferManagerBuilder.standard().build();
+            AmazonS3 amazonS3 = S3ClientRegistry.getClient(
+                    ConfigurationContext.getProperty(ConfigurationContext.ConfigurationProperties.AWS_REGION_NAME));
             ListObjectsRequest listObjectsRequest = new ListObjectsRequest()
                     .withBucketName(ConfigurationContext
                             .getProperty(ConfigurationContext.ConfigurationProperties.AWS_S3_BUCKET_NAME))
@@ -692,7 +741,7 @@ public class TestPlanService {
             ArrayList<String> filesToDownload = new ArrayList<>();
             ObjectListing objects;
             do {
-                objects = transferManager.getAmazonS3Client().listObjects(listObjectsRequest);
+                objects = amazonS3.listObjects(listObjectsRequest);
                 for (S3ObjectSummary objectSummary :
                         objects.getObjectSummaries()) {
                     String fileName = objectSummary.getKey().replace(objects.getPrefix(), "");
@@ -72,4 +72,8 @@ public class Constants extends TestGridConstants {
     public static final String RESPONSE_HEADER_VALUE_ATTACHMENT = "attachment";
     public static final String RESPONSE_HEADER_VALUE_APPLICATION_ZIP = "application/zip";
     public static final String RESPONSE_HEADER_FILE_NAME = "filename";
+    public static final String RESPONSE_HEADER_NEXT_CURSOR = "X-Next-Cursor";
+
+    public static final int DEFAULT_HISTORY_PAGE_SIZE = 50;
+    public static final int MAX_HISTORY_PAGE_SIZE = 500;
 }
@@ -31,6 +31,8 @@ import DialogContent from '@material-ui/core/DialogContent';
 import DialogContentText from '@material-ui/core/DialogContentText';
 import DialogTitle from '@material-ui/core/DialogTitle';
 
+const HISTORY_NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
 class InfraCombinationHistory extends Component {
 
   constructor(props) {
@@ -38,8 +40,10 @@ class InfraCombinationHistory extends Component {
     this.state = {
       hits: [],
       currentInfra: null,
+      nextCursor: null,
       open: false
-    }
+    };
+    this.loadHistory = this.loadHistory.bind(this);
   }
 
   handleError(response) {
@@ -102,8 +106,15 @@ class InfraCombinationHistory extends Component {
   };
 
   componentDidMount() {
+    this.loadHistory(null);
+  }
+
+  loadHistory(cursor) {
     let url = TESTGRID_API_CONTEXT + "/api/test-plans/history/" + this.props.match.params.testPlanId;
-    let currentInfra;
+    if (cursor) {
+      url += "?cursor=" + encodeURIComponent(cursor);
+    }
+    let nextCursor;
     fetch(url, {
       method: "GET",
       credentials: 'same-origin',
@@ -113,14 +124,20 @@ class InfraCombinationHistory extends Component {
     })
       .then(this.handleError)
       .then(response => {
+        nextCursor = response.headers.get(HISTORY_NEXT_CURSOR_HEADER);
         return response.json()
       })
       .then(data => {
-        currentInfra = {};
-        currentInfra.infraParameters = data[0].infraParams;
-        currentInfra.relatedProduct = this.props.match.params.productName;
-        currentInfra.relatedDeplymentPattern = this.props.match.params.deploymentPatternName;
-        this.setState({hits: data, currentInfra: currentInfra});
+        this.setState(prevState => {
+          let currentInfra = prevState.currentInfra;
+          if (currentInfra === null && data.length > 0) {
+            currentInfra = {};
+            currentInfra.infraParameters = data[0].infraParams;
+            currentInfra.relatedProduct = this.props.match.params.productName;
+            currentInfra.relatedDeplymentPattern = this.props.match.params.deploymentPatternName;
+          }
+          return {hits: prevState.hits.concat(data), currentInfra: currentInfra, nextCursor: nextCursor};
+        });
       })
       .catch(error => console.error(error));
   }
@@ -173,6 +190,11 @@ class InfraCombinationHistory extends Component {
             })}
           </tbody>
         </Table>
+        {this.state.nextCursor &&
+          <Button outline size="sm" style={{'marginLeft': '10px'}}
+                  onClick={() => this.loadHistory(this.state.nextCursor)}>
+            Load older builds
+          </Button>}
         <Dialog
           open={this.state.open}
           onClose={this.handleClose}